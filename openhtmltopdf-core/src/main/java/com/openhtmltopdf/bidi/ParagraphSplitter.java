@@ -87,6 +87,23 @@ public class ParagraphSplitter {
         	splitter.setParagraph(para, actualDirection);
         	copySplitPointsFromBidiSplitter(splitter);
         }
+
+        /**
+         * Skips the BIDI algorithm for a paragraph that can only form a single LTR run,
+         * which is the case for most Latin text.
+         * @return true if the paragraph needs no BIDI splitter.
+         */
+        protected boolean runSimpleLTR() {
+        	if (cssDirection == IdentValue.RTL ||
+        		builder.length() == 0 ||
+        		!isSimpleLTRText(builder)) {
+        		return false;
+        	}
+
+        	this.actualDirection = BidiSplitter.LTR;
+        	splitPoints.put(0, new BidiTextRun(0, builder.length(), BidiSplitter.LTR));
+        	return true;
+        }
          
         /**
          * @return the first char index into this paragraph from a Text node or -1 if not available.
@@ -175,6 +192,11 @@ public class ParagraphSplitter {
         @Override
         protected void runBidiSplitter(BidiSplitter splitter, LayoutContext c) {
         }
+        
+        @Override
+        protected boolean runSimpleLTR() {
+        	return true;
+        }
 	}
 	
 	private List<Paragraph> allParagraphs;
@@ -221,9 +243,48 @@ public class ParagraphSplitter {
     public void runBidiOnParagraphs(LayoutContext c) {
    	    for (Paragraph p : allParagraphs)
    	    {
-   		    p.runBidiSplitter(c.getBidiSplitterFactory().createBidiSplitter(), c);
+   	    	if (!p.runSimpleLTR()) {
+   	    		p.runBidiSplitter(c.getBidiSplitterFactory().createBidiSplitter(), c);
+   	    	}
    	    }
     }
+
+    /**
+     * Pre-scans text for anything that could give a LTR paragraph more than one
+     * directional run: strong RTL characters, Arabic numbers and explicit
+     * embeddings, overrides or isolates. Latin text is decided by the first branch.
+     */
+    public static boolean isSimpleLTRText(CharSequence text) {
+    	int length = text.length();
+
+    	for (int i = 0; i < length; i++) {
+    		char ch = text.charAt(i);
+
+    		if (ch < 0x0590) {
+    			continue;
+    		}
+
+    		if (ch >= 0x202A && ch <= 0x202E ||
+    			ch >= 0x2066 && ch <= 0x2069 ||
+    			ch >= '\uD800' && ch <= '\uDFFF' ||
+    			Character.getType(ch) == Character.UNASSIGNED) {
+    			// Embedding controls, the RTL scripts outside the BMP and characters
+    			// newer than the JDK, which may be RTL for the BIDI implementation.
+    			return false;
+    		}
+
+    		switch (Character.getDirectionality(ch)) {
+    		case Character.DIRECTIONALITY_RIGHT_TO_LEFT:
+    		case Character.DIRECTIONALITY_RIGHT_TO_LEFT_ARABIC:
+    		case Character.DIRECTIONALITY_ARABIC_NUMBER:
+    			return false;
+    		default:
+    			break;
+    		}
+    	}
+
+    	return true;
+    }
     
     /**
      * Here we recursively split everything into paragraphs.
@@ -19,9 +19,13 @@
  */
 package com.openhtmltopdf.context;
 
+import java.util.List;
+
 import org.w3c.dom.Element;
 
-import com.openhtmltopdf.css.extend.AttributeResolver;
+import com.openhtmltopdf.css.extend.ElementDeclarationsAttributeResolver;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+import com.openhtmltopdf.extend.ElementDeclarationsNamespaceHandler;
 import com.openhtmltopdf.extend.NamespaceHandler;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.extend.UserInterface;
@@ -32,7 +36,7 @@ import com.openhtmltopdf.extend.UserInterface;
  *
  * @author Torbjoern Gannholm
  */
-public class StandardAttributeResolver implements AttributeResolver {
+public class StandardAttributeResolver implements ElementDeclarationsAttributeResolver {
     /**
      * Description of the Field
      */
@@ -108,6 +112,13 @@ public class StandardAttributeResolver implements AttributeResolver {
         return nsh.getElementStyling((Element) e);
     }
 
+    public List<PropertyDeclaration> getElementStylingDeclarations(Object e) {
+        if (nsh instanceof ElementDeclarationsNamespaceHandler) {
+            return ((ElementDeclarationsNamespaceHandler) nsh).getElementStylingDeclarations((Element) e);
+        }
+        return null;
+    }
+
     /**
      * Gets the lang attribute of the StandardAttributeResolver object
      *
@@ -36,9 +36,11 @@ import com.openhtmltopdf.css.extend.lib.DOMTreeResolver;
 import com.openhtmltopdf.css.newmatch.CascadedStyle;
 import com.openhtmltopdf.css.newmatch.PageInfo;
 import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+import com.openhtmltopdf.css.sheet.Ruleset;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
 import com.openhtmltopdf.extend.NamespaceHandler;
+import com.openhtmltopdf.extend.FSMultiThreadCache;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.extend.UserInterface;
 import com.openhtmltopdf.layout.SharedContext;
@@ -272,6 +274,20 @@ public class StyleReference {
         _stylesheetFactory.setUserAgentCallback(userAgentCallback);
     }
     
+    /**
+     * @see StylesheetFactoryImpl#setSharedStylesheetCache(FSMultiThreadCache)
+     */
+    public void setSharedStylesheetCache(FSMultiThreadCache<Stylesheet> cache) {
+        _stylesheetFactory.setSharedStylesheetCache(cache);
+    }
+
+    /**
+     * @see StylesheetFactoryImpl#setSharedDeclarationCache(FSMultiThreadCache)
+     */
+    public void setSharedDeclarationCache(FSMultiThreadCache<Ruleset> cache) {
+        _stylesheetFactory.setSharedDeclarationCache(cache);
+    }
+
     public void setSupportCMYKColors(boolean b) {
         _stylesheetFactory.setSupportCMYKColors(b);
     }
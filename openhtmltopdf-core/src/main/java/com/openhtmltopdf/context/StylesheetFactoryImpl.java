@@ -29,6 +29,7 @@ import com.openhtmltopdf.css.parser.CSSParser;
 import com.openhtmltopdf.css.sheet.Ruleset;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.FSMultiThreadCache;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.resource.CSSResource;
 import com.openhtmltopdf.util.XRLog;
@@ -60,8 +61,37 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
                 }
             };
             
+    private final int _declarationCacheCapacity = 1024;
+
+    /**
+     * an LRU cache of parsed style declarations (style attributes and presentational
+     * attributes), keyed by origin and declaration text. Documents typically
+     * repeat a small number of distinct declarations on many elements. It is used
+     * in front of the shared declaration cache, if there is one.
+     */
+    private final java.util.LinkedHashMap<String, Ruleset> _declarationCache =
+            new java.util.LinkedHashMap<String, Ruleset>(64, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                protected boolean removeEldestEntry(java.util.Map.Entry<String, Ruleset> eldest) {
+                    return size() > _declarationCacheCapacity;
+                }
+            };
+
     private CSSParser _cssParser;
 
+    /**
+     * Parsed stylesheets shared with other documents (and threads), may be null.
+     */
+    private FSMultiThreadCache<Stylesheet> _sharedCache;
+
+    /**
+     * Parsed style declarations shared with other documents (and threads), may be null.
+     */
+    private FSMultiThreadCache<Ruleset> _sharedDeclarationCache;
+
+    private boolean _supportCMYKColors;
+
     public StylesheetFactoryImpl(UserAgentCallback userAgentCallback) {
         _userAgentCallback = userAgentCallback;
         _cssParser = new CSSParser(new CSSErrorHandler() {
@@ -105,8 +135,28 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
         }
     }
 
+    /**
+     * Parses a style declaration. The returned ruleset is cached and shared, so it
+     * MUST NOT be modified.
+     */
     public Ruleset parseStyleDeclaration(int origin, String styleDeclaration) {
-        return _cssParser.parseDeclaration(origin, styleDeclaration);
+        String key = origin + ":" + styleDeclaration;
+        Ruleset result = _declarationCache.get(key);
+        if (result == null) {
+            // Declarations parse differently with CMYK color support, so it is part of the shared key.
+            String sharedKey = _sharedDeclarationCache == null ? null : (_supportCMYKColors ? "cmyk:" : "rgb:") + key;
+            if (sharedKey != null) {
+                result = _sharedDeclarationCache.get(sharedKey);
+            }
+            if (result == null) {
+                result = _cssParser.parseDeclaration(origin, styleDeclaration);
+                if (sharedKey != null) {
+                    _sharedDeclarationCache.put(sharedKey, result);
+                }
+            }
+            _declarationCache.put(key, result);
+        }
+        return result;
     }
 
     /**
@@ -174,17 +224,51 @@ public class StylesheetFactoryImpl implements StylesheetFactory {
 
         Stylesheet s = getCachedStylesheet(info.getUri());
         if (s == null && !containsStylesheet(info.getUri())) {
-            s = parse(info);
+            String sharedKey = (_supportCMYKColors ? "cmyk:" : "rgb:") + info.getUri();
+            if (_sharedCache != null) {
+                s = _sharedCache.get(sharedKey);
+            }
+            if (s == null) {
+                s = parse(info);
+                if (s != null && _sharedCache != null) {
+                    _sharedCache.put(sharedKey, s);
+                }
+            }
             putStylesheet(info.getUri(), s);
         }
         return s;
     }
 
+    /**
+     * Sets a cache of parsed stylesheets, by uri, that is shared with other documents.
+     * Parsed stylesheets are not modified after parsing so may be used by several threads
+     * at once.
+     * <p>
+     * Cached stylesheets are never revalidated. If the file at a uri changes, the old
+     * version is used for as long as it stays in the cache. Stylesheets that change
+     * should be given different uris, for example with a version parameter, or the
+     * cache replaced.
+     */
+    public void setSharedStylesheetCache(FSMultiThreadCache<Stylesheet> cache) {
+        _sharedCache = cache;
+    }
+
+    /**
+     * Sets a cache of parsed style declarations, by origin and declaration text, that is
+     * shared with other documents. Like stylesheets, the parsed declarations are not modified
+     * so may be used by several threads at once. The cache should be bounded.
+     */
+    public void setSharedDeclarationCache(FSMultiThreadCache<Ruleset> cache) {
+        _sharedDeclarationCache = cache;
+    }
+
     public void setUserAgentCallback(UserAgentCallback userAgent) {
         _userAgentCallback = userAgent;
     }
     
     public void setSupportCMYKColors(boolean b) {
         _cssParser.setSupportCMYKColors(b);
+        _supportCMYKColors = b;
+        _declarationCache.clear();
     }
 }
@@ -20,6 +20,7 @@
 package com.openhtmltopdf.css.constants;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import com.openhtmltopdf.css.parser.FSColor;
@@ -312,6 +313,13 @@ public class IdentValue implements FSDerivedValue {
         return ALL_IDENT_VALUES.size();
     }
 
+    /**
+     * Iterator of all ident strings.
+     */
+    public static Iterator<String> allIdentStrings() {
+        return ALL_IDENT_VALUES.keySet().iterator();
+    }
+
     /**
      * Adds a feature to the Value attribute of the IdentValue class
      *
@@ -0,0 +1,21 @@
+package com.openhtmltopdf.css.extend;
+
+import java.util.List;
+
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+
+/**
+ * An optional extension of {@link AttributeResolver} for resolvers which create some of the
+ * element styling as declarations directly, rather than as text to be parsed.
+ */
+public interface ElementDeclarationsAttributeResolver extends AttributeResolver {
+    /**
+     * may return null
+     *
+     * @param e PARAM
+     * @return Declarations with the specificity of the element styling that are created directly,
+     *         rather than parsed from text (such as the colspan and rowspan of table cells).
+     *         They are applied before the element styling.
+     */
+    public List<PropertyDeclaration> getElementStylingDeclarations(Object e);
+}
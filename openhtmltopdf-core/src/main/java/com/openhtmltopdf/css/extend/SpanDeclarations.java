@@ -0,0 +1,69 @@
+package com.openhtmltopdf.css.extend;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import org.w3c.dom.css.CSSPrimitiveValue;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.parser.PropertyValue;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Creates the colspan and rowspan declarations of table cells and columns for
+ * {@link ElementDeclarationsAttributeResolver}s and namespace handlers, so they are not
+ * parsed from text for every cell of a large table.
+ */
+public class SpanDeclarations {
+    private SpanDeclarations() {
+    }
+
+    /**
+     * Adds a colspan or rowspan declaration for an attribute value, if it is a number greater
+     * than zero, as the CSS parser would accept it.
+     */
+    public static void addSpanDeclaration(List<PropertyDeclaration> declarations, CSSName cssName, String span) {
+        if (span == null) {
+            return;
+        }
+        span = span.trim();
+        if (span.length() == 0) {
+            return;
+        }
+
+        float value = -1;
+        if (isSpanNumber(span)) {
+            try {
+                value = Float.parseFloat(span);
+            } catch (NumberFormatException e) {
+                // Reported below.
+            }
+        }
+
+        if (value < 1) {
+            XRLog.cssParse(Level.WARNING, "Invalid value for " + cssName + ": " + span + ", colspan/rowspan must be greater than zero");
+            return;
+        }
+
+        declarations.add(new PropertyDeclaration(
+                cssName,
+                new PropertyValue(CSSPrimitiveValue.CSS_NUMBER, value, span),
+                false,
+                StylesheetInfo.AUTHOR));
+    }
+
+    private static boolean isSpanNumber(String s) {
+        boolean seenDot = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else if (!(c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -21,17 +21,23 @@
 
 package com.openhtmltopdf.css.extend.lib;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.w3c.dom.Attr;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 
-import com.openhtmltopdf.css.extend.AttributeResolver;
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.extend.ElementDeclarationsAttributeResolver;
+import com.openhtmltopdf.css.extend.SpanDeclarations;
 import com.openhtmltopdf.css.extend.TreeResolver;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
 
 /**
  * Works for Xhtml in a DOM tree
  */
-public class DOMStaticXhtmlAttributeResolver implements AttributeResolver {
+public class DOMStaticXhtmlAttributeResolver implements ElementDeclarationsAttributeResolver {
     public String getAttributeValue(Object e, String attrName) {
     	if (!((Element) e).hasAttribute(attrName)) {
     		return null;
@@ -82,22 +88,18 @@ public class DOMStaticXhtmlAttributeResolver implements AttributeResolver {
 
     public String getElementStyling(Object el) {
         Element e = ((Element) el);
-        StringBuilder style = new StringBuilder();
+        return e.getAttribute("style");
+    }
+
+    public List<PropertyDeclaration> getElementStylingDeclarations(Object el) {
+        Element e = ((Element) el);
         if (e.getNodeName().equals("td")) {
-            String s;
-            if (!(s = e.getAttribute("colspan")).equals("")) {
-                style.append("-fs-table-cell-colspan: ");
-                style.append(s);
-                style.append(";");
-            }
-            if (!(s = e.getAttribute("rowspan")).equals("")) {
-                style.append("-fs-table-cell-rowspan: ");
-                style.append(s);
-                style.append(";");
-            }
+            List<PropertyDeclaration> result = new ArrayList<PropertyDeclaration>(2);
+            SpanDeclarations.addSpanDeclaration(result, CSSName.FS_COLSPAN, e.getAttribute("colspan"));
+            SpanDeclarations.addSpanDeclaration(result, CSSName.FS_ROWSPAN, e.getAttribute("rowspan"));
+            return result;
         }
-        style.append(e.getAttribute("style"));
-        return style.toString();
+        return null;
     }
 
     public boolean isActive(Object e) {
@@ -31,6 +31,7 @@ import java.util.TreeMap;
 
 import com.openhtmltopdf.css.constants.MarginBoxName;
 import com.openhtmltopdf.css.extend.AttributeResolver;
+import com.openhtmltopdf.css.extend.ElementDeclarationsAttributeResolver;
 import com.openhtmltopdf.css.extend.StylesheetFactory;
 import com.openhtmltopdf.css.extend.TreeResolver;
 import com.openhtmltopdf.css.sheet.*;
@@ -345,6 +346,8 @@ public class Matcher {
                 CascadedStyle cs = null;
                 com.openhtmltopdf.css.sheet.Ruleset elementStyling = getElementStyle(e);
                 com.openhtmltopdf.css.sheet.Ruleset nonCssStyling = getNonCssStyle(e);
+                List<PropertyDeclaration> elementDeclarations = _attRes instanceof ElementDeclarationsAttributeResolver ?
+                        ((ElementDeclarationsAttributeResolver) _attRes).getElementStylingDeclarations(e) : null;
                 List<PropertyDeclaration> propList = new ArrayList<PropertyDeclaration>();
                 //specificity 0,0,0,0
                 if (nonCssStyling != null) {
@@ -355,6 +358,9 @@ public class Matcher {
                     propList.addAll(sel.getRuleset().getPropertyDeclarations());
                 }
                 //specificity 1,0,0,0
+                if (elementDeclarations != null) {
+                    propList.addAll(elementDeclarations);
+                }
                 if (elementStyling != null) {
                     propList.addAll(elementStyling.getPropertyDeclarations());
                 }
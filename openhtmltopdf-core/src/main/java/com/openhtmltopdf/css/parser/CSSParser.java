@@ -31,7 +31,6 @@ import org.w3c.dom.css.CSSPrimitiveValue;
 
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
@@ -56,7 +55,7 @@ public class CSSParser {
     }
 
     private Token _saved;
-    private Lexer _lexer;
+    private CSSTokenizer _tokenizer;
 
     private CSSErrorHandler _errorHandler;
     private String _URI;
@@ -65,7 +64,7 @@ public class CSSParser {
     private boolean _supportCMYKColors;
 
     public CSSParser(CSSErrorHandler errorHandler) {
-        _lexer = new Lexer(new StringReader(""));
+        _tokenizer = new CSSTokenizer();
         _errorHandler = errorHandler;
     }
 
@@ -83,7 +82,7 @@ public class CSSParser {
     public Ruleset parseDeclaration(int origin, String text) {
         try {
             _URI = ThreadCtx.get().sharedContext().getBaseURL();
-            reset(new StringReader(text));
+            reset(text);
 
             skip_whitespace();
 
@@ -105,7 +104,7 @@ public class CSSParser {
     public PropertyValue parsePropertyValue(CSSName cssName, int origin, String expr) {
         _URI = cssName + " property value";
         try {
-            reset(new StringReader(expr));
+            reset(expr);
             List values = expr(
                     cssName == CSSName.FONT_FAMILY ||
                     cssName == CSSName.FONT_SHORTHAND ||
@@ -1819,7 +1818,7 @@ public class CSSParser {
             _saved = null;
             return result;
         } else {
-            return _lexer.yylex();
+            return _tokenizer.next();
         }
     }
 
@@ -1887,8 +1886,13 @@ public class CSSParser {
     public void reset(Reader r) {
         _saved = null;
         _namespaces.clear();
-        _lexer.yyreset(r);
-        _lexer.setyyline(0);
+        _tokenizer.reset(r);
+    }
+
+    private void reset(String text) {
+        _saved = null;
+        _namespaces.clear();
+        _tokenizer.reset(text);
     }
 
     public CSSErrorHandler getErrorHandler() {
@@ -1900,7 +1904,7 @@ public class CSSParser {
     }
 
     private String getRawTokenValue() {
-        return _lexer.yytext();
+        return _tokenizer.getText();
     }
 
     private String getTokenValue(Token t) {
@@ -1908,18 +1912,16 @@ public class CSSParser {
     }
 
     private String getTokenValue(Token t, boolean literal) {
-        int start;
-        int count;
+        char[] ch = _tokenizer.getBuffer();
+        int start = _tokenizer.getStart();
+        int limit = _tokenizer.getEnd();
         switch (t.getType()) {
             case Token.STRING:
-                count = _lexer.yylength();
-                return processEscapes(_lexer.yytext().toCharArray(), 1, count-1);
+                return processEscapes(ch, start+1, limit-1, limit);
             case Token.HASH:
-                count = _lexer.yylength();
-                return processEscapes(_lexer.yytext().toCharArray(), 1, count);
+                return processEscapes(ch, start+1, limit, limit);
             case Token.URI:
-                char[] ch = _lexer.yytext().toCharArray();
-                start = 4;
+                start += 4;
                 while (ch[start] == '\t' || ch[start] == '\r' ||
                         ch[start] == '\n' || ch[start] == '\f') {
                     start++;
@@ -1927,7 +1929,7 @@ public class CSSParser {
                 if (ch[start] == '\'' || ch[start] == '"') {
                     start++;
                 }
-                int end = ch.length-2;
+                int end = limit-2;
                 while (ch[end] == '\t' || ch[end] == '\r' ||
                         ch[end] == '\n' || ch[end] == '\f') {
                     end--;
@@ -1936,7 +1938,7 @@ public class CSSParser {
                     end--;
                 }
 
-                String uriResult = processEscapes(ch, start, end+1);
+                String uriResult = processEscapes(ch, start, end+1, limit);
                 String uriResolved = ThreadCtx.get().sharedContext().getUserAgentCallback().resolveUri(_URI, uriResult);
 
                 if (uriResolved == null) {
@@ -1947,18 +1949,23 @@ public class CSSParser {
             case Token.AT_RULE:
             case Token.IDENT:
             case Token.FUNCTION:
-                start = 0;
-                count = _lexer.yylength();
                 if (t.getType() == Token.AT_RULE) {
                     start++;
                 }
-                String result = processEscapes(_lexer.yytext().toCharArray(), start, count);
+                if (! literal) {
+                    // Property names and ident values are shared rather than copied.
+                    String interned = _tokenizer.intern(start, limit);
+                    if (interned != null) {
+                        return interned;
+                    }
+                }
+                String result = processEscapes(ch, start, limit, limit);
                 if (! literal) {
                     result = result.toLowerCase();
                 }
                 return result;
             default:
-                return _lexer.yytext();
+                return _tokenizer.getText();
         }
     }
 
@@ -1971,17 +1978,29 @@ public class CSSParser {
     }
 
     private int getCurrentLine() {
-        return _lexer.yyline();
+        return _tokenizer.getLine();
     }
 
     private static boolean isHexChar(char c) {
         return (c >= '0' && c <= '9') || (c >= 'A' && c <= 'F') || (c >= 'a' && c <= 'f');
     }
 
-    private static String processEscapes(char[] ch, int start, int end) {
-        StringBuilder result = new StringBuilder(ch.length + 10);
+    /**
+     * Processes the escapes between start and end of a token which ends at limit.
+     */
+    private static String processEscapes(char[] ch, int start, int end, int limit) {
+        int escape = start;
+        while (escape < end && ch[escape] != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            return new String(ch, start, end - start);
+        }
 
-        for (int i = start; i < end; i++) {
+        StringBuilder result = new StringBuilder(end - start);
+        result.append(ch, start, escape - start);
+
+        for (int i = escape; i < end; i++) {
             char c = ch[i];
 
             if (c == '\\') {
@@ -1990,10 +2009,10 @@ public class CSSParser {
                     i += 2;
                     continue;
                 } else {
-                    if ((i+1) < ch.length && (ch[i+1] == '\n' || ch[i+1] == '\r' || ch[i+1] == '\f')) {
+                    if ((i+1) < limit && (ch[i+1] == '\n' || ch[i+1] == '\r' || ch[i+1] == '\f')) {
                         i++;
                         continue;
-                    } else if ((i+1) >= ch.length) {
+                    } else if ((i+1) >= limit) {
                        // process \ escaped (\\)
                        result.append(c);
                        continue;
@@ -2008,8 +2027,11 @@ public class CSSParser {
                     i++;
                 }
 
-                int cvalue = Integer.parseInt(new String(ch, current, i - current), 16);
-                if (cvalue < 0xFFFF) {
+                int cvalue = 0;
+                for (int j = current; j < i; j++) {
+                    cvalue = (cvalue << 4) + Character.digit(ch[j], 16);
+                }
+                if (i > current && cvalue < 0xFFFF) {
                     result.append((char)cvalue);
                 }
 
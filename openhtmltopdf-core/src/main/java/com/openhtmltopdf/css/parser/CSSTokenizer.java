@@ -0,0 +1,750 @@
+/*
+ * {{{ header & license
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public License
+ * as published by the Free Software Foundation; either version 2.1
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA 02111-1307, USA.
+ * }}}
+ */
+package com.openhtmltopdf.css.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.constants.IdentValue;
+
+/**
+ * Splits CSS into the tokens of the grammar in <tt>Lexer.flex</tt>, taking the longest
+ * match at each position and, of equally long matches, the rule listed first, as the
+ * JFlex scanner generated from it did.
+ * <p>
+ * The text is held in a char array which is reused between stylesheets, and a token is
+ * only a start and end offset into it. The text of a token is only copied when asked for,
+ * and identifiers which are CSS property names or ident values are returned as the
+ * shared lower case string, without copying.
+ */
+class CSSTokenizer {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_RETAINED_BUFFER_SIZE = 65536;
+
+    // Units after a number, in the order of their rules in Lexer.flex.
+    private static final String[] UNITS = {
+        "em", "ex", "px", "cm", "mm", "in", "pt", "pc", "deg", "rad", "grad", "ms", "s", "hz", "khz" };
+    private static final Token[] UNIT_TOKENS = {
+        Token.TK_EMS, Token.TK_EXS, Token.TK_PX, Token.TK_CM, Token.TK_MM, Token.TK_IN, Token.TK_PT, Token.TK_PC,
+        Token.TK_ANGLE, Token.TK_ANGLE, Token.TK_ANGLE, Token.TK_TIME, Token.TK_TIME, Token.TK_FREQ, Token.TK_FREQ };
+
+    // At rules with their own token, in the order of their rules in Lexer.flex.
+    private static final String[] AT_RULES = {
+        "@import", "@page", "@media", "@charset ", "@namespace", "@font-face" };
+    private static final Token[] AT_RULE_TOKENS = {
+        Token.TK_IMPORT_SYM, Token.TK_PAGE_SYM, Token.TK_MEDIA_SYM, Token.TK_CHARSET_SYM,
+        Token.TK_NAMESPACE_SYM, Token.TK_FONT_FACE_SYM };
+
+    /**
+     * Open addressed hash table of the lower case CSS property names and ident values.
+     * Built by the first tokenizer, which may be during the class initialization of
+     * {@link CSSName}, as it parses the initial values of properties.
+     */
+    private static volatile String[] _identTable;
+
+    private char[] _buffer = new char[INITIAL_BUFFER_SIZE];
+    private int _length;
+    private Reader _reader;
+
+    private int _pos;
+    private int _start;
+    private int _end;
+
+    private int _line;
+    private int _linePos;
+
+    CSSTokenizer() {
+        if (_identTable == null) {
+            _identTable = createIdentTable();
+        }
+    }
+
+    private static String[] createIdentTable() {
+        List<String> idents = new ArrayList<String>();
+        for (Iterator i = CSSName.allCSS2PropertyNames(); i.hasNext(); ) {
+            idents.add(((String) i.next()).toLowerCase(Locale.US));
+        }
+        for (Iterator<String> i = IdentValue.allIdentStrings(); i.hasNext(); ) {
+            idents.add(i.next().toLowerCase(Locale.US));
+        }
+
+        int size = Integer.highestOneBit(idents.size() * 4);
+        String[] table = new String[size];
+        for (String ident : idents) {
+            int index = mix(ident.hashCode()) & (size - 1);
+            while (table[index] != null && ! table[index].equals(ident)) {
+                index = (index + 1) & (size - 1);
+            }
+            table[index] = ident;
+        }
+        return table;
+    }
+
+    private static int mix(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Tokenizes the text of the reader, which is read when the first token is asked for.
+     */
+    void reset(Reader reader) {
+        reset();
+        _reader = reader;
+    }
+
+    void reset(String text) {
+        reset();
+        ensureCapacity(text.length());
+        text.getChars(0, text.length(), _buffer, 0);
+        _length = text.length();
+    }
+
+    private void reset() {
+        if (_buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+            _buffer = new char[INITIAL_BUFFER_SIZE];
+        }
+        _reader = null;
+        _length = 0;
+        _pos = _start = _end = 0;
+        _line = _linePos = 0;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (_buffer.length < capacity) {
+            char[] buffer = new char[Math.max(capacity, _buffer.length * 2)];
+            System.arraycopy(_buffer, 0, buffer, 0, _length);
+            _buffer = buffer;
+        }
+    }
+
+    private void read() throws IOException {
+        Reader reader = _reader;
+        _reader = null;
+
+        int n;
+        while ((n = reader.read(_buffer, _length, _buffer.length - _length)) != -1) {
+            _length += n;
+            if (_length == _buffer.length) {
+                ensureCapacity(_length + 1);
+            }
+        }
+    }
+
+    /**
+     * @return the next token, or {@link Token#TK_EOF} at the end of the text. Comments are skipped.
+     */
+    Token next() throws IOException {
+        if (_reader != null) {
+            read();
+        }
+
+        while (true) {
+            _start = _pos;
+            if (_pos >= _length) {
+                _end = _pos;
+                return Token.TK_EOF;
+            }
+
+            Token t = scan();
+            if (t != null) {
+                _end = _pos;
+                return t;
+            }
+        }
+    }
+
+    /**
+     * The text, which the start and end offsets of a token index into. Only valid until the next reset.
+     */
+    char[] getBuffer() {
+        return _buffer;
+    }
+
+    int getStart() {
+        return _start;
+    }
+
+    int getEnd() {
+        return _end;
+    }
+
+    int getLength() {
+        return _end - _start;
+    }
+
+    String getText() {
+        return new String(_buffer, _start, _end - _start);
+    }
+
+    /**
+     * @return the number of lines before the current token, counting line breaks as JFlex does.
+     */
+    int getLine() {
+        char[] buf = _buffer;
+        for (int i = _linePos; i < _start; i++) {
+            switch (buf[i]) {
+            case '\n':
+            case '\u000B':
+            case '\u000C':
+            case '\u0085':
+            case '\u2028':
+            case '\u2029':
+                _line++;
+                break;
+            case '\r':
+                if (i + 1 >= _length || buf[i + 1] != '\n') {
+                    _line++;
+                }
+                break;
+            }
+        }
+        _linePos = _start;
+        return _line;
+    }
+
+    /**
+     * @return the shared lower case string of an identifier between the offsets if it is a CSS
+     * property name or ident value, otherwise null.
+     */
+    String intern(int start, int end) {
+        String[] table = _identTable;
+        if (table == null) {
+            return null;
+        }
+
+        char[] buf = _buffer;
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = buf[i];
+            if (c >= 0x80 || c == '\\') {
+                return null;
+            }
+            h = 31 * h + toLower(c);
+        }
+
+        int mask = table.length - 1;
+        for (int index = mix(h) & mask; table[index] != null; index = (index + 1) & mask) {
+            String ident = table[index];
+            if (ident.length() == end - start && ident.hashCode() == h && matchesLowerCase(start, ident)) {
+                return ident;
+            }
+        }
+        return null;
+    }
+
+    private Token scan() {
+        char[] buf = _buffer;
+        int p = _pos;
+        char c = buf[p];
+        int e;
+
+        switch (c) {
+        case ' ':
+        case '\t':
+        case '\r':
+        case '\n':
+        case '\f':
+            e = skipWhitespace(p);
+            if (e < _length) {
+                switch (buf[e]) {
+                case '{':
+                    return token(Token.TK_LBRACE, e + 1);
+                case '+':
+                    return token(Token.TK_PLUS, e + 1);
+                case '>':
+                    return token(Token.TK_GREATER, e + 1);
+                case ',':
+                    return token(Token.TK_COMMA, e + 1);
+                }
+            }
+            return token(Token.TK_S, e);
+        case '{':
+            return token(Token.TK_LBRACE, p + 1);
+        case '+':
+            return token(Token.TK_PLUS, p + 1);
+        case '>':
+            return token(Token.TK_GREATER, p + 1);
+        case ',':
+            return token(Token.TK_COMMA, p + 1);
+        case '/':
+            e = comment(p);
+            if (e != -1) {
+                _pos = e;
+                return null;
+            }
+            return token(Token.TK_VIRGULE, p + 1);
+        case '<':
+            if (matchesLowerCase(p, "<!--")) {
+                return token(Token.TK_CDO, p + 4);
+            }
+            return other(p);
+        case '-':
+            if (matchesLowerCase(p, "-->")) {
+                return token(Token.TK_CDC, p + 3);
+            }
+            e = ident(p);
+            if (e != -1) {
+                return identOrFunction(e);
+            }
+            return token(Token.TK_MINUS, p + 1);
+        case '~':
+            return matchToken(p, Token.TK_INCLUDES, null);
+        case '|':
+            return matchToken(p, Token.TK_DASHMATCH, Token.TK_VERTICAL_BAR);
+        case '^':
+            return matchToken(p, Token.TK_PREFIXMATCH, null);
+        case '$':
+            return matchToken(p, Token.TK_SUFFIXMATCH, null);
+        case '*':
+            return matchToken(p, Token.TK_SUBSTRINGMATCH, Token.TK_ASTERISK);
+        case '"':
+        case '\'':
+            e = string(p);
+            return e >= 0 ? token(Token.TK_STRING, e) : token(Token.TK_INVALID, ~e);
+        case '#':
+            e = nmchars(p + 1);
+            return e > p + 1 ? token(Token.TK_HASH, e) : other(p);
+        case '@':
+            return atRule(p);
+        case '!':
+            e = important(p);
+            return e != -1 ? token(Token.TK_IMPORTANT_SYM, e) : other(p);
+        case '.':
+            if (p + 1 < _length && isDigit(buf[p + 1])) {
+                return number(p);
+            }
+            return token(Token.TK_PERIOD, p + 1);
+        case 'u':
+        case 'U':
+            if (matchesLowerCase(p, "url(")) {
+                e = uri(p + 4);
+                if (e != -1) {
+                    return token(Token.TK_URI, e);
+                }
+            }
+            return identOrFunction(ident(p));
+        case '}':
+            return token(Token.TK_RBRACE, p + 1);
+        case ';':
+            return token(Token.TK_SEMICOLON, p + 1);
+        case ':':
+            return token(Token.TK_COLON, p + 1);
+        case ')':
+            return token(Token.TK_RPAREN, p + 1);
+        case '[':
+            return token(Token.TK_LBRACKET, p + 1);
+        case ']':
+            return token(Token.TK_RBRACKET, p + 1);
+        case '=':
+            return token(Token.TK_EQUALS, p + 1);
+        default:
+            if (isDigit(c)) {
+                return number(p);
+            }
+            e = ident(p);
+            if (e != -1) {
+                return identOrFunction(e);
+            }
+            return other(p);
+        }
+    }
+
+    private Token token(Token t, int end) {
+        _pos = end;
+        return t;
+    }
+
+    private Token other(int p) {
+        _pos = p + 1;
+        return Token.createOtherToken(String.valueOf(_buffer[p]));
+    }
+
+    private Token matchToken(int p, Token match, Token single) {
+        if (p + 1 < _length && _buffer[p + 1] == '=') {
+            return token(match, p + 2);
+        }
+        return single != null ? token(single, p + 1) : other(p);
+    }
+
+    private Token identOrFunction(int end) {
+        if (end < _length && _buffer[end] == '(') {
+            return token(Token.TK_FUNCTION, end + 1);
+        }
+        return token(Token.TK_IDENT, end);
+    }
+
+    private Token atRule(int p) {
+        int best = ident(p + 1);
+        Token result = best != -1 ? Token.TK_AT_RULE : null;
+
+        for (int i = 0; i < AT_RULES.length; i++) {
+            String rule = AT_RULES[i];
+            // The at rule with its own token wins over an equally long other at rule.
+            if (p + rule.length() >= best && matchesLowerCase(p, rule)) {
+                best = p + rule.length();
+                result = AT_RULE_TOKENS[i];
+                break;
+            }
+        }
+
+        return result != null ? token(result, best) : other(p);
+    }
+
+    private Token number(int p) {
+        int n = num(p);
+
+        if (n < _length && _buffer[n] == '%') {
+            return token(Token.TK_PERCENTAGE, n + 1);
+        }
+
+        // Every unit is also an identifier, so there is no unit without one.
+        int best = ident(n);
+        if (best == -1) {
+            return token(Token.TK_NUMBER, n);
+        }
+
+        Token result = Token.TK_DIMENSION;
+        for (int i = 0; i < UNITS.length; i++) {
+            int e = unit(n, UNITS[i]);
+            if (e != -1 && e >= best && (result == Token.TK_DIMENSION || e > best)) {
+                best = e;
+                result = UNIT_TOKENS[i];
+            }
+        }
+
+        return token(result, best);
+    }
+
+    private int num(int p) {
+        char[] buf = _buffer;
+        int q = p;
+        while (q < _length && isDigit(buf[q])) {
+            q++;
+        }
+        if (q + 1 < _length && buf[q] == '.' && isDigit(buf[q + 1])) {
+            q += 2;
+            while (q < _length && isDigit(buf[q])) {
+                q++;
+            }
+        }
+        return q;
+    }
+
+    /**
+     * A unit, each letter of which may also be a hex escape of the letter, and, for letters
+     * which are not hex digits, the letter escaped.
+     */
+    private int unit(int p, String letters) {
+        for (int i = 0; i < letters.length() && p != -1; i++) {
+            p = letter(p, letters.charAt(i));
+        }
+        return p;
+    }
+
+    private int letter(int p, char letter) {
+        if (p >= _length) {
+            return -1;
+        }
+
+        char[] buf = _buffer;
+        if (toLower(buf[p]) == letter) {
+            return p + 1;
+        }
+        if (buf[p] != '\\' || p + 1 >= _length) {
+            return -1;
+        }
+        if (letter > 'f' && toLower(buf[p + 1]) == letter) {
+            return p + 2;
+        }
+
+        int q = p + 1;
+        while (q < _length && q - p <= 4 && buf[q] == '0') {
+            q++;
+        }
+        if (q + 1 >= _length ||
+                (hexValue(buf[q]) != (letter >> 4) && hexValue(buf[q]) != (letter >> 4) - 2) ||
+                hexValue(buf[q + 1]) != (letter & 0xF)) {
+            return -1;
+        }
+        return escapedWhitespace(q + 2);
+    }
+
+    /**
+     * @return the end of the identifier at the offset, or -1 if there is none.
+     */
+    private int ident(int p) {
+        if (p < _length && _buffer[p] == '-') {
+            p++;
+        }
+        if (p >= _length) {
+            return -1;
+        }
+
+        char c = _buffer[p];
+        if (isNameStart(c)) {
+            p++;
+        } else if (c == '\\') {
+            p = escape(p);
+            if (p == -1) {
+                return -1;
+            }
+        } else {
+            return -1;
+        }
+
+        return nmchars(p);
+    }
+
+    private int nmchars(int p) {
+        char[] buf = _buffer;
+        while (p < _length) {
+            char c = buf[p];
+            if (isNameStart(c) || isDigit(c) || c == '-') {
+                p++;
+            } else if (c == '\\') {
+                int e = escape(p);
+                if (e == -1) {
+                    break;
+                }
+                p = e;
+            } else {
+                break;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return the end of the escape at the backslash at the offset, taking as many hex digits
+     * and whitespace as the escape can, or -1 if it is not an escape.
+     */
+    private int escape(int p) {
+        if (p + 1 >= _length) {
+            return -1;
+        }
+
+        char c = _buffer[p + 1];
+        if (isHexDigit(c)) {
+            int q = p + 1;
+            while (q < _length && q - p <= 6 && isHexDigit(_buffer[q])) {
+                q++;
+            }
+            return escapedWhitespace(q);
+        } else if (c == '\r' || c == '\n' || c == '\f') {
+            return -1;
+        }
+        return p + 2;
+    }
+
+    private int escapedWhitespace(int p) {
+        if (p < _length) {
+            char c = _buffer[p];
+            if (c == '\r' && p + 1 < _length && _buffer[p + 1] == '\n') {
+                return p + 2;
+            } else if (isWhitespace(c)) {
+                return p + 1;
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return the end of the string at the quote at the offset, or the complement of the end
+     * if the string is not closed.
+     */
+    private int string(int p) {
+        char[] buf = _buffer;
+        char quote = buf[p];
+        int q = p + 1;
+
+        while (q < _length) {
+            char c = buf[q];
+            if (c == quote) {
+                return q + 1;
+            } else if (c == '\n' || c == '\r' || c == '\f') {
+                return ~q;
+            } else if (c == '\\') {
+                if (q + 1 >= _length) {
+                    return ~q;
+                }
+                char next = buf[q + 1];
+                if (next == '\n' || next == '\f') {
+                    q += 2;
+                } else if (next == '\r') {
+                    q += q + 2 < _length && buf[q + 2] == '\n' ? 3 : 2;
+                } else {
+                    q = escape(q);
+                }
+            } else {
+                q++;
+            }
+        }
+        return ~q;
+    }
+
+    /**
+     * @return the end of the uri after <code>url(</code> at the offset, or -1 if there is none.
+     */
+    private int uri(int p) {
+        char[] buf = _buffer;
+        int q = skipWhitespace(p);
+        int best = -1;
+
+        if (q < _length && (buf[q] == '"' || buf[q] == '\'')) {
+            int e = string(q);
+            if (e >= 0) {
+                e = skipWhitespace(e);
+                if (e < _length && buf[e] == ')') {
+                    best = e + 1;
+                }
+            }
+        }
+
+        // Escapes may end at several offsets, so the offsets the unquoted uri can
+        // reach are tracked, as bits of a window which moves along the text.
+        int reachable = 1;
+        for (int i = q; reachable != 0; i++, reachable >>>= 1) {
+            if ((reachable & 1) == 0) {
+                continue;
+            }
+
+            int e = skipWhitespace(i);
+            if (e < _length && buf[e] == ')' && e + 1 > best) {
+                best = e + 1;
+            }
+            if (i >= _length) {
+                break;
+            }
+
+            char c = buf[i];
+            if (isUriChar(c)) {
+                reachable |= 1 << 1;
+            }
+            if (c == '\\' && i + 1 < _length) {
+                char next = buf[i + 1];
+                if (isHexDigit(next)) {
+                    int j = i + 1;
+                    while (j < _length && j - i <= 6 && isHexDigit(buf[j])) {
+                        j++;
+                        reachable |= 1 << (j - i);
+                    }
+                    if (j < _length && isWhitespace(buf[j])) {
+                        reachable |= 1 << (j + 1 - i);
+                        if (buf[j] == '\r' && j + 1 < _length && buf[j + 1] == '\n') {
+                            reachable |= 1 << (j + 2 - i);
+                        }
+                    }
+                } else if (next != '\r' && next != '\n' && next != '\f') {
+                    reachable |= 1 << 2;
+                }
+            }
+        }
+
+        return best;
+    }
+
+    private int important(int p) {
+        int q = p + 1;
+        while (true) {
+            int e = skipWhitespace(q);
+            if (e == q) {
+                e = comment(q);
+                if (e == -1) {
+                    break;
+                }
+            }
+            q = e;
+        }
+        return matchesLowerCase(q, "important") ? q + 9 : -1;
+    }
+
+    /**
+     * @return the end of the comment at the offset, or -1 if there is no closed comment.
+     */
+    private int comment(int p) {
+        char[] buf = _buffer;
+        if (p + 1 >= _length || buf[p] != '/' || buf[p + 1] != '*') {
+            return -1;
+        }
+        for (int i = p + 2; i + 1 < _length; i++) {
+            if (buf[i] == '*' && buf[i + 1] == '/') {
+                return i + 2;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int p) {
+        while (p < _length && isWhitespace(_buffer[p])) {
+            p++;
+        }
+        return p;
+    }
+
+    private boolean matchesLowerCase(int p, String lower) {
+        if (p + lower.length() > _length) {
+            return false;
+        }
+        for (int i = 0; i < lower.length(); i++) {
+            if (toLower(_buffer[p + i]) != lower.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '\f';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return hexValue(c) != -1;
+    }
+
+    private static int hexValue(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        } else if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        } else if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private static boolean isNameStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c >= 0x80;
+    }
+
+    private static boolean isUriChar(char c) {
+        return c == '!' || (c >= '#' && c <= '&') || (c >= '*' && c <= '~') || c >= 0x80;
+    }
+}
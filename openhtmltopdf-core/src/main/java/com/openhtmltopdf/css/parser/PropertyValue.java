@@ -47,7 +47,8 @@ public class PropertyValue implements CSSPrimitiveValue {
     
     private FSColor _FSColor;
     
-    private IdentValue _identValue;
+    // Set lazily by getFingerprint, possibly while the value is shared between threads.
+    private volatile IdentValue _identValue;
     
     private short _propertyValueType;
     
@@ -29,7 +29,8 @@ import com.openhtmltopdf.util.XRRuntimeException;
 public class FontFaceRule implements RulesetContainer {
     private int _origin;
     private Ruleset _ruleset;
-    private CalculatedStyle _calculatedStyle;
+    // Derived on first use. Stylesheets may be shared between threads so it is volatile.
+    private volatile CalculatedStyle _calculatedStyle;
 
     public FontFaceRule(int origin) {
         _origin = origin;
@@ -51,12 +52,14 @@ public class FontFaceRule implements RulesetContainer {
     }
 
     public CalculatedStyle getCalculatedStyle() {
-        if (_calculatedStyle == null) {
-            _calculatedStyle = new EmptyStyle().deriveStyle(
+        CalculatedStyle style = _calculatedStyle;
+        if (style == null) {
+            style = new EmptyStyle().deriveStyle(
                     CascadedStyle.createLayoutStyle(_ruleset.getPropertyDeclarations()));
+            _calculatedStyle = style;
         }
 
-        return _calculatedStyle;
+        return style;
     }
 
     public boolean hasFontFamily() {
@@ -64,14 +64,10 @@ public class PropertyDeclaration {
      */
     private int origin;
     /**
-     * Description of the Field
-     */
-    private IdentValue _identVal;
-
-    /**
-     * Description of the Field
+     * The value as an ident, looked up on first use. Parsed declarations may be
+     * shared between threads, so it is volatile to publish it safely.
      */
-    private boolean identIsSet;
+    private volatile IdentValue _identVal;
     
     private String _fingerprint;
 
@@ -144,11 +140,12 @@ public class PropertyDeclaration {
      * @return Returns
      */
     public IdentValue asIdentValue() {
-        if (!identIsSet) {
-            _identVal = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
-            identIsSet = true;
+        IdentValue ident = _identVal;
+        if (ident == null) {
+            ident = IdentValue.getByIdentString(cssPrimitiveValue.getCssText());
+            _identVal = ident;
         }
-        return _identVal;
+        return ident;
     }
 
     public String getDeclarationStandardText() {
@@ -0,0 +1,21 @@
+package com.openhtmltopdf.extend;
+
+import java.util.List;
+
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+
+/**
+ * An optional extension of {@link NamespaceHandler} for handlers which create some of the
+ * element styling as declarations directly, rather than as text to be parsed.
+ */
+public interface ElementDeclarationsNamespaceHandler extends NamespaceHandler {
+    /**
+     * may return null
+     *
+     * @param e
+     * @return Declarations with the specificity of the element styling that are created directly,
+     * rather than parsed from text, such as the colspan and rowspan of table cells. They are applied
+     * before the element styling.
+     */
+    List<PropertyDeclaration> getElementStylingDeclarations(org.w3c.dom.Element e);
+}
@@ -0,0 +1,10 @@
+package com.openhtmltopdf.extend;
+
+/**
+ * Allows a render to be cancelled from another thread. The token is polled regularly
+ * during layout and painting and the render is aborted with a
+ * {@link com.openhtmltopdf.util.RenderAbortedException} once it returns true.
+ */
+public interface FSCancellationToken {
+	public boolean isCancelled();
+}
@@ -0,0 +1,25 @@
+package com.openhtmltopdf.extend;
+
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Sees every resource stream opened by the user agent, through a stream factory or URL,
+ * before it is read. Implementations may return a wrapped stream, for example
+ * to record the content a document depends on.
+ */
+public interface FSStreamInterceptor {
+	/**
+	 * @param uri the resolved uri
+	 * @param stream the opened stream, null if the resource could not be opened
+	 * @return the stream to use, possibly null
+	 */
+	public InputStream interceptStream(String uri, InputStream stream);
+
+	/**
+	 * @param uri the resolved uri
+	 * @param reader the opened reader, null if the resource could not be opened
+	 * @return the reader to use, possibly null
+	 */
+	public Reader interceptReader(String uri, Reader reader);
+}
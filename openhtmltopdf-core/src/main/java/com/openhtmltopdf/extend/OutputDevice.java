@@ -157,4 +157,12 @@ public interface OutputDevice {
 	 * The new (2018) fast renderer is in use.
 	 */
 	public boolean isFastRenderer();
+
+	/**
+	 * Paints content that looks the same every time it is painted with the same <code>key</code>,
+	 * such as a static running header. Output devices that can share drawing commands
+	 * (for example as a PDF form XObject) may record the content once and reference it
+	 * afterwards. Other output devices simply run the painter.
+	 */
+	public void drawReusable(Object key, Runnable painter);
 }
@@ -0,0 +1,378 @@
+package com.openhtmltopdf.extend.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A stream factory for HTTP and HTTPS with connect and read timeouts, a limit on the number
+ * of requests at once and an optional cache on disk. Register it with
+ * <code>builder.useHttpStreamImplementation(new FSCachingHttpStreamFactory(cacheDirectory))</code>.
+ * <p>
+ * Connections are kept alive and reused by the pool of <code>HttpURLConnection</code>, which
+ * needs every response, including error responses, read to its end and closed, as is done here.
+ * <p>
+ * A response is cached for as long as <code>Cache-Control: max-age</code> or <code>Expires</code>
+ * allow. After that, or with <code>Cache-Control: no-cache</code>, it is revalidated with
+ * <code>If-None-Match</code> and <code>If-Modified-Since</code> from its <code>ETag</code> and
+ * <code>Last-Modified</code>, and the cached copy is used if the server answers 304 Not Modified.
+ * Responses with <code>Cache-Control: no-store</code> are not cached. If a cached response can not
+ * be revalidated because of a network error, it is used anyway, unless it is <code>must-revalidate</code>.
+ */
+public class FSCachingHttpStreamFactory implements FSStreamFactory {
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 30000;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+
+    private static final int CACHE_FILE_VERSION = 1;
+
+    private final File _cacheDirectory;
+    private final int _connectTimeout;
+    private final int _readTimeout;
+    private final Semaphore _requests;
+
+    private static class CacheEntry {
+        private final String uri;
+        private final String etag;
+        private final String lastModified;
+        private final long expires;
+        private final boolean mustRevalidate;
+        private final byte[] body;
+
+        private CacheEntry(String uri, String etag, String lastModified, long expires, boolean mustRevalidate, byte[] body) {
+            this.uri = uri;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.expires = expires;
+            this.mustRevalidate = mustRevalidate;
+            this.body = body;
+        }
+    }
+
+    private static class BytesStream implements FSStream {
+        private final byte[] bytes;
+
+        private BytesStream(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream getStream() {
+            return bytes == null ? null : new ByteArrayInputStream(bytes);
+        }
+
+        @Override
+        public Reader getReader() {
+            if (bytes != null) {
+                try {
+                    return new InputStreamReader(getStream(), "UTF-8");
+                } catch (UnsupportedEncodingException e) {
+                    XRLog.exception("Exception when creating stream reader", e);
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A factory with the default timeouts and limit on requests at once.
+     * @param cacheDirectory the directory to cache responses in, created if needed, or null to not cache responses.
+     */
+    public FSCachingHttpStreamFactory(File cacheDirectory) {
+        this(cacheDirectory, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_MAX_CONCURRENT_REQUESTS);
+    }
+
+    /**
+     * @param cacheDirectory the directory to cache responses in, created if needed, or null to not cache responses.
+     * @param connectTimeout the connect timeout in milliseconds, zero for none.
+     * @param readTimeout the read timeout in milliseconds, zero for none.
+     * @param maxConcurrentRequests the most requests at once, further requests wait for one to finish.
+     */
+    public FSCachingHttpStreamFactory(File cacheDirectory, int connectTimeout, int readTimeout, int maxConcurrentRequests) {
+        if (cacheDirectory != null && !cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            XRLog.load(Level.WARNING, "Couldn't create HTTP cache directory " + cacheDirectory + ", not caching responses");
+            cacheDirectory = null;
+        }
+        this._cacheDirectory = cacheDirectory;
+        this._connectTimeout = connectTimeout;
+        this._readTimeout = readTimeout;
+        this._requests = new Semaphore(maxConcurrentRequests, true);
+    }
+
+    @Override
+    public FSStream getUrl(String uri) {
+        return new BytesStream(load(uri));
+    }
+
+    private byte[] load(String uri) {
+        File file = _cacheDirectory == null ? null : new File(_cacheDirectory, createFileName(uri));
+        CacheEntry cached = file == null ? null : readEntry(file, uri);
+
+        if (cached != null && System.currentTimeMillis() < cached.expires) {
+            XRLog.load(Level.FINE, "Loaded " + uri + " from the HTTP cache");
+            return cached.body;
+        }
+
+        try {
+            _requests.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            XRLog.load(Level.WARNING, "Interrupted while waiting to load " + uri);
+            return null;
+        }
+
+        try {
+            return request(uri, file, cached);
+        } finally {
+            _requests.release();
+        }
+    }
+
+    private byte[] request(String uri, File file, CacheEntry cached) {
+        try {
+            URLConnection connection = new URL(uri).openConnection();
+            connection.setConnectTimeout(_connectTimeout);
+            connection.setReadTimeout(_readTimeout);
+            connection.setUseCaches(false);
+
+            if (!(connection instanceof HttpURLConnection)) {
+                return readFully(connection.getInputStream());
+            }
+
+            HttpURLConnection http = (HttpURLConnection) connection;
+            if (cached != null) {
+                if (cached.etag != null) {
+                    http.setRequestProperty("If-None-Match", cached.etag);
+                }
+                if (cached.lastModified != null) {
+                    http.setRequestProperty("If-Modified-Since", cached.lastModified);
+                }
+            }
+
+            int status = http.getResponseCode();
+            long now = System.currentTimeMillis();
+
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                readFully(http.getInputStream());
+                XRLog.load(Level.FINE, "Revalidated " + uri + " in the HTTP cache");
+                store(file, createEntry(uri, http, cached.body, now, cached));
+                return cached.body;
+            } else if (status >= 200 && status < 300) {
+                byte[] body = readFully(http.getInputStream());
+                store(file, createEntry(uri, http, body, now, null));
+                return body;
+            }
+
+            // Read to the end, so that the connection can be reused.
+            InputStream error = http.getErrorStream();
+            if (error != null) {
+                readFully(error);
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                XRLog.exception("item at URI " + uri + " not found");
+            } else {
+                XRLog.exception("HTTP status " + status + " for " + uri);
+            }
+            return null;
+        } catch (MalformedURLException e) {
+            XRLog.exception("bad URL given: " + uri, e);
+        } catch (IOException e) {
+            if (cached != null && !cached.mustRevalidate) {
+                XRLog.load(Level.WARNING, "IO problem for " + uri + ", using the cached copy: " + e.getMessage());
+                return cached.body;
+            }
+            XRLog.exception("IO problem for " + uri, e);
+        }
+        return null;
+    }
+
+    /**
+     * @return the cache entry for a response, or null if it should not be cached.
+     */
+    private static CacheEntry createEntry(String uri, HttpURLConnection http, byte[] body, long now, CacheEntry previous) {
+        boolean noCache = false;
+        boolean mustRevalidate = false;
+        long maxAge = -1;
+
+        String cacheControl = http.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-store")) {
+                    return null;
+                } else if (directive.equals("no-cache")) {
+                    noCache = true;
+                } else if (directive.equals("must-revalidate")) {
+                    mustRevalidate = true;
+                } else if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(directive.substring(8).replace("\"", "").trim());
+                    } catch (NumberFormatException e) {
+                        maxAge = 0;
+                    }
+                }
+            }
+        }
+
+        long expires;
+        if (noCache) {
+            expires = 0;
+        } else if (maxAge >= 0) {
+            expires = now + maxAge * 1000;
+        } else {
+            // Relative to the date of the server, so that its clock doesn't matter.
+            long expiresDate = http.getHeaderFieldDate("Expires", -1);
+            expires = expiresDate == -1 ? 0 : now + expiresDate - http.getHeaderFieldDate("Date", now);
+        }
+
+        String etag = http.getHeaderField("ETag");
+        String lastModified = http.getHeaderField("Last-Modified");
+        if (previous != null) {
+            etag = etag == null ? previous.etag : etag;
+            lastModified = lastModified == null ? previous.lastModified : lastModified;
+        }
+
+        if (expires <= now && etag == null && lastModified == null) {
+            // Can't be used without requesting it again in full.
+            return null;
+        }
+
+        return new CacheEntry(uri, etag, lastModified, expires, mustRevalidate, body);
+    }
+
+    private static String createFileName(String uri) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(uri.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(hash.length * 2 + 6);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.append(".cache").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static CacheEntry readEntry(File file, String uri) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != CACHE_FILE_VERSION || !in.readUTF().equals(uri)) {
+                return null;
+            }
+            String etag = in.readUTF();
+            String lastModified = in.readUTF();
+            long expires = in.readLong();
+            boolean mustRevalidate = in.readBoolean();
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new CacheEntry(uri, etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null : lastModified,
+                    expires, mustRevalidate, body);
+        } catch (IOException e) {
+            XRLog.exception("Couldn't read HTTP cache file " + file, e);
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    /**
+     * Writes the entry to a temporary file which replaces the cache file, so that
+     * other threads or processes never read a partly written entry.
+     */
+    private void store(File file, CacheEntry entry) {
+        if (file == null) {
+            return;
+        } else if (entry == null) {
+            file.delete();
+            return;
+        }
+
+        File temp = null;
+        DataOutputStream out = null;
+        try {
+            temp = File.createTempFile("entry", ".tmp", _cacheDirectory);
+            out = new DataOutputStream(new FileOutputStream(temp));
+            out.writeInt(CACHE_FILE_VERSION);
+            out.writeUTF(entry.uri);
+            out.writeUTF(entry.etag == null ? "" : entry.etag);
+            out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+            out.writeLong(entry.expires);
+            out.writeBoolean(entry.mustRevalidate);
+            out.writeInt(entry.body.length);
+            out.write(entry.body);
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(file)) {
+                // Such as on Windows, where an existing file is not replaced.
+                file.delete();
+                if (!temp.renameTo(file)) {
+                    XRLog.load(Level.WARNING, "Couldn't replace HTTP cache file " + file);
+                }
+            }
+        } catch (IOException e) {
+            XRLog.exception("Couldn't write HTTP cache file for " + entry.uri, e);
+        } finally {
+            close(out);
+            if (temp != null && temp.exists()) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[10240];
+            int i;
+            while ((i = in.read(buf)) != -1) {
+                out.write(buf, 0, i);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // Nothing to do.
+            }
+        }
+    }
+}
@@ -69,6 +69,8 @@ public class BlockBoxing {
             BlockBox child = (BlockBox) i.next();
             offset++;
 
+            c.getSharedContext().getRenderBudget().check();
+
             RelayoutData relayoutData = null;
 
             boolean mayCheckKeepTogether = false;
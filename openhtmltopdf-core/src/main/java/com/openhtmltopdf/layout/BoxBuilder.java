@@ -128,6 +128,8 @@ public class BoxBuilder {
 
         createChildren(c, parent, parent.getElement(), children, info, false);
 
+        c.getSharedContext().getRenderBudget().addBoxes(children.size());
+
         boolean parentIsNestingTableContent = isNestingTableContent(parent.getStyle().getIdent(
                 CSSName.DISPLAY));
         
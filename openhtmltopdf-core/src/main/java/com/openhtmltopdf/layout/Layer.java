@@ -31,6 +31,8 @@ import com.openhtmltopdf.css.style.EmptyStyle;
 import com.openhtmltopdf.css.style.FSDerivedValue;
 import com.openhtmltopdf.css.style.derived.ListValue;
 import com.openhtmltopdf.css.style.derived.RectPropertySet;
+import com.openhtmltopdf.newtable.TableBorderCompositor;
+import com.openhtmltopdf.newtable.TableBox;
 import com.openhtmltopdf.newtable.TableCellBox;
 import com.openhtmltopdf.render.*;
 import com.openhtmltopdf.render.displaylist.TransformCreator;
@@ -676,11 +678,8 @@ public class Layer {
         return null;
     }
 
-    private void paintCollapsedTableBorders(RenderingContext c, List borders) {
-        for (Iterator i = borders.iterator(); i.hasNext(); ) {
-            CollapsedBorderSide border = (CollapsedBorderSide)i.next();
-            border.getCell().paintCollapsedBorder(c, border.getSide());
-        }
+    private void paintCollapsedTableBorders(RenderingContext c, List<CollapsedBorderSide> borders) {
+        TableBorderCompositor.paint(c, borders);
     }
 
     // Bit of a kludge here.  We need to paint collapsed table borders according
@@ -1040,6 +1039,10 @@ public class Layer {
         }
 
         List<PageBox> pages = getPages();
+        if (c instanceof LayoutContext) {
+            ((LayoutContext) c).getSharedContext().getRenderBudget().checkPageCount(pages.size() + 1);
+        }
+
         if (pages.size() == 0) {
             pseudoPage = "first";
         } else if (pages.size() % 2 == 0) {
@@ -1316,8 +1319,9 @@ public class Layer {
 
     public void layoutPages(LayoutContext c) {
         c.setRootDocumentLayer(c.getRootLayer());
+        Map<Object, TableBox> sharedMarginAreas = new HashMap<Object, TableBox>();
         for (PageBox pageBox : _pages) {
-            pageBox.layout(c);
+            pageBox.layout(c, sharedMarginAreas);
         }
     }
 
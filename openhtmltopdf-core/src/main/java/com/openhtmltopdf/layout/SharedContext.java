@@ -29,6 +29,7 @@ import com.openhtmltopdf.render.FSFont;
 import com.openhtmltopdf.render.FSFontMetrics;
 import com.openhtmltopdf.render.RenderingContext;
 import com.openhtmltopdf.swing.AWTFontResolver;
+import com.openhtmltopdf.util.RenderBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 import org.w3c.dom.Document;
@@ -121,6 +122,8 @@ public class SharedContext {
 	private FSTextTransformer _unicodeToUpperTransformer = new TextUtil.DefaultToUpperTransformer(Locale.US);
 	private FSTextTransformer _unicodeToTitleTransformer = new TextUtil.DefaultToTitleTransformer();
 
+	private RenderBudget _renderBudget = new RenderBudget();
+
 	public String _preferredTransformerFactoryImplementationClass = null;
 	public String _preferredDocumentBuilderFactoryImplementationClass = null;
     
@@ -626,6 +629,17 @@ public class SharedContext {
 	public void setUnicodeToTitleTransformer(FSTextTransformer tr) {
 		this._unicodeToTitleTransformer = tr;
 	}
+
+	/**
+	 * The cancellation token and limits of the current render, checked during layout and painting.
+	 */
+	public RenderBudget getRenderBudget() {
+		return this._renderBudget;
+	}
+
+	public void setRenderBudget(RenderBudget budget) {
+		this._renderBudget = budget;
+	}
 }
 
 /*
@@ -19,7 +19,6 @@
  */
 package com.openhtmltopdf.layout;
 
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -147,63 +146,81 @@ public class WhitespaceStripper {
     }
     
     /**
-     * Collapse whitespace for normal or no-wrap modes. Much faster (15x in simple testing)
-     * than using multiple regular expressions.
+     * Collapses whitespace according to the white-space mode in a single pass over the text,
+     * without allocating when nothing needs collapsing. Equivalent to the regular expressions
+     * above, except that in normal and no-wrap modes only space, tab and line feed are
+     * whitespace, which I believe is the correct definition according to CSS specifications.
      * 
-     * NOTE: Slightly different behavior to using regular expressions as definition of space characters
-     * differ, but I believe this is the correct definition according to CSS specifications.
-     * @param text
-     * @param collapseLeading
-     * @return
+     * @param whitespace the white-space mode
+     * @param text the text to collapse
+     * @param collapseLeading whether leading whitespace collapses (normal and no-wrap modes)
+     * @param tabSize the number of spaces a tab is replaced with (pre and pre-wrap modes)
+     * @return the collapsed text, or the original string if it is unchanged
      */
-    private static String collapseWhitespaceNormalOrNoWrap(String text, boolean collapseLeading) {
-		char[] chs = text.toCharArray();
-		StringBuilder builder = new StringBuilder(chs.length);
-		boolean spaceAdded = collapseLeading;
-		
-		for (int i = 0; i < chs.length; i++) {
-			char ch = chs[i];
-			
-			if (spaceAdded) {
-				if (ch != '\n' &&
-					ch != '\t' &&
-					ch != ' ') {
-					builder.append(ch);
-					spaceAdded = false;
-				}
-			} else {
-				if (ch == '\n' ||
-					ch == '\t' ||
-					ch == ' ') {
-					builder.append(' ');
-					spaceAdded = true;
-				} else {
-					builder.append(ch);
-				}
-			}
-		}
-		
-		return builder.toString();
-	}
+    static String collapseWhitespace(IdentValue whitespace, String text, boolean collapseLeading, int tabSize) {
+        boolean normal = whitespace == IdentValue.NORMAL || whitespace == IdentValue.NOWRAP;
+        boolean preLine = whitespace == IdentValue.PRE_LINE;
+        boolean pre = whitespace == IdentValue.PRE;
 
-    private static String collapseWhitespace(InlineBox iB, IdentValue whitespace, String text, boolean collapseLeading) {
-        if (whitespace == IdentValue.NORMAL || whitespace == IdentValue.NOWRAP) {
-            return collapseWhitespaceNormalOrNoWrap(text, collapseLeading);
-        } else if (whitespace == IdentValue.PRE) {
-            text = space_before_linefeed_collapse.matcher(text).replaceAll(EOL);
+        if (!normal && !preLine && !pre && whitespace != IdentValue.PRE_WRAP) {
+            return text;
         }
 
-        if (whitespace == IdentValue.PRE || whitespace == IdentValue.PRE_WRAP) {
-            int tabSize = (int) iB.getStyle().asFloat(CSSName.TAB_SIZE);
-            char[] tabs = new char[tabSize];
-            Arrays.fill(tabs, ' ');
-            text = tab_to_space.matcher(text).replaceAll(new String(tabs));
-        } else if (whitespace == IdentValue.PRE_LINE) {
-            text = tab_to_space.matcher(text).replaceAll(SPACE);
-            text = space_collapse.matcher(text).replaceAll(SPACE);
+        int length = text.length();
+        StringBuilder builder = null;
+        boolean spaceAdded = normal && collapseLeading;
+
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            char replacement = ch;
+            int count = 1;
+
+            if (normal || preLine) {
+                if (ch == ' ' || ch == '\t' || (normal && ch == EOLC)) {
+                    replacement = ' ';
+                    count = spaceAdded ? 0 : 1;
+                    spaceAdded = true;
+                } else {
+                    spaceAdded = false;
+                }
+            } else if (pre && ch != EOLC && i + 1 < length && text.charAt(i + 1) == EOLC && isRegexSpace(ch)) {
+                count = 0;
+            } else if (ch == '\t') {
+                replacement = ' ';
+                count = tabSize;
+            }
+
+            if (builder == null) {
+                if (replacement == ch && count == 1) {
+                    continue;
+                }
+                builder = new StringBuilder(length + 16);
+                builder.append(text, 0, i);
+            }
+
+            for (int j = 0; j < count; j++) {
+                builder.append(replacement);
+            }
+        }
+
+        return builder == null ? text : builder.toString();
+    }
+
+    /**
+     * @return whether the character matches \s in a regular expression.
+     */
+    private static boolean isRegexSpace(char ch) {
+        return ch == ' ' || ch == '\t' || ch == EOLC || ch == '\u000B' || ch == '\f' || ch == '\r';
+    }
+
+    private static String collapseWhitespace(InlineBox iB, IdentValue whitespace, String text, boolean collapseLeading) {
+        int tabSize = 0;
+
+        if ((whitespace == IdentValue.PRE || whitespace == IdentValue.PRE_WRAP) && text.indexOf('\t') >= 0) {
+            tabSize = (int) iB.getStyle().asFloat(CSSName.TAB_SIZE);
         }
 
-        return text;
+        return collapseWhitespace(whitespace, text, collapseLeading, tabSize);
     }
 }
 
@@ -0,0 +1,244 @@
+package com.openhtmltopdf.newtable;
+
+import java.awt.Rectangle;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.css.parser.FSColor;
+import com.openhtmltopdf.css.parser.FSRGBColor;
+import com.openhtmltopdf.css.style.derived.BorderPropertySet;
+import com.openhtmltopdf.layout.CollapsedBorderSide;
+import com.openhtmltopdf.render.BorderPainter;
+import com.openhtmltopdf.render.RenderingContext;
+
+/**
+ * Paints the collapsed borders of a table. Solid borders of the same priority are
+ * converted to rectangles, collinear rectangles with the same color and width are
+ * merged into single long rectangles and each color is then filled with one operation.
+ * Other border styles are painted one side at a time by {@link BorderPainter}.
+ *
+ * The borders must be sorted by priority (lowest first) so that wider borders are painted
+ * on top of thinner borders.
+ */
+public class TableBorderCompositor {
+    private static final Comparator<Rectangle> HORIZONTAL_ORDER = new Comparator<Rectangle>() {
+        @Override
+        public int compare(Rectangle r1, Rectangle r2) {
+            if (r1.y != r2.y) {
+                return r1.y < r2.y ? -1 : 1;
+            }
+            if (r1.height != r2.height) {
+                return r1.height < r2.height ? -1 : 1;
+            }
+            return r1.x < r2.x ? -1 : (r1.x == r2.x ? 0 : 1);
+        }
+    };
+
+    private static final Comparator<Rectangle> VERTICAL_ORDER = new Comparator<Rectangle>() {
+        @Override
+        public int compare(Rectangle r1, Rectangle r2) {
+            if (r1.x != r2.x) {
+                return r1.x < r2.x ? -1 : 1;
+            }
+            if (r1.width != r2.width) {
+                return r1.width < r2.width ? -1 : 1;
+            }
+            return r1.y < r2.y ? -1 : (r1.y == r2.y ? 0 : 1);
+        }
+    };
+
+    private final RenderingContext _c;
+
+    // Solid borders of the current priority, by color.
+    private final Map<FSColor, List<Rectangle>> _horizontal = new LinkedHashMap<FSColor, List<Rectangle>>();
+    private final Map<FSColor, List<Rectangle>> _vertical = new LinkedHashMap<FSColor, List<Rectangle>>();
+
+    private CollapsedBorderSide _batchStart;
+
+    private TableBorderCompositor(RenderingContext c) {
+        _c = c;
+    }
+
+    /**
+     * Paints the borders, which must be sorted by priority.
+     */
+    public static void paint(RenderingContext c, List<CollapsedBorderSide> borders) {
+        TableBorderCompositor compositor = new TableBorderCompositor(c);
+
+        for (CollapsedBorderSide border : borders) {
+            compositor.add(border);
+        }
+
+        compositor.flush();
+    }
+
+    private void add(CollapsedBorderSide border) {
+        if (_batchStart != null && _batchStart.compareTo(border) != 0) {
+            // Higher priority borders must be painted after the current batch.
+            flush();
+        }
+
+        TableCellBox cell = border.getCell();
+        Rectangle rect = getSolidRect(cell.getCollapsedPaintingBorder(), cell.getCollapsedBorderBounds(_c), border.getSide());
+
+        if (rect == null) {
+            flush();
+            cell.paintCollapsedBorder(_c, border.getSide());
+            return;
+        }
+
+        if (rect.width == 0 || rect.height == 0) {
+            return;
+        }
+
+        if (_batchStart == null) {
+            _batchStart = border;
+        }
+
+        FSColor color = getColor(cell.getCollapsedPaintingBorder(), border.getSide());
+        Map<FSColor, List<Rectangle>> byColor =
+                border.getSide() == BorderPainter.TOP || border.getSide() == BorderPainter.BOTTOM ? _horizontal : _vertical;
+
+        List<Rectangle> rects = byColor.get(color);
+        if (rects == null) {
+            rects = new ArrayList<Rectangle>();
+            byColor.put(color, rects);
+        }
+        rects.add(rect);
+    }
+
+    private void flush() {
+        for (Map.Entry<FSColor, List<Rectangle>> entry : _horizontal.entrySet()) {
+            fill(entry.getKey(), mergeHorizontal(entry.getValue()));
+        }
+        for (Map.Entry<FSColor, List<Rectangle>> entry : _vertical.entrySet()) {
+            fill(entry.getKey(), mergeVertical(entry.getValue()));
+        }
+
+        _horizontal.clear();
+        _vertical.clear();
+        _batchStart = null;
+    }
+
+    private void fill(FSColor color, List<Rectangle> rects) {
+        Path2D path = new Path2D.Float(Path2D.WIND_NON_ZERO, rects.size() * 5);
+
+        for (Rectangle rect : rects) {
+            path.append(rect, false);
+        }
+
+        _c.getOutputDevice().setColor(color);
+        _c.getOutputDevice().fill(path);
+    }
+
+    private static List<Rectangle> mergeHorizontal(List<Rectangle> rects) {
+        Collections.sort(rects, HORIZONTAL_ORDER);
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        Rectangle current = null;
+
+        for (Rectangle rect : rects) {
+            if (current != null &&
+                current.y == rect.y &&
+                current.height == rect.height &&
+                rect.x <= current.x + current.width) {
+                current.width = Math.max(current.width, rect.x + rect.width - current.x);
+            } else {
+                current = new Rectangle(rect);
+                result.add(current);
+            }
+        }
+
+        return result;
+    }
+
+    private static List<Rectangle> mergeVertical(List<Rectangle> rects) {
+        Collections.sort(rects, VERTICAL_ORDER);
+        List<Rectangle> result = new ArrayList<Rectangle>();
+        Rectangle current = null;
+
+        for (Rectangle rect : rects) {
+            if (current != null &&
+                current.x == rect.x &&
+                current.width == rect.width &&
+                rect.y <= current.y + current.height) {
+                current.height = Math.max(current.height, rect.y + rect.height - current.y);
+            } else {
+                current = new Rectangle(rect);
+                result.add(current);
+            }
+        }
+
+        return result;
+    }
+
+    private static FSColor getColor(BorderPropertySet border, int side) {
+        switch (side) {
+        case BorderPainter.TOP:
+            return border.topColor();
+        case BorderPainter.RIGHT:
+            return border.rightColor();
+        case BorderPainter.BOTTOM:
+            return border.bottomColor();
+        default:
+            return border.leftColor();
+        }
+    }
+
+    /**
+     * @return the rectangle covered by a solid border side, an empty rectangle if the
+     * side is not painted or null if the side must be painted by the border painter.
+     */
+    private static Rectangle getSolidRect(BorderPropertySet border, Rectangle bounds, int side) {
+        IdentValue style;
+        boolean none;
+        int width;
+
+        switch (side) {
+        case BorderPainter.TOP:
+            style = border.topStyle();
+            none = border.noTop();
+            width = (int) border.top();
+            break;
+        case BorderPainter.RIGHT:
+            style = border.rightStyle();
+            none = border.noRight();
+            width = (int) border.right();
+            break;
+        case BorderPainter.BOTTOM:
+            style = border.bottomStyle();
+            none = border.noBottom();
+            width = (int) border.bottom();
+            break;
+        default:
+            style = border.leftStyle();
+            none = border.noLeft();
+            width = (int) border.left();
+            break;
+        }
+
+        if (none || getColor(border, side) == FSRGBColor.TRANSPARENT) {
+            return new Rectangle();
+        }
+
+        if (style != IdentValue.SOLID || border.hasBorderRadius()) {
+            return null;
+        }
+
+        switch (side) {
+        case BorderPainter.TOP:
+            return new Rectangle(bounds.x, bounds.y, bounds.width, width);
+        case BorderPainter.RIGHT:
+            return new Rectangle(bounds.x + bounds.width - width, bounds.y, width, bounds.height);
+        case BorderPainter.BOTTOM:
+            return new Rectangle(bounds.x, bounds.y + bounds.height - width, bounds.width, width);
+        default:
+            return new Rectangle(bounds.x, bounds.y, width, bounds.height);
+        }
+    }
+}
@@ -767,7 +767,7 @@ public class TableCellBox extends BlockBox {
         return result;
     }
     
-    private Rectangle getCollapsedBorderBounds(CssContext c) {
+    Rectangle getCollapsedBorderBounds(CssContext c) {
         BorderPropertySet border = getCollapsedPaintingBorder();
         Rectangle bounds = getPaintingBorderEdge(c);
         bounds.x -= (int) border.left() / 2;
@@ -2,8 +2,11 @@ package com.openhtmltopdf.outputdevice.helper;
 
 import com.openhtmltopdf.bidi.BidiReorderer;
 import com.openhtmltopdf.bidi.BidiSplitterFactory;
+import com.openhtmltopdf.css.sheet.Ruleset;
+import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.extend.*;
 import com.openhtmltopdf.layout.Layer;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshot;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 
 import org.w3c.dom.Document;
@@ -28,8 +31,8 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 	 * This class is an internal implementation detail
 	 * @internal
 	 */
-	public abstract static class BaseRendererBuilderState {
-		public final List<FSDOMMutator> _domMutators = new ArrayList<FSDOMMutator>();
+	public abstract static class BaseRendererBuilderState implements Cloneable {
+		public List<FSDOMMutator> _domMutators = new ArrayList<FSDOMMutator>();
 		public Map<String, FSStreamFactory> _streamFactoryMap = new HashMap<String, FSStreamFactory>();
 		public FSCache _cache;
 		public FSMultiThreadCache<String> _textCache;
@@ -60,14 +63,43 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		public FSObjectDrawerFactory _objectDrawerFactory;
 		public String _preferredTransformerFactoryImplementationClass = "com.sun.org.apache.xalan.internal.xsltc.trax.TransformerFactoryImpl";
 		public String _preferredDocumentBuilderFactoryImplementationClass = "com.sun.org.apache.xerces.internal.jaxp.DocumentBuilderFactoryImpl";
-		public boolean _useFastRenderer = false;
+		public boolean _useFastRenderer = true;
+		public FSCancellationToken _cancellationToken;
+		public long _renderTimeoutMillis;
+		public int _maxPages;
+		public long _maxBoxes;
+		public long _maxImagePixels;
+		public FSMultiThreadCache<Stylesheet> _stylesheetCache;
+		public FSMultiThreadCache<Ruleset> _declarationCache;
+		public FSStreamInterceptor _streamInterceptor;
+		public LayoutSnapshot _layoutSnapshot;
+
+		/**
+		 * @return a copy of these settings, lists and maps of settings are copied so they can be
+		 * changed without changing the original.
+		 */
+		@Override
+		public BaseRendererBuilderState clone() {
+			try {
+				BaseRendererBuilderState copy = (BaseRendererBuilderState) super.clone();
+				copy._domMutators = new ArrayList<FSDOMMutator>(_domMutators);
+				copy._streamFactoryMap = new HashMap<String, FSStreamFactory>(_streamFactoryMap);
+				return copy;
+			} catch (CloneNotSupportedException e) {
+				throw new RuntimeException(e);
+			}
+		}
 	}
 
 	protected final TBaseRendererBuilderState state;
 
 	protected BaseRendererBuilder(TBaseRendererBuilderState state) {
 		this.state = state;
-		this.useProtocolsStreamImplementation(new NaiveUserAgent.DefaultHttpStreamFactory(), "http", "https");
+
+		if (!state._streamFactoryMap.containsKey("http")) {
+			// Not already set in a copied state.
+			this.useProtocolsStreamImplementation(new NaiveUserAgent.DefaultHttpStreamFactory(), "http", "https");
+		}
 	}
 
 	/**
@@ -145,6 +177,8 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 	/**
 	 * Provides an HttpStreamFactory implementation if the user desires to use an
 	 * external HTTP/HTTPS implementation. Uses URL::openStream by default.
+	 * {@link com.openhtmltopdf.extend.impl.FSCachingHttpStreamFactory} adds timeouts,
+	 * a limit on requests at once and a cache on disk.
 	 * 
 	 * @see {@link {@link #useProtocolsStreamImplementation(FSStreamFactory, String[])}
 	 *
@@ -327,6 +361,19 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 		return (TFinalClass) this;
 	}
 
+	/**
+	 * Paints a layout snapshot, instead of loading and laying out a document.
+	 * Fonts used in the snapshot must be added to this builder, as the snapshot
+	 * does not include the document's font-face rules.
+	 *
+	 * @param snapshot a snapshot created by the renderer or read with {@link LayoutSnapshot#read(java.io.InputStream)}
+	 * @return this for method chaining
+	 */
+	public final TFinalClass withLayoutSnapshot(LayoutSnapshot snapshot) {
+		state._layoutSnapshot = snapshot;
+		return (TFinalClass) this;
+	}
+
 	/**
 	 * Uses the specified SVG drawer implementation.
 	 *
@@ -466,8 +513,8 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 	/**
 	 * Use the new (May 2018) fast renderer if possible (only PDF at this point).
 	 * This renderer can be 100s of times faster for very large documents.
-	 * Please note that the fast renderer will be the only renderer at some future
-	 * release so please at least test your code using the fast mode.
+	 * The fast renderer is now the default so this method is only needed to
+	 * undo a previous call to {@link #useSlowMode()}.
 	 * @return this for method chaining
 	 */
 	public final TFinalClass useFastMode() {
@@ -475,6 +522,79 @@ public abstract class BaseRendererBuilder<TFinalClass extends BaseRendererBuilde
 	    return (TFinalClass) this;
 	}
 
+	/**
+	 * Use the original (slow) renderer. The fast renderer is now the default and its
+	 * output is checked against this renderer. Please note that the fast renderer will
+	 * be the only renderer at some future release so please report any problems that
+	 * make you use the slow renderer.
+	 * @return this for method chaining
+	 */
+	@Deprecated
+	public final TFinalClass useSlowMode() {
+	    state._useFastRenderer = false;
+	    return (TFinalClass) this;
+	}
+
+	/**
+	 * Provides a token that is polled during layout and painting. Once the token
+	 * reports cancellation the render is aborted with a
+	 * {@link com.openhtmltopdf.util.RenderAbortedException}.
+	 *
+	 * @param token
+	 * @return this for method chaining
+	 */
+	public final TFinalClass useCancellationToken(FSCancellationToken token) {
+		state._cancellationToken = token;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Limits the wall time of a render, measured from when the renderer is built.
+	 * Zero (the default) means unlimited.
+	 *
+	 * @param millis
+	 * @return this for method chaining
+	 */
+	public final TFinalClass useRenderTimeout(long millis) {
+		state._renderTimeoutMillis = millis;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Limits the number of pages that may be laid out. Zero (the default) means unlimited.
+	 *
+	 * @param maxPages
+	 * @return this for method chaining
+	 */
+	public final TFinalClass useMaxPages(int maxPages) {
+		state._maxPages = maxPages;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Limits the number of boxes that may be created from the document. Zero (the default)
+	 * means unlimited.
+	 *
+	 * @param maxBoxes
+	 * @return this for method chaining
+	 */
+	public final TFinalClass useMaxBoxes(long maxBoxes) {
+		state._maxBoxes = maxBoxes;
+		return (TFinalClass) this;
+	}
+
+	/**
+	 * Limits the size in pixels (width * height) of any single image. Only checked
+	 * by the PDF renderer. Zero (the default) means unlimited.
+	 *
+	 * @param maxImagePixels
+	 * @return this for method chaining
+	 */
+	public final TFinalClass useMaxImagePixels(long maxImagePixels) {
+		state._maxImagePixels = maxImagePixels;
+		return (TFinalClass) this;
+	}
+
 	public enum TextDirection {
 		RTL, LTR
 	}
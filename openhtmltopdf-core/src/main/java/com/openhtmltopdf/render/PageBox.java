@@ -24,8 +24,10 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import org.w3c.dom.Element;
 import org.w3c.dom.css.CSSPrimitiveValue;
 
@@ -396,12 +398,21 @@ public class PageBox {
             MarginAreaContainer container = _marginAreas[i];
             if (container != null) {
                 currentMarginAreaContainer = container;
-                TableBox table = _marginAreas[i].getTable();
+                final TableBox table = _marginAreas[i].getTable();
                 Point p = container.getArea().getPaintingPosition(
                         c, this, additionalClearance, mode);
                 
                 c.getOutputDevice().translate(p.x, p.y);
-                table.getLayer().paint(c);
+                if (container.isShared()) {
+                    final RenderingContext ctx = c;
+                    c.getOutputDevice().drawReusable(table, new Runnable() {
+                        public void run() {
+                            table.getLayer().paint(ctx);
+                        }
+                    });
+                } else {
+                    table.getLayer().paint(c);
+                }
                 c.getOutputDevice().translate(-p.x, -p.y);
             }
         }
@@ -448,9 +459,19 @@ public class PageBox {
     }
     
     public void layout(LayoutContext c) {
+        layout(c, null);
+    }
+    
+    /**
+     * Lays out the margin areas of this page. Margin areas whose content does not depend
+     * on the page they are on (no page counters or other dynamic functions and no transforms)
+     * are put in <code>sharedMarginAreas</code> and reused, without layout, by later pages
+     * with the same page style and running elements.
+     */
+    public void layout(LayoutContext c, Map<Object, TableBox> sharedMarginAreas) {
         c.setPage(this);
         retrievePageMetadata(c);
-        layoutMarginAreas(c);
+        layoutMarginAreas(c, sharedMarginAreas);
     }
     
     // HACK Would much prefer to do this in ITextRenderer or ITextOutputDevice
@@ -482,12 +503,23 @@ public class PageBox {
         }
     }
 
-    private void layoutMarginAreas(LayoutContext c) {
+    private void layoutMarginAreas(LayoutContext c, Map<Object, TableBox> sharedMarginAreas) {
         RectPropertySet margin = getMargin(c);
         for (int i = 0; i < MARGIN_AREA_DEFS.length; i++) {
             MarginArea area = MARGIN_AREA_DEFS[i];
             
             Dimension dim = area.getLayoutDimension(c, this, margin);
+            
+            Object key = null;
+            if (sharedMarginAreas != null) {
+                key = createMarginAreaKey(c, i, dim);
+                TableBox shared = sharedMarginAreas.get(key);
+                if (shared != null) {
+                    _marginAreas[i] = new MarginAreaContainer(area, shared, true);
+                    continue;
+                }
+            }
+            
             TableBox table = BoxBuilder.createMarginTable(
                     c, _pageInfo, 
                     area.getMarginBoxNames(),
@@ -508,11 +540,88 @@ public class PageBox {
                 } finally {
                     c.setNoPageBreak(0);
                 }
-                _marginAreas[i] = new MarginAreaContainer(area, table);
+                
+                boolean shared = key != null && isPageIndependent(table);
+                if (shared) {
+                    sharedMarginAreas.put(key, table);
+                }
+                _marginAreas[i] = new MarginAreaContainer(area, table, shared);
             }
         }
     }
     
+    /**
+     * The key under which a laid out margin area may be shared. It holds everything the
+     * margin area layout depends on: the area and its size, the page properties, the
+     * margin box declarations and the running elements selected for this page.
+     */
+    private Object createMarginAreaKey(LayoutContext c, int areaIndex, Dimension dim) {
+        List<Object> key = new ArrayList<Object>();
+        key.add(Integer.valueOf(areaIndex));
+        key.add(dim);
+        key.add(_pageInfo.getProperties());
+        
+        for (MarginBoxName name : MARGIN_AREA_DEFS[areaIndex].getMarginBoxNames()) {
+            List decls = (List) _pageInfo.getMarginBoxes().get(name);
+            key.add(decls);
+            
+            if (decls == null) {
+                continue;
+            }
+            
+            for (Iterator i = decls.iterator(); i.hasNext(); ) {
+                PropertyDeclaration decl = (PropertyDeclaration) i.next();
+                if (decl.getCSSName() == CSSName.CONTENT) {
+                    List values = ((PropertyValue) decl.getValue()).getValues();
+                    if (values == null) {
+                        continue;
+                    }
+                    for (Iterator j = values.iterator(); j.hasNext(); ) {
+                        PropertyValue value = (PropertyValue) j.next();
+                        if (value.getPropertyValueType() == PropertyValue.VALUE_TYPE_FUNCTION &&
+                            BoxBuilder.isElementFunction(value.getFunction())) {
+                            key.add(BoxBuilder.getRunningBlock(c, value));
+                        }
+                    }
+                }
+            }
+        }
+        
+        return key;
+    }
+    
+    /**
+     * Whether a laid out margin area paints the same on every page, that is it contains
+     * no dynamic functions such as <code>counter(page)</code> and no transforms.
+     */
+    private static boolean isPageIndependent(Box box) {
+        if (box.getLayer() != null && box.getLayer().hasLocalTransform()) {
+            return false;
+        }
+        
+        if (box instanceof LineBox && ((LineBox) box).isContainsDynamicFunction()) {
+            return false;
+        }
+        
+        for (int i = 0; i < box.getChildCount(); i++) {
+            if (!isPageIndependent(box.getChild(i))) {
+                return false;
+            }
+        }
+        
+        if (box instanceof InlineLayoutBox) {
+            InlineLayoutBox iB = (InlineLayoutBox) box;
+            for (int i = 0; i < iB.getInlineChildCount(); i++) {
+                Object child = iB.getInlineChild(i);
+                if (child instanceof Box && !isPageIndependent((Box) child)) {
+                    return false;
+                }
+            }
+        }
+        
+        return true;
+    }
+    
     public boolean isLeftPage() {
         return _pageNo % 2 != 0;
     }
@@ -563,10 +672,19 @@ public class PageBox {
     private static class MarginAreaContainer {
         private final MarginArea _area;
         private final TableBox _table;
+        private final boolean _shared;
         
-        public MarginAreaContainer(MarginArea area, TableBox table) {
+        public MarginAreaContainer(MarginArea area, TableBox table, boolean shared) {
             _area = area;
             _table = table;
+            _shared = shared;
+        }
+        
+        /**
+         * Whether the table is shared with the same margin area on other pages.
+         */
+        public boolean isShared() {
+            return _shared;
         }
 
         public MarginArea getArea() {
@@ -56,6 +56,14 @@ public class DisplayListCollector {
 	 * for each page.
 	 */
 	public DisplayListContainer collectRoot(RenderingContext c, Layer rootLayer) {
+		return collectRoot(c, rootLayer, 0, _pages.size() - 1);
+	}
+
+	/**
+	 * Collects paint instructions only for pages minPage to maxPage inclusive. Layers and boxes
+	 * which do not sit on any of these pages are skipped.
+	 */
+	public DisplayListContainer collectRoot(RenderingContext c, Layer rootLayer, int minPage, int maxPage) {
 		if (!rootLayer.isRootLayer()) {
 			return null;
 		}
@@ -63,7 +71,7 @@ public class DisplayListCollector {
 		// We propagate any transformation matrixes recursively after layout has finished.
 		rootLayer.propagateCurrentTransformationMatrix(c);
 
-		DisplayListContainer displayList = new DisplayListContainer(0, _pages.size() - 1);
+		DisplayListContainer displayList = new DisplayListContainer(minPage, maxPage);
 
 		// Recursively collect boxes for root layer and any children layers. Don't include
 		// fixed boxes at this point. They are collected by the <code>SinglePageDisplayListCollector</code>
@@ -82,12 +90,17 @@ public class DisplayListCollector {
 			// to clone the entire subtree of the fixed box and all descendents.
 			// So just paint it at the last minute.
 			DisplayListOperation dlo = new PaintFixedLayer(layer);
-			addItem(dlo, 0, _pages.size() - 1, dlPages);
+			addItem(dlo, dlPages.getMinPage(), dlPages.getMaxPage(), dlPages);
 			return;
 		}
 		
-		int layerPageStart = findStartPage(c, layer);
-		int layerPageEnd = findEndPage(c, layer);
+		int layerPageStart = Math.max(findStartPage(c, layer), dlPages.getMinPage());
+		int layerPageEnd = Math.min(findEndPage(c, layer), dlPages.getMaxPage());
+		
+		if (layerPageStart > layerPageEnd) {
+			// Layer is not on any of the pages we are collecting.
+			return;
+		}
 
 	    if (layer.hasLocalTransform()) {
 	        DisplayListOperation dlo = new PaintPushTransformLayer(layer.getMaster());
@@ -11,6 +11,7 @@ import java.util.Map;
 import com.openhtmltopdf.layout.CollapsedBorderSide;
 import com.openhtmltopdf.layout.InlinePaintable;
 import com.openhtmltopdf.layout.Layer;
+import com.openhtmltopdf.newtable.TableBorderCompositor;
 import com.openhtmltopdf.newtable.TableBox;
 import com.openhtmltopdf.newtable.TableCellBox;
 import com.openhtmltopdf.render.BlockBox;
@@ -71,9 +72,7 @@ public class DisplayListPainter {
 						List<CollapsedBorderSide> borders = collapsedTableBorders.get(cell);
 
 						if (borders != null) {
-							for (CollapsedBorderSide border : borders) {
-								border.getCell().paintCollapsedBorder(c, border.getSide());
-							}
+							TableBorderCompositor.paint(c, borders);
 						}
 					}
 				}
@@ -201,7 +200,6 @@ public class DisplayListPainter {
 
 				PaintBackgroundAndBorders dlo = (PaintBackgroundAndBorders) op;
 				paintBackgroundAndBorders(c, dlo.getBlocks(), dlo.getCollapedTableBorders());
-				//System.out.println("painting blocks: " + dlo.getBlocks());
 
 			} else if (op instanceof PaintListMarkers) {
 
@@ -212,7 +210,6 @@ public class DisplayListPainter {
 
 				PaintInlineContent dlo = (PaintInlineContent) op;
 				paintInlineContent(c, dlo.getInlines());
-				//System.out.println("painting inlines: " + dlo.getInlines());
 
 			} else if (op instanceof PaintReplacedElements) {
 
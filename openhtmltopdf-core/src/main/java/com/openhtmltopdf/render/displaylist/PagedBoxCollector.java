@@ -248,12 +248,15 @@ public class PagedBoxCollector {
 	private final List<PageBox> pages;
 	private final PageFinder finder;
 	private final int startPage;
+	private final boolean pruneToPageRange;
+	private int headerFooterDepth = 0;
 	
 	protected PagedBoxCollector() {
 	    this.result = null;
 	    this.pages = null;
 	    this.finder = null;
 	    this.startPage = 0;
+	    this.pruneToPageRange = false;
 	}
 	
 	/**
@@ -265,6 +268,7 @@ public class PagedBoxCollector {
 	    this.result = new ArrayList<PageResult>(maxPage - minPage + 1);
 	    this.finder = new PageFinder(pages);
 	    this.startPage = minPage;
+	    this.pruneToPageRange = minPage > 0 || maxPage < pages.size() - 1;
 	    
 	    for (int i = minPage; i <= maxPage; i++) {
 	        result.add(new PageResult());
@@ -373,6 +377,11 @@ public class PagedBoxCollector {
 			// Different layers are responsible for their own box collection.
 			return;
 	    }
+		
+		if (isOutsidePageRange(c, layer, container)) {
+		    // Neither this box nor its descendants are on the pages we are collecting.
+		    return;
+		}
 
         if (container instanceof LineBox) {
 
@@ -651,6 +660,10 @@ public class PagedBoxCollector {
         int tableStart = findStartPage(c, table, layer.getCurrentTransformMatrix());
         int tableEnd = findEndPage(c, table, layer.getCurrentTransformMatrix());
         
+        // Header and footer boxes move with each page, so their painting info can't be
+        // trusted for page range pruning.
+        headerFooterDepth++;
+        
         for (int pgTable = getValidMinPageNumber(tableStart); pgTable <= getValidMaxPageNumber(tableEnd); pgTable++) {
             rc.setPage(pgTable, getPageBox(pgTable));
             table.updateHeaderFooterPosition(rc);
@@ -660,6 +673,29 @@ public class PagedBoxCollector {
                 collect(c, layer, child, shadowPageNumber);
             }
         }
+        
+        headerFooterDepth--;
+    }
+    
+    /**
+     * When collecting a subset of pages, returns true if the box, including any overflowing
+     * descendants, sits entirely on pages outside our range. In that case we can skip
+     * the whole subtree, so collecting a page range only touches boxes on those pages.
+     */
+    private boolean isOutsidePageRange(CssContext c, Layer layer, Box container) {
+        if (!pruneToPageRange || headerFooterDepth > 0 || container instanceof TableSectionBox) {
+            return false;
+        }
+        
+        PaintingInfo info = container.getPaintingInfo();
+        if (info == null || info.getAggregateBounds() == null) {
+            return false;
+        }
+        
+        int start = findStartPage(c, container, layer.getCurrentTransformMatrix());
+        int end = findEndPage(c, container, layer.getCurrentTransformMatrix());
+        
+        return end < getMinPageNumber() || start > getMaxPageNumber();
     }
 
     /**
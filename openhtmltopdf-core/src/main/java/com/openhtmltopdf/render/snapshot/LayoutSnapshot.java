@@ -0,0 +1,415 @@
+package com.openhtmltopdf.render.snapshot;
+
+import java.awt.Shape;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.css.constants.IdentValue;
+import com.openhtmltopdf.css.value.FontSpecification;
+
+/**
+ * A finished layout, recorded as a list of painting operations for each page. A snapshot
+ * can be saved with {@link #write(OutputStream)} and painted later, possibly on another
+ * machine, without loading the document, styles or doing layout again.
+ *
+ * The snapshot holds the geometry of everything painted, text runs with their font
+ * specification, the encoded images and the link areas of each page. Fonts are
+ * resolved again when the snapshot is painted, so the same fonts must be available.
+ * The faces each font resolved to are recorded, and painting on a device that can name
+ * its faces fails if a font resolves to other faces.
+ * SVG, MathML, form controls, custom object drawers and bookmarks can not be recorded,
+ * so a snapshot can not be created for a document that uses them.
+ *
+ * Snapshots are created with <code>PdfBoxRenderer.createLayoutSnapshot()</code> and painted
+ * by setting them on a builder with <code>withLayoutSnapshot</code>.
+ */
+public final class LayoutSnapshot {
+    private static final int MAGIC = 0x46534c53; // FSLS
+    private static final int VERSION = 2;
+
+    static final byte OP_END = 0;
+    static final byte OP_COLOR_RGB = 1;
+    static final byte OP_COLOR_CMYK = 2;
+    static final byte OP_COLOR_TRANSPARENT = 3;
+    static final byte OP_STROKE = 4;
+    static final byte OP_FILL = 5;
+    static final byte OP_DRAW = 6;
+    static final byte OP_FILL_RECT = 7;
+    static final byte OP_TRANSLATE = 8;
+    static final byte OP_PUSH_CLIP = 9;
+    static final byte OP_POP_CLIP = 10;
+    static final byte OP_PUSH_TRANSFORM = 11;
+    static final byte OP_POP_TRANSFORM = 12;
+    static final byte OP_IMAGE = 13;
+    static final byte OP_TEXT = 14;
+
+    private final float _dotsPerPoint;
+    private final int _dotsPerPixel;
+    private final List<FontSpecification> _fonts;
+    private final List<String> _fontFaces;
+    private final List<byte[]> _images;
+    private final List<Page> _pages;
+    private final List<Map.Entry<String, String>> _metadata;
+
+    LayoutSnapshot(float dotsPerPoint, int dotsPerPixel, List<FontSpecification> fonts, List<String> fontFaces,
+            List<byte[]> images, List<Page> pages, List<Map.Entry<String, String>> metadata) {
+        _dotsPerPoint = dotsPerPoint;
+        _dotsPerPixel = dotsPerPixel;
+        _fonts = fonts;
+        _fontFaces = fontFaces;
+        _images = images;
+        _pages = pages;
+        _metadata = metadata;
+    }
+
+    /**
+     * A page of the snapshot. Sizes are in the dots of the recording device.
+     */
+    static class Page {
+        final int width;
+        final int height;
+        final byte[] ops;
+        final List<Link> links;
+
+        Page(int width, int height, byte[] ops, List<Link> links) {
+            this.width = width;
+            this.height = height;
+            this.ops = ops;
+            this.links = links;
+        }
+    }
+
+    /**
+     * A link area on a page, either to a uri or to a position on another page of the snapshot.
+     */
+    public static class Link {
+        private final Rectangle2D _bounds;
+        private final String _uri;
+        private final int _targetPage;
+        private final float _targetTop;
+
+        Link(Rectangle2D bounds, String uri, int targetPage, float targetTop) {
+            _bounds = bounds;
+            _uri = uri;
+            _targetPage = targetPage;
+            _targetTop = targetTop;
+        }
+
+        /**
+         * @return the link area in dots from the top left of the page.
+         */
+        public Rectangle2D getBounds() {
+            return _bounds;
+        }
+
+        /**
+         * @return the uri or null if this is a link to a page of the snapshot.
+         */
+        public String getUri() {
+            return _uri;
+        }
+
+        /**
+         * @return the page index of the target or -1 if this is a link to a uri.
+         */
+        public int getTargetPage() {
+            return _targetPage;
+        }
+
+        /**
+         * @return the target position in dots from the top of the target page.
+         */
+        public float getTargetTop() {
+            return _targetTop;
+        }
+    }
+
+    public int getPageCount() {
+        return _pages.size();
+    }
+
+    /**
+     * @return the page width in dots of the device the snapshot was recorded with.
+     */
+    public int getPageWidth(int page) {
+        return _pages.get(page).width;
+    }
+
+    /**
+     * @return the page height in dots of the device the snapshot was recorded with.
+     */
+    public int getPageHeight(int page) {
+        return _pages.get(page).height;
+    }
+
+    /**
+     * @return the number of dots per PDF point (1/72 inch) of the device the snapshot was recorded with.
+     */
+    public float getDotsPerPoint() {
+        return _dotsPerPoint;
+    }
+
+    /**
+     * @return the number of dots per CSS pixel of the device the snapshot was recorded with.
+     */
+    public int getDotsPerPixel() {
+        return _dotsPerPixel;
+    }
+
+    public List<Link> getLinks(int page) {
+        return Collections.unmodifiableList(_pages.get(page).links);
+    }
+
+    /**
+     * @return the document metadata, such as title and author, in document order.
+     */
+    public List<Map.Entry<String, String>> getMetadata() {
+        return Collections.unmodifiableList(_metadata);
+    }
+
+    List<FontSpecification> getFonts() {
+        return _fonts;
+    }
+
+    /**
+     * @return the faces each font resolved to when recorded, see {@link SnapshotFontFaces}.
+     * An item is null if the faces are not known.
+     */
+    List<String> getFontFaces() {
+        return _fontFaces;
+    }
+
+    List<byte[]> getImages() {
+        return _images;
+    }
+
+    byte[] getOps(int page) {
+        return _pages.get(page).ops;
+    }
+
+    /**
+     * Writes the snapshot in a compact binary format. The stream is not closed.
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeFloat(_dotsPerPoint);
+        dos.writeInt(_dotsPerPixel);
+
+        dos.writeInt(_fonts.size());
+        for (int i = 0; i < _fonts.size(); i++) {
+            FontSpecification font = _fonts.get(i);
+            writeString(dos, _fontFaces.get(i));
+            dos.writeFloat(font.size);
+            writeIdent(dos, font.fontWeight);
+            writeIdent(dos, font.fontStyle);
+            writeIdent(dos, font.variant);
+            dos.writeInt(font.families == null ? -1 : font.families.length);
+            if (font.families != null) {
+                for (String family : font.families) {
+                    writeString(dos, family);
+                }
+            }
+        }
+
+        dos.writeInt(_images.size());
+        for (byte[] image : _images) {
+            dos.writeInt(image.length);
+            dos.write(image);
+        }
+
+        dos.writeInt(_metadata.size());
+        for (Map.Entry<String, String> entry : _metadata) {
+            writeString(dos, entry.getKey());
+            writeString(dos, entry.getValue());
+        }
+
+        dos.writeInt(_pages.size());
+        for (Page page : _pages) {
+            dos.writeInt(page.width);
+            dos.writeInt(page.height);
+            dos.writeInt(page.ops.length);
+            dos.write(page.ops);
+
+            dos.writeInt(page.links.size());
+            for (Link link : page.links) {
+                dos.writeFloat((float) link._bounds.getX());
+                dos.writeFloat((float) link._bounds.getY());
+                dos.writeFloat((float) link._bounds.getWidth());
+                dos.writeFloat((float) link._bounds.getHeight());
+                writeString(dos, link._uri);
+                dos.writeInt(link._targetPage);
+                dos.writeFloat(link._targetTop);
+            }
+        }
+
+        dos.flush();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(OutputStream)}. The stream is not closed.
+     * @throws IOException if the stream is not a snapshot or is from another version.
+     */
+    public static LayoutSnapshot read(InputStream is) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a layout snapshot");
+        }
+        int version = dis.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported layout snapshot version " + version);
+        }
+
+        float dotsPerPoint = dis.readFloat();
+        int dotsPerPixel = dis.readInt();
+
+        int fontCount = dis.readInt();
+        List<FontSpecification> fonts = new ArrayList<FontSpecification>(fontCount);
+        List<String> fontFaces = new ArrayList<String>(fontCount);
+        for (int i = 0; i < fontCount; i++) {
+            fontFaces.add(readString(dis));
+            FontSpecification font = new FontSpecification();
+            font.size = dis.readFloat();
+            font.fontWeight = readIdent(dis);
+            font.fontStyle = readIdent(dis);
+            font.variant = readIdent(dis);
+            int familyCount = dis.readInt();
+            if (familyCount >= 0) {
+                font.families = new String[familyCount];
+                for (int j = 0; j < familyCount; j++) {
+                    font.families[j] = readString(dis);
+                }
+            }
+            fonts.add(font);
+        }
+
+        int imageCount = dis.readInt();
+        List<byte[]> images = new ArrayList<byte[]>(imageCount);
+        for (int i = 0; i < imageCount; i++) {
+            byte[] image = new byte[dis.readInt()];
+            dis.readFully(image);
+            images.add(image);
+        }
+
+        int metadataCount = dis.readInt();
+        List<Map.Entry<String, String>> metadata = new ArrayList<Map.Entry<String, String>>(metadataCount);
+        for (int i = 0; i < metadataCount; i++) {
+            metadata.add(new AbstractMap.SimpleImmutableEntry<String, String>(readString(dis), readString(dis)));
+        }
+
+        int pageCount = dis.readInt();
+        List<Page> pages = new ArrayList<Page>(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            int width = dis.readInt();
+            int height = dis.readInt();
+            byte[] ops = new byte[dis.readInt()];
+            dis.readFully(ops);
+
+            int linkCount = dis.readInt();
+            List<Link> links = new ArrayList<Link>(linkCount);
+            for (int j = 0; j < linkCount; j++) {
+                Rectangle2D bounds = new Rectangle2D.Float(dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat());
+                links.add(new Link(bounds, readString(dis), dis.readInt(), dis.readFloat()));
+            }
+
+            pages.add(new Page(width, height, ops, links));
+        }
+
+        return new LayoutSnapshot(dotsPerPoint, dotsPerPixel, fonts, fontFaces, images, pages, metadata);
+    }
+
+    private static void writeIdent(DataOutputStream dos, IdentValue ident) throws IOException {
+        writeString(dos, ident == null ? null : ident.asString());
+    }
+
+    private static IdentValue readIdent(DataInputStream dis) throws IOException {
+        String ident = readString(dis);
+        return ident == null ? null : IdentValue.valueOf(ident);
+    }
+
+    static void writeString(DataOutputStream dos, String s) throws IOException {
+        if (s == null) {
+            dos.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes("UTF-8");
+            dos.writeInt(bytes.length);
+            dos.write(bytes);
+        }
+    }
+
+    static String readString(DataInputStream dis) throws IOException {
+        int length = dis.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        dis.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static void writeShape(DataOutputStream dos, Shape shape) throws IOException {
+        PathIterator path = shape.getPathIterator(null);
+        float[] coords = new float[6];
+
+        dos.writeByte(path.getWindingRule());
+
+        while (!path.isDone()) {
+            int type = path.currentSegment(coords);
+            dos.writeByte(type);
+
+            int count = type == PathIterator.SEG_MOVETO || type == PathIterator.SEG_LINETO ? 2 :
+                        type == PathIterator.SEG_QUADTO ? 4 :
+                        type == PathIterator.SEG_CUBICTO ? 6 : 0;
+            for (int i = 0; i < count; i++) {
+                dos.writeFloat(coords[i]);
+            }
+
+            path.next();
+        }
+
+        dos.writeByte(-1);
+    }
+
+    static Shape readShape(DataInputStream dis) throws IOException {
+        Path2D.Float path = new Path2D.Float(dis.readByte());
+
+        byte type;
+        while ((type = dis.readByte()) != -1) {
+            switch (type) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(dis.readFloat(), dis.readFloat());
+                break;
+            case PathIterator.SEG_LINETO:
+                path.lineTo(dis.readFloat(), dis.readFloat());
+                break;
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat());
+                break;
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat(), dis.readFloat());
+                break;
+            default:
+                path.closePath();
+                break;
+            }
+        }
+
+        return path;
+    }
+}
@@ -0,0 +1,303 @@
+package com.openhtmltopdf.render.snapshot;
+
+import java.awt.BasicStroke;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.openhtmltopdf.css.parser.FSCMYKColor;
+import com.openhtmltopdf.css.parser.FSRGBColor;
+import com.openhtmltopdf.css.value.FontSpecification;
+import com.openhtmltopdf.extend.FSImage;
+import com.openhtmltopdf.extend.OutputDevice;
+import com.openhtmltopdf.render.AbstractOutputDevice;
+import com.openhtmltopdf.render.FSFont;
+import com.openhtmltopdf.render.JustificationInfo;
+import com.openhtmltopdf.render.RenderingContext;
+import com.openhtmltopdf.util.XRRuntimeException;
+
+/**
+ * Paints the pages of a {@link LayoutSnapshot} to the output device of a rendering context.
+ * The output device must use the same dots per point as the snapshot, or be scaled to match.
+ * An instance is used for painting one snapshot only, as it caches fonts.
+ */
+public class LayoutSnapshotPainter {
+    // Stands in for no clip on the clip stack.
+    private static final Shape NO_CLIP = new Rectangle();
+
+    private final SnapshotImageCodec _images;
+    private final Map<Integer, FSFont> _fonts = new HashMap<Integer, FSFont>();
+
+    // The mapping from user space to page coordinates.
+    private AffineTransform _transform;
+    private final Deque<SavedTransform> _transformStack = new ArrayDeque<SavedTransform>();
+    private final Deque<Shape> _clipStack = new ArrayDeque<Shape>();
+    private int _pageHeight;
+
+    private static class SavedTransform {
+        private final AffineTransform transform;
+        // The inverse transforms of a device without transform layers.
+        private final List<AffineTransform> inverse;
+
+        private SavedTransform(AffineTransform transform, List<AffineTransform> inverse) {
+            this.transform = transform;
+            this.inverse = inverse;
+        }
+    }
+
+    public LayoutSnapshotPainter(SnapshotImageCodec images) {
+        _images = images;
+    }
+
+    public void paintPage(RenderingContext c, LayoutSnapshot snapshot, int page) {
+        OutputDevice od = c.getOutputDevice();
+        DataInputStream ops = new DataInputStream(new ByteArrayInputStream(snapshot.getOps(page)));
+
+        _transform = new AffineTransform();
+        _transformStack.clear();
+        _clipStack.clear();
+        _pageHeight = snapshot.getPageHeight(page);
+
+        try {
+            byte op;
+            while ((op = ops.readByte()) != LayoutSnapshot.OP_END) {
+                switch (op) {
+                case LayoutSnapshot.OP_COLOR_RGB:
+                    od.setColor(new FSRGBColor(ops.readUnsignedByte(), ops.readUnsignedByte(), ops.readUnsignedByte()));
+                    break;
+                case LayoutSnapshot.OP_COLOR_CMYK:
+                    setCMYKColor(od, ops.readFloat(), ops.readFloat(), ops.readFloat(), ops.readFloat());
+                    break;
+                case LayoutSnapshot.OP_COLOR_TRANSPARENT:
+                    od.setColor(FSRGBColor.TRANSPARENT);
+                    break;
+                case LayoutSnapshot.OP_STROKE:
+                    od.setStroke(readStroke(ops));
+                    break;
+                case LayoutSnapshot.OP_FILL:
+                    od.fill(LayoutSnapshot.readShape(ops));
+                    break;
+                case LayoutSnapshot.OP_DRAW:
+                    od.draw(LayoutSnapshot.readShape(ops));
+                    break;
+                case LayoutSnapshot.OP_FILL_RECT:
+                    od.fillRect(ops.readInt(), ops.readInt(), ops.readInt(), ops.readInt());
+                    break;
+                case LayoutSnapshot.OP_TRANSLATE: {
+                    double tx = ops.readDouble();
+                    double ty = ops.readDouble();
+                    od.translate(tx, ty);
+                    _transform.translate(tx, ty);
+                    break;
+                }
+                case LayoutSnapshot.OP_PUSH_CLIP:
+                    pushClip(od, ops.readBoolean() ? LayoutSnapshot.readShape(ops) : null);
+                    break;
+                case LayoutSnapshot.OP_POP_CLIP:
+                    popClip(od);
+                    break;
+                case LayoutSnapshot.OP_PUSH_TRANSFORM:
+                    pushTransform(od, new AffineTransform(ops.readDouble(), ops.readDouble(), ops.readDouble(),
+                            ops.readDouble(), ops.readDouble(), ops.readDouble()));
+                    break;
+                case LayoutSnapshot.OP_POP_TRANSFORM:
+                    popTransform(od);
+                    break;
+                case LayoutSnapshot.OP_IMAGE: {
+                    byte[] image = snapshot.getImages().get(ops.readInt());
+                    paintImage(c, image, ops.readInt(), ops.readInt(), ops.readInt(), ops.readInt(), ops.readBoolean());
+                    break;
+                }
+                case LayoutSnapshot.OP_TEXT:
+                    paintText(c, snapshot, ops);
+                    break;
+                default:
+                    throw new XRRuntimeException("Unknown layout snapshot operation " + op);
+                }
+            }
+        } catch (IOException e) {
+            throw new XRRuntimeException("Corrupt layout snapshot", e);
+        }
+    }
+
+    /**
+     * Paints an image of the snapshot with its top left corner at x, y and the given size in dots.
+     */
+    protected void paintImage(RenderingContext c, byte[] image, int x, int y, int width, int height, boolean interpolate) {
+        FSImage decoded = _images.decode(image, width, height);
+        if (decoded != null) {
+            c.getOutputDevice().drawImage(decoded, x, y, interpolate);
+        }
+    }
+
+    private void paintText(RenderingContext c, LayoutSnapshot snapshot, DataInputStream ops) throws IOException {
+        int fontIndex = ops.readInt();
+        String text = LayoutSnapshot.readString(ops);
+        float x = ops.readFloat();
+        float y = ops.readFloat();
+
+        JustificationInfo info = null;
+        if (ops.readBoolean()) {
+            info = new JustificationInfo();
+            info.setNonSpaceAdjust(ops.readFloat());
+            info.setSpaceAdjust(ops.readFloat());
+        }
+
+        FontSpecification spec = snapshot.getFonts().get(fontIndex);
+        FSFont font = _fonts.get(fontIndex);
+        if (font == null) {
+            font = c.getFont(spec);
+            checkFaces(snapshot.getFontFaces().get(fontIndex), font);
+            _fonts.put(fontIndex, font);
+        }
+
+        OutputDevice od = c.getOutputDevice();
+        od.setFont(font);
+        if (od instanceof AbstractOutputDevice) {
+            ((AbstractOutputDevice) od).setFontSpecification(spec);
+        }
+
+        if (info != null) {
+            c.getTextRenderer().drawString(od, text, x, y, info);
+        } else {
+            c.getTextRenderer().drawString(od, text, x, y);
+        }
+    }
+
+    /**
+     * The text was positioned with the metrics of the recorded faces, so painting it
+     * with other faces would overlap or leave gaps.
+     */
+    private static void checkFaces(String recorded, FSFont font) {
+        if (recorded == null || !(font instanceof SnapshotFontFaces)) {
+            return;
+        }
+
+        String faces = ((SnapshotFontFaces) font).getFaceNames();
+        if (!recorded.equals(faces)) {
+            throw new XRRuntimeException("Layout snapshot font resolved to " + faces + " but was recorded with " +
+                    recorded + ". The fonts used by the document, including @font-face fonts, must be registered.");
+        }
+    }
+
+    private void setCMYKColor(OutputDevice od, float cyan, float magenta, float yellow, float black) {
+        if (od.isSupportsCMYKColors()) {
+            od.setColor(new FSCMYKColor(cyan, magenta, yellow, black));
+        } else {
+            od.setColor(new FSRGBColor(
+                    Math.round(255 * (1 - cyan) * (1 - black)),
+                    Math.round(255 * (1 - magenta) * (1 - black)),
+                    Math.round(255 * (1 - yellow) * (1 - black))));
+        }
+    }
+
+    private BasicStroke readStroke(DataInputStream ops) throws IOException {
+        float width = ops.readFloat();
+        int cap = ops.readByte();
+        int join = ops.readByte();
+        float miter = ops.readFloat();
+
+        int dashCount = ops.readInt();
+        float[] dash = null;
+        if (dashCount >= 0) {
+            dash = new float[dashCount];
+            for (int i = 0; i < dashCount; i++) {
+                dash[i] = ops.readFloat();
+            }
+        }
+
+        return new BasicStroke(width, cap, join, miter, dash, ops.readFloat());
+    }
+
+    /**
+     * Clips with {@link OutputDevice#pushClip(Shape)} if the device supports it. Otherwise the
+     * current clip is saved in page coordinates, so it can be restored after later translations.
+     */
+    private void pushClip(OutputDevice od, Shape clip) {
+        if (od.isFastRenderer()) {
+            od.pushClip(clip);
+            return;
+        }
+
+        Shape old = od.getClip();
+        _clipStack.push(old == null ? NO_CLIP : _transform.createTransformedShape(old));
+
+        if (clip != null) {
+            od.clip(clip);
+        }
+    }
+
+    private void popClip(OutputDevice od) {
+        if (od.isFastRenderer()) {
+            od.popClip();
+            return;
+        }
+
+        Shape old = _clipStack.pop();
+        od.setClip(old == NO_CLIP ? null : inverse(_transform).createTransformedShape(old));
+    }
+
+    /**
+     * The snapshot transforms are in top down page coordinates. A PDF device expects the
+     * bottom up page coordinates of the fast renderer and other devices are given the
+     * equivalent transform in user space.
+     */
+    private void pushTransform(OutputDevice od, AffineTransform transform) {
+        AffineTransform old = _transform;
+        _transform = new AffineTransform(old);
+        _transform.preConcatenate(transform);
+
+        if (od.isFastRenderer()) {
+            AffineTransform layer = transform;
+
+            if (od.isPDF()) {
+                AffineTransform flip = new AffineTransform(1, 0, 0, -1, 0, _pageHeight);
+                layer = new AffineTransform(flip);
+                layer.concatenate(transform);
+                layer.concatenate(flip);
+            }
+
+            od.pushTransformLayer(layer);
+            _transformStack.push(new SavedTransform(old, null));
+        } else {
+            AffineTransform user = inverse(old);
+            user.concatenate(transform);
+            user.concatenate(old);
+
+            List<AffineTransform> transforms = new ArrayList<AffineTransform>(1);
+            transforms.add(user);
+
+            _transformStack.push(new SavedTransform(old, od.pushTransforms(transforms)));
+        }
+    }
+
+    private void popTransform(OutputDevice od) {
+        SavedTransform saved = _transformStack.pop();
+        _transform = saved.transform;
+
+        if (saved.inverse == null) {
+            od.popTransformLayer();
+        } else {
+            od.popTransforms(saved.inverse);
+        }
+    }
+
+    private static AffineTransform inverse(AffineTransform transform) {
+        try {
+            return transform.createInverse();
+        } catch (NoninvertibleTransformException e) {
+            // The recorder only records invertible transforms.
+            throw new XRRuntimeException("Non-invertible transform in layout snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,685 @@
+package com.openhtmltopdf.render.snapshot;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints.Key;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.openhtmltopdf.bidi.BidiSplitter;
+import com.openhtmltopdf.css.parser.FSCMYKColor;
+import com.openhtmltopdf.css.parser.FSColor;
+import com.openhtmltopdf.css.parser.FSRGBColor;
+import com.openhtmltopdf.css.style.CalculatedStyle;
+import com.openhtmltopdf.css.value.FontSpecification;
+import com.openhtmltopdf.extend.FSImage;
+import com.openhtmltopdf.extend.OutputDevice;
+import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
+import com.openhtmltopdf.extend.ReplacedElement;
+import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.render.AbstractOutputDevice;
+import com.openhtmltopdf.render.BlockBox;
+import com.openhtmltopdf.render.Box;
+import com.openhtmltopdf.render.FSFont;
+import com.openhtmltopdf.render.InlineLayoutBox;
+import com.openhtmltopdf.render.InlineText;
+import com.openhtmltopdf.render.JustificationInfo;
+import com.openhtmltopdf.render.PageBox;
+import com.openhtmltopdf.render.RenderingContext;
+import com.openhtmltopdf.util.XRLog;
+import com.openhtmltopdf.util.XRRuntimeException;
+
+/**
+ * An output device that records painting operations into a {@link LayoutSnapshot}.
+ * Pages must be painted with the fast renderer, between calls to
+ * {@link #startPage(int, int, int)} and {@link #finishPage()}.
+ *
+ * Transforms are recorded in page coordinates, where a pushed transform is applied to
+ * everything painted after it, including the translation in effect.
+ */
+public class LayoutSnapshotRecorder extends AbstractOutputDevice implements OutputDevice {
+    private static final Stroke DEFAULT_STROKE = new BasicStroke(1);
+
+    private final SharedContext _sharedContext;
+    private final float _dotsPerPoint;
+    private final SnapshotImageCodec _images;
+
+    private final List<FontSpecification> _fontList = new ArrayList<FontSpecification>();
+    private final List<String> _fontFaces = new ArrayList<String>();
+    private final Map<List<Object>, Integer> _fontIndexes = new HashMap<List<Object>, Integer>();
+    private final List<byte[]> _imageList = new ArrayList<byte[]>();
+    private final Map<byte[], Integer> _imageIndexes = new IdentityHashMap<byte[], Integer>();
+    private final List<Map.Entry<String, String>> _metadata = new ArrayList<Map.Entry<String, String>>();
+
+    private final List<PendingPage> _pages = new ArrayList<PendingPage>();
+    private final Map<Integer, Integer> _firstSnapshotPage = new HashMap<Integer, Integer>();
+
+    private PendingPage _page;
+    private ByteArrayOutputStream _bytes;
+    private DataOutputStream _ops;
+
+    // The mapping from user space to page coordinates and the mappings of pushed transforms.
+    private AffineTransform _transform;
+    private final Deque<AffineTransform> _transformStack = new ArrayDeque<AffineTransform>();
+
+    private Stroke _stroke = DEFAULT_STROKE;
+
+    private static class PendingPage {
+        private final int width;
+        private final int height;
+        private byte[] ops;
+        private final List<PendingLink> links = new ArrayList<PendingLink>();
+        private final Set<List<Object>> linkKeys = new HashSet<List<Object>>();
+
+        private PendingPage(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static class PendingLink {
+        private final Rectangle2D bounds;
+        private final String uri;
+        private final int targetPageNo;
+        private final float targetTop;
+
+        private PendingLink(Rectangle2D bounds, String uri, int targetPageNo, float targetTop) {
+            this.bounds = bounds;
+            this.uri = uri;
+            this.targetPageNo = targetPageNo;
+            this.targetTop = targetTop;
+        }
+    }
+
+    /**
+     * @param dotsPerPoint the dots per PDF point of the device the layout was done for.
+     * @param images converts the images of that device.
+     */
+    public LayoutSnapshotRecorder(SharedContext sharedContext, float dotsPerPoint, SnapshotImageCodec images) {
+        _sharedContext = sharedContext;
+        _dotsPerPoint = dotsPerPoint;
+        _images = images;
+    }
+
+    /**
+     * Starts a snapshot page for a layout page. Shadow pages share the page number of their page.
+     */
+    public void startPage(int pageNo, int width, int height) {
+        _page = new PendingPage(width, height);
+        _bytes = new ByteArrayOutputStream(4096);
+        _ops = new DataOutputStream(_bytes);
+        _transform = new AffineTransform();
+        _transformStack.clear();
+        _stroke = DEFAULT_STROKE;
+
+        if (!_firstSnapshotPage.containsKey(pageNo)) {
+            _firstSnapshotPage.put(pageNo, _pages.size());
+        }
+        _pages.add(_page);
+    }
+
+    public void finishPage() {
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_END);
+            _ops.flush();
+        } catch (IOException e) {
+            // Can't happen, we are writing to memory.
+            throw new RuntimeException(e);
+        }
+
+        _page.ops = _bytes.toByteArray();
+        _page = null;
+        _bytes = null;
+        _ops = null;
+    }
+
+    public void addMetadata(String name, String value) {
+        _metadata.add(new AbstractMap.SimpleImmutableEntry<String, String>(name, value));
+    }
+
+    public LayoutSnapshot getSnapshot() {
+        List<LayoutSnapshot.Page> pages = new ArrayList<LayoutSnapshot.Page>(_pages.size());
+
+        for (PendingPage page : _pages) {
+            List<LayoutSnapshot.Link> links = new ArrayList<LayoutSnapshot.Link>(page.links.size());
+
+            for (PendingLink link : page.links) {
+                if (link.uri != null) {
+                    links.add(new LayoutSnapshot.Link(link.bounds, link.uri, -1, 0));
+                } else {
+                    Integer target = _firstSnapshotPage.get(link.targetPageNo);
+                    if (target != null) {
+                        links.add(new LayoutSnapshot.Link(link.bounds, null, target, link.targetTop));
+                    }
+                }
+            }
+
+            pages.add(new LayoutSnapshot.Page(page.width, page.height, page.ops, links));
+        }
+
+        return new LayoutSnapshot(_dotsPerPoint, _sharedContext.getDotsPerPixel(),
+                new ArrayList<FontSpecification>(_fontList),
+                new ArrayList<String>(_fontFaces),
+                new ArrayList<byte[]>(_imageList),
+                pages,
+                new ArrayList<Map.Entry<String, String>>(_metadata));
+    }
+
+    private static void unsupported(String what) {
+        throw new XRRuntimeException(what + " can not be recorded in a layout snapshot");
+    }
+
+    private int fontIndex(FontSpecification spec) {
+        List<Object> key = Arrays.<Object>asList(spec.size, spec.fontWeight, spec.fontStyle, spec.variant,
+                spec.families == null ? null : Arrays.asList(spec.families));
+        Integer index = _fontIndexes.get(key);
+
+        if (index == null) {
+            FontSpecification copy = new FontSpecification();
+            copy.size = spec.size;
+            copy.fontWeight = spec.fontWeight;
+            copy.fontStyle = spec.fontStyle;
+            copy.variant = spec.variant;
+            copy.families = spec.families == null ? null : spec.families.clone();
+
+            FSFont font = _sharedContext.getFont(copy);
+
+            index = _fontList.size();
+            _fontList.add(copy);
+            _fontFaces.add(font instanceof SnapshotFontFaces ? ((SnapshotFontFaces) font).getFaceNames() : null);
+            _fontIndexes.put(key, index);
+        }
+
+        return index;
+    }
+
+    private void writeTransform(AffineTransform transform) throws IOException {
+        double[] mx = new double[6];
+        transform.getMatrix(mx);
+        for (double d : mx) {
+            _ops.writeDouble(d);
+        }
+    }
+
+    private void recordShape(byte op, Shape s) {
+        try {
+            _ops.writeByte(op);
+            LayoutSnapshot.writeShape(_ops, s);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void drawText(RenderingContext c, InlineText inlineText) {
+        InlineLayoutBox iB = inlineText.getParent();
+        String text = inlineText.getSubstring();
+
+        if (inlineText.getTextDirection() == BidiSplitter.RTL) {
+            text = c.getBidiReorderer().reorderRTLTextToLTR(text);
+        }
+
+        if (text == null || text.length() == 0) {
+            return;
+        }
+
+        setColor(iB.getStyle().getColor());
+
+        JustificationInfo info = null;
+        if (inlineText.getLetterSpacing() != 0f) {
+            info = new JustificationInfo();
+            info.setNonSpaceAdjust(inlineText.getLetterSpacing());
+            info.setSpaceAdjust(inlineText.getLetterSpacing());
+        } else if (iB.getStyle().isTextJustify()) {
+            info = iB.getLineBox().getJustificationInfo();
+        }
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_TEXT);
+            _ops.writeInt(fontIndex(iB.getStyle().getFontSpecification()));
+            LayoutSnapshot.writeString(_ops, text);
+            _ops.writeFloat(iB.getAbsX() + inlineText.getX());
+            _ops.writeFloat(iB.getAbsY() + iB.getBaseline());
+            _ops.writeBoolean(info != null);
+            if (info != null) {
+                _ops.writeFloat(info.getNonSpaceAdjust());
+                _ops.writeFloat(info.getSpaceAdjust());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void drawSelection(RenderingContext c, InlineText inlineText) {
+    }
+
+    /**
+     * Records the link of the box, if any. Like the PDF output device, links are found
+     * when painting backgrounds.
+     */
+    @Override
+    public void paintBackground(RenderingContext c, Box box) {
+        super.paintBackground(c, box);
+
+        Element elem = box.getElement();
+        if (elem != null && isFormControl(elem)) {
+            unsupported("Form control " + elem.getNodeName());
+        }
+        if (elem == null || !"a".equals(elem.getNodeName())) {
+            return;
+        }
+
+        String uri = _sharedContext.getNamespaceHandler().getLinkUri(elem);
+        if (uri == null) {
+            return;
+        }
+
+        Rectangle content = box.getContentAreaEdge(box.getAbsX(), box.getAbsY(), c);
+        Rectangle2D bounds = _transform.createTransformedShape(content).getBounds2D();
+
+        PendingLink link;
+        if (uri.length() > 1 && uri.charAt(0) == '#') {
+            Box target = _sharedContext.getBoxById(uri.substring(1));
+            if (target == null) {
+                return;
+            }
+
+            int refY = target instanceof InlineLayoutBox ?
+                    target.getAbsY() + ((InlineLayoutBox) target).getBaseline() : target.getAbsY();
+            PageBox page = c.getRootLayer().getPage(c, refY);
+            if (page == null) {
+                return;
+            }
+
+            int top = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
+            top += target.getAbsY() + target.getMargin(c).top() - page.getTop();
+
+            link = new PendingLink(bounds, null, page.getPageNo(), top);
+        } else if (uri.contains("://")) {
+            link = new PendingLink(bounds, uri, -1, 0);
+        } else {
+            return;
+        }
+
+        List<Object> key = Arrays.<Object>asList(bounds, link.uri, link.targetPageNo, link.targetTop);
+        if (_page.linkKeys.add(key)) {
+            _page.links.add(link);
+        }
+    }
+
+    /**
+     * Controls are written as form fields by the PDF output device, but only in a form.
+     */
+    private static boolean isFormControl(Element elem) {
+        String name = elem.getNodeName();
+        if (!name.equals("input") && !name.equals("textarea") && !name.equals("button") &&
+            !name.equals("select") && !name.equals("openhtmltopdf-combo")) {
+            return false;
+        }
+
+        for (Node parent = elem.getParentNode(); parent != null; parent = parent.getParentNode()) {
+            if ("form".equals(parent.getNodeName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void paintReplacedElement(RenderingContext c, BlockBox box) {
+        ReplacedElement element = box.getReplacedElement();
+        if (_images.isEmpty(element)) {
+            return;
+        }
+
+        FSImage image = _images.getImage(element);
+
+        if (image == null) {
+            unsupported(element.getClass().getSimpleName());
+            return;
+        }
+
+        Rectangle content = box.getContentAreaEdge(box.getAbsX(), box.getAbsY(), c);
+        drawImage(image, content.x, content.y, box.getStyle().isImageRenderingInterpolate());
+    }
+
+    @Override
+    public void drawImage(FSImage image, int x, int y, boolean interpolate) {
+        byte[] bytes = _images.encode(image);
+
+        if (bytes == null) {
+            unsupported(image.getClass().getSimpleName());
+            return;
+        }
+
+        Integer index = _imageIndexes.get(bytes);
+        if (index == null) {
+            index = _imageList.size();
+            _imageList.add(bytes);
+            _imageIndexes.put(bytes, index);
+        }
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_IMAGE);
+            _ops.writeInt(index);
+            _ops.writeInt(x);
+            _ops.writeInt(y);
+            _ops.writeInt(image.getWidth());
+            _ops.writeInt(image.getHeight());
+            _ops.writeBoolean(interpolate);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void drawWithGraphics(float x, float y, float width, float height, OutputDeviceGraphicsDrawer renderer) {
+        unsupported(renderer.getClass().getSimpleName());
+    }
+
+    @Override
+    public void setColor(FSColor color) {
+        try {
+            if (color == FSRGBColor.TRANSPARENT) {
+                _ops.writeByte(LayoutSnapshot.OP_COLOR_TRANSPARENT);
+            } else if (color instanceof FSRGBColor) {
+                FSRGBColor rgb = (FSRGBColor) color;
+                _ops.writeByte(LayoutSnapshot.OP_COLOR_RGB);
+                _ops.writeByte(rgb.getRed());
+                _ops.writeByte(rgb.getGreen());
+                _ops.writeByte(rgb.getBlue());
+            } else if (color instanceof FSCMYKColor) {
+                FSCMYKColor cmyk = (FSCMYKColor) color;
+                _ops.writeByte(LayoutSnapshot.OP_COLOR_CMYK);
+                _ops.writeFloat(cmyk.getCyan());
+                _ops.writeFloat(cmyk.getMagenta());
+                _ops.writeFloat(cmyk.getYellow());
+                _ops.writeFloat(cmyk.getBlack());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void setPaint(Paint paint) {
+        if (paint instanceof Color) {
+            Color c = (Color) paint;
+            setColor(new FSRGBColor(c.getRed(), c.getGreen(), c.getBlue()));
+        } else {
+            unsupported(paint.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public void setStroke(Stroke s) {
+        _stroke = s;
+
+        if (!(s instanceof BasicStroke)) {
+            unsupported(s.getClass().getSimpleName());
+            return;
+        }
+
+        BasicStroke stroke = (BasicStroke) s;
+        float[] dash = stroke.getDashArray();
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_STROKE);
+            _ops.writeFloat(stroke.getLineWidth());
+            _ops.writeByte(stroke.getEndCap());
+            _ops.writeByte(stroke.getLineJoin());
+            _ops.writeFloat(stroke.getMiterLimit());
+            _ops.writeInt(dash == null ? -1 : dash.length);
+            if (dash != null) {
+                for (float d : dash) {
+                    _ops.writeFloat(d);
+                }
+            }
+            _ops.writeFloat(stroke.getDashPhase());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public Stroke getStroke() {
+        return _stroke;
+    }
+
+    @Override
+    public void draw(Shape s) {
+        recordShape(LayoutSnapshot.OP_DRAW, s);
+    }
+
+    @Override
+    public void fill(Shape s) {
+        recordShape(LayoutSnapshot.OP_FILL, s);
+    }
+
+    @Override
+    protected void drawLine(int x1, int y1, int x2, int y2) {
+        draw(new Line2D.Float(x1, y1, x2, y2));
+    }
+
+    @Override
+    public void drawBorderLine(Shape bounds, int side, int width, boolean solid) {
+        draw(bounds);
+    }
+
+    @Override
+    public void drawRect(int x, int y, int width, int height) {
+        draw(new Rectangle(x, y, width, height));
+    }
+
+    @Override
+    public void drawOval(int x, int y, int width, int height) {
+        draw(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    /**
+     * Recorded separately as devices differ in how they fill rectangles.
+     */
+    @Override
+    public void fillRect(int x, int y, int width, int height) {
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_FILL_RECT);
+            _ops.writeInt(x);
+            _ops.writeInt(y);
+            _ops.writeInt(width);
+            _ops.writeInt(height);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void fillOval(int x, int y, int width, int height) {
+        fill(new Ellipse2D.Float(x, y, width, height));
+    }
+
+    @Override
+    public void translate(double tx, double ty) {
+        _transform.translate(tx, ty);
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_TRANSLATE);
+            _ops.writeDouble(tx);
+            _ops.writeDouble(ty);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void pushClip(Shape s) {
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_PUSH_CLIP);
+            _ops.writeBoolean(s != null);
+            if (s != null) {
+                LayoutSnapshot.writeShape(_ops, s);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void popClip() {
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_POP_CLIP);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The transform is in page coordinates, as created by the fast renderer.
+     */
+    @Override
+    public void pushTransformLayer(AffineTransform transform) {
+        _transformStack.push(_transform);
+        _transform = new AffineTransform(_transform);
+        _transform.preConcatenate(transform);
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_PUSH_TRANSFORM);
+            writeTransform(transform);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void popTransformLayer() {
+        _transform = _transformStack.pop();
+
+        try {
+            _ops.writeByte(LayoutSnapshot.OP_POP_TRANSFORM);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Transforms pushed by the classic painter, for example in margin boxes, are relative
+     * to user space. They are recorded as the equivalent transform in page coordinates.
+     */
+    @Override
+    public List<AffineTransform> pushTransforms(List<AffineTransform> transforms) {
+        if (transforms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        AffineTransform combined = new AffineTransform();
+        for (AffineTransform transform : transforms) {
+            combined.concatenate(transform);
+        }
+
+        try {
+            AffineTransform page = new AffineTransform(_transform);
+            page.concatenate(combined);
+            page.concatenate(_transform.createInverse());
+
+            pushTransformLayer(page);
+            return Collections.singletonList(combined.createInverse());
+        } catch (NoninvertibleTransformException e) {
+            XRLog.render(Level.WARNING, "Tried to set a non-invertible CSS transform. Ignored.");
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public void popTransforms(List<AffineTransform> inverse) {
+        if (!inverse.isEmpty()) {
+            popTransformLayer();
+        }
+    }
+
+    @Override
+    public float getAbsoluteTransformOriginX() {
+        return 0;
+    }
+
+    @Override
+    public float getAbsoluteTransformOriginY() {
+        return 0;
+    }
+
+    /**
+     * Like the PDF output device with the fast renderer, clipping is only done with
+     * {@link #pushClip(Shape)}.
+     */
+    @Override
+    public void clip(Shape s) {
+    }
+
+    @Override
+    public Shape getClip() {
+        return null;
+    }
+
+    @Override
+    public void setClip(Shape s) {
+    }
+
+    @Override
+    public void setFont(FSFont font) {
+        // The font specification is recorded with each text run.
+    }
+
+    @Override
+    public Object getRenderingHint(Key key) {
+        return null;
+    }
+
+    @Override
+    public void setRenderingHint(Key key, Object value) {
+    }
+
+    @Override
+    public boolean isSupportsSelection() {
+        return false;
+    }
+
+    @Override
+    public boolean isSupportsCMYKColors() {
+        return true;
+    }
+
+    @Override
+    public boolean isFastRenderer() {
+        return true;
+    }
+
+    @Override
+    public void drawReusable(Object key, Runnable painter) {
+        painter.run();
+    }
+}
@@ -0,0 +1,14 @@
+package com.openhtmltopdf.render.snapshot;
+
+/**
+ * Optionally implemented by an {@link com.openhtmltopdf.render.FSFont} that can name the
+ * font faces it resolved to. A {@link LayoutSnapshot} records these names and painting
+ * it fails if the fonts are resolved to other faces.
+ */
+public interface SnapshotFontFaces {
+    /**
+     * @return the faces of the font in fallback order, for example their family, weight
+     * and style, or null if they are not known.
+     */
+    public String getFaceNames();
+}
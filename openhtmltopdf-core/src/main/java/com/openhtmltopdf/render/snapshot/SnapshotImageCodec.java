@@ -0,0 +1,35 @@
+package com.openhtmltopdf.render.snapshot;
+
+import com.openhtmltopdf.extend.FSImage;
+import com.openhtmltopdf.extend.ReplacedElement;
+
+/**
+ * Converts the images of an output device to and from the bytes stored in a {@link LayoutSnapshot}.
+ * An instance is used for one recording or one replay only, so may cache.
+ */
+public interface SnapshotImageCodec {
+    /**
+     * @return the image painted by a replaced element or null if the element does not
+     * paint a plain image, in which case the snapshot can not be recorded.
+     */
+    public FSImage getImage(ReplacedElement element);
+
+    /**
+     * @return whether a replaced element paints nothing, such as a bookmark anchor.
+     */
+    public boolean isEmpty(ReplacedElement element);
+
+    /**
+     * Encodes an image as a file format such as PNG or JPEG. The same array may be
+     * returned for the same image, in which case it is stored in the snapshot only once.
+     * @return the image bytes or null if the image can not be encoded.
+     */
+    public byte[] encode(FSImage image);
+
+    /**
+     * Decodes an image from bytes returned by {@link #encode(FSImage)} and scales
+     * it to the given size in dots.
+     * @return the image or null if it can not be decoded.
+     */
+    public FSImage decode(byte[] image, int width, int height);
+}
@@ -21,9 +21,12 @@ package com.openhtmltopdf.resource;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.logging.Level;
 
 import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.FactoryConfigurationError;
 import javax.xml.parsers.ParserConfigurationException;
@@ -165,6 +168,65 @@ public class XMLResource extends AbstractResource {
         return xmlReader;
     }
 
+    /**
+     * The document builder (only used to create empty documents) and identity transformer
+     * are expensive to create and configure, so a few are kept for reuse. They are borrowed
+     * for one document at a time and returned afterwards. The pool is not thread local so
+     * that pooled threads, such as those of a servlet container, don't hold on to them.
+     */
+    private static final int MAX_POOLED_TRANSFORMERS = 8;
+    private static final LinkedList<PooledTransformers> TRANSFORMERS = new LinkedList<PooledTransformers>();
+
+    private static class PooledTransformers {
+        private final String preferredDocumentBuilderFactory;
+        private final String preferredTransformerFactory;
+        private final DocumentBuilder documentBuilder;
+        private final Transformer transformer;
+
+        private PooledTransformers(String preferredDocumentBuilderFactory, String preferredTransformerFactory,
+                DocumentBuilder documentBuilder, Transformer transformer) {
+            this.preferredDocumentBuilderFactory = preferredDocumentBuilderFactory;
+            this.preferredTransformerFactory = preferredTransformerFactory;
+            this.documentBuilder = documentBuilder;
+            this.transformer = transformer;
+        }
+
+        private boolean isFor(String preferredDocumentBuilderFactory, String preferredTransformerFactory) {
+            return equal(this.preferredDocumentBuilderFactory, preferredDocumentBuilderFactory) &&
+                   equal(this.preferredTransformerFactory, preferredTransformerFactory);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        /**
+         * @return pooled transformers for the given factories or null if there are none free.
+         */
+        private static PooledTransformers borrow(String preferredDocumentBuilderFactory, String preferredTransformerFactory) {
+            synchronized (TRANSFORMERS) {
+                for (Iterator<PooledTransformers> it = TRANSFORMERS.iterator(); it.hasNext(); ) {
+                    PooledTransformers pooled = it.next();
+                    if (pooled.isFor(preferredDocumentBuilderFactory, preferredTransformerFactory)) {
+                        it.remove();
+                        return pooled;
+                    }
+                }
+                return null;
+            }
+        }
+
+        private static void giveBack(PooledTransformers transformers) {
+            synchronized (TRANSFORMERS) {
+                // Newest first, so that the oldest, possibly for other factories, are dropped.
+                TRANSFORMERS.addFirst(transformers);
+                if (TRANSFORMERS.size() > MAX_POOLED_TRANSFORMERS) {
+                    TRANSFORMERS.removeLast();
+                }
+            }
+        }
+    }
+
     private static class XMLResourceBuilder {
     	
     	private void setXmlReaderSecurityFeatures(XMLReader xmlReader) {
@@ -229,6 +291,7 @@ public class XMLResource extends AbstractResource {
             DOMResult output = null;
             TransformerFactory xformFactory = null;
             Transformer idTransform = null;
+            PooledTransformers transformers = null;
             XMLReader xmlReader = null;
             long st = 0L;
 
@@ -243,24 +306,31 @@ public class XMLResource extends AbstractResource {
                 input = new SAXSource(xmlReader, target.getResourceInputSource());
                 
                 String preferredDocumentBuilderFactory = ThreadCtx.get().sharedContext()._preferredDocumentBuilderFactoryImplementationClass;
-                DocumentBuilderFactory dbf = loadPreferredDocumentBuilderFactory(preferredDocumentBuilderFactory);
-                
-                setDocumentBuilderSecurityFeatures(dbf);
-                dbf.setNamespaceAware(true);
-                dbf.setValidating(false); // validation is the root of all evil in xml - tobe
-                
-                output = new DOMResult(dbf.newDocumentBuilder().newDocument());
-                
                 String preferredTransformerFactory = ThreadCtx.get().sharedContext()._preferredTransformerFactoryImplementationClass;
-                
-                if (preferredTransformerFactory == null) {
-                	xformFactory = TransformerFactory.newInstance();
-                } else {
-                	xformFactory = loadPreferredTransformerFactory(preferredTransformerFactory);
+
+                transformers = PooledTransformers.borrow(preferredDocumentBuilderFactory, preferredTransformerFactory);
+
+                if (transformers == null) {
+                    DocumentBuilderFactory dbf = loadPreferredDocumentBuilderFactory(preferredDocumentBuilderFactory);
+
+                    setDocumentBuilderSecurityFeatures(dbf);
+                    dbf.setNamespaceAware(true);
+                    dbf.setValidating(false); // validation is the root of all evil in xml - tobe
+
+                    if (preferredTransformerFactory == null) {
+                        xformFactory = TransformerFactory.newInstance();
+                    } else {
+                        xformFactory = loadPreferredTransformerFactory(preferredTransformerFactory);
+                    }
+
+                    setTranformerFactorySecurityFeatures(xformFactory);
+
+                    transformers = new PooledTransformers(preferredDocumentBuilderFactory, preferredTransformerFactory,
+                            dbf.newDocumentBuilder(), xformFactory.newTransformer());
                 }
-                
-                setTranformerFactorySecurityFeatures(xformFactory);
-                idTransform = xformFactory.newTransformer();
+
+                output = new DOMResult(transformers.documentBuilder.newDocument());
+                idTransform = transformers.transformer;
                 
             } catch (Exception ex) {
                 throw new XRRuntimeException(
@@ -270,10 +340,14 @@ public class XMLResource extends AbstractResource {
             try {
                 idTransform.transform(input, output);
             } catch (Exception ex) {
+                // Not given back, so a transformer that may have been left in a bad state isn't reused.
                 throw new XRRuntimeException(
                         "Can't load the XML resource (using TRaX transformer). " + ex.getMessage(), ex);
             }
 
+            idTransform.reset();
+            PooledTransformers.giveBack(transformers);
+
             long end = System.currentTimeMillis();
 
             target.setElapsedLoadTime(end - st);
@@ -33,9 +33,13 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.extend.SpanDeclarations;
 import com.openhtmltopdf.css.extend.StylesheetFactory;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
 import com.openhtmltopdf.css.sheet.Stylesheet;
 import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.ElementDeclarationsNamespaceHandler;
 import com.openhtmltopdf.simple.NoNamespaceHandler;
 import com.openhtmltopdf.util.Configuration;
 import com.openhtmltopdf.util.XRLog;
@@ -44,7 +48,7 @@ import com.openhtmltopdf.util.XRLog;
  * Handles xhtml but only css styling is honored,
  * no presentational html attributes (see css 2.1 spec, 6.4.4)
  */
-public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
+public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler implements ElementDeclarationsNamespaceHandler {
 
     /**
      * Description of the Field
@@ -171,21 +175,7 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
      */
     public String getElementStyling(org.w3c.dom.Element e) {
         StringBuilder style = new StringBuilder();
-        if (e.getNodeName().equals("td") || e.getNodeName().equals("th")) {
-            String s;
-            s = getAttribute(e, "colspan");
-            if (s != null) {
-                style.append("-fs-table-cell-colspan: ");
-                style.append(s);
-                style.append(";");
-            }
-            s = getAttribute(e, "rowspan");
-            if (s != null) {
-                style.append("-fs-table-cell-rowspan: ");
-                style.append(s);
-                style.append(";");
-            }
-        } else if (e.getNodeName().equals("img")) {
+        if (e.getNodeName().equals("img")) {
             String s;
             s = getAttribute(e, "width");
             if (s != null) {
@@ -201,12 +191,6 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
             }
         } else if (e.getNodeName().equals("colgroup") || e.getNodeName().equals("col")) {
             String s;
-            s = getAttribute(e, "span");
-            if (s != null) {
-                style.append("-fs-table-cell-colspan: ");
-                style.append(s);
-                style.append(";");
-            }
             s = getAttribute(e, "width");
             if (s != null) {
                 style.append("width: ");
@@ -218,6 +202,34 @@ public class XhtmlCssOnlyNamespaceHandler extends NoNamespaceHandler {
         return style.toString();
     }
 
+    /**
+     * Creates the colspan and rowspan declarations of table cells and columns directly,
+     * so that we don't have to parse them for every cell of a large table.
+     */
+    public List<PropertyDeclaration> getElementStylingDeclarations(Element e) {
+        String name = e.getNodeName();
+        if (name.equals("td") || name.equals("th")) {
+            String colspan = getAttribute(e, "colspan");
+            String rowspan = getAttribute(e, "rowspan");
+            if (colspan == null && rowspan == null) {
+                return null;
+            }
+            List<PropertyDeclaration> result = new ArrayList<PropertyDeclaration>(2);
+            SpanDeclarations.addSpanDeclaration(result, CSSName.FS_COLSPAN, colspan);
+            SpanDeclarations.addSpanDeclaration(result, CSSName.FS_ROWSPAN, rowspan);
+            return result;
+        } else if (name.equals("colgroup") || name.equals("col")) {
+            String span = getAttribute(e, "span");
+            if (span == null) {
+                return null;
+            }
+            List<PropertyDeclaration> result = new ArrayList<PropertyDeclaration>(1);
+            SpanDeclarations.addSpanDeclaration(result, CSSName.FS_COLSPAN, span);
+            return result;
+        }
+        return null;
+    }
+
     /**
      * Returns the title of the document as located in the contents of /html/head/title, or "" if none could be found.
      *
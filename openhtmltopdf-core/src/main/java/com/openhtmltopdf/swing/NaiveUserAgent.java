@@ -46,6 +46,7 @@ import com.openhtmltopdf.extend.FSMultiThreadCache;
 import com.openhtmltopdf.extend.FSUriResolver;
 import com.openhtmltopdf.extend.FSStreamFactory;
 import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamInterceptor;
 import com.openhtmltopdf.extend.UserAgentCallback;
 import com.openhtmltopdf.resource.CSSResource;
 import com.openhtmltopdf.resource.ImageResource;
@@ -83,6 +84,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
 	protected Map<String, FSStreamFactory> _protocolsStreamFactory = new HashMap<String, FSStreamFactory>(2);
 	protected FSMultiThreadCache<String> _textCache = new NullCache<String>();
 	protected FSMultiThreadCache<byte[]> _byteCache = new NullCache<byte[]>();
+	protected FSStreamInterceptor _streamInterceptor;
 	
 	protected static class NullCache<T> implements FSMultiThreadCache<T> {
 		@Override
@@ -174,6 +176,13 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
     	this._protocolsStreamFactory = protocolsStreamFactory;
     }
     
+    /**
+     * Sets an interceptor that sees every resource stream opened by this user agent, may be null.
+     */
+    public void setStreamInterceptor(FSStreamInterceptor interceptor) {
+    	this._streamInterceptor = interceptor;
+    }
+
     public void setExternalCache(FSCache cache) {
     	this._externalCache = cache;
     }
@@ -205,6 +214,19 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
      * Gets a InputStream for the resource identified by a resolved URI.
      */
     protected InputStream openStream(String uri) {
+        InputStream is = openStreamUnintercepted(uri);
+        return _streamInterceptor != null ? _streamInterceptor.interceptStream(uri, is) : is;
+    }
+
+    /**
+     * Gets a reader for the identified resource by a resolved URI.
+     */
+    protected Reader openReader(String uri) {
+        Reader reader = openReaderUnintercepted(uri);
+        return _streamInterceptor != null ? _streamInterceptor.interceptReader(uri, reader) : reader;
+    }
+
+    private InputStream openStreamUnintercepted(String uri) {
         java.io.InputStream is = null;
         
         try {
@@ -232,10 +254,7 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
         return is;
     }
 
-    /**
-     * Gets a reader for the identified resource by a resolved URI.
-     */
-    protected Reader openReader(String uri) {
+    private Reader openReaderUnintercepted(String uri) {
     	InputStream is = null;
     	
         try {
@@ -393,7 +412,10 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
         	}
             
             // First, we check the internal per run cache.
-            ir = _imageCache.get(resolved);
+            // Guarded as pages may be painted concurrently (see Java2DRenderer).
+            synchronized (_imageCache) {
+                ir = _imageCache.get(resolved);
+            }
             if (ir != null) {
             	return ir;
             }
@@ -418,7 +440,9 @@ public class NaiveUserAgent implements UserAgentCallback, DocumentListener {
                         _externalCache.put(new FSCacheKey(resolved, AWTFSImage.class), fsImage2);
                         
                         ir = new ImageResource(resolved, fsImage2);
-                        _imageCache.put(resolved, ir);
+                        synchronized (_imageCache) {
+                            _imageCache.put(resolved, ir);
+                        }
                         
                         return ir;
                     } catch (FileNotFoundException e) {
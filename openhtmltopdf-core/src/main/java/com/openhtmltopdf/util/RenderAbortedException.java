@@ -0,0 +1,30 @@
+package com.openhtmltopdf.util;
+
+/**
+ * Thrown when a render is cancelled or exceeds one of the budgets set on the builder.
+ */
+public class RenderAbortedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public enum Reason {
+        CANCELLED,
+        TIMEOUT,
+        MAX_PAGES,
+        MAX_BOXES,
+        MAX_IMAGE_PIXELS
+    }
+
+    private final Reason reason;
+
+    public RenderAbortedException(Reason reason, String msg) {
+        super(msg);
+        this.reason = reason;
+    }
+
+    /**
+     * @return why the render was aborted.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+}
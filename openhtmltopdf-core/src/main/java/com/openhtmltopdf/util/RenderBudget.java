@@ -0,0 +1,87 @@
+package com.openhtmltopdf.util;
+
+import com.openhtmltopdf.extend.FSCancellationToken;
+import com.openhtmltopdf.util.RenderAbortedException.Reason;
+
+/**
+ * Enforces the cancellation token and limits of a single render. The checks are cheap and
+ * are made from the layout and paint loops. A limit of zero (or less) means unlimited.
+ */
+public class RenderBudget {
+    private final FSCancellationToken token;
+    private final long deadline;
+    private final long timeoutMillis;
+    private final int maxPages;
+    private final long maxBoxes;
+    private final long maxImagePixels;
+
+    private long boxCount;
+
+    /**
+     * A budget without any limits.
+     */
+    public RenderBudget() {
+        this(null, 0, 0, 0, 0);
+    }
+
+    /**
+     * @param token may be null
+     * @param timeoutMillis wall time allowed from now
+     * @param maxPages maximum number of laid out pages
+     * @param maxBoxes maximum number of boxes created by the box builder
+     * @param maxImagePixels maximum number of pixels (width * height) of a single image
+     */
+    public RenderBudget(FSCancellationToken token, long timeoutMillis, int maxPages, long maxBoxes, long maxImagePixels) {
+        this.token = token;
+        this.timeoutMillis = timeoutMillis;
+        this.deadline = timeoutMillis > 0 ? System.nanoTime() + timeoutMillis * 1000000L : 0;
+        this.maxPages = maxPages;
+        this.maxBoxes = maxBoxes;
+        this.maxImagePixels = maxImagePixels;
+    }
+
+    /**
+     * Checks the cancellation token and the wall time limit.
+     */
+    public void check() {
+        if (token != null && token.isCancelled()) {
+            throw new RenderAbortedException(Reason.CANCELLED, "Render cancelled");
+        }
+
+        if (deadline != 0 && System.nanoTime() - deadline > 0) {
+            throw new RenderAbortedException(Reason.TIMEOUT, "Render exceeded time limit of " + timeoutMillis + "ms");
+        }
+    }
+
+    /**
+     * Called when a page is added during layout.
+     */
+    public void checkPageCount(int pageCount) {
+        if (maxPages > 0 && pageCount > maxPages) {
+            throw new RenderAbortedException(Reason.MAX_PAGES, "Render exceeded limit of " + maxPages + " pages");
+        }
+        check();
+    }
+
+    /**
+     * Called when boxes are created by the box builder.
+     */
+    public void addBoxes(int count) {
+        boxCount += count;
+
+        if (maxBoxes > 0 && boxCount > maxBoxes) {
+            throw new RenderAbortedException(Reason.MAX_BOXES, "Render exceeded limit of " + maxBoxes + " boxes");
+        }
+        check();
+    }
+
+    /**
+     * Called with the intrinsic size of an image before it is decoded for output.
+     */
+    public void checkImage(int width, int height) {
+        if (maxImagePixels > 0 && (long) width * height > maxImagePixels) {
+            throw new RenderAbortedException(Reason.MAX_IMAGE_PIXELS,
+                    "Image of " + width + "x" + height + " exceeds limit of " + maxImagePixels + " pixels");
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.openhtmltopdf.context;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.openhtmltopdf.css.sheet.Ruleset;
+import com.openhtmltopdf.css.sheet.StylesheetInfo;
+import com.openhtmltopdf.extend.FSMultiThreadCache;
+import com.openhtmltopdf.layout.SharedContext;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+import com.openhtmltopdf.util.ThreadCtx;
+
+public class StylesheetFactoryImplTest {
+	private static class MapCache implements FSMultiThreadCache<Ruleset> {
+		private final Map<String, Ruleset> map = new HashMap<String, Ruleset>();
+		private int puts;
+
+		@Override
+		public synchronized Ruleset get(String key) {
+			return map.get(key);
+		}
+
+		@Override
+		public synchronized void put(String key, Ruleset value) {
+			puts++;
+			map.put(key, value);
+		}
+	}
+
+	@Before
+	public void registerSharedContext() {
+		// The parser reports errors with the base url of the shared context of the thread.
+		SharedContext sharedContext = new SharedContext();
+		sharedContext.setUserAgentCallback(new NaiveUserAgent());
+		sharedContext.registerWithThread();
+	}
+
+	@After
+	public void cleanup() {
+		ThreadCtx.cleanup();
+	}
+
+	@Test
+	public void testDeclarationsSharedBetweenFactories() {
+		MapCache cache = new MapCache();
+
+		StylesheetFactoryImpl first = new StylesheetFactoryImpl(null);
+		first.setSharedDeclarationCache(cache);
+		StylesheetFactoryImpl second = new StylesheetFactoryImpl(null);
+		second.setSharedDeclarationCache(cache);
+
+		Ruleset ruleset = first.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red;");
+		assertSame(ruleset, first.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red;"));
+		assertSame(ruleset, second.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red;"));
+		assertEquals(1, cache.puts);
+
+		// Declarations parse differently with CMYK colors, so are cached separately.
+		second.setSupportCMYKColors(true);
+		assertNotSame(ruleset, second.parseStyleDeclaration(StylesheetInfo.AUTHOR, "color: red;"));
+		assertEquals(2, cache.puts);
+	}
+}
@@ -0,0 +1,148 @@
+package com.openhtmltopdf.css.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.constants.IdentValue;
+
+/**
+ * Compares the tokens of {@link CSSTokenizer} with those of the JFlex generated {@link Lexer} it replaced.
+ */
+public class CSSTokenizerTest {
+	private static final String[] FRAGMENTS = {
+		" ", "\t", "\n", "\r", "\r\n", "\f", "\u000B", "\u2028", "a", "Z", "_", "-", "--", "0", "12", ".", "5", "e", "E",
+		"m", "x", "p", "t", "c", "i", "n", "d", "g", "r", "s", "h", "z", "k", "%", "px", "em", "khz", "deg", "grad",
+		"\\", "\\6d", "\\4D ", "\\0070", "\\00006d", "\\m", "\\P", "\\41", "\\1234567", "\\\n", "\\\r\n", "\\\"",
+		"\\)", "\\ ", "\"", "'", "(", ")", "url(", "URL(", "url", "/*", "*/", "/", "*", "!", "important", "IMPORTANT",
+		"@", "@import", "@page", "@media", "@charset ", "@charset", "@namespace", "@font-face", "#", "<!--", "-->",
+		"~=", "|=", "^=", "$=", "*=", "|", "~", "^", "$", "{", "}", ";", ":", ",", "+", ">", "[", "]", "=",
+		"\u00e9", "\u4e2d", "\u007f", "\u0000", "?", "&", "color", "red", "rgb(", "0.5em" };
+
+	private static List<String> lex(String css) throws IOException {
+		Lexer lexer = new Lexer(new StringReader(css));
+		List<String> tokens = new ArrayList<String>();
+		while (true) {
+			Token t = lexer.yylex();
+			tokens.add(t + " [" + lexer.yytext() + "] " + lexer.yyline());
+			if (t == Token.TK_EOF) {
+				return tokens;
+			}
+		}
+	}
+
+	private static List<String> tokenize(CSSTokenizer tokenizer, Reader css) throws IOException {
+		tokenizer.reset(css);
+		List<String> tokens = new ArrayList<String>();
+		while (true) {
+			Token t = tokenizer.next();
+			tokens.add(t + " [" + tokenizer.getText() + "] " + tokenizer.getLine());
+			if (t == Token.TK_EOF) {
+				return tokens;
+			}
+		}
+	}
+
+	private static void assertSameTokens(CSSTokenizer tokenizer, String css) throws IOException {
+		assertEquals("[" + css + "]", lex(css), tokenize(tokenizer, new StringReader(css)));
+	}
+
+	@Test
+	public void testSameTokensAsLexerForRandomText() throws IOException {
+		CSSTokenizer tokenizer = new CSSTokenizer();
+		Random random = new Random(49);
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < 100000; i++) {
+			sb.setLength(0);
+			int fragments = 1 + random.nextInt(10);
+			for (int j = 0; j < fragments; j++) {
+				sb.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+			}
+			assertSameTokens(tokenizer, sb.toString());
+		}
+	}
+
+	@Test
+	public void testSameTokensAsLexerForEdgeCases() throws IOException {
+		CSSTokenizer tokenizer = new CSSTokenizer();
+		String[] cases = {
+			"", "12px", "12pxa", "1e\\6d", "1e\\000006d", "1\\6d\\73 ", "1\\6D \\53 x", "3khz", "3KHz", "1.5.3", ".5%",
+			"url()", "url( a.png )", "url(a\\)b)", "url(a\\) b)", "url(\"a b\" )", "url('a)", "url(\\41 \\42\r\n)",
+			"url(a b)", "url(\\\"a)", "@charset \"utf-8\";", "@charsetx", "@IMPORT url(x);", "@import-x", "@\\69mport",
+			"! /* c */ important", "!/* open", "!importantx", "\"abc\\\ndef\"", "\"abc\\41\r\ndef\"", "'unclosed",
+			"\"\\", "/* a */ b /* c", "<!-- a -->", "a{b:c}", "a , b + c > d", "#\\31 23", "-\\2d x", "\\\n",
+			"a\r\nb\rc\nd\fe\u2028f", "\r", "x\r", "\r\n\r\n" };
+
+		for (String css : cases) {
+			assertSameTokens(tokenizer, css);
+		}
+	}
+
+	@Test
+	public void testSameTokensAsLexerForDefaultStylesheet() throws IOException {
+		final String css = read(new InputStreamReader(
+				CSSTokenizerTest.class.getResourceAsStream("/resources/css/XhtmlNamespaceHandler.css"), "UTF-8"));
+		CSSTokenizer tokenizer = new CSSTokenizer();
+
+		assertEquals(lex(css), tokenize(tokenizer, new StringReader(css)));
+
+		// A reader which returns a few characters at a time, for text larger than the buffer.
+		Reader slowReader = new Reader() {
+			private final StringReader reader = new StringReader(css + css);
+
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				return reader.read(cbuf, off, Math.min(len, 7));
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		assertEquals(lex(css + css), tokenize(tokenizer, slowReader));
+	}
+
+	@Test
+	public void testIdentsShared() throws IOException {
+		CSSTokenizer tokenizer = new CSSTokenizer();
+		tokenizer.reset("Color: SOLID; x-unknown: \\72 ed");
+
+		assertSame(Token.TK_IDENT, tokenizer.next());
+		assertSame(CSSName.COLOR.toString(), tokenizer.intern(tokenizer.getStart(), tokenizer.getEnd()));
+		tokenizer.next();
+		tokenizer.next();
+		assertSame(Token.TK_IDENT, tokenizer.next());
+		assertSame(IdentValue.SOLID.toString(), tokenizer.intern(tokenizer.getStart(), tokenizer.getEnd()));
+		tokenizer.next();
+		tokenizer.next();
+		assertSame(Token.TK_IDENT, tokenizer.next());
+		assertNull(tokenizer.intern(tokenizer.getStart(), tokenizer.getEnd()));
+		tokenizer.next();
+		tokenizer.next();
+		assertSame(Token.TK_IDENT, tokenizer.next());
+		assertNull(tokenizer.intern(tokenizer.getStart(), tokenizer.getEnd()));
+	}
+
+	private static String read(Reader reader) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		char[] buf = new char[4096];
+		int n;
+		while ((n = reader.read(buf)) != -1) {
+			sb.append(buf, 0, n);
+		}
+		reader.close();
+		return sb.toString();
+	}
+}
@@ -0,0 +1,224 @@
+package com.openhtmltopdf.extend.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class FSCachingHttpStreamFactoryTest {
+	private static final String LAST_MODIFIED = "Tue, 15 Nov 1994 12:45:26 GMT";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger notModified = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	@Before
+	public void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				try {
+					respond(exchange, exchange.getRequestURI().getPath());
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void stopServer() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void respond(HttpExchange exchange, String path) throws IOException {
+		if (path.equals("/max-age")) {
+			exchange.getResponseHeaders().add("Cache-Control", "max-age=60");
+		} else if (path.equals("/no-store")) {
+			exchange.getResponseHeaders().add("Cache-Control", "no-store, max-age=60");
+		} else if (path.equals("/etag")) {
+			if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				notModified(exchange);
+				return;
+			}
+			exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+			exchange.getResponseHeaders().add("ETag", "\"v1\"");
+		} else if (path.equals("/last-modified")) {
+			if (LAST_MODIFIED.equals(exchange.getRequestHeaders().getFirst("If-Modified-Since"))) {
+				notModified(exchange);
+				return;
+			}
+			exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+		} else if (path.equals("/slow")) {
+			sleep(2000);
+		} else if (path.equals("/concurrent")) {
+			int now = inFlight.incrementAndGet();
+			synchronized (maxInFlight) {
+				maxInFlight.set(Math.max(maxInFlight.get(), now));
+			}
+			sleep(100);
+			inFlight.decrementAndGet();
+		} else if (path.equals("/missing")) {
+			byte[] body = "Not found".getBytes("UTF-8");
+			exchange.sendResponseHeaders(404, body.length);
+			exchange.getResponseBody().write(body);
+			return;
+		}
+
+		byte[] body = ("Body of " + path + " " + requests.get()).getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(body);
+		os.close();
+	}
+
+	private void notModified(HttpExchange exchange) throws IOException {
+		notModified.incrementAndGet();
+		exchange.sendResponseHeaders(304, -1);
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static String read(FSStreamFactory factory, String url) throws IOException {
+		InputStream in = factory.getUrl(url).getStream();
+		if (in == null) {
+			return null;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[1024];
+		int i;
+		while ((i = in.read(buf)) != -1) {
+			out.write(buf, 0, i);
+		}
+		return new String(out.toByteArray(), "UTF-8");
+	}
+
+	@Test
+	public void testFreshResponseFromCache() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot());
+		assertEquals("Body of /max-age 1", read(factory, url("/max-age")));
+		assertEquals("Body of /max-age 1", read(factory, url("/max-age")));
+
+		// The cache is on disk, so it is shared with a new factory.
+		assertEquals("Body of /max-age 1", read(new FSCachingHttpStreamFactory(folder.getRoot()), url("/max-age")));
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testRevalidatedWithETag() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot());
+		assertEquals("Body of /etag 1", read(factory, url("/etag")));
+		assertEquals("Body of /etag 1", read(factory, url("/etag")));
+		assertEquals("Body of /etag 1", read(factory, url("/etag")));
+		assertEquals(3, requests.get());
+		assertEquals(2, notModified.get());
+	}
+
+	@Test
+	public void testRevalidatedWithLastModified() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot());
+		assertEquals("Body of /last-modified 1", read(factory, url("/last-modified")));
+		assertEquals("Body of /last-modified 1", read(factory, url("/last-modified")));
+		assertEquals(2, requests.get());
+		assertEquals(1, notModified.get());
+	}
+
+	@Test
+	public void testNoStoreNotCached() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot());
+		assertEquals("Body of /no-store 1", read(factory, url("/no-store")));
+		assertEquals("Body of /no-store 2", read(factory, url("/no-store")));
+		assertEquals(0, folder.getRoot().list().length);
+	}
+
+	@Test
+	public void testWithoutCacheDirectory() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(null);
+		assertEquals("Body of /max-age 1", read(factory, url("/max-age")));
+		assertEquals("Body of /max-age 2", read(factory, url("/max-age")));
+	}
+
+	@Test
+	public void testNotFound() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot());
+		assertNull(read(factory, url("/missing")));
+		assertNull(factory.getUrl(url("/missing")).getReader());
+	}
+
+	@Test
+	public void testReadTimeout() throws IOException {
+		FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(folder.getRoot(), 1000, 200, 2);
+		long start = System.currentTimeMillis();
+		assertNull(read(factory, url("/slow")));
+		assertTrue(System.currentTimeMillis() - start < 1500);
+	}
+
+	@Test
+	public void testConcurrentRequestsLimited() throws Exception {
+		final FSCachingHttpStreamFactory factory = new FSCachingHttpStreamFactory(null, 1000, 5000, 2);
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(clients.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return read(factory, url("/concurrent"));
+					}
+				}));
+			}
+			for (Future<String> result : results) {
+				assertTrue(result.get().startsWith("Body of /concurrent"));
+			}
+		} finally {
+			clients.shutdownNow();
+		}
+		assertEquals(8, requests.get());
+		assertTrue(maxInFlight.get() <= 2);
+	}
+}
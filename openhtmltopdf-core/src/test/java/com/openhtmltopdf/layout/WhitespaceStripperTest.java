@@ -0,0 +1,103 @@
+package com.openhtmltopdf.layout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.css.constants.IdentValue;
+
+public class WhitespaceStripperTest {
+	private static final char[] ALPHABET = { ' ', '\t', '\n', '\r', 'a' };
+	private static final int MAX_LENGTH = 7;
+	private static final IdentValue[] MODES = {
+			IdentValue.NORMAL, IdentValue.NOWRAP, IdentValue.PRE, IdentValue.PRE_WRAP, IdentValue.PRE_LINE };
+
+	/**
+	 * The regular expression implementation the scanner replaced.
+	 */
+	private static String collapseWithRegex(IdentValue whitespace, String text, boolean collapseLeading, int tabSize) {
+		if (whitespace == IdentValue.NORMAL || whitespace == IdentValue.NOWRAP) {
+			text = WhitespaceStripper.linefeed_to_space.matcher(text).replaceAll(WhitespaceStripper.SPACE);
+			text = WhitespaceStripper.tab_to_space.matcher(text).replaceAll(WhitespaceStripper.SPACE);
+			text = WhitespaceStripper.space_collapse.matcher(text).replaceAll(WhitespaceStripper.SPACE);
+			if (collapseLeading && text.startsWith(WhitespaceStripper.SPACE)) {
+				text = text.substring(1);
+			}
+			return text;
+		} else if (whitespace == IdentValue.PRE) {
+			text = WhitespaceStripper.space_before_linefeed_collapse.matcher(text).replaceAll(WhitespaceStripper.EOL);
+		}
+
+		if (whitespace == IdentValue.PRE || whitespace == IdentValue.PRE_WRAP) {
+			char[] tabs = new char[tabSize];
+			Arrays.fill(tabs, ' ');
+			text = WhitespaceStripper.tab_to_space.matcher(text).replaceAll(new String(tabs));
+		} else if (whitespace == IdentValue.PRE_LINE) {
+			text = WhitespaceStripper.tab_to_space.matcher(text).replaceAll(WhitespaceStripper.SPACE);
+			text = WhitespaceStripper.space_collapse.matcher(text).replaceAll(WhitespaceStripper.SPACE);
+		}
+
+		return text;
+	}
+
+	private static void assertEquivalent(String text) {
+		for (IdentValue mode : MODES) {
+			for (int tabSize = 0; tabSize <= 4; tabSize += 2) {
+				for (int leading = 0; leading < 2; leading++) {
+					String expected = collapseWithRegex(mode, text, leading == 1, tabSize);
+					String actual = WhitespaceStripper.collapseWhitespace(mode, text, leading == 1, tabSize);
+					String message = mode + " " + tabSize + " " + (leading == 1) + " [" + text + "]";
+
+					assertEquals(message, expected, actual);
+					if (expected.equals(text)) {
+						assertSame(message, text, actual);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testEquivalentToRegexForAllShortStrings() {
+		char[] chs = new char[MAX_LENGTH];
+		int[] digits = new int[MAX_LENGTH];
+
+		for (int length = 0; length <= MAX_LENGTH; length++) {
+			Arrays.fill(digits, 0);
+			while (true) {
+				for (int i = 0; i < length; i++) {
+					chs[i] = ALPHABET[digits[i]];
+				}
+				assertEquivalent(new String(chs, 0, length));
+
+				int i = 0;
+				while (i < length && ++digits[i] == ALPHABET.length) {
+					digits[i++] = 0;
+				}
+				if (i == length) {
+					break;
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testOtherWhitespaceInPre() {
+		assertEquivalent("a\u000B\nb\f\n \n");
+	}
+
+	@Test
+	public void testUnchangedTextNotCopied() {
+		String text = "Some text with single spaces.";
+		assertSame(text, WhitespaceStripper.collapseWhitespace(IdentValue.NORMAL, text, false, 8));
+		assertSame(text, WhitespaceStripper.collapseWhitespace(IdentValue.NOWRAP, text, true, 8));
+		assertSame(text, WhitespaceStripper.collapseWhitespace(IdentValue.PRE_LINE, text, false, 8));
+
+		String pre = "  Indented\n    code\n";
+		assertSame(pre, WhitespaceStripper.collapseWhitespace(IdentValue.PRE, pre, false, 8));
+		assertSame(pre, WhitespaceStripper.collapseWhitespace(IdentValue.PRE_WRAP, pre, false, 8));
+	}
+}
@@ -0,0 +1,65 @@
+package com.openhtmltopdf.simple.extend;
+
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import com.openhtmltopdf.css.constants.CSSName;
+import com.openhtmltopdf.css.sheet.PropertyDeclaration;
+
+public class ElementStylingTest {
+	private static Element createElement(String name) throws Exception {
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		return doc.createElement(name);
+	}
+
+	@Test
+	public void testCellSpanDeclarations() throws Exception {
+		Element td = createElement("td");
+		td.setAttribute("colspan", " 3 ");
+		td.setAttribute("rowspan", "2");
+		td.setAttribute("style", "color: red;");
+
+		XhtmlNamespaceHandler nsh = new XhtmlNamespaceHandler();
+		List<PropertyDeclaration> decls = nsh.getElementStylingDeclarations(td);
+
+		Assert.assertThat(decls.size(), equalTo(2));
+		Assert.assertThat(decls.get(0).getCSSName(), equalTo(CSSName.FS_COLSPAN));
+		Assert.assertThat(decls.get(0).getValue().getFloatValue((short) 0), equalTo(3f));
+		Assert.assertThat(decls.get(1).getCSSName(), equalTo(CSSName.FS_ROWSPAN));
+		Assert.assertThat(decls.get(1).getValue().getFloatValue((short) 0), equalTo(2f));
+
+		// The spans no longer go through the style text.
+		Assert.assertThat(nsh.getElementStyling(td), equalTo("color: red;"));
+	}
+
+	@Test
+	public void testInvalidCellSpansAreIgnored() throws Exception {
+		Element th = createElement("th");
+		th.setAttribute("colspan", "0");
+		th.setAttribute("rowspan", "two");
+
+		List<PropertyDeclaration> decls = new XhtmlNamespaceHandler().getElementStylingDeclarations(th);
+
+		Assert.assertThat(decls.size(), equalTo(0));
+	}
+
+	@Test
+	public void testColumnSpanDeclaration() throws Exception {
+		Element col = createElement("col");
+		col.setAttribute("span", "4");
+
+		List<PropertyDeclaration> decls = new XhtmlNamespaceHandler().getElementStylingDeclarations(col);
+
+		Assert.assertThat(decls.size(), equalTo(1));
+		Assert.assertThat(decls.get(0).getCSSName(), equalTo(CSSName.FS_COLSPAN));
+		Assert.assertThat(new XhtmlNamespaceHandler().getElementStylingDeclarations(createElement("p")), nullValue());
+	}
+}
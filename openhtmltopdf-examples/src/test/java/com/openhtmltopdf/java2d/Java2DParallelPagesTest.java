@@ -0,0 +1,189 @@
+package com.openhtmltopdf.java2d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.java2d.api.DefaultPageProcessor;
+import com.openhtmltopdf.java2d.api.FSPageOutputStreamSupplier;
+import com.openhtmltopdf.java2d.api.Java2DRendererBuilder;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+
+public class Java2DParallelPagesTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 200px 200px; margin: 10px; } ");
+		sb.append("p { border: 1px solid red; background-color: #eee; }</style></head><body>");
+		for (int i = 0; i < 60; i++) {
+			sb.append("<p>Paragraph number ").append(i).append(" with some text to paint.</p>");
+		}
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static final String MANY_PAGES_HTML;
+
+	static {
+		// More distinct strings than the text renderer caches, repeated on many pages.
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 200px 400px; margin: 10px; } p { margin: 0; }</style></head><body>");
+		for (int i = 0; i < 1200; i++) {
+			sb.append("<p>Line ").append(i % 1100).append(" repeated</p>");
+		}
+		sb.append("</body></html>");
+		MANY_PAGES_HTML = sb.toString();
+	}
+
+	private static final String SVG_HEADER_HTML;
+
+	static {
+		// The SVG is in a running header, so every page paints the same element.
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 200px 200px; margin: 40px 10px 10px 10px; ");
+		sb.append("@top-center { content: element(header); } } #header { position: running(header); }</style></head><body>");
+		sb.append("<div id=\"header\"><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"20\">");
+		for (int i = 0; i < 20; i++) {
+			sb.append("<rect x=\"").append(i * 5).append("\" y=\"").append(i % 10).append("\" width=\"4\" height=\"10\" fill=\"#");
+			sb.append(i % 2 == 0 ? "c00" : "00c").append("\"/>");
+		}
+		sb.append("</svg></div>");
+		for (int i = 0; i < 60; i++) {
+			sb.append("<p>Paragraph number ").append(i).append("</p>");
+		}
+		sb.append("</body></html>");
+		SVG_HEADER_HTML = sb.toString();
+	}
+
+	private static Map<Integer, byte[]> render(int threads) throws Exception {
+		return render(HTML, threads);
+	}
+
+	private static Map<Integer, byte[]> render(String html, int threads) throws Exception {
+		final Map<Integer, ByteArrayOutputStream> pages = new TreeMap<Integer, ByteArrayOutputStream>();
+
+		Java2DRendererBuilder builder = new Java2DRendererBuilder();
+		builder.withHtmlContent(html, null);
+		builder.useSVGDrawer(new BatikSVGDrawer());
+		builder.useParallelPagePainting(threads);
+		builder.toPageProcessor(new DefaultPageProcessor(new FSPageOutputStreamSupplier() {
+			@Override
+			public OutputStream supply(int zeroBasedPageNumber) throws IOException {
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				synchronized (pages) {
+					pages.put(zeroBasedPageNumber, os);
+				}
+				return os;
+			}
+		}, BufferedImage.TYPE_INT_RGB, "png"));
+		builder.runPaged();
+
+		Map<Integer, byte[]> result = new TreeMap<Integer, byte[]>();
+		for (Map.Entry<Integer, ByteArrayOutputStream> entry : pages.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().toByteArray());
+		}
+		return result;
+	}
+
+	private static int[] pixels(byte[] png) throws IOException {
+		BufferedImage img = ImageIO.read(new java.io.ByteArrayInputStream(png));
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+
+	@Test
+	public void testParallelPagesMatchSerialPages() throws Exception {
+		Map<Integer, byte[]> serial = render(1);
+		Map<Integer, byte[]> parallel = render(4);
+
+		assertTrue(serial.size() > 1);
+		assertEquals(serial.keySet(), parallel.keySet());
+		for (Integer pageNo : serial.keySet()) {
+			assertArrayEquals("Page " + pageNo, pixels(serial.get(pageNo)), pixels(parallel.get(pageNo)));
+		}
+	}
+
+	@Test
+	public void testManyParallelPagesShareTextRenderer() throws Exception {
+		Map<Integer, byte[]> serial = render(MANY_PAGES_HTML, 1);
+		Map<Integer, byte[]> parallel = render(MANY_PAGES_HTML, 8);
+
+		assertTrue(serial.size() > 20);
+		assertEquals(serial.keySet(), parallel.keySet());
+		for (Integer pageNo : serial.keySet()) {
+			assertArrayEquals("Page " + pageNo, pixels(serial.get(pageNo)), pixels(parallel.get(pageNo)));
+		}
+	}
+
+	@Test
+	public void testParallelPagesWithSVGInRunningHeader() throws Exception {
+		Map<Integer, byte[]> serial = render(SVG_HEADER_HTML, 1);
+		Map<Integer, byte[]> parallel = render(SVG_HEADER_HTML, 8);
+
+		assertTrue(serial.size() > 5);
+		assertEquals(serial.keySet(), parallel.keySet());
+		for (Integer pageNo : serial.keySet()) {
+			assertArrayEquals("Page " + pageNo, pixels(serial.get(pageNo)), pixels(parallel.get(pageNo)));
+		}
+	}
+
+	@Test
+	public void testTextRendererUsedFromManyThreads() throws Exception {
+		final Java2DTextRenderer renderer = new Java2DTextRenderer();
+		final Font awtFont = new Font(Font.SERIF, Font.PLAIN, 12);
+		final Java2DFont font = new Java2DFont(Collections.singletonList(awtFont), 12);
+		final FontRenderContext frc = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics().getFontRenderContext();
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Object>> results = new ArrayList<Future<Object>>();
+			for (int t = 0; t < 8; t++) {
+				final int seed = t;
+				results.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() {
+						Graphics2D g = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB).createGraphics();
+						Java2DOutputDevice outputDevice = new Java2DOutputDevice(g);
+						outputDevice.setFont(font);
+
+						for (int i = 0; i < 5000; i++) {
+							String text = "Text " + ((i * 7 + seed * 13) % 3000);
+							renderer.drawString(outputDevice, text, 0, 50);
+
+							float[] expected = awtFont.createGlyphVector(frc, text).getGlyphPositions(0, text.length() + 1, null);
+							assertArrayEquals(text, expected, renderer.getGlyphPositions(outputDevice, font, text), 0f);
+						}
+						g.dispose();
+						return null;
+					}
+				}));
+			}
+			for (Future<Object> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
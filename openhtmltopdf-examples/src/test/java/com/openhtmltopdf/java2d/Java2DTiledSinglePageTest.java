@@ -0,0 +1,52 @@
+package com.openhtmltopdf.java2d;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.java2d.api.BufferedImagePageProcessor;
+import com.openhtmltopdf.java2d.api.Java2DRendererBuilder;
+import com.openhtmltopdf.java2d.api.PngTileProcessor;
+
+public class Java2DTiledSinglePageTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>body { width: 150px; } ");
+		sb.append("div { border: 2px solid blue; background-color: #ddd; margin: 3px; }</style></head><body>");
+		for (int i = 0; i < 40; i++) {
+			sb.append("<div>Row ").append(i).append(" of a long receipt.</div>");
+		}
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static int[] pixels(BufferedImage img) {
+		return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+	}
+
+	@Test
+	public void testTiledSinglePageMatchesSinglePage() throws Exception {
+		Java2DRendererBuilder builder = new Java2DRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		BufferedImagePageProcessor processor = new BufferedImagePageProcessor(BufferedImage.TYPE_INT_RGB, 1.0);
+		builder.toSinglePage(processor).runPaged();
+		BufferedImage expected = processor.getPageImages().get(0);
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		builder.toSinglePageTiles(new PngTileProcessor(os, false, 1.0), 37).runPaged();
+		BufferedImage actual = ImageIO.read(new ByteArrayInputStream(os.toByteArray()));
+
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		assertArrayEquals(pixels(expected), pixels(actual));
+	}
+}
@@ -0,0 +1,94 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.junit.Test;
+
+import com.openhtmltopdf.objects.StandardObjectDrawerFactory;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class ChartCacheTest {
+	private static final String BAR_CHART =
+			"<object type=\"jfreechart/bar\" style=\"width:200px;height:150px;\" title=\"Fruit\">" +
+			"<data series=\"Value\" category=\"Apple\" value=\"23.2\" url=\"https://example.com/apple\"/>" +
+			"<data series=\"Value\" category=\"Pear\" value=\"43.2\"/></object>";
+
+	// The same chart with another id and attribute order.
+	private static final String BAR_CHART_WITH_ID =
+			"<object id=\"second\" title=\"Fruit\" type=\"jfreechart/bar\" style=\"width:200px;height:150px;\">" +
+			"<data category=\"Apple\" series=\"Value\" value=\"23.2\" url=\"https://example.com/apple\"/>" +
+			"<data series=\"Value\" category=\"Pear\" value=\"43.2\"/></object>";
+
+	private static final String OTHER_BAR_CHART =
+			"<object type=\"jfreechart/bar\" style=\"width:200px;height:150px;\" title=\"Fruit\">" +
+			"<data series=\"Value\" category=\"Apple\" value=\"24.2\" url=\"https://example.com/apple\"/>" +
+			"<data series=\"Value\" category=\"Pear\" value=\"43.2\"/></object>";
+
+	private static PDDocument render(String body) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useObjectDrawerFactory(new StandardObjectDrawerFactory());
+		builder.withHtmlContent("<html><head><style>@page { size: 300px 400px; margin: 10px; }</style></head><body>" +
+				body + "</body></html>", null);
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static Set<COSBase> forms(PDDocument doc) throws Exception {
+		Set<COSBase> forms = new HashSet<COSBase>();
+		for (PDPage page : doc.getPages()) {
+			PDResources resources = page.getResources();
+			for (COSName name : resources.getXObjectNames()) {
+				forms.add(resources.getXObject(name).getCOSObject());
+			}
+		}
+		return forms;
+	}
+
+	private static int links(PDDocument doc) throws Exception {
+		int links = 0;
+		for (PDPage page : doc.getPages()) {
+			for (Object annotation : page.getAnnotations()) {
+				if (annotation instanceof PDAnnotationLink)
+					links++;
+			}
+		}
+		return links;
+	}
+
+	@Test
+	public void testRepeatedChartDrawnOnce() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			// The second document builds no chart, but draws its own form.
+			PDDocument doc = render(BAR_CHART + BAR_CHART_WITH_ID + "<p style=\"page-break-before: always;\">Next</p>" + BAR_CHART);
+			try {
+				assertEquals(2, doc.getNumberOfPages());
+				assertEquals(1, forms(doc).size());
+				assertEquals(3, links(doc));
+			} finally {
+				doc.close();
+			}
+		}
+	}
+
+	@Test
+	public void testDifferentDataNotShared() throws Exception {
+		PDDocument doc = render(BAR_CHART + OTHER_BAR_CHART);
+		try {
+			assertEquals(2, forms(doc).size());
+		} finally {
+			doc.close();
+		}
+	}
+}
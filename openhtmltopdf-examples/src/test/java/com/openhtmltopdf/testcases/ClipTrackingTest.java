@@ -0,0 +1,114 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class ClipTrackingTest {
+	private static final String HTML =
+			"<html><head><style>@page { size: 400px 300px; margin: 10px; } " +
+			".clip { overflow: hidden; height: 60px; } " +
+			".bg { background-color: yellow; }</style></head><body>" +
+			"<div class=\"clip\"><div class=\"clip\"><div class=\"bg\">One</div><div class=\"bg\">Two</div></div></div>" +
+			"<div class=\"clip\" style=\"border-radius: 10px;\"><div class=\"bg\">Three</div></div>" +
+			"</body></html>";
+
+	// The overflow of the wide box is clipped to an area containing the page content area.
+	private static final String WIDE_CLIP_HTML = HTML.replace("</body>",
+			"<div style=\"overflow: hidden; width: 1000px;\"><div class=\"bg\">Four</div></div></body>");
+
+	private static int countOperators(List<Object> tokens, String name) {
+		int count = 0;
+		for (Object token : tokens) {
+			if (token instanceof Operator && ((Operator) token).getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static PDDocument render(String html, boolean fast) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(html, null);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	@Test
+	public void testRectangleClips() throws Exception {
+		PDDocument doc = render(HTML, false);
+		try {
+			PDFStreamParser parser = new PDFStreamParser(doc.getPage(0));
+			parser.parse();
+			List<Object> tokens = parser.getTokens();
+			// Rectangle clips are output with a single re operator, only the rounded
+			// clip needs a path.
+			assertTrue(countOperators(tokens, "re") > 0);
+			assertTrue(countOperators(tokens, "m") <= 3);
+
+			// Clips that contain the current clip are not output again.
+			assertTrue("Clips: " + countOperators(tokens, "W"), countOperators(tokens, "W") <= 23);
+			assertEquals(countOperators(tokens, "q"), countOperators(tokens, "Q"));
+
+			String text = new PDFTextStripper().getText(doc);
+			assertTrue(text.contains("One"));
+			assertTrue(text.contains("Two"));
+			assertTrue(text.contains("Three"));
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testRectangleClipsFastRenderer() throws Exception {
+		PDDocument doc = render(WIDE_CLIP_HTML, true);
+		try {
+			PDFStreamParser parser = new PDFStreamParser(doc.getPage(0));
+			parser.parse();
+			List<Object> tokens = parser.getTokens();
+
+			// The clips pushed by the fast renderer are all rectangles, so each is output
+			// with a single re operator.
+			Operator previous = null;
+			for (Object token : tokens) {
+				if (token instanceof Operator) {
+					Operator op = (Operator) token;
+					if (op.getName().equals("W")) {
+						assertEquals("re", previous.getName());
+					}
+					previous = op;
+				}
+			}
+			assertTrue(countOperators(tokens, "re") > 0);
+
+			// The clips of the wide box contain the page clip, so are not output.
+			assertTrue("Clips: " + countOperators(tokens, "W"), countOperators(tokens, "W") <= 7);
+			assertEquals(countOperators(tokens, "q"), countOperators(tokens, "Q"));
+
+			String text = new PDFTextStripper().getText(doc);
+			assertTrue(text.contains("One"));
+			assertTrue(text.contains("Two"));
+			assertTrue(text.contains("Three"));
+			assertTrue(text.contains("Four"));
+		} finally {
+			doc.close();
+		}
+	}
+}
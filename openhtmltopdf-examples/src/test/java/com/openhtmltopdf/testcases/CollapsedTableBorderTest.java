@@ -0,0 +1,91 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class CollapsedTableBorderTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 800px 600px; margin: 10px; } ");
+		sb.append("table { border-collapse: collapse; } td { border: 1px solid black; font-size: 8px; } ");
+		sb.append("tr.total td { border-top: 2px solid red; }</style></head><body><table>");
+		for (int row = 0; row < 20; row++) {
+			sb.append(row == 19 ? "<tr class=\"total\">" : "<tr>");
+			for (int col = 0; col < 40; col++) {
+				sb.append("<td>").append(row * 40 + col).append("</td>");
+			}
+			sb.append("</tr>");
+		}
+		sb.append("</table></body></html>");
+		HTML = sb.toString();
+	}
+
+	private static PDDocument render(boolean fast) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static int countOperators(List<Object> tokens, String name) {
+		int count = 0;
+		for (Object token : tokens) {
+			if (token instanceof Operator && ((Operator) token).getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void assertMergedBorders(boolean fast) throws Exception {
+		PDDocument doc = render(fast);
+		try {
+			assertEquals(1, doc.getNumberOfPages());
+
+			PDFStreamParser parser = new PDFStreamParser(doc.getPage(0));
+			parser.parse();
+			List<Object> tokens = parser.getTokens();
+			// One fill for the black horizontal lines, one for the black vertical
+			// lines and one for the wider red line, instead of one per cell side.
+			assertEquals(3, countOperators(tokens, "f"));
+
+			// Each of the 21 horizontal and 41 vertical lines is a single rectangle.
+			assertTrue(countOperators(tokens, "m") <= 21 + 41 + 1);
+
+			String text = new PDFTextStripper().getText(doc);
+			assertTrue(text.contains("799"));
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testMergedBorders() throws Exception {
+		assertMergedBorders(false);
+	}
+
+	@Test
+	public void testMergedBordersFastRenderer() throws Exception {
+		assertMergedBorders(true);
+	}
+}
@@ -0,0 +1,208 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.openhtmltopdf.bidi.support.ICUBidiReorderer;
+import com.openhtmltopdf.bidi.support.ICUBidiSplitter;
+import com.openhtmltopdf.latexsupport.LaTeXDOMMutator;
+import com.openhtmltopdf.mathmlsupport.MathMLDrawer;
+import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+import com.openhtmltopdf.visualtest.VisualTester;
+
+/**
+ * Renders every visual test and sample test case with both the fast and the slow renderer
+ * and compares the rendered pages. Small anti-aliasing differences are allowed, so we only count
+ * pixels that differ strongly and allow a tiny proportion of those per page.
+ * 
+ * On failure, the diff images are output to target/test/fast-renderer-conformance.
+ */
+public class FastRendererConformanceTest {
+	private static final int PIXEL_TOLERANCE = 96;
+	private static final int PAGE_PIXELS_PER_DIFFERENT_PIXEL = 10000;
+
+	/**
+	 * Cases where the renderers are known to differ, along with the reason.
+	 */
+	private static final Map<String, String> KNOWN_DIFFERENCES = new HashMap<String, String>();
+
+	static {
+		String shadowPages = "Cut off content is only output on extra pages by the fast renderer.";
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-absolute", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-float", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-hidden", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-inline-block", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-static", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-table", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-table-paged", shadowPages);
+		KNOWN_DIFFERENCES.put("horiz-page-overflow-transform", shadowPages);
+		KNOWN_DIFFERENCES.put("hidden-transform", "The slow renderer lets transformed content escape overflow:hidden.");
+	}
+
+	private static File outputDirectory;
+
+	@BeforeClass
+	public static void configureOutput() {
+		outputDirectory = new File("target/test/fast-renderer-conformance");
+		outputDirectory.mkdirs();
+	}
+
+	private interface Configurer {
+		void configure(PdfRendererBuilder builder);
+	}
+
+	private static final Configurer VISUAL_TEST_CONFIG = new Configurer() {
+		@Override
+		public void configure(PdfRendererBuilder builder) {
+			builder.useSVGDrawer(new BatikSVGDrawer());
+		}
+	};
+
+	private static final Configurer TESTCASE_RUNNER_CONFIG = new Configurer() {
+		@Override
+		public void configure(PdfRendererBuilder builder) {
+			builder.useUnicodeBidiSplitter(new ICUBidiSplitter.ICUBidiSplitterFactory());
+			builder.useUnicodeBidiReorderer(new ICUBidiReorderer());
+			builder.defaultTextDirection(BaseRendererBuilder.TextDirection.LTR);
+			builder.useSVGDrawer(new BatikSVGDrawer());
+			builder.useMathMLDrawer(new MathMLDrawer());
+			builder.addDOMMutator(LaTeXDOMMutator.INSTANCE);
+			builder.useObjectDrawerFactory(TestcaseRunner.buildObjectDrawerFactory());
+		}
+	};
+
+	private static byte[] render(File file, String resourcePath, Configurer config, boolean fast) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		config.configure(builder);
+		builder.withHtmlContent(FileUtils.readFileToString(file, "UTF-8"), FastRendererConformanceTest.class.getResource(resourcePath).toString());
+		builder.testMode(true);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	private static int maxChannelDifference(int rgb1, int rgb2) {
+		int max = 0;
+		for (int shift = 0; shift < 24; shift += 8) {
+			max = Math.max(max, Math.abs(((rgb1 >> shift) & 0xff) - ((rgb2 >> shift) & 0xff)));
+		}
+		return max;
+	}
+
+	private static int countDifferentPixels(BufferedImage img1, BufferedImage img2) {
+		int count = 0;
+		for (int y = 0; y < img1.getHeight(); y++) {
+			for (int x = 0; x < img1.getWidth(); x++) {
+				if (maxChannelDifference(img1.getRGB(x, y), img2.getRGB(x, y)) > PIXEL_TOLERANCE) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return null if the renderers match, otherwise a description of the problem.
+	 */
+	private static String compare(File file, String name, String resourcePath, Configurer config) throws Exception {
+		PDDocument slow = PDDocument.load(render(file, resourcePath, config, false));
+		PDDocument fast = PDDocument.load(render(file, resourcePath, config, true));
+
+		try {
+			if (slow.getNumberOfPages() != fast.getNumberOfPages()) {
+				return name + ": page count " + fast.getNumberOfPages() + " instead of " + slow.getNumberOfPages();
+			}
+
+			PDFRenderer slowRenderer = new PDFRenderer(slow);
+			PDFRenderer fastRenderer = new PDFRenderer(fast);
+
+			for (int i = 0; i < slow.getNumberOfPages(); i++) {
+				BufferedImage slowImage = slowRenderer.renderImageWithDPI(i, 96f, ImageType.RGB);
+				BufferedImage fastImage = fastRenderer.renderImageWithDPI(i, 96f, ImageType.RGB);
+
+				if (slowImage.getWidth() != fastImage.getWidth() ||
+					slowImage.getHeight() != fastImage.getHeight()) {
+					return name + ": page " + i + " has a different size";
+				}
+
+				int different = countDifferentPixels(slowImage, fastImage);
+				int allowed = (slowImage.getWidth() * slowImage.getHeight()) / PAGE_PIXELS_PER_DIFFERENT_PIXEL;
+
+				if (different > allowed) {
+					BufferedImage diff = new VisualTester(resourcePath, outputDirectory, outputDirectory, outputDirectory)
+							.compareImages(fastImage, slowImage);
+					ImageIO.write(diff, "png", new File(outputDirectory, name + "---" + i + "---diff.png"));
+					return name + ": page " + i + " has " + different + " different pixels";
+				}
+			}
+		} finally {
+			slow.close();
+			fast.close();
+		}
+
+		return null;
+	}
+
+	private static void assertConformance(String resourcePath, Configurer config) throws Exception {
+		File[] files = new File("src/main/resources" + resourcePath).listFiles();
+		Arrays.sort(files);
+
+		List<String> problems = new ArrayList<String>();
+		int compared = 0;
+
+		for (File file : files) {
+			if (!file.getName().endsWith(".html")) {
+				continue;
+			}
+
+			String name = file.getName().substring(0, file.getName().length() - ".html".length());
+			if (KNOWN_DIFFERENCES.containsKey(name)) {
+				continue;
+			}
+
+			String problem = compare(file, name, resourcePath, config);
+			if (problem != null) {
+				problems.add(problem);
+			}
+			compared++;
+		}
+
+		assertTrue("Nothing compared in " + resourcePath, compared > 0);
+		assertTrue("Fast renderer differs from slow renderer: " + problems, problems.isEmpty());
+	}
+
+	@Test
+	public void testVisualTestConformance() throws Exception {
+		assertConformance("/visualtest/html/", VISUAL_TEST_CONFIG);
+	}
+
+	@Test
+	public void testTestcaseRunnerConformance() throws Exception {
+		assertConformance("/testcases/", TESTCASE_RUNNER_CONFIG);
+	}
+}
@@ -0,0 +1,161 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.util.DownscaleQuality;
+
+public class ImageDownsamplingTest {
+	// The photo is drawn at most 150px wide, 112.5pt, which is 235 pixels at 150 DPI.
+	private static final String HTML =
+			"<html><head><style>@page { size: 400px 400px; margin: 10px; }</style></head><body>" +
+			"<img src=\"test:photo.jpg\" style=\"width: 100px;\"/>" +
+			"<img src=\"test:photo.jpg\" style=\"width: 150px;\"/>" +
+			"<img src=\"test:icon.png\" style=\"width: 100px;\"/>" +
+			"</body></html>";
+
+	private static class ImageStreamFactory implements FSStreamFactory {
+		private final byte[] photo;
+		private final byte[] icon;
+
+		private ImageStreamFactory() throws Exception {
+			photo = createImage(1600, 1200, "jpg");
+			icon = createImage(100, 100, "png");
+		}
+
+		@Override
+		public FSStream getUrl(final String url) {
+			return new FSStream() {
+				@Override
+				public InputStream getStream() {
+					return new ByteArrayInputStream(url.endsWith(".jpg") ? photo : icon);
+				}
+
+				@Override
+				public Reader getReader() {
+					return null;
+				}
+			};
+		}
+	}
+
+	private static byte[] createImage(int width, int height, String format) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Random random = new Random(width);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, ((x * 255 / width) << 16) | ((y * 255 / height) << 8) | random.nextInt(64));
+			}
+		}
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		ImageIO.write(image, format, os);
+		return os.toByteArray();
+	}
+
+	private static byte[] render(ImageStreamFactory streams, float maxDpi, long[] saved) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(streams, "test");
+		if (maxDpi > 0) {
+			builder.useImageDownsampling(maxDpi, DownscaleQuality.HIGH_QUALITY, 0.8f);
+		}
+		builder.withHtmlContent(HTML, null);
+		builder.toStream(os);
+
+		PdfBoxRenderer renderer = builder.buildPdfRenderer();
+		try {
+			renderer.layout();
+			renderer.createPDF();
+			saved[0] = renderer.getOutputDevice().getImagesDownsampled();
+			saved[1] = renderer.getOutputDevice().getImageBytesSaved();
+		} finally {
+			renderer.close();
+		}
+		return os.toByteArray();
+	}
+
+	private static List<PDImageXObject> images(PDDocument doc) throws Exception {
+		List<PDImageXObject> images = new ArrayList<PDImageXObject>();
+		for (PDPage page : doc.getPages()) {
+			PDResources resources = page.getResources();
+			for (COSName name : resources.getXObjectNames()) {
+				PDXObject xobject = resources.getXObject(name);
+				if (xobject instanceof PDImageXObject) {
+					images.add((PDImageXObject) xobject);
+				}
+			}
+		}
+		return images;
+	}
+
+	private static int widthOf(List<PDImageXObject> images, int height) {
+		for (PDImageXObject image : images) {
+			if (image.getHeight() == height)
+				return image.getWidth();
+		}
+		return -1;
+	}
+
+	@Test
+	public void testDownsampledToLargestDrawnSize() throws Exception {
+		ImageStreamFactory streams = new ImageStreamFactory();
+		long[] saved = new long[2];
+
+		byte[] original = render(streams, 0, saved);
+		assertEquals(0, saved[0]);
+
+		byte[] downsampled = render(streams, 150, saved);
+		assertEquals(1, saved[0]);
+		assertTrue(saved[1] > 0);
+		assertTrue(downsampled.length < original.length);
+
+		PDDocument doc = PDDocument.load(downsampled);
+		try {
+			List<PDImageXObject> images = images(doc);
+			// Both draws of the photo share one image, and the icon is small enough as it is.
+			assertEquals(2, images.size());
+			assertEquals(235, widthOf(images, 176));
+			assertEquals(100, widthOf(images, 100));
+			for (PDImageXObject image : images) {
+				// The filled in image objects decode.
+				assertTrue(image.getInterpolate());
+				assertEquals(image.getWidth(), image.getImage().getWidth());
+			}
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testOriginalSizeWithoutOption() throws Exception {
+		PDDocument doc = PDDocument.load(render(new ImageStreamFactory(), 0, new long[2]));
+		try {
+			assertEquals(1600, widthOf(images(doc), 1200));
+		} finally {
+			doc.close();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.TextAttribute;
+import java.awt.image.BufferedImage;
+import java.text.AttributedString;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.java2d.Java2DFont;
+import com.openhtmltopdf.java2d.Java2DOutputDevice;
+import com.openhtmltopdf.java2d.Java2DTextRenderer;
+import com.openhtmltopdf.swing.AWTFSGlyphVector;
+
+public class Java2DTextCacheTest {
+	private static final List<Font> FONTS = Arrays.asList(
+			new Font(Font.SERIF, Font.PLAIN, 14), new Font(Font.MONOSPACED, Font.BOLD, 12));
+
+	private static final String[] TEXTS = { "Hello world", "Repeated text, repeated text.", "Hello world", "Caf\u00e9 \u00fcber" };
+
+	private static Graphics2D createGraphics(BufferedImage image) {
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g.setColor(Color.BLACK);
+		g.setFont(FONTS.get(0));
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+		return g;
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals("Pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testCachedDrawingMatchesAttributedString() {
+		BufferedImage expected = new BufferedImage(300, 120, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = createGraphics(expected);
+		for (int i = 0; i < TEXTS.length; i++) {
+			AttributedString attString = new AttributedString(TEXTS[i]);
+			attString.addAttribute(TextAttribute.FONT, FONTS.get(0));
+			g.drawString(attString.getIterator(), 10, 20 + i * 25);
+		}
+		g.dispose();
+
+		BufferedImage actual = new BufferedImage(300, 120, BufferedImage.TYPE_INT_RGB);
+		g = createGraphics(actual);
+		Java2DOutputDevice outputDevice = new Java2DOutputDevice(g);
+		outputDevice.setFont(new Java2DFont(FONTS, 14));
+		Java2DTextRenderer renderer = new Java2DTextRenderer();
+		for (int i = 0; i < TEXTS.length; i++) {
+			renderer.drawString(outputDevice, TEXTS[i], 10, 20 + i * 25);
+		}
+		g.dispose();
+
+		assertSameImage(expected, actual);
+	}
+
+	@Test
+	public void testGlyphVectorShared() {
+		BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = createGraphics(image);
+		Java2DOutputDevice outputDevice = new Java2DOutputDevice(g);
+		Java2DFont font = new Java2DFont(FONTS, 14);
+		Java2DTextRenderer renderer = new Java2DTextRenderer();
+
+		AWTFSGlyphVector first = (AWTFSGlyphVector) renderer.getGlyphVector(outputDevice, font, "Hello world");
+		AWTFSGlyphVector second = (AWTFSGlyphVector) renderer.getGlyphVector(outputDevice, font, "Hello world");
+		assertSame(first.getGlyphVector(), second.getGlyphVector());
+
+		float[] expected = FONTS.get(0).createGlyphVector(g.getFontRenderContext(), "Hello world").getGlyphPositions(0, 12, null);
+		assertArrayEquals(expected, renderer.getGlyphPositions(outputDevice, font, "Hello world"), 0f);
+		g.dispose();
+	}
+}
@@ -0,0 +1,120 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import com.openhtmltopdf.latexsupport.LaTeXDOMMutator;
+
+public class LaTeXDOMMutatorTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><title>LaTeX</title></head><body>");
+		for (int i = 0; i < 12; i++) {
+			sb.append("<p>Formula ").append(i).append(": <latex>$x^{").append(i % 4).append("} + \\frac{1}{y}$</latex></p>");
+		}
+		sb.append("<latex>\\textbf{Bold} and $\\sqrt{2}$</latex>");
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static Document parse(String html) throws Exception {
+		return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new InputSource(new StringReader(html)));
+	}
+
+	private static String serialize(Document doc) throws Exception {
+		StringWriter writer = new StringWriter();
+		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(writer));
+		return writer.toString();
+	}
+
+	private static String mutate(LaTeXDOMMutator mutator) throws Exception {
+		Document doc = parse(HTML);
+		mutator.mutateDocument(doc);
+		return serialize(doc);
+	}
+
+	@Test
+	public void testParallelAndCachedMatchSerial() throws Exception {
+		String expected = mutate(LaTeXDOMMutator.create(0, 1));
+		assertTrue(expected.contains("<math"));
+		assertTrue(expected.contains("<style type=\"text/css\">"));
+
+		LaTeXDOMMutator mutator = LaTeXDOMMutator.create(100, 4);
+
+		// Converted in parallel, then from the cache.
+		assertEquals(expected, mutate(mutator));
+		assertEquals(expected, mutate(mutator));
+	}
+
+	@Test
+	public void testConcurrentDocumentsShareThreads() throws Exception {
+		String expected = mutate(LaTeXDOMMutator.create(0, 1));
+		final LaTeXDOMMutator mutator = LaTeXDOMMutator.create(0, 2);
+
+		ExecutorService renders = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(renders.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return mutate(mutator);
+					}
+				}));
+			}
+			for (Future<String> result : results) {
+				assertEquals(expected, result.get());
+			}
+		} finally {
+			renders.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSuppliedExecutor() throws Exception {
+		String expected = mutate(LaTeXDOMMutator.create(0, 1));
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+		try {
+			LaTeXDOMMutator mutator = LaTeXDOMMutator.create(0, executor);
+			assertEquals(expected, mutate(mutator));
+			assertEquals(expected, mutate(mutator));
+			assertTrue(executor.getCompletedTaskCount() > 0);
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testDocumentWithoutLaTeXUnchanged() throws Exception {
+		String html = "<html><head></head><body><p>No formulas</p></body></html>";
+		Document doc = parse(html);
+		String before = serialize(doc);
+		LaTeXDOMMutator.INSTANCE.mutateDocument(doc);
+		assertEquals(before, serialize(doc));
+	}
+}
@@ -0,0 +1,145 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.ibm.icu.text.BreakIterator;
+import com.openhtmltopdf.bidi.BidiSplitter;
+import com.openhtmltopdf.bidi.BidiSplitterFactory;
+import com.openhtmltopdf.bidi.ParagraphSplitter;
+import com.openhtmltopdf.bidi.support.ICUBidiReorderer;
+import com.openhtmltopdf.bidi.support.ICUBidiSplitter;
+import com.openhtmltopdf.bidi.support.ICUBreakers;
+import com.openhtmltopdf.extend.FSTextBreaker;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class LatinTextFastPathTest {
+	private static final String LATIN_PARAGRAPHS =
+			"<p>The quick brown fox (a well-known one) jumps over 1,000.5 lazy dogs.</p>" +
+			"<p>\"Quoted\" text, with: some; punctuation! Does it break? Yes - it does.</p>" +
+			"<p dir=\"auto\">Café crème brûlée</p>";
+
+	private static final String HEBREW_PARAGRAPH = "<p>שלום and some English</p>";
+
+	private static List<Integer> breaks(FSTextBreaker breaker, String text) {
+		List<Integer> breaks = new ArrayList<Integer>();
+		breaker.setText(text);
+		int i;
+		while ((i = breaker.next()) != -1) {
+			breaks.add(i);
+		}
+		return breaks;
+	}
+
+	private static List<Integer> icuBreaks(String text) {
+		BreakIterator iter = BreakIterator.getLineInstance(Locale.US);
+		List<Integer> breaks = new ArrayList<Integer>();
+		iter.setText(text);
+		int i;
+		while ((i = iter.next()) != BreakIterator.DONE) {
+			breaks.add(i);
+		}
+		return breaks;
+	}
+
+	@Test
+	public void testLineBreakerMatchesICU() {
+		ICUBreakers.ICULineBreaker breaker = new ICUBreakers.ICULineBreaker(Locale.US);
+
+		String[] samples = new String[] {
+			"The quick brown fox jumps over the lazy dog.",
+			"A well-known (and   [bracketed]) phrase: 'quoted' \"twice\"!",
+			"Numbers like 1,000.50 and -42 or 3.-4 and a.5, x-9 ( 7 ) '( b'.",
+			"Café crème brûlée à la mode?!",
+			"  leading and trailing spaces  ",
+			"",
+			// Not handled by the fast path.
+			"http://example.com/path%20name",
+			"שלום world"
+		};
+
+		for (String sample : samples) {
+			assertEquals(sample, icuBreaks(sample), breaks(breaker, sample));
+		}
+
+		String chars = "aZé09 .,:;'\"!?([)]-#&*<=>@^_`~";
+		Random rnd = new Random(1);
+		for (int i = 0; i < 20000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int length = 1 + rnd.nextInt(12);
+			for (int j = 0; j < length; j++) {
+				sb.append(chars.charAt(rnd.nextInt(chars.length())));
+			}
+			String sample = sb.toString();
+			assertEquals(sample, icuBreaks(sample), breaks(breaker, sample));
+		}
+	}
+
+	@Test
+	public void testSimpleLTRText() {
+		assertTrue(ParagraphSplitter.isSimpleLTRText("Plain Latin-1 text, été © 2017"));
+		assertTrue(ParagraphSplitter.isSimpleLTRText("中文 Δελτα"));
+		assertFalse(ParagraphSplitter.isSimpleLTRText("Hebrew שלום"));
+		assertFalse(ParagraphSplitter.isSimpleLTRText("Arabic مرحبا"));
+		assertFalse(ParagraphSplitter.isSimpleLTRText("Arabic-Indic digits ١٢"));
+		assertFalse(ParagraphSplitter.isSimpleLTRText("Override ‮text‬"));
+		assertFalse(ParagraphSplitter.isSimpleLTRText("Isolate ⁧text⁩"));
+	}
+
+	private static class CountingSplitterFactory implements BidiSplitterFactory {
+		private final BidiSplitterFactory delegate = new ICUBidiSplitter.ICUBidiSplitterFactory();
+		private int count;
+
+		@Override
+		public BidiSplitter createBidiSplitter() {
+			count++;
+			return delegate.createBidiSplitter();
+		}
+	}
+
+	private static int countSplitters(String body, StringBuilder text) throws Exception {
+		CountingSplitterFactory factory = new CountingSplitterFactory();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent("<html><head><style>p { display: block; }</style></head><body>" + body + "</body></html>", null);
+		builder.useUnicodeBidiSplitter(factory);
+		builder.useUnicodeBidiReorderer(new ICUBidiReorderer());
+		builder.useUnicodeLineBreaker(new ICUBreakers.ICULineBreaker(Locale.US));
+		builder.toStream(os);
+		builder.run();
+
+		PDDocument doc = PDDocument.load(os.toByteArray());
+		try {
+			text.append(new PDFTextStripper().getText(doc));
+		} finally {
+			doc.close();
+		}
+
+		return factory.count;
+	}
+
+	@Test
+	public void testOnlyRTLParagraphsUseBidiSplitter() throws Exception {
+		StringBuilder latinText = new StringBuilder();
+		int latin = countSplitters(LATIN_PARAGRAPHS, latinText);
+
+		StringBuilder mixedText = new StringBuilder();
+		int mixed = countSplitters(LATIN_PARAGRAPHS + HEBREW_PARAGRAPH, mixedText);
+
+		assertEquals(latin + 1, mixed);
+		assertTrue(latinText.toString().contains("The quick brown fox"));
+		assertTrue(mixedText.toString().contains("and some English"));
+	}
+}
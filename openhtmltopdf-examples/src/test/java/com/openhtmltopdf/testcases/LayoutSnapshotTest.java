@@ -0,0 +1,305 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.imageio.ImageIO;
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.java2d.api.DefaultPageProcessor;
+import com.openhtmltopdf.java2d.api.FSPageOutputStreamSupplier;
+import com.openhtmltopdf.java2d.api.Java2DRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshot;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+import com.openhtmltopdf.util.XRRuntimeException;
+
+public class LayoutSnapshotTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><title>Snapshot</title><style>");
+		sb.append("@page { size: 300px 200px; margin: 10px; @bottom-center { content: counter(page); } } ");
+		sb.append("body { margin: 0; } ");
+		sb.append(".box { border: 2px dashed blue; background-color: #fc0; border-radius: 5px; padding: 4px; } ");
+		sb.append(".rot { transform: rotate(10deg); width: 100px; background-color: #0c0; } ");
+		sb.append("</style></head><body>");
+		sb.append("<div class=\"box\">A box <a href=\"#target\">to the target</a> and ");
+		sb.append("<a href=\"https://example.com/\">a site</a>.</div>");
+		sb.append("<img src=\"").append(imageUri()).append("\" style=\"width: 40px; height: 20px;\"/>");
+		sb.append("<div class=\"rot\">Rotated</div>");
+		sb.append("<p style=\"page-break-before: always;\" id=\"target\">Target page</p>");
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static String imageUri() {
+		BufferedImage img = new BufferedImage(4, 2, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(0, 0, 2, 2);
+		g.setColor(Color.BLUE);
+		g.fillRect(2, 0, 2, 2);
+		g.dispose();
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try {
+			ImageIO.write(img, "png", os);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return "data:image/png;base64," + DatatypeConverter.printBase64Binary(os.toByteArray());
+	}
+
+	private static byte[] renderDirect() throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	/**
+	 * Creates a snapshot and passes it through its binary format.
+	 */
+	private static LayoutSnapshot snapshot() throws Exception {
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+
+		PdfBoxRenderer renderer = builder.buildPdfRenderer();
+		LayoutSnapshot snapshot;
+		try {
+			renderer.layout();
+			snapshot = renderer.createLayoutSnapshot();
+		} finally {
+			renderer.close();
+		}
+
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		snapshot.write(os);
+		return LayoutSnapshot.read(new ByteArrayInputStream(os.toByteArray()));
+	}
+
+	private static LayoutSnapshot snapshot(String html, PdfRendererBuilder builder) throws Exception {
+		builder.withHtmlContent(html, null);
+
+		PdfBoxRenderer renderer = builder.buildPdfRenderer();
+		try {
+			renderer.layout();
+			return renderer.createLayoutSnapshot();
+		} finally {
+			renderer.close();
+		}
+	}
+
+	private static byte[] renderSnapshot(LayoutSnapshot snapshot) throws Exception {
+		return renderSnapshot(snapshot, new PdfRendererBuilder());
+	}
+
+	private static byte[] renderSnapshot(LayoutSnapshot snapshot, PdfRendererBuilder builder) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		builder.withLayoutSnapshot(snapshot);
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	private static final FSSupplier<InputStream> LIBERATION_SANS = new FSSupplier<InputStream>() {
+		@Override
+		public InputStream supply() {
+			return PDDocument.class.getResourceAsStream("/org/apache/pdfbox/resources/ttf/LiberationSans-Regular.ttf");
+		}
+	};
+
+	@Test
+	public void testSnapshotMatchesDirectRender() throws Exception {
+		PDDocument direct = PDDocument.load(renderDirect());
+		PDDocument replayed = PDDocument.load(renderSnapshot(snapshot()));
+
+		try {
+			assertEquals(2, direct.getNumberOfPages());
+			assertEquals(direct.getNumberOfPages(), replayed.getNumberOfPages());
+			assertEquals(new PDFTextStripper().getText(direct), new PDFTextStripper().getText(replayed));
+
+			PDFRenderer directRenderer = new PDFRenderer(direct);
+			PDFRenderer replayedRenderer = new PDFRenderer(replayed);
+
+			for (int i = 0; i < direct.getNumberOfPages(); i++) {
+				assertEquals(direct.getPage(i).getMediaBox().getWidth(), replayed.getPage(i).getMediaBox().getWidth(), 0.01f);
+				assertEquals(direct.getPage(i).getMediaBox().getHeight(), replayed.getPage(i).getMediaBox().getHeight(), 0.01f);
+
+				BufferedImage expected = directRenderer.renderImageWithDPI(i, 72, ImageType.RGB);
+				BufferedImage actual = replayedRenderer.renderImageWithDPI(i, 72, ImageType.RGB);
+				assertEquals("Page " + i, 0, countDifferentPixels(expected, actual));
+			}
+		} finally {
+			direct.close();
+			replayed.close();
+		}
+	}
+
+	private static int countDifferentPixels(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+
+		int different = 0;
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int e = expected.getRGB(x, y);
+				int a = actual.getRGB(x, y);
+				if (Math.abs(((e >> 16) & 0xff) - ((a >> 16) & 0xff)) > 8 ||
+					Math.abs(((e >> 8) & 0xff) - ((a >> 8) & 0xff)) > 8 ||
+					Math.abs((e & 0xff) - (a & 0xff)) > 8) {
+					different++;
+				}
+			}
+		}
+		return different;
+	}
+
+	@Test
+	public void testLinksAndMetadata() throws Exception {
+		PDDocument doc = PDDocument.load(renderSnapshot(snapshot()));
+
+		try {
+			assertEquals("Snapshot", doc.getDocumentInformation().getTitle());
+
+			List<PDAnnotation> annots = doc.getPage(0).getAnnotations();
+			assertEquals(2, annots.size());
+
+			PDActionGoTo go = (PDActionGoTo) ((PDAnnotationLink) annots.get(0)).getAction();
+			PDPage target = ((PDPageXYZDestination) go.getDestination()).getPage();
+			assertEquals(1, doc.getPages().indexOf(target));
+
+			PDActionURI uri = (PDActionURI) ((PDAnnotationLink) annots.get(1)).getAction();
+			assertEquals("https://example.com/", uri.getURI());
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testJava2DReplay() throws Exception {
+		final Map<Integer, ByteArrayOutputStream> pages = new TreeMap<Integer, ByteArrayOutputStream>();
+
+		Java2DRendererBuilder builder = new Java2DRendererBuilder();
+		builder.withLayoutSnapshot(snapshot());
+		builder.toPageProcessor(new DefaultPageProcessor(new FSPageOutputStreamSupplier() {
+			@Override
+			public OutputStream supply(int zeroBasedPageNumber) throws IOException {
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				pages.put(zeroBasedPageNumber, os);
+				return os;
+			}
+		}, BufferedImage.TYPE_INT_RGB, "png"));
+		builder.runPaged();
+
+		assertEquals(2, pages.size());
+
+		BufferedImage first = ImageIO.read(new ByteArrayInputStream(pages.get(0).toByteArray()));
+		assertNotNull(first);
+		// Java2D uses one dot per CSS pixel.
+		assertEquals(300, first.getWidth());
+		assertEquals(200, first.getHeight());
+
+		// The box background is painted.
+		Color box = new Color(first.getRGB(20, 15));
+		assertEquals(0xff, box.getRed());
+		assertEquals(0xcc, box.getGreen());
+	}
+
+	@Test
+	public void testFontFacesChecked() throws Exception {
+		String html = "<html><head><style>@page { size: 300px 200px; } " +
+				"body { font-family: 'liberation'; }</style></head><body>Font face</body></html>";
+
+		PdfRendererBuilder recording = new PdfRendererBuilder();
+		recording.useFont(LIBERATION_SANS, "liberation");
+		LayoutSnapshot snapshot = snapshot(html, recording);
+
+		// Without the font the text would be painted in the fallback font.
+		try {
+			renderSnapshot(snapshot);
+			fail();
+		} catch (XRRuntimeException e) {
+			assertTrue(e.getMessage().contains("liberation"));
+		}
+
+		PdfRendererBuilder replaying = new PdfRendererBuilder();
+		replaying.useFont(LIBERATION_SANS, "liberation");
+		assertEquals("Font face", text(renderSnapshot(snapshot, replaying)));
+	}
+
+	private static String text(byte[] pdf) throws IOException {
+		PDDocument doc = PDDocument.load(pdf);
+		try {
+			return new PDFTextStripper().getText(doc).trim();
+		} finally {
+			doc.close();
+		}
+	}
+
+	private static void assertNotRecorded(String html, PdfRendererBuilder builder, String what) throws Exception {
+		try {
+			snapshot(html, builder);
+			fail();
+		} catch (XRRuntimeException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(what));
+		}
+	}
+
+	@Test
+	public void testSVGNotRecorded() throws Exception {
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useSVGDrawer(new BatikSVGDrawer());
+		assertNotRecorded("<html><body><svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\">" +
+				"<rect width=\"10\" height=\"10\"/></svg></body></html>", builder, "PdfBoxSVGReplacedElement");
+	}
+
+	@Test
+	public void testFormControlsNotRecorded() throws Exception {
+		assertNotRecorded("<html><body><form name=\"f\"><input type=\"text\" name=\"t\" value=\"v\"/></form></body></html>",
+				new PdfRendererBuilder(), "Form control");
+	}
+
+	@Test
+	public void testBookmarksNotRecorded() throws Exception {
+		assertNotRecorded("<html><head><bookmarks><bookmark name=\"Top\" href=\"#top\"/></bookmarks></head>" +
+				"<body><p id=\"top\">Top</p></body></html>", new PdfRendererBuilder(), "Bookmarks");
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadRejectsOtherData() throws Exception {
+		LayoutSnapshot.read(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 }));
+	}
+}
@@ -0,0 +1,95 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.junit.Test;
+
+import com.openhtmltopdf.mathmlsupport.MathMLDrawer;
+import com.openhtmltopdf.mathmlsupport.MathMLLayoutCache;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class MathMLLayoutCacheTest {
+	private static final String FORMULA =
+			"<math xmlns=\"http://www.w3.org/1998/Math/MathML\" display=\"block\" mathcolor=\"blue\">" +
+			"<mrow><msup><mi>x</mi><mn>2</mn></msup><mo>+</mo><mfrac><mn>1</mn><mi>y</mi></mfrac></mrow></math>";
+
+	// The same formula with other whitespace and attribute order.
+	private static final String FORMULA_REFORMATTED =
+			"<math mathcolor=\"blue\" display=\"block\" xmlns=\"http://www.w3.org/1998/Math/MathML\">\n" +
+			"  <mrow>\n    <msup><mi> x </mi><mn>2</mn></msup>\n    <mo>+</mo>\n" +
+			"    <mfrac><mn>1</mn><mi>y</mi></mfrac>\n  </mrow>\n</math>";
+
+	private static final String OTHER_FORMULA =
+			"<math xmlns=\"http://www.w3.org/1998/Math/MathML\"><mi>z</mi></math>";
+
+	private static byte[] render(String body, MathMLLayoutCache cache) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useMathMLDrawer(cache == null ? new MathMLDrawer() : new MathMLDrawer(cache));
+		builder.withHtmlContent("<html><head><style>@page { size: 300px 200px; margin: 10px; } " +
+				"body { font-family: sans-serif; } #narrow { width: 40px; }</style></head><body>" + body + "</body></html>", null);
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	private static BufferedImage image(byte[] pdf) throws Exception {
+		PDDocument doc = PDDocument.load(pdf);
+		try {
+			return new PDFRenderer(doc).renderImageWithDPI(0, 72, ImageType.RGB);
+		} finally {
+			doc.close();
+		}
+	}
+
+	private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				assertEquals("Pixel " + x + ", " + y, expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testCacheSharedAcrossRenders() throws Exception {
+		MathMLLayoutCache cache = new MathMLLayoutCache(100);
+
+		render(FORMULA, cache);
+		assertEquals(1, cache.size());
+
+		render(FORMULA_REFORMATTED, cache);
+		assertEquals(1, cache.size());
+
+		render(OTHER_FORMULA, cache);
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testCachedRenderMatchesUncached() throws Exception {
+		String body = FORMULA + "<div id=\"narrow\">" + FORMULA + "</div>";
+		BufferedImage expected = image(render(body, null));
+
+		MathMLLayoutCache cache = new MathMLLayoutCache(100);
+		render(body, cache);
+
+		// Rendered entirely from the cache, with the same formula at two sizes.
+		assertSameImage(expected, image(render(body, cache)));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testCacheEvictsLeastRecentlyUsed() throws Exception {
+		MathMLLayoutCache cache = new MathMLLayoutCache(1);
+
+		render(FORMULA + OTHER_FORMULA, cache);
+		assertEquals(1, cache.size());
+	}
+}
@@ -0,0 +1,167 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.objects.StandardObjectDrawerFactory;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class MergeBackgroundPdfTest {
+	private static final String HTML =
+			"<html><head><style>@page { size: 300px 200px; margin: 10px; }</style></head><body>" +
+			"<object type=\"pdf/background\" pdfsrc=\"test:letterhead.pdf\" style=\"width:1px;height:1px\"></object>" +
+			"<p>First page</p>" +
+			"<p style=\"page-break-before: always;\">Second page</p>" +
+			"<object type=\"pdf/background\" pdfsrc=\"test:letterhead.pdf\" pdfpage=\"2\" style=\"width:1px;height:1px\"></object>" +
+			"</body></html>";
+
+	private static class CountingStreamFactory implements FSStreamFactory {
+		private final byte[] pdf;
+		private int loads;
+
+		private CountingStreamFactory(byte[] pdf) {
+			this.pdf = pdf;
+		}
+
+		@Override
+		public FSStream getUrl(String url) {
+			loads++;
+			return new FSStream() {
+				@Override
+				public InputStream getStream() {
+					return new ByteArrayInputStream(pdf);
+				}
+
+				@Override
+				public Reader getReader() {
+					return null;
+				}
+			};
+		}
+	}
+
+	private static byte[] createLetterhead(String... texts) throws Exception {
+		PDDocument doc = new PDDocument();
+		try {
+			for (String text : texts) {
+				PDPage page = new PDPage();
+				doc.addPage(page);
+				PDPageContentStream cs = new PDPageContentStream(doc, page);
+				cs.beginText();
+				cs.setFont(PDType1Font.HELVETICA, 12);
+				cs.newLineAtOffset(10, 10);
+				cs.showText(text);
+				cs.endText();
+				cs.close();
+			}
+			ByteArrayOutputStream os = new ByteArrayOutputStream();
+			doc.save(os);
+			return os.toByteArray();
+		} finally {
+			doc.close();
+		}
+	}
+
+	private static PDDocument render(FSStreamFactory streams) throws Exception {
+		return render(streams, HTML);
+	}
+
+	private static PDDocument render(FSStreamFactory streams, String html) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(streams, "test");
+		builder.useObjectDrawerFactory(new StandardObjectDrawerFactory());
+		builder.withHtmlContent(html, null);
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static String pageText(PDDocument doc, int page) throws Exception {
+		PDFTextStripper stripper = new PDFTextStripper();
+		stripper.setStartPage(page);
+		stripper.setEndPage(page);
+		return stripper.getText(doc);
+	}
+
+	@Test
+	public void testBackgroundLoadedThroughUserAgent() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory(createLetterhead("Letterhead one", "Letterhead two"));
+
+		for (int i = 1; i <= 2; i++) {
+			// The second render imports from the shared parsed PDF.
+			PDDocument doc = render(streams);
+			try {
+				assertEquals(2, doc.getNumberOfPages());
+				assertTrue(pageText(doc, 1).contains("Letterhead one"));
+				assertTrue(pageText(doc, 1).contains("First page"));
+				assertTrue(pageText(doc, 2).contains("Letterhead two"));
+				assertTrue(pageText(doc, 2).contains("Second page"));
+			} finally {
+				doc.close();
+			}
+			assertEquals(2 * i, streams.loads);
+		}
+	}
+
+	@Test
+	public void testMoreBackgroundsThanCached() throws Exception {
+		// More distinct PDFs than are cached, so sources are evicted and closed while rendering.
+		final Map<String, byte[]> pdfs = new HashMap<String, byte[]>();
+		StringBuilder html = new StringBuilder("<html><head><style>@page { size: 300px 200px; margin: 10px; } ");
+		html.append("div + div { page-break-before: always; }</style></head><body>");
+		for (int i = 0; i < 20; i++) {
+			pdfs.put("test:letterhead-" + i + ".pdf", createLetterhead("Letterhead " + i));
+			html.append("<div>");
+			html.append("<object type=\"pdf/background\" pdfsrc=\"test:letterhead-").append(i).append(".pdf\" style=\"width:1px;height:1px\"></object>");
+			html.append("Page ").append(i).append("</div>");
+		}
+		html.append("</body></html>");
+
+		FSStreamFactory streams = new FSStreamFactory() {
+			@Override
+			public FSStream getUrl(final String url) {
+				return new FSStream() {
+					@Override
+					public InputStream getStream() {
+						return new ByteArrayInputStream(pdfs.get(url));
+					}
+
+					@Override
+					public Reader getReader() {
+						return null;
+					}
+				};
+			}
+		};
+
+		for (int run = 0; run < 2; run++) {
+			PDDocument doc = render(streams, html.toString());
+			try {
+				assertEquals(20, doc.getNumberOfPages());
+				for (int i = 0; i < 20; i++) {
+					assertTrue(pageText(doc, i + 1).contains("Letterhead " + i));
+					assertTrue(pageText(doc, i + 1).contains("Page " + i));
+				}
+			} finally {
+				doc.close();
+			}
+		}
+	}
+}
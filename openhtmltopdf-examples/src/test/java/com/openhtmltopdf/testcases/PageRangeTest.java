@@ -0,0 +1,127 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class PageRangeTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 300px 200px; margin: 10px; } ");
+		sb.append("div + div { page-break-before: always; }</style><bookmarks>");
+		sb.append("<bookmark name=\"Page 2\" href=\"#p2\"><bookmark name=\"Page 4\" href=\"#p4\"/></bookmark>");
+		sb.append("<bookmark name=\"Page 5\" href=\"#p5\"/><bookmark name=\"Page 7\" href=\"#p7\"/>");
+		sb.append("</bookmarks></head><body>");
+		for (int i = 0; i < 10; i++) {
+			sb.append("<div id=\"p").append(i).append("\">Page content ").append(i).append("</div>");
+		}
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static PDDocument render(boolean fast, int first, int last) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		builder.usePageRange(first, last);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static String text(PDDocument doc, int page) throws Exception {
+		PDFTextStripper stripper = new PDFTextStripper();
+		stripper.setStartPage(page);
+		stripper.setEndPage(page);
+		return stripper.getText(doc).trim();
+	}
+
+	private void assertPageRange(boolean fast) throws Exception {
+		PDDocument doc = render(fast, 3, 5);
+		try {
+			assertEquals(3, doc.getNumberOfPages());
+			assertEquals("Page content 3", text(doc, 1));
+			assertEquals("Page content 4", text(doc, 2));
+			assertEquals("Page content 5", text(doc, 3));
+
+			// Bookmarks to pages outside of the range are dropped, but not their children in the range.
+			List<String> bookmarks = new ArrayList<String>();
+			for (PDOutlineItem item : doc.getDocumentCatalog().getDocumentOutline().children()) {
+				PDPageDestination dest = (PDPageDestination) item.getDestination();
+				bookmarks.add(item.getTitle() + " " + doc.getPages().indexOf(dest.getPage()));
+			}
+			assertEquals(Arrays.asList("Page 4 1", "Page 5 2"), bookmarks);
+		} finally {
+			doc.close();
+		}
+
+		PDDocument tail = render(fast, 8, -1);
+		try {
+			assertEquals(2, tail.getNumberOfPages());
+			assertEquals("Page content 9", text(tail, 2));
+		} finally {
+			tail.close();
+		}
+	}
+
+	private static void assertInvalidRange(int first, int last) {
+		try {
+			new PdfRendererBuilder().usePageRange(first, last);
+			fail("Page range " + first + " to " + last + " was accepted");
+		} catch (IllegalArgumentException e) {
+			// Expected.
+		}
+	}
+
+	@Test
+	public void testInvalidPageRange() {
+		assertInvalidRange(-1, 3);
+		assertInvalidRange(0, -2);
+		assertInvalidRange(5, 3);
+	}
+
+	@Test
+	public void testPageRangeEndClampedToLastPage() throws Exception {
+		PDDocument doc = render(true, 8, 100);
+		try {
+			assertEquals(2, doc.getNumberOfPages());
+			assertEquals("Page content 9", text(doc, 2));
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testPageRangeStartAfterLastPage() throws Exception {
+		render(true, 10, -1).close();
+	}
+
+	@Test
+	public void testPageRange() throws Exception {
+		assertPageRange(false);
+	}
+
+	@Test
+	public void testPageRangeFastRenderer() throws Exception {
+		assertPageRange(true);
+	}
+}
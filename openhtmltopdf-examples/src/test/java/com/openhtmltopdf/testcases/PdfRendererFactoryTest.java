@@ -0,0 +1,164 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.objects.StandardObjectDrawerFactory;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.pdfboxout.PdfRendererFactory;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+
+public class PdfRendererFactoryTest {
+	private static final String CSS = "@page { size: 300px 200px; margin: 10px; } .hidden { display: none; }";
+
+	private static class CountingStreamFactory implements FSStreamFactory {
+		private final AtomicInteger loads = new AtomicInteger();
+
+		@Override
+		public FSStream getUrl(String url) {
+			loads.incrementAndGet();
+			return new FSStream() {
+				@Override
+				public InputStream getStream() {
+					return new ByteArrayInputStream(CSS.getBytes());
+				}
+
+				@Override
+				public Reader getReader() {
+					return new StringReader(CSS);
+				}
+			};
+		}
+	}
+
+	private static String html(int i) {
+		return "<html><head><link rel=\"stylesheet\" href=\"test:shared.css\"/></head><body>" +
+				"<p>Document " + i + "</p><p class=\"hidden\">Hidden</p></body></html>";
+	}
+
+	private static String render(PdfRendererBuilder builder, int i) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		builder.withHtmlContent(html(i), null);
+		builder.toStream(os);
+		builder.run();
+
+		PDDocument doc = PDDocument.load(os.toByteArray());
+		try {
+			// 300px is 225pt, so the linked stylesheet was applied.
+			assertEquals(225f, doc.getPage(0).getMediaBox().getWidth(), 0.5f);
+			return new PDFTextStripper().getText(doc).trim();
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testFactoryMatchesBuilder() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(streams, "test");
+		String expected = render(builder, 1);
+
+		PdfRendererFactory factory = new PdfRendererBuilder()
+				.useProtocolsStreamImplementation(streams, "test")
+				.buildRendererFactory();
+
+		assertEquals("Document 1", expected);
+		assertEquals(expected, render(factory.newBuilder(), 1));
+	}
+
+	@Test
+	public void testSharedStylesheetAcrossThreads() throws Exception {
+		final CountingStreamFactory streams = new CountingStreamFactory();
+		final PdfRendererFactory factory = new PdfRendererBuilder()
+				.useProtocolsStreamImplementation(streams, "test")
+				.buildRendererFactory();
+
+		assertEquals("Document 0", render(factory.newBuilder(), 0));
+		assertEquals(1, streams.loads.get());
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 1; i <= 20; i++) {
+				final int doc = i;
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return render(factory.newBuilder(), doc);
+					}
+				}));
+			}
+
+			for (int i = 1; i <= 20; i++) {
+				assertEquals("Document " + i, results.get(i - 1).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// The stylesheet was parsed once and shared by all documents.
+		assertEquals(1, streams.loads.get());
+	}
+
+	@Test
+	public void testBuildersAreIndependent() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		PdfRendererBuilder original = new PdfRendererBuilder();
+		original.useProtocolsStreamImplementation(streams, "test");
+		PdfRendererFactory factory = original.buildRendererFactory();
+
+		// Changes to one builder don't leak into the factory or other builders.
+		PdfRendererBuilder first = factory.newBuilder();
+		first.useProtocolsStreamImplementation(new CountingStreamFactory(), "test");
+		original.useProtocolsStreamImplementation(new CountingStreamFactory(), "test");
+
+		assertTrue(render(factory.newBuilder(), 2).contains("Document 2"));
+		assertEquals(1, streams.loads.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testSVGDrawerRefused() {
+		new PdfRendererBuilder()
+				.useSVGDrawer(new BatikSVGDrawer())
+				.buildRendererFactory();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testObjectDrawerFactoryRefused() {
+		new PdfRendererBuilder()
+				.useObjectDrawerFactory(new StandardObjectDrawerFactory())
+				.buildRendererFactory();
+	}
+
+	@Test
+	public void testSVGDrawerOnFactoryBuilder() throws Exception {
+		PdfRendererFactory factory = new PdfRendererBuilder()
+				.useProtocolsStreamImplementation(new CountingStreamFactory(), "test")
+				.buildRendererFactory();
+
+		PdfRendererBuilder builder = factory.newBuilder();
+		builder.useSVGDrawer(new BatikSVGDrawer());
+		assertEquals("Document 3", render(builder, 3));
+	}
+}
@@ -0,0 +1,153 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+
+import javax.imageio.ImageIO;
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSCancellationToken;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.util.RenderAbortedException;
+import com.openhtmltopdf.util.RenderAbortedException.Reason;
+
+public class RenderBudgetTest {
+	private static String pages(int count) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>@page { size: 200px 200px; } div + div { page-break-before: always; }</style></head><body>");
+		for (int i = 0; i < count; i++) {
+			sb.append("<div>Page ").append(i).append("</div>");
+		}
+		sb.append("</body></html>");
+		return sb.toString();
+	}
+
+	private static PdfRendererBuilder builder(String html, boolean fast) {
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(html, null);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(new ByteArrayOutputStream());
+		return builder;
+	}
+
+	private static void assertAborted(PdfRendererBuilder builder, Reason reason) throws Exception {
+		try {
+			builder.run();
+			fail("Render should have been aborted");
+		} catch (RenderAbortedException e) {
+			assertEquals(reason, e.getReason());
+		}
+	}
+
+	@Test
+	public void testWithinBudget() throws Exception {
+		PdfRendererBuilder builder = builder(pages(5), true);
+		builder.useMaxPages(5);
+		builder.useMaxBoxes(1000);
+		builder.useRenderTimeout(60000);
+		builder.run();
+	}
+
+	@Test
+	public void testMaxPages() throws Exception {
+		PdfRendererBuilder builder = builder(pages(50), true);
+		builder.useMaxPages(10);
+		assertAborted(builder, Reason.MAX_PAGES);
+	}
+
+	@Test
+	public void testMaxPagesSlowRenderer() throws Exception {
+		PdfRendererBuilder builder = builder(pages(50), false);
+		builder.useMaxPages(10);
+		assertAborted(builder, Reason.MAX_PAGES);
+	}
+
+	@Test
+	public void testMaxBoxes() throws Exception {
+		PdfRendererBuilder builder = builder(pages(500), true);
+		builder.useMaxBoxes(100);
+		assertAborted(builder, Reason.MAX_BOXES);
+	}
+
+	@Test
+	public void testCancelled() throws Exception {
+		PdfRendererBuilder builder = builder(pages(5), true);
+		builder.useCancellationToken(new FSCancellationToken() {
+			@Override
+			public boolean isCancelled() {
+				return true;
+			}
+		});
+		assertAborted(builder, Reason.CANCELLED);
+	}
+
+	private static class CountingToken implements FSCancellationToken {
+		private final int cancelAfter;
+		private int polls;
+
+		CountingToken(int cancelAfter) {
+			this.cancelAfter = cancelAfter;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			polls++;
+			return cancelAfter > 0 && polls > cancelAfter;
+		}
+	}
+
+	@Test
+	public void testCancelledDuringPaint() throws Exception {
+		CountingToken counter = new CountingToken(0);
+		PdfRendererBuilder builder = builder(pages(20), true);
+		builder.useCancellationToken(counter);
+		builder.run();
+
+		// The last poll is made before painting the last page.
+		builder = builder(pages(20), true);
+		builder.useCancellationToken(new CountingToken(counter.polls - 1));
+		assertAborted(builder, Reason.CANCELLED);
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		PdfRendererBuilder builder = builder(pages(5), true);
+		builder.useRenderTimeout(1);
+		builder.useCancellationToken(new FSCancellationToken() {
+			@Override
+			public boolean isCancelled() {
+				// Make sure the deadline passes.
+				try {
+					Thread.sleep(2);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return false;
+			}
+		});
+		assertAborted(builder, Reason.TIMEOUT);
+	}
+
+	@Test
+	public void testMaxImagePixels() throws Exception {
+		ByteArrayOutputStream png = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB), "png", png);
+		String html = "<html><body><img src=\"data:image/png;base64," +
+				DatatypeConverter.printBase64Binary(png.toByteArray()) + "\"/></body></html>";
+
+		builder(html, true).useMaxImagePixels(10000).run();
+
+		PdfRendererBuilder builder = builder(html, true);
+		builder.useMaxImagePixels(9999);
+		assertAborted(builder, Reason.MAX_IMAGE_PIXELS);
+	}
+}
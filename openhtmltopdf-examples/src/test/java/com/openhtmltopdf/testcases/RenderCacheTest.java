@@ -0,0 +1,257 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.extend.FSSupplier;
+import com.openhtmltopdf.pdfboxout.DiskPdfRenderCacheStore;
+import com.openhtmltopdf.pdfboxout.InMemoryPdfRenderCacheStore;
+import com.openhtmltopdf.pdfboxout.PdfRenderCacheStore;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class RenderCacheTest {
+	private static final String HTML =
+			"<html><head><link rel=\"stylesheet\" href=\"test:style.css\"/></head><body>" +
+			"<p>Cached</p></body></html>";
+
+	private static class CountingStreamFactory implements FSStreamFactory {
+		private String css = "@page { size: 300px 200px; margin: 10px; }";
+		private int loads;
+
+		@Override
+		public FSStream getUrl(String url) {
+			loads++;
+			final String content = css;
+			return new FSStream() {
+				@Override
+				public InputStream getStream() {
+					return new ByteArrayInputStream(content.getBytes());
+				}
+
+				@Override
+				public Reader getReader() {
+					return new StringReader(content);
+				}
+			};
+		}
+	}
+
+	private static byte[] render(PdfRenderCacheStore store, CountingStreamFactory streams, String html, boolean rtl) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(streams, "test");
+		builder.withHtmlContent(html, null);
+		builder.useRenderCache(store);
+		builder.defaultTextDirection(rtl ? PdfRendererBuilder.TextDirection.RTL : PdfRendererBuilder.TextDirection.LTR);
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	private static String text(byte[] pdf) throws Exception {
+		PDDocument doc = PDDocument.load(pdf);
+		try {
+			return new PDFTextStripper().getText(doc).trim();
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testHitSkipsRendering() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		PdfRenderCacheStore store = new InMemoryPdfRenderCacheStore(10 * 1024 * 1024);
+
+		byte[] first = render(store, streams, HTML, false);
+		assertEquals("Cached", text(first));
+		assertEquals(1, streams.loads);
+
+		// The hit only reloads the stylesheet to check it has not changed.
+		byte[] second = render(store, streams, HTML, false);
+		assertArrayEquals(first, second);
+		assertEquals(2, streams.loads);
+	}
+
+	@Test
+	public void testChangedResourceIsMiss() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		PdfRenderCacheStore store = new InMemoryPdfRenderCacheStore(10 * 1024 * 1024);
+
+		render(store, streams, HTML, false);
+
+		streams.css = "@page { size: 400px 200px; margin: 10px; }";
+		byte[] second = render(store, streams, HTML, false);
+
+		PDDocument doc = PDDocument.load(second);
+		try {
+			// 400px is 300pt.
+			assertEquals(300f, doc.getPage(0).getMediaBox().getWidth(), 0.5f);
+		} finally {
+			doc.close();
+		}
+		assertEquals(3, streams.loads);
+	}
+
+	@Test
+	public void testDifferentInputsAreMisses() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		PdfRenderCacheStore store = new InMemoryPdfRenderCacheStore(10 * 1024 * 1024);
+
+		render(store, streams, HTML, false);
+		assertEquals("Other", text(render(store, streams, HTML.replace("Cached", "Other"), false)));
+
+		byte[] ltr = render(store, streams, HTML, false);
+		byte[] rtl = render(store, streams, HTML, true);
+		assertFalse(Arrays.equals(ltr, rtl));
+	}
+
+	@Test
+	public void testDocumentIdFromInputs() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+
+		// The document ID is derived from the inputs, so separate caches give the same ID.
+		byte[] first = render(new InMemoryPdfRenderCacheStore(10 * 1024 * 1024), streams, HTML, false);
+		byte[] second = render(new InMemoryPdfRenderCacheStore(10 * 1024 * 1024), streams, HTML, false);
+
+		assertEquals(documentId(first), documentId(second));
+	}
+
+	private static String documentId(byte[] pdf) throws Exception {
+		PDDocument doc = PDDocument.load(pdf);
+		try {
+			return doc.getDocument().getDocumentID().toString();
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testDiskStore() throws Exception {
+		File dir = new File("target/test/render-cache");
+		if (dir.isDirectory()) {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+		}
+
+		CountingStreamFactory streams = new CountingStreamFactory();
+		byte[] first = render(new DiskPdfRenderCacheStore(dir, 10 * 1024 * 1024), streams, HTML, false);
+		assertEquals(1, dir.listFiles().length);
+
+		// A new store over the same directory sees the entry.
+		byte[] second = render(new DiskPdfRenderCacheStore(dir, 10 * 1024 * 1024), streams, HTML, false);
+		assertArrayEquals(first, second);
+	}
+
+	private static class CountingStore extends InMemoryPdfRenderCacheStore {
+		private int gets;
+		private int puts;
+
+		private CountingStore() {
+			super(10 * 1024 * 1024);
+		}
+
+		@Override
+		public byte[] get(String key) {
+			gets++;
+			return super.get(key);
+		}
+
+		@Override
+		public void put(String key, byte[] entry) {
+			puts++;
+			super.put(key, entry);
+		}
+	}
+
+	/**
+	 * Stands in for a supplier of some version of a font, the cache can only see its class.
+	 */
+	private static class FontSupplier implements FSSupplier<InputStream> {
+		private final String version;
+
+		private FontSupplier(String version) {
+			this.version = version;
+		}
+
+		@Override
+		public InputStream supply() {
+			return FontSupplier.class.getResourceAsStream("/demos/fonts/fuzz.ttf");
+		}
+	}
+
+	private static byte[] renderWithFont(PdfRenderCacheStore store, String version, String cacheKey) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(new CountingStreamFactory(), "test");
+		builder.withHtmlContent(HTML, null);
+		builder.useFont(new FontSupplier(version), "my-font");
+		builder.useRenderCache(store);
+		if (cacheKey != null) {
+			builder.useRenderCacheKey(cacheKey);
+		}
+		builder.toStream(os);
+		builder.run();
+		return os.toByteArray();
+	}
+
+	@Test
+	public void testSettingsIdentifiedByClassBypassCache() throws Exception {
+		CountingStore store = new CountingStore();
+
+		// The suppliers are of the same class, so can't be told apart by the cache.
+		assertEquals("Cached", text(renderWithFont(store, "1", null)));
+		assertEquals("Cached", text(renderWithFont(store, "2", null)));
+		assertEquals(0, store.gets);
+		assertEquals(0, store.puts);
+	}
+
+	@Test
+	public void testRenderCacheKey() throws Exception {
+		CountingStore store = new CountingStore();
+
+		byte[] first = renderWithFont(store, "1", "fonts-1");
+		assertEquals(1, store.puts);
+		assertArrayEquals(first, renderWithFont(store, "1", "fonts-1"));
+		assertEquals(1, store.puts);
+
+		// Another key is another entry.
+		renderWithFont(store, "2", "fonts-2");
+		assertEquals(2, store.puts);
+	}
+
+	@Test
+	public void testInMemoryStoreEvicts() {
+		InMemoryPdfRenderCacheStore store = new InMemoryPdfRenderCacheStore(100);
+
+		store.put("a", new byte[40]);
+		store.put("b", new byte[40]);
+		store.get("a");
+		store.put("c", new byte[40]);
+
+		assertNotNull(store.get("a"));
+		assertNull(store.get("b"));
+		assertNotNull(store.get("c"));
+
+		// Too big to store at all.
+		store.put("d", new byte[101]);
+		assertNull(store.get("d"));
+	}
+}
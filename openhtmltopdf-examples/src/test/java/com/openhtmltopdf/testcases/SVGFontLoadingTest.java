@@ -0,0 +1,103 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.Reader;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Test;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
+
+public class SVGFontLoadingTest {
+	private static final String HEAD =
+			"<html><head><style>" +
+			"@page { size: 300px 200px; margin: 10px; } " +
+			"@font-face { font-family: 'svgfont'; src: url(test:fuzz.ttf); }" +
+			"</style></head><body>";
+
+	private static final String SVG =
+			"<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"100\" height=\"40\">" +
+			"<text x=\"5\" y=\"20\" font-family=\"svgfont\" font-size=\"12\">SVG text</text></svg>";
+
+	private static class CountingStreamFactory implements FSStreamFactory {
+		private final byte[] font;
+		private int loads;
+
+		private CountingStreamFactory() throws Exception {
+			InputStream is = SVGFontLoadingTest.class.getResourceAsStream("/demos/fonts/fuzz.ttf");
+			try {
+				font = IOUtils.toByteArray(is);
+			} finally {
+				is.close();
+			}
+		}
+
+		@Override
+		public FSStream getUrl(String url) {
+			loads++;
+			return new FSStream() {
+				@Override
+				public InputStream getStream() {
+					return new ByteArrayInputStream(font);
+				}
+
+				@Override
+				public Reader getReader() {
+					return null;
+				}
+			};
+		}
+	}
+
+	private static void render(CountingStreamFactory streams, String body) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.useProtocolsStreamImplementation(streams, "test");
+		builder.useSVGDrawer(new BatikSVGDrawer());
+		builder.withHtmlContent(HEAD + body + "</body></html>", null);
+		builder.toStream(os);
+		builder.run();
+
+		PDDocument doc = PDDocument.load(os.toByteArray());
+		try {
+			assertEquals(1, doc.getNumberOfPages());
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testFontNotLoadedWithoutSVG() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		render(streams, "<p>No SVG here</p>");
+		assertEquals(0, streams.loads);
+	}
+
+	@Test
+	public void testFontNotLoadedWithoutSVGText() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		render(streams, "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"10\" height=\"10\"><rect width=\"5\" height=\"5\"/></svg>");
+		assertEquals(0, streams.loads);
+	}
+
+	@Test
+	public void testFontLoadedForSVGText() throws Exception {
+		CountingStreamFactory streams = new CountingStreamFactory();
+		render(streams, SVG);
+		assertTrue(streams.loads >= 1);
+
+		// The font is loaded once per document, even though the AWT font is shared.
+		int loads = streams.loads;
+		render(streams, SVG);
+		assertEquals(2 * loads, streams.loads);
+	}
+}
@@ -0,0 +1,108 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class SharedMarginAreaTest {
+	private static final String HTML;
+
+	static {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<html><head><style>");
+		sb.append("@page { size: 300px 200px; margin: 40px 10px; ");
+		sb.append("@top-center { content: element(header); } ");
+		sb.append("@bottom-center { content: 'Page ' counter(page); } } ");
+		sb.append("#header { position: running(header); } ");
+		sb.append("div + div { page-break-before: always; }</style></head><body>");
+		sb.append("<p id=\"header\"><a href=\"https://example.com/\">Static header</a></p>");
+		for (int i = 0; i < 3; i++) {
+			sb.append("<div>Page content ").append(i).append("</div>");
+		}
+		sb.append("</body></html>");
+		HTML = sb.toString();
+	}
+
+	private static PDDocument render(boolean fast) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static String text(PDDocument doc, int page) throws Exception {
+		PDFTextStripper stripper = new PDFTextStripper();
+		stripper.setStartPage(page);
+		stripper.setEndPage(page);
+		return stripper.getText(doc);
+	}
+
+	private static PDXObject onlyForm(PDPage page) throws Exception {
+		PDResources resources = page.getResources();
+		PDXObject form = null;
+		for (COSName name : resources.getXObjectNames()) {
+			assertEquals(null, form);
+			form = resources.getXObject(name);
+		}
+		assertNotNull(form);
+		return form;
+	}
+
+	private void assertSharedHeader(boolean fast) throws Exception {
+		PDDocument doc = render(fast);
+		try {
+			assertEquals(3, doc.getNumberOfPages());
+
+			PDXObject first = onlyForm(doc.getPage(0));
+
+			for (int i = 0; i < 3; i++) {
+				PDPage page = doc.getPage(i);
+				String text = text(doc, i + 1);
+
+				assertTrue(text.contains("Static header"));
+				assertTrue(text.contains("Page content " + i));
+				assertTrue(text.contains("Page " + (i + 1)));
+
+				// The header is output once and referenced from every page.
+				assertSame(first.getCOSObject(), onlyForm(page).getCOSObject());
+
+				// The link in the header is still on every page.
+				assertEquals(1, page.getAnnotations().size());
+				assertTrue(page.getAnnotations().get(0) instanceof PDAnnotationLink);
+			}
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testSharedMarginArea() throws Exception {
+		assertSharedHeader(false);
+	}
+
+	@Test
+	public void testSharedMarginAreaFastRenderer() throws Exception {
+		assertSharedHeader(true);
+	}
+}
@@ -0,0 +1,84 @@
+package com.openhtmltopdf.testcases;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.junit.Test;
+
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+public class TextObjectBatchingTest {
+	private static final String HTML =
+			"<html><head><style>@page { size: 400px 200px; margin: 10px; }</style></head><body>" +
+			"<p>One <span style=\"color: red;\">two</span> three <b>four</b> five</p>" +
+			"<p style=\"text-align: justify;\">Six seven eight nine ten eleven twelve thirteen fourteen " +
+			"fifteen sixteen seventeen eighteen nineteen twenty.</p>" +
+			"<div style=\"background-color: yellow;\">After background</div>" +
+			"</body></html>";
+
+	private static PDDocument render(boolean fast) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		PdfRendererBuilder builder = new PdfRendererBuilder();
+		builder.withHtmlContent(HTML, null);
+		if (fast) {
+			builder.useFastMode();
+		} else {
+			builder.useSlowMode();
+		}
+		builder.toStream(os);
+		builder.run();
+		return PDDocument.load(os.toByteArray());
+	}
+
+	private static int countOperators(List<Object> tokens, String name) {
+		int count = 0;
+		for (Object token : tokens) {
+			if (token instanceof Operator && ((Operator) token).getName().equals(name)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private void assertBatched(boolean fast) throws Exception {
+		PDDocument doc = render(fast);
+		try {
+			PDFStreamParser parser = new PDFStreamParser(doc.getPage(0));
+			parser.parse();
+			List<Object> tokens = parser.getTokens();
+
+			int textShows = countOperators(tokens, "Tj") + countOperators(tokens, "TJ");
+			int textObjects = countOperators(tokens, "BT");
+
+			assertEquals(textObjects, countOperators(tokens, "ET"));
+			assertTrue(textShows > 5);
+			// Runs are only split into several text objects by other drawing operations.
+			assertTrue("Text objects: " + textObjects, textObjects <= 3);
+
+			PDFTextStripper stripper = new PDFTextStripper();
+			stripper.setSortByPosition(true);
+			String text = stripper.getText(doc);
+			assertTrue(text.contains("One two three four five"));
+			assertTrue(text.contains("After background"));
+		} finally {
+			doc.close();
+		}
+	}
+
+	@Test
+	public void testTextObjectBatching() throws Exception {
+		assertBatched(false);
+	}
+
+	@Test
+	public void testTextObjectBatchingFastRenderer() throws Exception {
+		assertBatched(true);
+	}
+}
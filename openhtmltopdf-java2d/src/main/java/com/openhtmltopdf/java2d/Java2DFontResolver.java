@@ -252,8 +252,9 @@ public class Java2DFontResolver implements FontResolver {
      * 1. Concrete fonts with correct size that have already been used.
      * 2. Font face fonts.
      * 3. System fonts.
+     * Synchronized as fonts may be resolved from several page painting threads.
      */
-    public FSFont resolveFont(SharedContext ctx, String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
+    public synchronized FSFont resolveFont(SharedContext ctx, String[] families, float size, IdentValue weight, IdentValue style, IdentValue variant) {
     	List<Font> fonts = new ArrayList<Font>(3);
 
         if (families != null) {
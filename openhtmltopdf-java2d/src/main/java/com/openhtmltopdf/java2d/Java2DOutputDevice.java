@@ -33,18 +33,22 @@ import com.openhtmltopdf.swing.ImageReplacedElement;
 import com.openhtmltopdf.util.XRLog;
 
 import java.awt.*;
+import java.awt.font.TextLayout;
 import java.awt.RenderingHints.Key;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
 import java.util.logging.Level;
 
 public class Java2DOutputDevice extends AbstractOutputDevice implements OutputDevice {
     private Graphics2D _graphics;
     private Java2DFont _font;
+    private final Map<Java2DTextRenderer.TextKey, TextLayout> _textLayoutCache =
+            Java2DTextRenderer.createTextLayoutCache();
 
     public Java2DOutputDevice(Graphics2D layoutGraphics) {
     	this._graphics = layoutGraphics;
@@ -71,8 +75,15 @@ public class Java2DOutputDevice extends AbstractOutputDevice implements OutputDe
                     image, (int)location.getX(), (int)location.getY(), null);
 		} else if (replaced instanceof Java2DRendererBuilder.Graphics2DPaintingReplacedElement) {
 			Rectangle contentBounds = box.getContentAreaEdge(box.getAbsX(), box.getAbsY(), c);
-			((Java2DRendererBuilder.Graphics2DPaintingReplacedElement) replaced).paint(this, c, contentBounds.x,
-					contentBounds.y, contentBounds.width, contentBounds.height);
+
+			// Pages may be painted on several threads and elements in margin areas are painted
+			// on every page. SVG and object drawers keep drawing state in the element and read
+			// the document, which is not thread safe, so they are painted one at a time.
+			Object lock = box.getElement() != null ? box.getElement().getOwnerDocument() : replaced;
+			synchronized (lock) {
+				((Java2DRendererBuilder.Graphics2DPaintingReplacedElement) replaced).paint(this, c, contentBounds.x,
+						contentBounds.y, contentBounds.width, contentBounds.height);
+			}
 		}
     }
     
@@ -125,6 +136,13 @@ public class Java2DOutputDevice extends AbstractOutputDevice implements OutputDe
         return _graphics;
     }
 
+    /**
+     * The text layouts drawn with this device. Like the device, they are only used by one thread.
+     */
+    Map<Java2DTextRenderer.TextKey, TextLayout> getTextLayoutCache() {
+        return _textLayoutCache;
+    }
+
     @Override
     public void drawOval(int x, int y, int width, int height) {
         _graphics.drawOval(x, y, width, height);
@@ -304,4 +322,9 @@ public class Java2DOutputDevice extends AbstractOutputDevice implements OutputDe
 		// TODO Auto-generated method stub
 		return false;
 	}
+
+	@Override
+	public void drawReusable(Object key, Runnable painter) {
+		painter.run();
+	}
 }
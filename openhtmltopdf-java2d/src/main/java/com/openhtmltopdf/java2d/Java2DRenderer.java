@@ -1,9 +1,16 @@
 package com.openhtmltopdf.java2d;
 
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.openhtmltopdf.java2d.api.Java2DRendererBuilderState;
 import org.w3c.dom.Document;
@@ -18,6 +25,7 @@ import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.extend.*;
 import com.openhtmltopdf.java2d.api.FSPage;
 import com.openhtmltopdf.java2d.api.FSPageProcessor;
+import com.openhtmltopdf.java2d.api.FSTileProcessor;
 import com.openhtmltopdf.layout.BoxBuilder;
 import com.openhtmltopdf.layout.Layer;
 import com.openhtmltopdf.layout.LayoutContext;
@@ -30,10 +38,13 @@ import com.openhtmltopdf.render.BlockBox;
 import com.openhtmltopdf.render.PageBox;
 import com.openhtmltopdf.render.RenderingContext;
 import com.openhtmltopdf.render.ViewportBox;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshot;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshotPainter;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 import com.openhtmltopdf.util.Configuration;
+import com.openhtmltopdf.util.RenderBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
 
@@ -44,6 +55,7 @@ public class Java2DRenderer implements Closeable {
 	
 	private final SharedContext _sharedContext;
 	private final Java2DOutputDevice _outputDevice;
+	private final Graphics2D _layoutGraphics;
 	
     private BidiSplitterFactory _splitterFactory;
     private byte _defaultTextDirection = BidiSplitter.LTR;
@@ -59,6 +71,8 @@ public class Java2DRenderer implements Closeable {
     
     private final int _initialPageNo;
     private final short _pagingMode;
+    private final int _pageThreadCount;
+    private final LayoutSnapshot _layoutSnapshot;
 
 
     /**
@@ -70,10 +84,13 @@ public class Java2DRenderer implements Closeable {
 	    _pagingMode = state._pagingMode;
 		_pageProcessor = state._pageProcessor;
 		_initialPageNo = state._initialPageNumber;		
+		_pageThreadCount = state._pageThreadCount;
+		_layoutSnapshot = state._layoutSnapshot;
 		this._svgImpl = state._svgImpl;
         this._mathMLImpl = state._mathmlImpl;
         this._domMutators = state._domMutators;
         _objectDrawerFactory = state._objectDrawerFactory;
+		_layoutGraphics = state._layoutGraphics;
 		_outputDevice = new Java2DOutputDevice(state._layoutGraphics);
 		
 		NaiveUserAgent uac = new NaiveUserAgent();
@@ -87,15 +104,30 @@ public class Java2DRenderer implements Closeable {
 		if (state._cache != null) {
 			uac.setExternalCache(state._cache);
 		}
+
+		if (state._streamInterceptor != null) {
+			uac.setStreamInterceptor(state._streamInterceptor);
+		}
 		
         _sharedContext = new SharedContext();
         _sharedContext.registerWithThread();
         
         _sharedContext._preferredTransformerFactoryImplementationClass = state._preferredTransformerFactoryImplementationClass;
         _sharedContext._preferredDocumentBuilderFactoryImplementationClass = state._preferredDocumentBuilderFactoryImplementationClass;
+        _sharedContext.setRenderBudget(new RenderBudget(state._cancellationToken, state._renderTimeoutMillis,
+                state._maxPages, state._maxBoxes, state._maxImagePixels));
         
         _sharedContext.setUserAgentCallback(uac);
         _sharedContext.setCss(new StyleReference(uac));
+
+        if (state._stylesheetCache != null) {
+            _sharedContext.getCss().setSharedStylesheetCache(state._stylesheetCache);
+        }
+
+        if (state._declarationCache != null) {
+            _sharedContext.getCss().setSharedDeclarationCache(state._declarationCache);
+        }
+
 //        uac.setSharedContext(_sharedContext);
 //        _outputDevice.setSharedContext(_sharedContext);
 
@@ -225,7 +257,14 @@ public class Java2DRenderer implements Closeable {
         return (Java2DFontResolver) _sharedContext.getFontResolver();
     }
     
+    /**
+     * Lays out the document. Does nothing if a layout snapshot is being painted.
+     */
     public void layout() {
+        if (_layoutSnapshot != null) {
+            return;
+        }
+
         LayoutContext c = newLayoutContext();
         BlockBox root = BoxBuilder.createRootBox(c, _doc);
         root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
@@ -243,15 +282,19 @@ public class Java2DRenderer implements Closeable {
     }
     
     private RenderingContext newRenderingContext() {
+        return newRenderingContext(_outputDevice);
+    }
+
+    private RenderingContext newRenderingContext(Java2DOutputDevice outputDevice) {
         RenderingContext result = _sharedContext.newRenderingContextInstance();
-        result.setFontContext(new Java2DFontContext(_outputDevice.getGraphics()));
+        result.setFontContext(new Java2DFontContext(outputDevice.getGraphics()));
 
-        result.setOutputDevice(_outputDevice);
+        result.setOutputDevice(outputDevice);
         
         if (_reorderer != null)
             result.setBidiReorderer(_reorderer);
         
-        _outputDevice.setRenderingContext(result);
+        outputDevice.setRenderingContext(result);
 
         _sharedContext.getTextRenderer().setup(result.getFontContext());
 
@@ -278,8 +321,23 @@ public class Java2DRenderer implements Closeable {
     }
     
     public void writePages() throws IOException {
+        if (_layoutSnapshot != null) {
+            LayoutSnapshotPainter painter = newSnapshotPainter();
+            RenderingContext c = newSnapshotRenderingContext();
+
+            for (int i = 0; i < _layoutSnapshot.getPageCount(); i++) {
+                writeSnapshotPage(c, painter, i);
+            }
+            return;
+        }
+
         List<PageBox> pages = _root.getLayer().getPages();
 
+        if (_pageThreadCount > 1 && pages.size() > 1 && !_root.getLayer().containsFixedContent()) {
+            writePageImagesParallel(pages);
+            return;
+        }
+
         RenderingContext c = newRenderingContext();
         c.setInitialPageNo(_initialPageNo);
         
@@ -292,6 +350,14 @@ public class Java2DRenderer implements Closeable {
     }
     
     public void writePage(int zeroBasedPageNumber) throws IOException {
+        if (_layoutSnapshot != null) {
+            if (zeroBasedPageNumber >= _layoutSnapshot.getPageCount()) {
+                throw new IndexOutOfBoundsException();
+            }
+            writeSnapshotPage(newSnapshotRenderingContext(), newSnapshotPainter(), zeroBasedPageNumber);
+            return;
+        }
+
     	List<PageBox> pages = _root.getLayer().getPages();
     	
     	if (zeroBasedPageNumber >= pages.size()) {
@@ -323,6 +389,8 @@ public class Java2DRenderer implements Closeable {
     }
 
     public void writeSinglePage(){
+        checkNoSnapshot();
+
         List<PageBox> pages = _root.getLayer().getPages();
 
         RenderingContext c = newRenderingContext();
@@ -343,6 +411,59 @@ public class Java2DRenderer implements Closeable {
         c.setPageCount(pages.size());
         c.setPage(0, page);
 
+        paintSinglePage(c, page);
+        _pageProcessor.finishPage(pg);
+
+        _outputDevice.finish(c, _root);
+    }
+
+    /**
+     * Renders everything to a single page, like {@link #writeSinglePage()}, but paints
+     * it in horizontal bands of at most <code>tileHeight</code> pixels. Each band is clipped
+     * so only boxes that intersect it are painted and is then handed to the tile processor,
+     * so memory use depends on the tile height rather than the document height.
+     */
+    public void writeSinglePageTiled(FSTileProcessor tileProcessor, int tileHeight) {
+        if (tileHeight <= 0) {
+            throw new IllegalArgumentException("Tile height must be positive");
+        }
+
+        checkNoSnapshot();
+
+        List<PageBox> pages = _root.getLayer().getPages();
+
+        RenderingContext c = newRenderingContext();
+        c.setInitialPageNo(_initialPageNo);
+
+        PageBox page = pages.get(0);
+        int width = (int) (page.getWidth(c) / DEFAULT_DOTS_PER_PIXEL);
+        int height = _root.getHeight() / DEFAULT_DOTS_PER_PIXEL;
+
+        _outputDevice.setRoot(_root);
+        _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
+
+        c.setPageCount(pages.size());
+        c.setPage(0, page);
+
+        tileProcessor.beginImage(width, height);
+
+        int tileNo = 0;
+        for (int top = 0; top < height; top += tileHeight) {
+            int bandHeight = Math.min(tileHeight, height - top);
+            FSPage tile = tileProcessor.createTile(tileNo++, top, width, bandHeight);
+
+            _outputDevice.initializePage(tile.getGraphics());
+            _outputDevice.clip(new Rectangle(0, top, width, bandHeight));
+
+            paintSinglePage(c, page);
+            tileProcessor.finishTile(tile);
+        }
+
+        tileProcessor.finishImage();
+        _outputDevice.finish(c, _root);
+    }
+
+    private void paintSinglePage(RenderingContext c, PageBox page) {
         page.paintBackground(c, 0, _pagingMode);
         page.paintMarginAreas(c, 0, _pagingMode);
         page.paintBorder(c, 0, _pagingMode);
@@ -352,12 +473,12 @@ public class Java2DRenderer implements Closeable {
         _root.getLayer().paint(c);
 
         _outputDevice.setClip(working);
-        _pageProcessor.finishPage(pg);
-
-        _outputDevice.finish(c, _root);
     }
     
     public int getPageCount() {
+        if (_layoutSnapshot != null) {
+            return _layoutSnapshot.getPageCount();
+        }
     	return _root.getLayer().getPages().size();
     }
     
@@ -392,24 +513,176 @@ public class Java2DRenderer implements Closeable {
         _outputDevice.finish(c, _root);
     }
     
+    /**
+     * Paints each page on a pool of threads. The layout is shared between the threads while
+     * each page gets its own output device, rendering context and font context. Pages are handed
+     * to the page processor as soon as they are painted so that it can encode and release them.
+     */
+    private void writePageImagesParallel(List<PageBox> pages) throws IOException {
+        RenderingContext c = newRenderingContext();
+        _root.getLayer().assignPagePaintingPositions(c, _pagingMode);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(_pageThreadCount, pages.size()));
+        List<Future<Object>> results = new ArrayList<Future<Object>>(pages.size());
+
+        try {
+            for (int i = 0; i < pages.size(); i++) {
+                results.add(executor.submit(new PagePainter(pages, i)));
+            }
+
+            for (Future<Object> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while painting pages", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Couldn't paint page", cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Paints one page on a worker thread with its own output device state.
+     */
+    private class PagePainter implements Callable<Object> {
+        private final List<PageBox> _pages;
+        private final int _pageNo;
+
+        private PagePainter(List<PageBox> pages, int pageNo) {
+            _pages = pages;
+            _pageNo = pageNo;
+        }
+
+        @Override
+        public Object call() {
+            _sharedContext.registerWithThread();
+            Graphics2D layoutGraphics = (Graphics2D) _layoutGraphics.create();
+
+            try {
+                Java2DOutputDevice outputDevice = new Java2DOutputDevice(layoutGraphics);
+                RenderingContext c = newRenderingContext(outputDevice);
+                c.setInitialPageNo(_initialPageNo);
+                c.setPageCount(_pages.size());
+
+                PageBox page = _pages.get(_pageNo);
+                c.setPage(_pageNo, page);
+
+                Rectangle2D pageSize = new Rectangle2D.Float(0, 0,
+                        page.getWidth(c) / DEFAULT_DOTS_PER_PIXEL,
+                        page.getHeight(c) / DEFAULT_DOTS_PER_PIXEL);
+
+                FSPage pg = _pageProcessor.createPage(_pageNo, (int) pageSize.getWidth(), (int) pageSize.getHeight());
+                outputDevice.initializePage(pg.getGraphics());
+                paintPage(c, page);
+                _pageProcessor.finishPage(pg);
+
+                return null;
+            } finally {
+                layoutGraphics.dispose();
+                ThreadCtx.cleanup();
+            }
+        }
+    }
+    
+    private void checkNoSnapshot() {
+        if (_layoutSnapshot != null) {
+            throw new IllegalStateException("A layout snapshot can only be painted as separate pages");
+        }
+    }
+
+    private RenderingContext newSnapshotRenderingContext() {
+        RenderingContext result = _sharedContext.newRenderingContextInstance();
+        result.setFontContext(new Java2DFontContext(_outputDevice.getGraphics()));
+        result.setOutputDevice(_outputDevice);
+        _outputDevice.setRenderingContext(result);
+        _sharedContext.getTextRenderer().setup(result.getFontContext());
+        return result;
+    }
+
+    /**
+     * The snapshot is painted in its own dots, so images are drawn through a transform
+     * to avoid scaling them to the size in snapshot dots first.
+     */
+    private LayoutSnapshotPainter newSnapshotPainter() {
+        return new LayoutSnapshotPainter(new Java2DSnapshotImageCodec()) {
+            @Override
+            protected void paintImage(RenderingContext c, byte[] image, int x, int y, int width, int height, boolean interpolate) {
+                float scale = getSnapshotScale();
+                int pixelWidth = Math.max(1, Math.round(width * scale));
+                int pixelHeight = Math.max(1, Math.round(height * scale));
+
+                AffineTransform transform = AffineTransform.getTranslateInstance(x, y);
+                transform.scale((double) width / pixelWidth, (double) height / pixelHeight);
+                List<AffineTransform> transforms = new ArrayList<AffineTransform>(1);
+                transforms.add(transform);
+
+                List<AffineTransform> inverse = c.getOutputDevice().pushTransforms(transforms);
+                super.paintImage(c, image, 0, 0, pixelWidth, pixelHeight, interpolate);
+                c.getOutputDevice().popTransforms(inverse);
+            }
+        };
+    }
+
+    /**
+     * @return the scale from snapshot dots to the dots of this renderer.
+     */
+    private float getSnapshotScale() {
+        return (float) _sharedContext.getDotsPerPixel() / _layoutSnapshot.getDotsPerPixel();
+    }
+
+    private void writeSnapshotPage(RenderingContext c, LayoutSnapshotPainter painter, int pageNo) {
+        _sharedContext.getRenderBudget().check();
+
+        float scale = getSnapshotScale();
+        FSPage pg = _pageProcessor.createPage(pageNo,
+                (int) (_layoutSnapshot.getPageWidth(pageNo) * scale),
+                (int) (_layoutSnapshot.getPageHeight(pageNo) * scale));
+
+        Graphics2D graphics = (Graphics2D) pg.getGraphics().create();
+        graphics.scale(scale, scale);
+
+        try {
+            _outputDevice.initializePage(graphics);
+            painter.paintPage(c, _layoutSnapshot, pageNo);
+        } finally {
+            graphics.dispose();
+        }
+
+        _pageProcessor.finishPage(pg);
+    }
+
     private void paintPage(RenderingContext c, PageBox page) {
+        _sharedContext.getRenderBudget().check();
+
+        OutputDevice outputDevice = c.getOutputDevice();
+
         page.paintBackground(c, 0, _pagingMode);
         page.paintMarginAreas(c, 0, _pagingMode);
         page.paintBorder(c, 0, _pagingMode);
 
-        Shape working = _outputDevice.getClip();
+        Shape working = outputDevice.getClip();
 
         Rectangle content = page.getPrintClippingBounds(c);
-        _outputDevice.clip(content);
+        outputDevice.clip(content);
 
         int top = -page.getPaintingTop() + page.getMarginBorderPadding(c, CalculatedStyle.TOP);
         int left = page.getMarginBorderPadding(c, CalculatedStyle.LEFT);
 
-        _outputDevice.translate(left, top);
+        outputDevice.translate(left, top);
         _root.getLayer().paint(c);
-        _outputDevice.translate(-left, -top);
+        outputDevice.translate(-left, -top);
 
-        _outputDevice.setClip(working);
+        outputDevice.setClip(working);
     }
 
     @Override
@@ -0,0 +1,62 @@
+package com.openhtmltopdf.java2d;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.imageio.ImageIO;
+
+import com.openhtmltopdf.extend.FSImage;
+import com.openhtmltopdf.extend.ReplacedElement;
+import com.openhtmltopdf.render.snapshot.SnapshotImageCodec;
+import com.openhtmltopdf.swing.AWTFSImage;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Decodes layout snapshot images to AWT images. Snapshots are only recorded by the
+ * PDF renderer, so this codec does not encode.
+ */
+class Java2DSnapshotImageCodec implements SnapshotImageCodec {
+    private final Map<byte[], BufferedImage> _decoded = new IdentityHashMap<byte[], BufferedImage>();
+
+    @Override
+    public FSImage getImage(ReplacedElement element) {
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty(ReplacedElement element) {
+        return false;
+    }
+
+    @Override
+    public byte[] encode(FSImage image) {
+        return null;
+    }
+
+    @Override
+    public FSImage decode(byte[] image, int width, int height) {
+        BufferedImage buffered = _decoded.get(image);
+
+        if (buffered == null) {
+            try {
+                buffered = ImageIO.read(new ByteArrayInputStream(image));
+            } catch (IOException e) {
+                XRLog.render(Level.WARNING, "Could not decode layout snapshot image", e);
+                return null;
+            }
+            if (buffered == null) {
+                XRLog.render(Level.WARNING, "Unrecognized layout snapshot image format");
+                return null;
+            }
+            _decoded.put(image, buffered);
+        }
+
+        FSImage fsImage = AWTFSImage.createImage(buffered);
+        fsImage.scale(width, height);
+        return fsImage;
+    }
+}
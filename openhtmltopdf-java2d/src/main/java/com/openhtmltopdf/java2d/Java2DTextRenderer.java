@@ -24,11 +24,15 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.font.FontRenderContext;
 import java.awt.font.GlyphVector;
 import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
 import java.awt.geom.Point2D;
 import java.text.AttributedString;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -48,6 +52,13 @@ import com.openhtmltopdf.swing.AWTFSGlyphVector;
 
 /**
  * Renders to a Graphics2D instance.
+ * <p>
+ * Font runs, text layouts and glyph vectors are cached, keyed by font, string and font
+ * render context (which holds the rendering hints), so text which is measured and drawn,
+ * or repeated, is only laid out once. The font run and glyph vector caches belong to the
+ * renderer and are synchronized, as pages may be painted in parallel with the same renderer.
+ * Text layouts build their glyph data lazily while drawing, so they are cached by the
+ * output device instead, which is only used by the thread painting with it.
  *
  * @author   Joshua Marinacci
  * @author   Torbjoern Gannholm
@@ -58,6 +69,67 @@ public class Java2DTextRenderer implements TextRenderer {
     protected Object antiAliasRenderingHint;
     protected Object fractionalFontMetricsHint;
 
+    private static final int MAX_CACHED_TEXTS = 1024;
+
+    private final Map<TextKey, List<FontRun>> fontRunCache =
+            Collections.synchronizedMap(new TextCache<List<FontRun>>());
+    private final Map<TextKey, GlyphVector> glyphVectorCache =
+            Collections.synchronizedMap(new TextCache<GlyphVector>());
+
+    private static class TextCache<V> extends LinkedHashMap<TextKey, V> {
+        private static final long serialVersionUID = 1L;
+
+        private TextCache() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TextKey, V> eldest) {
+            return size() > MAX_CACHED_TEXTS;
+        }
+    }
+
+    /**
+     * The fonts (a font or a list of fallback fonts), string and, unless only fonts
+     * are looked up, the font render context of a cached text.
+     */
+    static class TextKey {
+        private final Object fonts;
+        private final String string;
+        private final FontRenderContext frc;
+        private final int hash;
+
+        private TextKey(Object fonts, String string, FontRenderContext frc) {
+            this.fonts = fonts;
+            this.string = string;
+            this.frc = frc;
+            this.hash = 31 * (31 * fonts.hashCode() + string.hashCode()) + (frc == null ? 0 : frc.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof TextKey))
+                return false;
+            TextKey other = (TextKey) obj;
+            return hash == other.hash &&
+                   string.equals(other.string) &&
+                   fonts.equals(other.fonts) &&
+                   (frc == null ? other.frc == null : frc.equals(other.frc));
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cache of text layouts for {@link Java2DOutputDevice}, which must not be shared between threads.
+     */
+    static Map<TextKey, TextLayout> createTextLayoutCache() {
+        return new TextCache<TextLayout>();
+    }
+
     public Java2DTextRenderer() {
         scale = Configuration.valueAsFloat("xr.text.scale", 1.0f);
         threshold = Configuration.valueAsFloat("xr.text.aa-fontsize-threshhold", 25);
@@ -106,17 +178,28 @@ public class Java2DTextRenderer implements TextRenderer {
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
         
         List<Font> fonts = ((Java2DOutputDevice) outputDevice).getFont().getAWTFonts();
-        List<FontRun> runs = divideIntoFontRuns(fonts, string);
+        FontRenderContext frc = graphics.getFontRenderContext();
+        TextKey key = new TextKey(fonts, string, frc);
+        Map<TextKey, TextLayout> layoutCache = ((Java2DOutputDevice) outputDevice).getTextLayoutCache();
+        TextLayout layout = layoutCache.get(key);
 
-        AttributedString attString = new AttributedString(string);
-        int offset = 0;
-        
-        for (FontRun run : runs) {
-        	attString.addAttribute(TextAttribute.FONT, run.fnt, offset, offset + run.sb.length());
-        	offset += run.sb.length();
+        if (layout == null) {
+            // The same layout Graphics2D.drawString would create from the attributed string.
+            List<FontRun> runs = getFontRuns(fonts, string);
+
+            AttributedString attString = new AttributedString(string);
+            int offset = 0;
+
+            for (FontRun run : runs) {
+                attString.addAttribute(TextAttribute.FONT, run.fnt, offset, offset + run.sb.length());
+                offset += run.sb.length();
+            }
+
+            layout = new TextLayout(attString.getIterator(), frc);
+            layoutCache.put(key, layout);
         }
 
-        graphics.drawString(attString.getIterator(), (int) x, (int) y);
+        layout.draw(graphics, (int) x, (int) y);
         
         if ( graphics.getFont().getSize() > threshold ) {
             graphics.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, aaHint );
@@ -252,6 +335,18 @@ public class Java2DTextRenderer implements TextRenderer {
     	Font fnt;
     }
     
+    private List<FontRun> getFontRuns(List<Font> fonts, String string) {
+        TextKey key = new TextKey(fonts, string, null);
+        List<FontRun> runs = fontRunCache.get(key);
+
+        if (runs == null) {
+            runs = divideIntoFontRuns(fonts, string);
+            fontRunCache.put(key, runs);
+        }
+
+        return runs;
+    }
+
     private List<FontRun> divideIntoFontRuns(List<Font> fonts, String string) {
     	
     	List<FontRun> fontRuns = new ArrayList<FontRun>();
@@ -299,7 +394,7 @@ public class Java2DTextRenderer implements TextRenderer {
      * in case kerning is enabled and it also may be faster.
      */
     private int getWidthSlow(FontContext fc, List<Font> fonts, String string) {
-    	List<FontRun> runs = divideIntoFontRuns(fonts, string);
+    	List<FontRun> runs = getFontRuns(fonts, string);
 
     	// Now, we have our font runs, get the width of each.
     	int width = 0;
@@ -361,7 +456,7 @@ public class Java2DTextRenderer implements TextRenderer {
         Object aaHint = null;
         Object fracHint = null;
         Graphics2D graphics = ((Java2DOutputDevice)outputDevice).getGraphics();
-        Font awtFont = ((AWTFSFont)font).getAWTFonts().get(0);
+        Font awtFont = getFirstAWTFont(font);
         
         if (awtFont.getSize() > threshold ) {
             aaHint = graphics.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
@@ -371,9 +466,7 @@ public class Java2DTextRenderer implements TextRenderer {
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
 
         
-        GlyphVector vector = awtFont.createGlyphVector(
-                graphics.getFontRenderContext(),
-                text);
+        GlyphVector vector = getCachedGlyphVector(awtFont, text, graphics.getFontRenderContext());
         float[] result = vector.getGlyphPositions(0, text.length() + 1, null);
         
         if (awtFont.getSize() > threshold ) {
@@ -393,7 +486,7 @@ public class Java2DTextRenderer implements TextRenderer {
         Object aaHint = null;
         Object fracHint = null;
         Graphics2D graphics = ((Java2DOutputDevice)outputDevice).getGraphics();
-        Font awtFont = ((AWTFSFont)font).getAWTFonts().get(0);
+        Font awtFont = getFirstAWTFont(font);
         
         if (awtFont.getSize() > threshold ) {
             aaHint = graphics.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
@@ -423,7 +516,7 @@ public class Java2DTextRenderer implements TextRenderer {
         Object aaHint = null;
         Object fracHint = null;
         Graphics2D graphics = ((Java2DOutputDevice)outputDevice).getGraphics();
-        Font awtFont = ((AWTFSFont)font).getAWTFonts().get(0);
+        Font awtFont = getFirstAWTFont(font);
         
         if (awtFont.getSize() > threshold ) {
             aaHint = graphics.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
@@ -453,7 +546,7 @@ public class Java2DTextRenderer implements TextRenderer {
         Object aaHint = null;
         Object fracHint = null;
         Graphics2D graphics = ((Java2DOutputDevice)outputDevice).getGraphics();
-        Font awtFont = ((AWTFSFont)font).getAWTFonts().get(0);
+        Font awtFont = getFirstAWTFont(font);
         
         if (awtFont.getSize() > threshold ) {
             aaHint = graphics.getRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING);
@@ -462,9 +555,7 @@ public class Java2DTextRenderer implements TextRenderer {
         fracHint = graphics.getRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS);
         graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, fractionalFontMetricsHint);
         
-        GlyphVector vector = awtFont.createGlyphVector(
-                graphics.getFontRenderContext(),
-                text);
+        GlyphVector vector = getCachedGlyphVector(awtFont, text, graphics.getFontRenderContext());
         
         if (awtFont.getSize() > threshold ) {
             graphics.setRenderingHint( RenderingHints.KEY_TEXT_ANTIALIASING, aaHint );
@@ -474,6 +565,34 @@ public class Java2DTextRenderer implements TextRenderer {
         return new AWTFSGlyphVector(vector);
     }
 
+    /**
+     * Fonts from the Java2D font resolver are {@link Java2DFont}s, while other callers may pass an {@link AWTFSFont}.
+     */
+    private static Font getFirstAWTFont(FSFont font) {
+        if (font instanceof Java2DFont) {
+            return ((Java2DFont) font).getAWTFonts().get(0);
+        }
+        return ((AWTFSFont) font).getAWTFonts().get(0);
+    }
+
+    /**
+     * The returned glyph vector is shared, possibly between threads, so must not be changed.
+     */
+    private GlyphVector getCachedGlyphVector(Font awtFont, String text, FontRenderContext frc) {
+        TextKey key = new TextKey(awtFont, text, frc);
+        GlyphVector vector = glyphVectorCache.get(key);
+
+        if (vector == null) {
+            vector = awtFont.createGlyphVector(frc, text);
+            // The glyph positions are computed lazily, into an array which is published before
+            // it is filled, so compute them before another thread can read them.
+            vector.getGlyphPositions(0, vector.getNumGlyphs() + 1, null);
+            glyphVectorCache.put(key, vector);
+        }
+
+        return vector;
+    }
+
 	@Override
 	public void setup(FontContext context) {
 		// TODO Auto-generated method stub
@@ -0,0 +1,26 @@
+package com.openhtmltopdf.java2d.api;
+
+/**
+ * Receives a single page document as a series of horizontal bands (tiles),
+ * top to bottom. See {@link Java2DRendererBuilder#toSinglePageTiles(FSTileProcessor, int)}.
+ */
+public interface FSTileProcessor {
+	/**
+	 * Called once before the first tile with the size of the whole image in CSS pixels.
+	 */
+	public void beginImage(int width, int height);
+
+	/**
+	 * Create a tile covering the band from <code>y</code> to <code>y + height</code>.
+	 * The graphics of the returned tile must map the document point <code>(0, y)</code>
+	 * to the top left of the tile.
+	 */
+	public FSPage createTile(int zeroBasedTileNumber, int y, int width, int height);
+
+	public void finishTile(FSPage tile);
+
+	/**
+	 * Called once after the last tile has been finished.
+	 */
+	public void finishImage();
+}
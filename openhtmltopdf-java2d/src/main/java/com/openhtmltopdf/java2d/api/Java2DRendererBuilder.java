@@ -88,6 +88,25 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
 	public Java2DRendererBuilder toSinglePage(FSPageProcessor pageProcessor) {
 		state._pagingMode = Layer.PAGED_MODE_SCREEN;
 		state._pageProcessor = pageProcessor;
+		state._tileProcessor = null;
+		return this;
+	}
+
+	/**
+	 * Render everything to a single page like {@link #toSinglePage(FSPageProcessor)}, but
+	 * paint it in horizontal bands of <code>tileHeight</code> CSS pixels. Use this for very
+	 * long documents where a single image of the full height would use too much memory.
+	 * The {@link PngTileProcessor} streams the bands into one PNG image.
+	 *
+	 * @param tileProcessor receives each band as it is painted.
+	 * @param tileHeight height of each band in CSS pixels.
+	 * @return
+	 */
+	public Java2DRendererBuilder toSinglePageTiles(FSTileProcessor tileProcessor, int tileHeight) {
+		state._pagingMode = Layer.PAGED_MODE_SCREEN;
+		state._tileProcessor = tileProcessor;
+		state._tileHeight = tileHeight;
+		state._pageProcessor = null;
 		return this;
 	}
 
@@ -102,6 +121,29 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
 	public Java2DRendererBuilder toPageProcessor(FSPageProcessor pageProcessor) {
 		state._pagingMode = Layer.PAGED_MODE_PRINT;
 		state._pageProcessor = pageProcessor;
+		state._tileProcessor = null;
+		return this;
+	}
+
+	/**
+	 * Paint pages concurrently on the given number of threads when outputting
+	 * in paged format. Layout is still done once, on the calling thread, and
+	 * is then shared (read-only) by the painting threads.
+	 *
+	 * The page processor MUST be thread-safe in this mode as
+	 * <code>createPage</code> and <code>finishPage</code> will be called from
+	 * several threads. The {@link DefaultPageProcessor} is suitable as it
+	 * encodes and releases each page image in <code>finishPage</code>, so only
+	 * as many page images as there are threads are held in memory at once.
+	 *
+	 * Documents with fixed position content are always painted on a single thread
+	 * as fixed boxes are re-positioned for each page.
+	 *
+	 * @param threadCount number of painting threads, 1 (the default) to paint on the calling thread.
+	 * @return
+	 */
+	public Java2DRendererBuilder useParallelPagePainting(int threadCount) {
+		state._pageThreadCount = threadCount;
 		return this;
 	}
 
@@ -118,6 +160,8 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
 		renderer.layout();
 		if (state._pagingMode == Layer.PAGED_MODE_PRINT)
 			renderer.writePages();
+		else if (state._tileProcessor != null)
+			renderer.writeSinglePageTiled(state._tileProcessor, state._tileHeight);
 		else
 			renderer.writeSinglePage();
 	}
@@ -135,6 +179,8 @@ public class Java2DRendererBuilder extends BaseRendererBuilder<Java2DRendererBui
 		renderer.layout();
 		if (state._pagingMode == Layer.PAGED_MODE_PRINT)
 			renderer.writePage(0);
+		else if (state._tileProcessor != null)
+			renderer.writeSinglePageTiled(state._tileProcessor, state._tileHeight);
 		else
 			renderer.writeSinglePage();
 	}
@@ -19,5 +19,8 @@ public class Java2DRendererBuilderState extends BaseRendererBuilder.BaseRenderer
 
 	public Graphics2D _layoutGraphics;
 	public FSPageProcessor _pageProcessor;
+	public int _pageThreadCount = 1;
+	public FSTileProcessor _tileProcessor;
+	public int _tileHeight;
 	public final List<Java2DRendererBuilder.AddedFont> _fonts = new ArrayList<Java2DRendererBuilder.AddedFont>();
 }
@@ -0,0 +1,222 @@
+package com.openhtmltopdf.java2d.api;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Tile processor which writes the tiles as rows of a single PNG image as they
+ * are finished. Only one tile is held in memory at any time, so very tall images can
+ * be written without allocating a full size BufferedImage.
+ */
+public class PngTileProcessor implements FSTileProcessor {
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+	private static final int IDAT_CHUNK_SIZE = 65536;
+
+	private final OutputStream _os;
+	private final boolean _alpha;
+	private final double _scale;
+
+	private int _imageWidth;
+	private int _imageHeight;
+	private int _rowsWritten;
+	private DeflaterOutputStream _idat;
+
+	public class PngTile implements FSPage {
+		private final BufferedImage _img;
+		private final Graphics2D _g2d;
+		private final int _rows;
+
+		private PngTile(int rowStart, int rows) {
+			_rows = rows;
+			_img = new BufferedImage(_imageWidth, Math.max(rows, 1), _alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+			_g2d = _img.createGraphics();
+
+			if (_alpha) {
+				_g2d.setBackground(new Color(255, 255, 255, 0));
+				_g2d.clearRect(0, 0, _img.getWidth(), _img.getHeight());
+			} else {
+				_g2d.setColor(Color.WHITE);
+				_g2d.fillRect(0, 0, _img.getWidth(), _img.getHeight());
+			}
+
+			_g2d.translate(0, -rowStart);
+			_g2d.scale(_scale, _scale);
+		}
+
+		@Override
+		public Graphics2D getGraphics() {
+			return _g2d;
+		}
+	}
+
+	/**
+	 * @param os the output stream to write the PNG to. It is not closed by the tile processor.
+	 * @param alpha whether to write an RGBA (transparent background) or RGB (white background) image.
+	 * @param scale scale factor to control the resolution of the image.
+	 */
+	public PngTileProcessor(OutputStream os, boolean alpha, double scale) {
+		_os = os;
+		_alpha = alpha;
+		_scale = scale;
+	}
+
+	@Override
+	public void beginImage(int width, int height) {
+		_imageWidth = Math.max((int) (width * _scale), 1);
+		_imageHeight = Math.max((int) (height * _scale), 1);
+		_rowsWritten = 0;
+
+		try {
+			_os.write(PNG_SIGNATURE);
+
+			ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+			writeInt(header, _imageWidth);
+			writeInt(header, _imageHeight);
+			header.write(8); // Bit depth.
+			header.write(_alpha ? 6 : 2); // Color type, RGBA or RGB.
+			header.write(0); // Compression method.
+			header.write(0); // Filter method.
+			header.write(0); // Interlace method.
+			writeChunk(_os, "IHDR", header.toByteArray(), header.size());
+
+			_idat = new DeflaterOutputStream(new IdatOutputStream(), new Deflater(Deflater.DEFAULT_COMPRESSION), IDAT_CHUNK_SIZE);
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write image to output stream", e);
+		}
+	}
+
+	@Override
+	public FSPage createTile(int zeroBasedTileNumber, int y, int width, int height) {
+		int rowStart = Math.min((int) (y * _scale), _imageHeight);
+		int rowEnd = Math.min((int) ((y + height) * _scale), _imageHeight);
+		return new PngTile(rowStart, rowEnd - rowStart);
+	}
+
+	@Override
+	public void finishTile(FSPage tile) {
+		PngTile pngTile = (PngTile) tile;
+		pngTile._g2d.dispose();
+
+		int rows = Math.min(pngTile._rows, _imageHeight - _rowsWritten);
+		int[] argb = new int[_imageWidth];
+		byte[] line = new byte[1 + _imageWidth * (_alpha ? 4 : 3)];
+
+		try {
+			for (int row = 0; row < rows; row++) {
+				pngTile._img.getRGB(0, row, _imageWidth, 1, argb, 0, _imageWidth);
+
+				int pos = 0;
+				line[pos++] = 0; // Filter type none.
+
+				for (int pixel : argb) {
+					line[pos++] = (byte) (pixel >> 16);
+					line[pos++] = (byte) (pixel >> 8);
+					line[pos++] = (byte) pixel;
+					if (_alpha) {
+						line[pos++] = (byte) (pixel >> 24);
+					}
+				}
+
+				_idat.write(line);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write image to output stream", e);
+		}
+
+		_rowsWritten += rows;
+	}
+
+	@Override
+	public void finishImage() {
+		try {
+			// Pad with blank rows if rounding left us short, PNG requires every row.
+			if (_rowsWritten < _imageHeight) {
+				byte[] line = new byte[1 + _imageWidth * (_alpha ? 4 : 3)];
+				if (!_alpha) {
+					Arrays.fill(line, 1, line.length, (byte) 0xff);
+				}
+				while (_rowsWritten < _imageHeight) {
+					_idat.write(line);
+					_rowsWritten++;
+				}
+			}
+
+			_idat.close();
+			writeChunk(_os, "IEND", new byte[0], 0);
+			_os.flush();
+		} catch (IOException e) {
+			throw new RuntimeException("Couldn't write image to output stream", e);
+		}
+	}
+
+	/**
+	 * Buffers compressed data and writes it out as a series of IDAT chunks.
+	 * Closing it writes the final chunk but does not close the underlying stream.
+	 */
+	private class IdatOutputStream extends OutputStream {
+		private final byte[] _buf = new byte[IDAT_CHUNK_SIZE];
+		private int _count;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (_count == _buf.length) {
+				flushChunk();
+			}
+			_buf[_count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (_count == _buf.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, _buf.length - _count);
+				System.arraycopy(b, off, _buf, _count, n);
+				_count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void flushChunk() throws IOException {
+			if (_count > 0) {
+				writeChunk(_os, "IDAT", _buf, _count);
+				_count = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flushChunk();
+		}
+	}
+
+	private static void writeChunk(OutputStream os, String type, byte[] data, int length) throws IOException {
+		byte[] typeBytes = type.getBytes("US-ASCII");
+
+		CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+
+		writeInt(os, length);
+		os.write(typeBytes);
+		os.write(data, 0, length);
+		writeInt(os, (int) crc.getValue());
+	}
+
+	private static void writeInt(OutputStream os, int value) throws IOException {
+		os.write((value >>> 24) & 0xff);
+		os.write((value >>> 16) & 0xff);
+		os.write((value >>> 8) & 0xff);
+		os.write(value & 0xff);
+	}
+}
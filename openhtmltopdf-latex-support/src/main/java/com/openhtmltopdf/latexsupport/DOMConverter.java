@@ -1,8 +1,15 @@
 package com.openhtmltopdf.latexsupport;
 
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 import uk.ac.ed.ph.snuggletex.DOMOutputOptions;
 import uk.ac.ed.ph.snuggletex.SnuggleEngine;
@@ -10,13 +17,48 @@ import uk.ac.ed.ph.snuggletex.SnuggleInput;
 import uk.ac.ed.ph.snuggletex.SnuggleSession;
 import uk.ac.ed.ph.snuggletex.utilities.StylesheetManager;
 
+/**
+ * Converts LaTeX to a DOM subtree. Conversions are built in a document of their own,
+ * so they can run on any thread and be cached, keyed by their LaTeX source.
+ */
 class DOMConverter {
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+
 	private StylesheetManager stylesheetManager = new StylesheetManager();
+	private final Map<String, Element> cache;
+
+	DOMConverter(final int maxCachedConversions) {
+		this.cache = new LinkedHashMap<String, Element>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Element> eldest) {
+				return size() > maxCachedConversions;
+			}
+		};
+	}
+
+	/**
+	 * @return the LaTeX source of an element, which is also its cache key.
+	 */
+	static String getInput(Element latexElement) {
+		return latexElement.getTextContent().replaceAll("(\r\n|\r|\n)", "\n");
+	}
 
-	void convert(Element latexElement) throws IOException {
-		String rawInputLaTeX = latexElement.getTextContent();
-		String inputLaTeX = rawInputLaTeX.replaceAll("(\r\n|\r|\n)", "\n");
+	/**
+	 * @return the cached conversion of the LaTeX source or null.
+	 */
+	Element getCached(String inputLaTeX) {
+		synchronized (cache) {
+			return cache.get(inputLaTeX);
+		}
+	}
 
+	/**
+	 * Converts the LaTeX source and caches the result. May be called from any thread.
+	 * @return an element whose children are the converted LaTeX.
+	 */
+	Element convert(String inputLaTeX) throws IOException {
 		SnuggleEngine engine = createSnuggleEngine();
 		SnuggleSession session = engine.createSession();
 		SnuggleInput input = new SnuggleInput(inputLaTeX, "LaTeX Element");
@@ -24,18 +66,49 @@ class DOMConverter {
 		try {
 			session.parseInput(input);
 		} catch (Exception e) {
-			throw new IOException("Error while parsing: " + rawInputLaTeX + ": " + e.getMessage(), e);
+			throw new IOException("Error while parsing: " + inputLaTeX + ": " + e.getMessage(), e);
 		}
 
-		while (latexElement.getChildNodes().getLength() != 0)
-			latexElement.removeChild(latexElement.getFirstChild());
+		Element converted = createDocument().createElement("latex");
 
 		DOMOutputOptions options = new DOMOutputOptions();
 		options.setErrorOutputOptions(DOMOutputOptions.ErrorOutputOptions.XHTML);
 		try {
-			session.buildDOMSubtree(latexElement, options);
+			session.buildDOMSubtree(converted, options);
 		} catch (Exception e) {
-			throw new IOException("Error while building DOM for: " + rawInputLaTeX + ": " + e.getMessage(), e);
+			throw new IOException("Error while building DOM for: " + inputLaTeX + ": " + e.getMessage(), e);
+		}
+
+		synchronized (cache) {
+			cache.put(inputLaTeX, converted);
+		}
+		return converted;
+	}
+
+	/**
+	 * Replaces the content of a latex element with a copy of its conversion.
+	 */
+	static void replaceContent(Element latexElement, Element converted) {
+		while (latexElement.getChildNodes().getLength() != 0)
+			latexElement.removeChild(latexElement.getFirstChild());
+
+		Document document = latexElement.getOwnerDocument();
+
+		// A cached conversion may be imported by several threads and DOM reads are not thread safe.
+		synchronized (converted) {
+			for (Node child = converted.getFirstChild(); child != null; child = child.getNextSibling()) {
+				latexElement.appendChild(document.importNode(child, true));
+			}
+		}
+	}
+
+	private static Document createDocument() throws IOException {
+		try {
+			synchronized (DOCUMENT_BUILDER_FACTORY) {
+				return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+			}
+		} catch (ParserConfigurationException e) {
+			throw new IOException("Could not create document for LaTeX conversion", e);
 		}
 	}
 
@@ -1,6 +1,21 @@
 package com.openhtmltopdf.latexsupport;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -11,30 +26,96 @@ import uk.ac.ed.ph.snuggletex.utilities.CSSUtilities;
 /**
  * Allows to use &lt;latex&gt; tags within the HTML to use LaTeX for math and
  * format output. Register using
+ * <p>
+ * Conversions are cached by their LaTeX source, so repeated formulas, in the same or
+ * later documents, are only converted once. Distinct formulas in a document are converted
+ * on a pool of threads, which is shared by all documents using the mutator.
  */
 public class LaTeXDOMMutator implements FSDOMMutator {
 	/**
 	 * The singleton instance to use.
 	 */
-	public final static LaTeXDOMMutator INSTANCE = new LaTeXDOMMutator();
-	private final DOMConverter converter = new DOMConverter();
+	public final static LaTeXDOMMutator INSTANCE = new LaTeXDOMMutator(
+			500, Runtime.getRuntime().availableProcessors());
 
-	private LaTeXDOMMutator() {
+	private final DOMConverter converter;
+
+	/**
+	 * The executor converting formulas in parallel, or null to convert them on the calling thread.
+	 */
+	private final ExecutorService executor;
+
+	private LaTeXDOMMutator(int maxCachedConversions, int threadCount) {
+		this(maxCachedConversions, threadCount > 1 ? createExecutor(threadCount) : null);
+	}
+
+	private LaTeXDOMMutator(int maxCachedConversions, ExecutorService executor) {
+		this.converter = new DOMConverter(maxCachedConversions);
+		this.executor = executor;
+	}
+
+	/**
+	 * Creates a mutator with its own cache, for use instead of {@link #INSTANCE}.
+	 * @param maxCachedConversions the maximum number of converted formulas to keep, zero for no cache.
+	 * @param threadCount the maximum number of threads converting formulas, shared by all documents.
+	 */
+	public static LaTeXDOMMutator create(int maxCachedConversions, int threadCount) {
+		return new LaTeXDOMMutator(maxCachedConversions, threadCount);
+	}
+
+	/**
+	 * Creates a mutator with its own cache which converts formulas on the given executor.
+	 * The executor is not shut down by the mutator.
+	 * @param maxCachedConversions the maximum number of converted formulas to keep, zero for no cache.
+	 * @param executor the executor to convert formulas on, or null to convert them on the calling thread.
+	 */
+	public static LaTeXDOMMutator create(int maxCachedConversions, ExecutorService executor) {
+		return new LaTeXDOMMutator(maxCachedConversions, executor);
+	}
+
+	/**
+	 * A pool of at most threadCount daemon threads, which end when they have been idle for a minute.
+	 */
+	private static ExecutorService createExecutor(int threadCount) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+				60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "LaTeXDOMMutator-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * The default stylesheet only depends on SnuggleTeX, so it is written once.
+	 */
+	private static class DefaultStylesheetHolder {
+		private static final String DEFAULT_CSS = CSSUtilities.writeDefaultStylesheet();
 	}
 
 	@Override
 	public void mutateDocument(org.w3c.dom.Document document) {
 		try {
 			NodeList latexNodes = document.getElementsByTagName("latex");
+			List<Element> elements = new ArrayList<Element>(latexNodes.getLength());
 			for (int i = 0; i < latexNodes.getLength(); i++) {
-				converter.convert((Element) latexNodes.item(i));
+				elements.add((Element) latexNodes.item(i));
 			}
+
+			convertAll(elements);
+
 			if (latexNodes.getLength() != 0) {
 				/*
 				 * We must append the style sheet, otherwise we wont get everything rendered
 				 * correctly
 				 */
-				String defaultCSS = CSSUtilities.writeDefaultStylesheet();
+				String defaultCSS = DefaultStylesheetHolder.DEFAULT_CSS;
 				NodeList list = document.getElementsByTagName("head");
 				if (list.getLength() == 0)
 					list = document.getElementsByTagName("body");
@@ -52,4 +133,77 @@ public class LaTeXDOMMutator implements FSDOMMutator {
 			throw new RuntimeException(e);
 		}
 	}
+
+	/**
+	 * Converts the formulas which are not cached, in parallel if there are several, and then
+	 * replaces the content of each element. Only the replacing touches the document.
+	 */
+	private void convertAll(List<Element> elements) throws IOException {
+		Map<String, Element> converted = new HashMap<String, Element>();
+		Set<String> pending = new LinkedHashSet<String>();
+		List<String> inputs = new ArrayList<String>(elements.size());
+
+		for (Element element : elements) {
+			String input = DOMConverter.getInput(element);
+			inputs.add(input);
+
+			if (!converted.containsKey(input) && !pending.contains(input)) {
+				Element cached = converter.getCached(input);
+				if (cached != null) {
+					converted.put(input, cached);
+				} else {
+					pending.add(input);
+				}
+			}
+		}
+
+		if (pending.size() > 1 && executor != null) {
+			convertParallel(pending, converted);
+		} else {
+			for (String input : pending) {
+				converted.put(input, converter.convert(input));
+			}
+		}
+
+		for (int i = 0; i < elements.size(); i++) {
+			DOMConverter.replaceContent(elements.get(i), converted.get(inputs.get(i)));
+		}
+	}
+
+	private void convertParallel(Set<String> pending, Map<String, Element> converted) throws IOException {
+		Map<String, Future<Element>> results = new HashMap<String, Future<Element>>();
+
+		try {
+			for (final String input : pending) {
+				results.put(input, executor.submit(new Callable<Element>() {
+					@Override
+					public Element call() throws Exception {
+						return converter.convert(input);
+					}
+				}));
+			}
+
+			for (Map.Entry<String, Future<Element>> result : results.entrySet()) {
+				converted.put(result.getKey(), result.getValue().get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while converting LaTeX", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new RuntimeException("Couldn't convert LaTeX", cause);
+		} finally {
+			// Conversions of this document which are still queued, after a failure, are not needed.
+			for (Future<Element> result : results.values()) {
+				result.cancel(false);
+			}
+		}
+	}
 }
@@ -15,6 +15,7 @@ import java.util.logging.Level;
 
 import net.sourceforge.jeuclid.font.DefaultFontFactory;
 import net.sourceforge.jeuclid.font.FontFactory;
+import net.sourceforge.jeuclid.layout.JEuclidView;
 
 import org.w3c.dom.Element;
 
@@ -34,8 +35,18 @@ public class MathMLDrawer implements SVGDrawer {
 	private SharedContext _sharedCtx;
 	private final Set<String> _loadedFontFamilies = new HashSet<String>();
 	private final Map<String, List<String>> _availabelFontFamilies = new HashMap<String, List<String>>();
+	private final MathMLLayoutCache _layoutCache;
 
 	public MathMLDrawer() {
+		this(null);
+	}
+	
+	/**
+	 * Creates a drawer that reuses formulas laid out by earlier renders sharing the same cache.
+	 * @param layoutCache a cache, which may be shared across threads, or null for no cache.
+	 */
+	public MathMLDrawer(MathMLLayoutCache layoutCache) {
+		this._layoutCache = layoutCache;
 		this._fontFactory = new DefaultFontFactory();
 		FontFactory.setThreadFontFactory(this._fontFactory);
 	}
@@ -107,19 +118,49 @@ public class MathMLDrawer implements SVGDrawer {
 	public SVGImage buildSVGImage(Element mathMlElement, Box box, CssContext c, double cssWidth,
 			double cssHeight, double dotsPerPixel) {
 		
-		// Make sure the fonts this MathML object uses are loaded.
 		String[] fonts = box.getStyle().asStringArray(CSSName.FONT_FAMILY);
-		for (String family : fonts) {
-			loadFamilyFonts(family);
-		}
-		
 		double cssMaxWidth = CalculatedStyle.getCSSMaxWidth(c, box);
 		double cssMaxHeight = CalculatedStyle.getCSSMaxHeight(c, box);
 		List<String> fontList = Arrays.asList(fonts);
 		
-		MathMLImage img = new MathMLImage(mathMlElement, cssWidth, cssHeight, cssMaxWidth, cssMaxHeight, dotsPerPixel, fontList);
-
-		return img;
+		if (_layoutCache == null) {
+			loadFamilyFonts(fonts);
+			return new MathMLImage(mathMlElement, cssWidth, cssHeight, cssMaxWidth, cssMaxHeight, dotsPerPixel, fontList);
+		}
+		
+		String key = MathMLLayoutCache.createKey(mathMlElement, getFontSources(fonts), MathMLImage.MATH_SIZE);
+		JEuclidView view = _layoutCache.get(key);
+		
+		if (view == null) {
+			// Fonts are only needed to lay out a formula.
+			loadFamilyFonts(fonts);
+			view = MathMLImage.createView(mathMlElement, fontList);
+			MathMLImage img = new MathMLImage(view, cssWidth, cssHeight, cssMaxWidth, cssMaxHeight, dotsPerPixel);
+			_layoutCache.put(key, view);
+			return img;
+		}
+		
+		return new MathMLImage(view, cssWidth, cssHeight, cssMaxWidth, cssMaxHeight, dotsPerPixel);
+	}
+	
+	private void loadFamilyFonts(String[] fonts) {
+		// Make sure the fonts this MathML object uses are loaded.
+		for (String family : fonts) {
+			loadFamilyFonts(family);
+		}
+	}
+	
+	/**
+	 * @return the font families with their font-face sources, as the same family name
+	 * may refer to different fonts in different documents.
+	 */
+	private List<String> getFontSources(String[] fonts) {
+		List<String> sources = new ArrayList<String>(fonts.length);
+		for (String family : fonts) {
+			List<String> srcs = _availabelFontFamilies.get(family);
+			sources.add(srcs == null ? family : family + srcs);
+		}
+		return sources;
 	}
 
 	@Override
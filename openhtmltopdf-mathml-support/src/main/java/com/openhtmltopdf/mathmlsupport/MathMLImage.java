@@ -17,10 +17,11 @@ import com.openhtmltopdf.extend.SVGDrawer.SVGImage;
 import com.openhtmltopdf.render.RenderingContext;
 
 public class MathMLImage implements SVGImage {
+	// TODO: Proper font size pickup from CSS.
+	static final float MATH_SIZE = 16f;
+
 	private final JEuclidView _view;
-	private final DocumentElement _mathDoc;
 	private final double _dotsPerPixel;
-	private final MathLayoutContext _context = new MathLayoutContext();
 	private final double _scaledWidthInOutputDeviceDots;
 	private final double _scaledHeightInOutputDeviceDots;
 	private double _sx = 1;
@@ -45,19 +46,35 @@ public class MathMLImage implements SVGImage {
 	public MathMLImage(Element mathMlElement, double cssWidth,
 			double cssHeight, double cssMaxWidth, double cssMaxHeight,
 			double dotsPerPixel, List<String> fonts) {
-		this._dotsPerPixel = dotsPerPixel;
-		this._mathDoc = DOMBuilder.getInstance().createJeuclidDom(mathMlElement);
-		
-		this._context.setParameter(Parameter.FONTS_SERIF, fonts);
-		this._context.setParameter(Parameter.FONTS_DOUBLESTRUCK, fonts);
-		this._context.setParameter(Parameter.FONTS_FRAKTUR, fonts);
-		this._context.setParameter(Parameter.FONTS_MONOSPACED, fonts);
-		this._context.setParameter(Parameter.FONTS_SANSSERIF, fonts);
-		this._context.setParameter(Parameter.FONTS_SCRIPT, fonts);
+		this(createView(mathMlElement, fonts), cssWidth, cssHeight, cssMaxWidth, cssMaxHeight, dotsPerPixel);
+	}
+	
+	/**
+	 * Lays out a MathML element with JEuclid.
+	 */
+	static JEuclidView createView(Element mathMlElement, List<String> fonts) {
+		DocumentElement mathDoc = DOMBuilder.getInstance().createJeuclidDom(mathMlElement);
+		MathLayoutContext context = new MathLayoutContext();
 		
+		context.setParameter(Parameter.FONTS_SERIF, fonts);
+		context.setParameter(Parameter.FONTS_DOUBLESTRUCK, fonts);
+		context.setParameter(Parameter.FONTS_FRAKTUR, fonts);
+		context.setParameter(Parameter.FONTS_MONOSPACED, fonts);
+		context.setParameter(Parameter.FONTS_SANSSERIF, fonts);
+		context.setParameter(Parameter.FONTS_SCRIPT, fonts);
 		
-		this._context.setParameter(Parameter.MATHSIZE, 16f); // TODO: Proper font size pickup from CSS.
-		this._view = new JEuclidView(this._mathDoc, this._context, null);
+		context.setParameter(Parameter.MATHSIZE, MATH_SIZE);
+		return new JEuclidView(mathDoc, context, null);
+	}
+	
+	/**
+	 * Creates an image from a laid out view, which may be shared with other images.
+	 */
+	MathMLImage(JEuclidView view, double cssWidth,
+			double cssHeight, double cssMaxWidth, double cssMaxHeight,
+			double dotsPerPixel) {
+		this._dotsPerPixel = dotsPerPixel;
+		this._view = view;
 
 		if (this.getViewWidthInOutputDeviceDots() <= 0 || this.getViewHeightInOutputDeviceDots() <= 0) {
 			this._scaledWidthInOutputDeviceDots = 0;
@@ -119,12 +136,17 @@ public class MathMLImage implements SVGImage {
 		this._scaledHeightInOutputDeviceDots = h;
 	}
 	
+	// A view may be shared between threads and lays out on demand, so it is locked for every use.
 	private double getViewWidthInOutputDeviceDots() {
-		return (this._view.getWidth() * _dotsPerPixel);
+		synchronized (this._view) {
+			return (this._view.getWidth() * _dotsPerPixel);
+		}
 	}
 	
 	private double getViewHeightInOutputDeviceDots() {
-		return ((this._view.getAscentHeight() + this._view.getDescentHeight()) * _dotsPerPixel);
+		synchronized (this._view) {
+			return ((this._view.getAscentHeight() + this._view.getDescentHeight()) * _dotsPerPixel);
+		}
 	}
 
 	@Override
@@ -144,7 +166,9 @@ public class MathMLImage implements SVGImage {
 			@Override
 			public void render(Graphics2D g2d) {
 				g2d.scale(_sx, _sy);
-				_view.draw(g2d, 0, _view.getAscentHeight());
+				synchronized (_view) {
+					_view.draw(g2d, 0, _view.getAscentHeight());
+				}
 			}
 		});
 	}
@@ -0,0 +1,142 @@
+package com.openhtmltopdf.mathmlsupport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.sourceforge.jeuclid.layout.JEuclidView;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A cache of laid out MathML formulas that may be shared across renders and threads,
+ * by passing it to each {@link MathMLDrawer}. Formulas are keyed by their canonicalized
+ * markup, fonts and size, so the same formula in different documents is only laid out once.
+ * Least recently used formulas are dropped once the cache holds its maximum number of entries.
+ */
+public class MathMLLayoutCache {
+	private final Map<String, JEuclidView> _views;
+
+	/**
+	 * @param maxEntries the maximum number of formulas to keep.
+	 */
+	public MathMLLayoutCache(final int maxEntries) {
+		_views = new LinkedHashMap<String, JEuclidView>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, JEuclidView> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+
+	synchronized JEuclidView get(String key) {
+		return _views.get(key);
+	}
+
+	synchronized void put(String key, JEuclidView view) {
+		_views.put(key, view);
+	}
+
+	public synchronized int size() {
+		return _views.size();
+	}
+
+	public synchronized void clear() {
+		_views.clear();
+	}
+
+	private static final Comparator<Attr> ATTRIBUTE_ORDER = new Comparator<Attr>() {
+		@Override
+		public int compare(Attr a1, Attr a2) {
+			return name(a1).compareTo(name(a2));
+		}
+	};
+
+	private static String name(Node node) {
+		String local = node.getLocalName() != null ? node.getLocalName() : node.getNodeName();
+		return node.getNamespaceURI() != null ? node.getNamespaceURI() + ':' + local : local;
+	}
+
+	/**
+	 * Creates the cache key of a formula. The markup is canonicalized by sorting attributes,
+	 * dropping comments and whitespace only text and collapsing whitespace in text, which
+	 * MathML ignores.
+	 * @param fonts the font families and their font-face sources.
+	 */
+	static String createKey(Node math, List<String> fonts, float mathSize) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(mathSize).append('\u0000');
+		for (String font : fonts) {
+			sb.append(font).append('\u0000');
+		}
+		sb.append('\u0001');
+		canonicalize(math, sb);
+		return sb.toString();
+	}
+
+	private static void canonicalize(Node node, StringBuilder sb) {
+		switch (node.getNodeType()) {
+		case Node.ELEMENT_NODE: {
+			sb.append('<').append(name(node));
+
+			NamedNodeMap attrs = node.getAttributes();
+			List<Attr> sorted = new ArrayList<Attr>(attrs.getLength());
+			for (int i = 0; i < attrs.getLength(); i++) {
+				Attr attr = (Attr) attrs.item(i);
+				if (!"xmlns".equals(attr.getPrefix()) && !"xmlns".equals(attr.getNodeName())) {
+					sorted.add(attr);
+				}
+			}
+			Collections.sort(sorted, ATTRIBUTE_ORDER);
+
+			for (Attr attr : sorted) {
+				sb.append(' ').append(name(attr)).append('=');
+				appendEscaped(attr.getValue(), sb);
+			}
+			sb.append('>');
+
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				canonicalize(child, sb);
+			}
+
+			sb.append("</>");
+			break;
+		}
+		case Node.TEXT_NODE:
+		case Node.CDATA_SECTION_NODE: {
+			String text = node.getNodeValue().trim().replaceAll("\\s+", " ");
+			if (!text.isEmpty()) {
+				appendEscaped(text, sb);
+			}
+			break;
+		}
+		case Node.ENTITY_REFERENCE_NODE:
+			for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+				canonicalize(child, sb);
+			}
+			break;
+		default:
+			// Comments and processing instructions are not rendered.
+			break;
+		}
+	}
+
+	private static void appendEscaped(String value, StringBuilder sb) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				sb.append('\\');
+			}
+			sb.append(ch);
+		}
+		sb.append('"');
+	}
+}
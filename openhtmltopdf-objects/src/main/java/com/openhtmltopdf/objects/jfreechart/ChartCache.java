@@ -0,0 +1,199 @@
+package com.openhtmltopdf.objects.jfreechart;
+
+import com.openhtmltopdf.extend.OutputDevice;
+import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
+import com.openhtmltopdf.pdfboxout.PdfBoxOutputDevice;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.JFreeChart;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import static com.openhtmltopdf.objects.jfreechart.JFreeChartBarDiagramObjectDrawer.buildShapeLinkMap;
+
+/**
+ * Shares charts between draws. A chart is keyed by its type, the attributes of its object
+ * element and data elements, and its size. The id, class and style attributes are left out,
+ * as they do not change the chart itself.
+ * <p>
+ * Built charts are shared by all documents. In a PDF each chart is drawn once per document,
+ * as a form which is placed wherever the chart is repeated. A form can not be shared between
+ * documents, as it uses the fonts of its document.
+ */
+class ChartCache {
+	private static final int MAX_CACHED_CHARTS = 64;
+
+	private static final Map<String, JFreeChart> CHARTS = new LinkedHashMap<String, JFreeChart>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JFreeChart> eldest) {
+			return size() > MAX_CACHED_CHARTS;
+		}
+	};
+
+	private static final Set<String> IGNORED_ATTRIBUTES = new HashSet<String>(Arrays.asList("id", "class", "style"));
+
+	private static final Map<PdfBoxOutputDevice, Map<String, ChartForm>> FORMS = new WeakHashMap<PdfBoxOutputDevice, Map<String, ChartForm>>();
+
+	interface ChartBuilder {
+		JFreeChart createChart(Element e);
+	}
+
+	private static class ChartForm {
+		private final PDFormXObject form;
+		private final Map<Shape, String> linkShapes;
+
+		private ChartForm(PDFormXObject form, Map<Shape, String> linkShapes) {
+			this.form = form;
+			this.linkShapes = linkShapes;
+		}
+	}
+
+	private ChartCache() {
+	}
+
+	/**
+	 * Draws the chart of the element, building it only if it is not cached.
+	 * @return the link map of the chart, as returned by {@code FSObjectDrawer.drawObject}.
+	 */
+	static Map<Shape, String> drawChart(String chartType, Element e, ChartBuilder builder, double x, double y,
+			double width, double height, OutputDevice outputDevice, int dotsPerPixel) {
+		String key = createKey(chartType, e, width, height, dotsPerPixel);
+		final float formWidth = (float) width / dotsPerPixel;
+		final float formHeight = (float) height / dotsPerPixel;
+
+		if (outputDevice instanceof PdfBoxOutputDevice) {
+			PdfBoxOutputDevice pdfBoxOutputDevice = (PdfBoxOutputDevice) outputDevice;
+			ChartForm chartForm = getForm(pdfBoxOutputDevice, key);
+
+			if (chartForm == null) {
+				final JFreeChart chart = getChart(key, e, builder);
+				final ChartRenderingInfo renderingInfo = new ChartRenderingInfo();
+				PDFormXObject form = pdfBoxOutputDevice.createGraphicsForm(formWidth, formHeight,
+						new OutputDeviceGraphicsDrawer() {
+							@Override
+							public void render(Graphics2D graphics2D) {
+								draw(chart, graphics2D, formWidth, formHeight, renderingInfo);
+							}
+						});
+				chartForm = new ChartForm(form, linkShapes(renderingInfo, dotsPerPixel));
+				putForm(pdfBoxOutputDevice, key, chartForm);
+			}
+
+			pdfBoxOutputDevice.placeGraphicsForm((float) x, (float) y, formHeight, chartForm.form);
+			return chartForm.linkShapes;
+		}
+
+		final JFreeChart chart = getChart(key, e, builder);
+		final ChartRenderingInfo renderingInfo = new ChartRenderingInfo();
+		outputDevice.drawWithGraphics((float) x, (float) y, formWidth, formHeight, new OutputDeviceGraphicsDrawer() {
+			@Override
+			public void render(Graphics2D graphics2D) {
+				draw(chart, graphics2D, formWidth, formHeight, renderingInfo);
+			}
+		});
+		return linkShapes(renderingInfo, dotsPerPixel);
+	}
+
+	private static void draw(JFreeChart chart, Graphics2D graphics2D, float width, float height,
+			ChartRenderingInfo renderingInfo) {
+		// Drawing updates the state of the plot, so a shared chart is drawn by one thread at a time.
+		synchronized (chart) {
+			chart.draw(graphics2D, new Rectangle2D.Float(0, 0, width, height), renderingInfo);
+		}
+	}
+
+	private static Map<Shape, String> linkShapes(ChartRenderingInfo renderingInfo, int dotsPerPixel) {
+		Map<Shape, String> linkShapes = buildShapeLinkMap(renderingInfo, dotsPerPixel);
+		return linkShapes == null ? null : Collections.unmodifiableMap(linkShapes);
+	}
+
+	private static JFreeChart getChart(String key, Element e, ChartBuilder builder) {
+		synchronized (CHARTS) {
+			JFreeChart chart = CHARTS.get(key);
+			if (chart != null)
+				return chart;
+		}
+
+		// Built outside the lock, so other charts are not held up.
+		JFreeChart chart = builder.createChart(e);
+
+		synchronized (CHARTS) {
+			JFreeChart existing = CHARTS.get(key);
+			if (existing != null)
+				return existing;
+			CHARTS.put(key, chart);
+			return chart;
+		}
+	}
+
+	private static ChartForm getForm(PdfBoxOutputDevice outputDevice, String key) {
+		synchronized (FORMS) {
+			Map<String, ChartForm> forms = FORMS.get(outputDevice);
+			return forms == null ? null : forms.get(key);
+		}
+	}
+
+	private static void putForm(PdfBoxOutputDevice outputDevice, String key, ChartForm chartForm) {
+		synchronized (FORMS) {
+			Map<String, ChartForm> forms = FORMS.get(outputDevice);
+			if (forms == null) {
+				forms = new HashMap<String, ChartForm>();
+				FORMS.put(outputDevice, forms);
+			}
+			forms.put(key, chartForm);
+		}
+	}
+
+	/**
+	 * The key holds everything a chart is built from: the attributes of the object element,
+	 * such as the title and labels, and the attributes of its data elements in order.
+	 */
+	private static String createKey(String chartType, Element e, double width, double height, int dotsPerPixel) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(chartType).append('|').append(width).append('x').append(height).append('@').append(dotsPerPixel);
+		appendElement(sb, e);
+		for (Node child = e.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child instanceof Element)
+				appendElement(sb, (Element) child);
+		}
+		return sb.toString();
+	}
+
+	private static void appendElement(StringBuilder sb, Element e) {
+		NamedNodeMap attributes = e.getAttributes();
+		List<String> pairs = new ArrayList<String>(attributes.getLength());
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Node attribute = attributes.item(i);
+			String name = attribute.getNodeName();
+			if (!IGNORED_ATTRIBUTES.contains(name))
+				pairs.add(name + '=' + quote(attribute.getNodeValue()));
+		}
+		Collections.sort(pairs);
+
+		sb.append('<').append(e.getTagName());
+		for (String pair : pairs) {
+			sb.append(' ').append(pair);
+		}
+		sb.append('>');
+	}
+
+	private static String quote(String value) {
+		return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+}
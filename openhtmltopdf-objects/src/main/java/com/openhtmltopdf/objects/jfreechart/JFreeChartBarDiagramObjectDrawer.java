@@ -2,7 +2,6 @@ package com.openhtmltopdf.objects.jfreechart;
 
 import com.openhtmltopdf.extend.FSObjectDrawer;
 import com.openhtmltopdf.extend.OutputDevice;
-import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
 import com.openhtmltopdf.render.RenderingContext;
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.ChartRenderingInfo;
@@ -18,7 +17,6 @@ import org.w3c.dom.NodeList;
 
 import java.awt.*;
 import java.awt.geom.AffineTransform;
-import java.awt.geom.Rectangle2D;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,9 +41,20 @@ public class JFreeChartBarDiagramObjectDrawer implements FSObjectDrawer {
 		return linkShapes;
 	}
 
+	private static final ChartCache.ChartBuilder BUILDER = new ChartCache.ChartBuilder() {
+		@Override
+		public JFreeChart createChart(Element e) {
+			return createBarChart(e);
+		}
+	};
+
 	@Override
 	public Map<Shape, String> drawObject(Element e, final double x, final double y, final double width,
 			final double height, OutputDevice outputDevice, RenderingContext ctx, final int dotsPerPixel) {
+		return ChartCache.drawChart("bar", e, BUILDER, x, y, width, height, outputDevice, dotsPerPixel);
+	}
+
+	private static JFreeChart createBarChart(Element e) {
 		DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 		NodeList childNodes = e.getChildNodes();
 		final Map<String, String> urls = new HashMap<String, String>();
@@ -73,16 +82,6 @@ public class JFreeChartBarDiagramObjectDrawer implements FSObjectDrawer {
 				return urls.get(dataset.getRowKey(series) + ":" + dataset.getColumnKey(category));
 			}
 		});
-		final ChartRenderingInfo renderingInfo = new ChartRenderingInfo();
-		outputDevice.drawWithGraphics((float) x, (float) y, (float) width / dotsPerPixel, (float) height / dotsPerPixel,
-				new OutputDeviceGraphicsDrawer() {
-					@Override
-					public void render(Graphics2D graphics2D) {
-						chart1.draw(graphics2D, new Rectangle2D.Float((float) 0, (float) 0,
-								(float) (width / dotsPerPixel), (float) (height / dotsPerPixel)), renderingInfo);
-					}
-				});
-
-		return buildShapeLinkMap(renderingInfo, dotsPerPixel);
+		return chart1;
 	}
 }
@@ -2,10 +2,8 @@ package com.openhtmltopdf.objects.jfreechart;
 
 import com.openhtmltopdf.extend.FSObjectDrawer;
 import com.openhtmltopdf.extend.OutputDevice;
-import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
 import com.openhtmltopdf.render.RenderingContext;
 import org.jfree.chart.ChartFactory;
-import org.jfree.chart.ChartRenderingInfo;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.PiePlot;
 import org.jfree.chart.urls.PieURLGenerator;
@@ -16,17 +14,25 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.awt.*;
-import java.awt.geom.Rectangle2D;
 import java.util.HashMap;
 import java.util.Map;
 
-import static com.openhtmltopdf.objects.jfreechart.JFreeChartBarDiagramObjectDrawer.buildShapeLinkMap;
-
 public class JFreeChartPieDiagramObjectDrawer implements FSObjectDrawer {
 
+	private static final ChartCache.ChartBuilder BUILDER = new ChartCache.ChartBuilder() {
+		@Override
+		public JFreeChart createChart(Element e) {
+			return createPieChart(e);
+		}
+	};
+
 	@Override
 	public Map<Shape, String> drawObject(Element e, final double x, final double y, final double width,
 			final double height, OutputDevice outputDevice, RenderingContext ctx, final int dotsPerPixel) {
+		return ChartCache.drawChart("pie", e, BUILDER, x, y, width, height, outputDevice, dotsPerPixel);
+	}
+
+	private static JFreeChart createPieChart(Element e) {
 		DefaultPieDataset dataset = new DefaultPieDataset();
 		NodeList childNodes = e.getChildNodes();
 		final Map<String, String> urls = new HashMap<String, String>();
@@ -52,16 +58,6 @@ public class JFreeChartPieDiagramObjectDrawer implements FSObjectDrawer {
 				return urls.get(key.toString());
 			}
 		});
-		final ChartRenderingInfo renderingInfo = new ChartRenderingInfo();
-		outputDevice.drawWithGraphics((float) x, (float) y, (float) width / dotsPerPixel, (float) height / dotsPerPixel,
-				new OutputDeviceGraphicsDrawer() {
-					@Override
-					public void render(Graphics2D graphics2D) {
-						chart1.draw(graphics2D, new Rectangle2D.Float((float) 0, (float) 0,
-								(float) (width / dotsPerPixel), (float) (height / dotsPerPixel)), renderingInfo);
-					}
-				});
-
-		return buildShapeLinkMap(renderingInfo, dotsPerPixel);
+		return chart1;
 	}
 }
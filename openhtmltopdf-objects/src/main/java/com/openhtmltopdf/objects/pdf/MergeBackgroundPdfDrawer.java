@@ -2,21 +2,20 @@ package com.openhtmltopdf.objects.pdf;
 
 import java.awt.*;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import org.apache.pdfbox.cos.COSArray;
 import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.cos.COSStream;
-import org.apache.pdfbox.io.RandomAccessBuffer;
 import org.apache.pdfbox.multipdf.LayerUtility;
-import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.util.Charsets;
@@ -26,8 +25,60 @@ import com.openhtmltopdf.extend.FSObjectDrawer;
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.pdfboxout.PdfBoxOutputDevice;
 import com.openhtmltopdf.render.RenderingContext;
+import com.openhtmltopdf.util.XRLog;
 
+/**
+ * Places a page of another PDF as the background of the current page. The PDF is loaded
+ * through the user agent and parsed PDFs are shared by all documents, keyed by a digest of
+ * their bytes, so each document only imports the page as a form.
+ */
 public class MergeBackgroundPdfDrawer implements FSObjectDrawer {
+	private static final int MAX_CACHED_SOURCES = 16;
+
+	/**
+	 * A parsed source PDF with the number of imports using it. It is closed once it
+	 * has been evicted from the cache and is no longer used.
+	 */
+	private static class Source {
+		private final PDDocument document;
+
+		// Guarded by SOURCE_CACHE.
+		private int users;
+		private boolean evicted;
+
+		private Source(PDDocument document) {
+			this.document = document;
+		}
+
+		private void close() {
+			synchronized (this) {
+				try {
+					document.close();
+				} catch (IOException e) {
+					XRLog.exception("Could not close background PDF", e);
+				}
+			}
+		}
+	}
+
+	private static final Map<String, Source> SOURCE_CACHE = new LinkedHashMap<String, Source>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Source> eldest) {
+			if (size() > MAX_CACHED_SOURCES) {
+				// If another thread is importing from it, it is closed when that thread releases it.
+				Source source = eldest.getValue();
+				source.evicted = true;
+				if (source.users == 0) {
+					source.close();
+				}
+				return true;
+			}
+			return false;
+		}
+	};
+
 	private final Map<PDFBoxDeviceReference, SoftReference<Map<String, PDFormXObject>>> formMap = new HashMap<PDFBoxDeviceReference, SoftReference<Map<String, PDFormXObject>>>();
 
 	@Override
@@ -60,19 +111,14 @@ public class MergeBackgroundPdfDrawer implements FSObjectDrawer {
 					new SoftReference<Map<String, PDFormXObject>>(map));
 		}
 		try {
-			PDFormXObject pdFormXObject = map.get(url);
+			String formKey = url + '#' + pdfpage;
+			PDFormXObject pdFormXObject = map.get(formKey);
 			LayerUtility layerUtility = new LayerUtility(pdfBoxOutputDevice.getWriter());
 			if (pdFormXObject == null) {
-				InputStream inputStream = new URL(url).openStream();
-				try {
-					PDFParser pdfParser = new PDFParser(new RandomAccessBuffer(inputStream));
-					pdfParser.parse();
-					pdFormXObject = layerUtility.importPageAsForm(pdfParser.getPDDocument(), pdfpage - 1);
-					pdfParser.getPDDocument().close();
-				} finally {
-					inputStream.close();
-				}
-				map.put(url, pdFormXObject);
+				pdFormXObject = importPageAsForm(ctx, pdfsrc, pdfpage, layerUtility);
+				if (pdFormXObject == null)
+					return null;
+				map.put(formKey, pdFormXObject);
 			}
 			PDPage page = pdfBoxOutputDevice.getPage();
 
@@ -94,15 +140,91 @@ public class MergeBackgroundPdfDrawer implements FSObjectDrawer {
 			saveAndPlaceStream.write("q\n".getBytes(Charsets.US_ASCII));
 			saveAndPlaceStream.close();
 
-		} catch (MalformedURLException e1) {
-			e1.printStackTrace();
 		} catch (IOException e1) {
-			e1.printStackTrace();
+			XRLog.exception("Could not merge background PDF " + pdfsrc, e1);
 		}
 
 		return null;
 	}
 
+	private static PDFormXObject importPageAsForm(RenderingContext ctx, String pdfsrc, int pdfpage,
+			LayerUtility layerUtility) throws IOException {
+		byte[] pdf = ctx.getUac().getBinaryResource(pdfsrc);
+		if (pdf == null) {
+			XRLog.exception("Could not load background PDF " + pdfsrc);
+			return null;
+		}
+
+		Source source = acquireSource(pdf);
+		try {
+			// The form is copied into the output document, reading the shared source document,
+			// so it does not need the source document once imported.
+			synchronized (source) {
+				return layerUtility.importPageAsForm(source.document, pdfpage - 1);
+			}
+		} finally {
+			releaseSource(source);
+		}
+	}
+
+	private static Source acquireSource(byte[] pdf) throws IOException {
+		String key = digest(pdf);
+
+		synchronized (SOURCE_CACHE) {
+			Source source = SOURCE_CACHE.get(key);
+			if (source != null) {
+				source.users++;
+				return source;
+			}
+		}
+
+		// Parsed outside the lock, so other backgrounds are not held up.
+		PDDocument document = PDDocument.load(pdf);
+
+		Source existing;
+		synchronized (SOURCE_CACHE) {
+			existing = SOURCE_CACHE.get(key);
+			if (existing == null) {
+				Source source = new Source(document);
+				source.users++;
+				SOURCE_CACHE.put(key, source);
+				return source;
+			}
+			existing.users++;
+		}
+
+		document.close();
+		return existing;
+	}
+
+	private static void releaseSource(Source source) {
+		boolean close;
+		synchronized (SOURCE_CACHE) {
+			source.users--;
+			close = source.evicted && source.users == 0;
+		}
+		if (close) {
+			source.close();
+		}
+	}
+
+	private static String digest(byte[] bytes) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+
+		byte[] digest = md.digest(bytes);
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
 	private static class PDFBoxDeviceReference extends WeakReference<PdfBoxOutputDevice> {
 		PDFBoxDeviceReference(PdfBoxOutputDevice referent) {
 			super(referent);
@@ -0,0 +1,149 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * A render cache store that keeps one file per entry in a local directory. The directory
+ * may be shared by several threads and processes as entries are written to a temporary file
+ * and then renamed. If a maximum size is given, the least recently used entries are deleted
+ * when the total size of the directory exceeds it.
+ */
+public class DiskPdfRenderCacheStore implements PdfRenderCacheStore {
+    private static final String SUFFIX = ".pdfcache";
+
+    private final File _directory;
+    private final long _maxBytes;
+
+    /**
+     * @param directory the directory to store entries in, created if needed
+     * @param maxBytes the maximum total size of the stored entries or zero for no limit
+     */
+    public DiskPdfRenderCacheStore(File directory, long maxBytes) {
+        _directory = directory;
+        _maxBytes = maxBytes;
+    }
+
+    private File file(String key) {
+        return new File(_directory, key + SUFFIX);
+    }
+
+    @Override
+    public byte[] get(String key) {
+        File file = file(key);
+
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try {
+            byte[] entry = read(file);
+            file.setLastModified(System.currentTimeMillis());
+            return entry;
+        } catch (IOException e) {
+            // Deleted by another thread or process.
+            XRLog.load(Level.FINE, "Could not read render cache entry " + file, e);
+            return null;
+        }
+    }
+
+    private static byte[] read(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream result = new ByteArrayOutputStream((int) file.length());
+            byte[] buf = new byte[10240];
+            int i;
+            while ((i = is.read(buf)) != -1) {
+                result.write(buf, 0, i);
+            }
+            return result.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] entry) {
+        if (!_directory.isDirectory() && !_directory.mkdirs() && !_directory.isDirectory()) {
+            XRLog.load(Level.WARNING, "Could not create render cache directory " + _directory);
+            return;
+        }
+
+        File temp = null;
+        try {
+            temp = File.createTempFile(key, ".tmp", _directory);
+
+            OutputStream os = new FileOutputStream(temp);
+            try {
+                os.write(entry);
+            } finally {
+                os.close();
+            }
+
+            File target = file(key);
+            if (!temp.renameTo(target)) {
+                // Some platforms can't replace an existing file.
+                target.delete();
+                if (!temp.renameTo(target)) {
+                    temp.delete();
+                }
+            }
+        } catch (IOException e) {
+            XRLog.load(Level.WARNING, "Could not write render cache entry for " + key, e);
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+
+        if (_maxBytes > 0) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        File[] files = _directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            size += file.length();
+        }
+
+        if (size <= _maxBytes) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                long m1 = f1.lastModified();
+                long m2 = f2.lastModified();
+                return m1 < m2 ? -1 : (m1 == m2 ? 0 : 1);
+            }
+        });
+
+        for (File file : files) {
+            if (size <= _maxBytes) {
+                break;
+            }
+            if (file.getName().endsWith(SUFFIX)) {
+                long length = file.length();
+                if (file.delete()) {
+                    size -= length;
+                }
+            }
+        }
+    }
+}
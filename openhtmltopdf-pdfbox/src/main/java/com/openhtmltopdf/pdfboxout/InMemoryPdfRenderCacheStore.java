@@ -0,0 +1,46 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread safe render cache store that keeps the least recently used entries in memory,
+ * up to a maximum total size.
+ */
+public class InMemoryPdfRenderCacheStore implements PdfRenderCacheStore {
+    private final long _maxBytes;
+    private final LinkedHashMap<String, byte[]> _entries = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long _size;
+
+    /**
+     * @param maxBytes the maximum total size of the stored entries
+     */
+    public InMemoryPdfRenderCacheStore(long maxBytes) {
+        _maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized byte[] get(String key) {
+        return _entries.get(key);
+    }
+
+    @Override
+    public synchronized void put(String key, byte[] entry) {
+        if (entry.length > _maxBytes) {
+            return;
+        }
+
+        byte[] previous = _entries.put(key, entry);
+        if (previous != null) {
+            _size -= previous.length;
+        }
+        _size += entry.length;
+
+        Iterator<Map.Entry<String, byte[]>> eldest = _entries.entrySet().iterator();
+        while (_size > _maxBytes && eldest.hasNext()) {
+            _size -= eldest.next().getValue().length;
+            eldest.remove();
+        }
+    }
+}
@@ -23,8 +23,9 @@ import java.util.List;
 
 import com.openhtmltopdf.pdfboxout.PdfBoxFontResolver.FontDescription;
 import com.openhtmltopdf.render.FSFont;
+import com.openhtmltopdf.render.snapshot.SnapshotFontFaces;
 
-public class PdfBoxFSFont implements FSFont {
+public class PdfBoxFSFont implements FSFont, SnapshotFontFaces {
     private final List<FontDescription> _fonts;
     private final float _size;
     
@@ -40,4 +41,16 @@ public class PdfBoxFSFont implements FSFont {
     public List<FontDescription> getFontDescription() {
         return _fonts;
     }
+
+    @Override
+    public String getFaceNames() {
+        StringBuilder sb = new StringBuilder();
+        for (FontDescription font : _fonts) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(font.getFaceName());
+        }
+        return sb.toString();
+    }
 }
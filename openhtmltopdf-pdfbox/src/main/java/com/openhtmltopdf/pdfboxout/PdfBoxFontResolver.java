@@ -805,6 +805,14 @@ public class PdfBoxFontResolver implements FontResolver {
         public boolean isFromFontFace() {
             return _isFromFontFace;
         }
+
+        /**
+         * @return the family, weight and style of this face. Built-in fonts have no family
+         * so are named by their PDF font name.
+         */
+        public String getFaceName() {
+            return (_family != null ? _family : _font.getName()) + ' ' + _weight + ' ' + _style;
+        }
         
         /**
          * If the metrics are available yet.
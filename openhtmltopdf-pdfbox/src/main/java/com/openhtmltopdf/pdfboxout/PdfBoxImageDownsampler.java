@@ -0,0 +1,262 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.openhtmltopdf.util.DownscaleQuality;
+import com.openhtmltopdf.util.ImageUtil;
+import com.openhtmltopdf.util.ScalingOptions;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Embeds images at no more than a maximum resolution for the largest size they are drawn
+ * at in a document. As that size is only known once every page is painted, an image is
+ * drawn as an empty image object, which is filled in, downsampled if the image has more
+ * pixels than needed, when the document is finished.
+ */
+class PdfBoxImageDownsampler {
+    private final float _maxDpi;
+    private final DownscaleQuality _quality;
+    private final float _jpegQuality;
+
+    // Keyed by the bytes of the image, which copies of a cached image share.
+    private final Map<byte[], DeferredImage> _interpolated = new IdentityHashMap<byte[], DeferredImage>();
+    private final Map<byte[], DeferredImage> _notInterpolated = new IdentityHashMap<byte[], DeferredImage>();
+
+    private int _imagesDownsampled;
+    private long _bytesSaved;
+
+    private static class DeferredImage {
+        private final byte[] bytes;
+        private final boolean isJpeg;
+        private final PDImageXObject xobject;
+        private double maxWidth;
+        private double maxHeight;
+
+        private DeferredImage(byte[] bytes, boolean isJpeg, PDImageXObject xobject) {
+            this.bytes = bytes;
+            this.isJpeg = isJpeg;
+            this.xobject = xobject;
+        }
+    }
+
+    PdfBoxImageDownsampler(float maxDpi, DownscaleQuality quality, float jpegQuality) {
+        this._maxDpi = maxDpi;
+        this._quality = quality;
+        this._jpegQuality = jpegQuality;
+    }
+
+    /**
+     * @return the image object to draw for the image, which is filled in by {@link #finish(PDDocument)}.
+     * @param width the width the image is drawn at in PDF points.
+     * @param height the height the image is drawn at in PDF points.
+     */
+    PDImageXObject draw(PDDocument doc, PdfBoxImage img, boolean interpolate, double width, double height) {
+        Map<byte[], DeferredImage> images = interpolate ? _interpolated : _notInterpolated;
+        DeferredImage deferred = images.get(img.getBytes());
+
+        if (deferred == null) {
+            try {
+                deferred = new DeferredImage(img.getBytes(), img.isJpeg(), new PDImageXObject(doc));
+            } catch (IOException e) {
+                throw new PdfContentStreamAdapter.PdfException("drawImage", e);
+            }
+            deferred.xobject.setInterpolate(interpolate);
+            images.put(img.getBytes(), deferred);
+        }
+
+        deferred.maxWidth = Math.max(deferred.maxWidth, width);
+        deferred.maxHeight = Math.max(deferred.maxHeight, height);
+
+        return deferred.xobject;
+    }
+
+    /**
+     * Fills in the images drawn since the last call.
+     */
+    void finish(PDDocument doc) {
+        List<DeferredImage> images = new ArrayList<DeferredImage>(_interpolated.values());
+        images.addAll(_notInterpolated.values());
+        _interpolated.clear();
+        _notInterpolated.clear();
+
+        int downsampledBefore = _imagesDownsampled;
+        long savedBefore = _bytesSaved;
+
+        for (DeferredImage deferred : images) {
+            try {
+                realize(doc, deferred);
+            } catch (IOException e) {
+                throw new PdfContentStreamAdapter.PdfException("realizeImage", e);
+            }
+        }
+
+        if (_imagesDownsampled != downsampledBefore) {
+            XRLog.render(Level.INFO, "Downsampled " + (_imagesDownsampled - downsampledBefore) + " images to " +
+                    _maxDpi + " DPI, saving " + (_bytesSaved - savedBefore) + " bytes");
+        }
+    }
+
+    private void realize(PDDocument doc, DeferredImage deferred) throws IOException {
+        BufferedImage buffered = deferred.isJpeg ? null : ImageIO.read(new ByteArrayInputStream(deferred.bytes));
+        int width;
+        int height;
+
+        if (buffered != null) {
+            width = buffered.getWidth();
+            height = buffered.getHeight();
+        } else {
+            // Only the header is read, so a JPEG which is small enough is embedded as is.
+            PdfBoxImage header = new PdfBoxImage(deferred.bytes, null);
+            width = header.getWidth();
+            height = header.getHeight();
+        }
+
+        // The same scale for both sides, so that neither has less than the maximum resolution.
+        double scale = Math.max(
+                deferred.maxWidth * _maxDpi / 72d / width,
+                deferred.maxHeight * _maxDpi / 72d / height);
+
+        PDImageXObject realized = scale < 1d ? downsample(doc, deferred, buffered, width, height, scale) : null;
+
+        if (realized == null) {
+            realized = realizeOriginal(doc, deferred, buffered);
+        }
+
+        copyInto(realized, deferred.xobject);
+    }
+
+    /**
+     * @return the downsampled image or null if the original image should be used.
+     */
+    private PDImageXObject downsample(PDDocument doc, DeferredImage deferred, BufferedImage buffered,
+            int width, int height, double scale) {
+        try {
+            if (buffered == null) {
+                buffered = ImageIO.read(new ByteArrayInputStream(deferred.bytes));
+            }
+            if (buffered == null) {
+                return null;
+            }
+
+            int targetWidth = Math.max(1, (int) Math.ceil(width * scale));
+            int targetHeight = Math.max(1, (int) Math.ceil(height * scale));
+
+            ScalingOptions opt = new ScalingOptions(targetWidth, targetHeight, BufferedImage.TYPE_INT_ARGB,
+                    _quality, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            BufferedImage scaled = ImageUtil.getScaledInstance(opt, toScalableImage(buffered));
+
+            PDImageXObject realized;
+            if (deferred.isJpeg) {
+                realized = JPEGFactory.createFromImage(doc, scaled, _jpegQuality);
+            } else {
+                realized = LosslessFactory.createFromImage(doc, scaled);
+            }
+
+            long saved = deferred.bytes.length - getEncodedLength(realized);
+            if (saved <= 0 && deferred.isJpeg) {
+                // Re-encoding did not make it smaller, so the original is embedded as is.
+                return null;
+            }
+
+            _imagesDownsampled++;
+            _bytesSaved += Math.max(0, saved);
+            return realized;
+        } catch (IOException e) {
+            // Such as a CMYK JPEG, which can be embedded but not decoded.
+            XRLog.exception("Couldn't downsample image, embedding it at full size", e);
+            return null;
+        }
+    }
+
+    private static long getEncodedLength(PDImageXObject xobject) throws IOException {
+        long length = xobject.getCOSObject().getLength();
+        PDImageXObject softMask = xobject.getSoftMask();
+        return softMask == null ? length : length + softMask.getCOSObject().getLength();
+    }
+
+    private PDImageXObject realizeOriginal(PDDocument doc, DeferredImage deferred, BufferedImage buffered) throws IOException {
+        if (deferred.isJpeg) {
+            return JPEGFactory.createFromStream(doc, new ByteArrayInputStream(deferred.bytes));
+        }
+        return LosslessFactory.createFromImage(doc, buffered);
+    }
+
+    /**
+     * The scalers create images of the type of the source image, which must be a
+     * type without a custom or indexed color model.
+     */
+    private static BufferedImage toScalableImage(BufferedImage img) {
+        switch (img.getType()) {
+        case BufferedImage.TYPE_INT_RGB:
+        case BufferedImage.TYPE_INT_ARGB:
+        case BufferedImage.TYPE_3BYTE_BGR:
+        case BufferedImage.TYPE_4BYTE_ABGR:
+        case BufferedImage.TYPE_BYTE_GRAY:
+            return img;
+        default:
+            BufferedImage converted = new BufferedImage(img.getWidth(), img.getHeight(),
+                    img.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = converted.createGraphics();
+            g2.drawImage(img, 0, 0, null);
+            g2.dispose();
+            return converted;
+        }
+    }
+
+    /**
+     * Copies the dictionary and encoded data of an image into the image object already drawn.
+     */
+    private static void copyInto(PDImageXObject source, PDImageXObject target) throws IOException {
+        COSStream sourceStream = source.getCOSObject();
+        COSStream targetStream = target.getCOSObject();
+        boolean interpolate = target.getInterpolate();
+
+        for (Map.Entry<COSName, COSBase> entry : sourceStream.entrySet()) {
+            targetStream.setItem(entry.getKey(), entry.getValue());
+        }
+
+        InputStream in = sourceStream.createRawInputStream();
+        OutputStream out = targetStream.createRawOutputStream();
+        try {
+            byte[] buf = new byte[10240];
+            int i;
+            while ((i = in.read(buf)) != -1) {
+                out.write(buf, 0, i);
+            }
+        } finally {
+            out.close();
+            in.close();
+        }
+
+        target.setInterpolate(interpolate);
+    }
+
+    int getImagesDownsampled() {
+        return _imagesDownsampled;
+    }
+
+    long getBytesSaved() {
+        return _bytesSaved;
+    }
+}
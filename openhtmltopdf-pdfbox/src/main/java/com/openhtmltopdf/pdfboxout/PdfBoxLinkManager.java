@@ -203,6 +203,10 @@ public class PdfBoxLinkManager {
 			Box target = _sharedContext.getBoxById(anchor);
 			if (target != null) {
 				PDPageXYZDestination dest = createDestination(c, target);
+				if (dest == null) {
+					// Target is on a page outside the output page range.
+					return;
+				}
 
 				PDAction action;
 				if (handler.getAttributeValue(elem, "onclick") != null
@@ -349,11 +353,16 @@ public class PdfBoxLinkManager {
 		PDPageXYZDestination result = new PDPageXYZDestination();
 
 		PageBox page = _root.getLayer().getPage(c, _od.getPageRefY(box));
+		PDPage targetPage = _od.getWriterPage(page.getPageNo());
+		if (targetPage == null) {
+			return null;
+		}
+
 		int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
 		distanceFromTop += box.getAbsY() + box.getMargin(c).top() - page.getTop();
 
 		result.setTop((int) (page.getHeight(c) / _dotsPerPoint - distanceFromTop / _dotsPerPoint));
-		result.setPage(_od.getWriter().getPage(_od.getStartPageNo() + page.getPageNo()));
+		result.setPage(targetPage);
 
 		return result;
 	}
@@ -398,6 +407,33 @@ public class PdfBoxLinkManager {
 	    }
 	}
 
+	/**
+	 * The number of links queued so far by <code>processLinkLater</code>.
+	 */
+	public int getQueuedLinkCount() {
+		return _links.size();
+	}
+
+	/**
+	 * Queues the links from index <code>start</code> (inclusive) to <code>end</code> (exclusive)
+	 * again, this time for <code>page</code>. Used when content is painted once and then
+	 * reused on other pages at the same position.
+	 */
+	public void repeatLinksLater(int start, int end, PDPage page) {
+		for (int i = start; i < end; i++) {
+			LinkDetails original = _links.get(i);
+
+			LinkDetails link = new LinkDetails();
+			link.c = original.c;
+			link.box = original.box;
+			link.page = page;
+			link.pageHeight = original.pageHeight;
+			link.transform = original.transform;
+
+			_links.add(link);
+		}
+	}
+
 	public void processLinks() {
 		for (LinkDetails link : _links) {
 			processLink(link.c, link.box, link.page, link.pageHeight, link.transform);
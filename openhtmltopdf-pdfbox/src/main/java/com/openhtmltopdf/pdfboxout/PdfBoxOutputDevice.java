@@ -38,6 +38,7 @@ import com.openhtmltopdf.pdfboxout.PdfBoxPerDocumentFormState;
 import com.openhtmltopdf.render.*;
 import com.openhtmltopdf.util.ArrayUtil;
 import com.openhtmltopdf.util.Configuration;
+import com.openhtmltopdf.util.DownscaleQuality;
 import com.openhtmltopdf.util.XRLog;
 import de.rototor.pdfbox.graphics2d.PdfBoxGraphics2D;
 import de.rototor.pdfbox.graphics2d.PdfBoxGraphics2DFontTextDrawer;
@@ -45,6 +46,8 @@ import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 import org.apache.pdfbox.pdmodel.graphics.image.JPEGFactory;
@@ -150,7 +153,15 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     private Stroke _oldStroke = null;
 
     // The clipped area, as set on the PDF graphics stream, in PDF points units.
-    private Area _clip;
+    // This is a Rectangle2D while only axis aligned rectangles have been clipped to,
+    // otherwise an Area.
+    private Shape _clip;
+
+    // The clips pushed by the fast renderer, innermost last. See pushClip.
+    private Deque<PushedClip> _pushedClips = new ArrayDeque<PushedClip>();
+
+    // The number of transform layers pushed by the fast renderer.
+    private int _transformLayerDepth;
 
     // Essentially per-run global variables.
     private SharedContext _sharedContext;
@@ -183,12 +194,19 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     // NOTE: Not tested recently, this feature may be broken.
     private int _startPageNo;
     
+    // The first and last (zero based, inclusive) document pages that are output, when only a page range
+    // is requested. Page _firstPageNo of the document is at PDF page _startPageNo.
+    private int _firstPageNo = 0;
+    private int _lastPageNo = Integer.MAX_VALUE;
+    
     // Whether we are in test mode, currently not used here, but keep around in case we need it down the track.
     @SuppressWarnings("unused")
     private final boolean _testMode;
     
     // Link manage handles a links. We add the link in paintBackground and then output links when the document is finished.
     private PdfBoxLinkManager _linkManager;
+
+    private PdfBoxImageDownsampler _imageDownsampler;
     
     // Not used currently.
     private RenderingContext _renderingContext;
@@ -200,6 +218,10 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     // Font Mapping for the Graphics2D output
     private PdfBoxGraphics2DFontTextDrawer _fontTextDrawer;
     
+    // Content painted with drawReusable, recorded once as a form XObject. Keyed by the
+    // caller's key, the transform and the page height in force when it was recorded.
+    private final Map<List<Object>, ReusableForm> _reusableForms = new HashMap<List<Object>, ReusableForm>();
+    
     public PdfBoxOutputDevice(float dotsPerPoint, boolean testMode) {
         _dotsPerPoint = dotsPerPoint;
         _testMode = testMode;
@@ -231,6 +253,12 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         _transform = new AffineTransform();
         _transform.scale(1.0d / _dotsPerPoint, 1.0d / _dotsPerPoint);
 
+        // The new content stream starts unclipped.
+        _clip = null;
+        clipTransformIndex = transformStack.size();
+        _pushedClips.clear();
+        _transformLayerDepth = 0;
+
         _absoluteTransformOriginX = 0;
         _absoluteTransformOriginY += height * _dotsPerPoint;
 
@@ -451,7 +479,8 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
             _cp.drawString(s);
         }
         
-        _cp.endText();
+        // NOTE: The text object is left open so that following runs can share it.
+        // It is closed by the content stream adapter before any non-text operation.
 
         if (resetMode) {
             _cp.setRenderingMode(RenderingMode.FILL);
@@ -719,16 +748,19 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         }
         
         if (s != null) {
-            s = _transform.createTransformedShape(s);
-            if (_clip == null)
-                _clip = new Area(s);
-            else
-                _clip.intersect(new Area(s));
-            followPath(s, CLIP);
+            s = transformClip(s);
+
+            // Clipping to a rectangle that contains the current clip has no effect.
+            if (_clip != null && transformStack.isEmpty() &&
+                s instanceof Rectangle2D && ((Rectangle2D) s).contains(_clip.getBounds2D())) {
+                return;
+            }
+
+            _clip = intersectClip(_clip, s);
+            writeClip(s);
         } else {
             assert(s != null);
         }
-        //throw new RuntimeException(s.toString());
     }
 
     public Shape getClip() {
@@ -738,24 +770,147 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         }
         
         try {
-            return _transform.createInverse().createTransformedShape(_clip);
+            AffineTransform inverse = _transform.createInverse();
+            if (_clip instanceof Rectangle2D && isRectilinear(inverse)) {
+                return transformRect(inverse, (Rectangle2D) _clip);
+            }
+            return inverse.createTransformedShape(_clip);
         } catch (NoninvertibleTransformException e) {
             return null;
         }
     }
+
+    /**
+     * Transforms a clip shape to PDF points. Rectangles (including rectangular areas) stay
+     * rectangles unless the current transform rotates or shears them.
+     */
+    private Shape transformClip(Shape s) {
+        if (s instanceof Area && ((Area) s).isRectangular()) {
+            s = s.getBounds2D();
+        }
+
+        if (s instanceof Rectangle2D && isRectilinear(_transform)) {
+            return transformRect(_transform, (Rectangle2D) s);
+        }
+
+        return _transform.createTransformedShape(s);
+    }
+
+    private static boolean isRectilinear(AffineTransform transform) {
+        int mask = AffineTransform.TYPE_GENERAL_ROTATION | AffineTransform.TYPE_QUADRANT_ROTATION | AffineTransform.TYPE_GENERAL_TRANSFORM;
+        return (transform.getType() & mask) == 0;
+    }
+
+    private static Rectangle2D transformRect(AffineTransform transform, Rectangle2D rect) {
+        Point2D p1 = transform.transform(new Point2D.Double(rect.getMinX(), rect.getMinY()), null);
+        Point2D p2 = transform.transform(new Point2D.Double(rect.getMaxX(), rect.getMaxY()), null);
+
+        double x = Math.min(p1.getX(), p2.getX());
+        double y = Math.min(p1.getY(), p2.getY());
+
+        return new Rectangle2D.Double(x, y, Math.abs(p2.getX() - p1.getX()), Math.abs(p2.getY() - p1.getY()));
+    }
+
+    /**
+     * Intersects two clips (in PDF points), only using an Area if one of them is not a rectangle.
+     */
+    private static Shape intersectClip(Shape current, Shape s) {
+        if (current == null) {
+            return s instanceof Rectangle2D ? s : new Area(s);
+        }
+
+        if (current instanceof Rectangle2D && s instanceof Rectangle2D) {
+            Rectangle2D result = ((Rectangle2D) current).createIntersection((Rectangle2D) s);
+            if (result.isEmpty()) {
+                // createIntersection can return a negative size for disjoint rectangles.
+                result.setRect(result.getX(), result.getY(), 0, 0);
+            }
+            return result;
+        }
+
+        Area area = new Area(current);
+        area.intersect(new Area(s));
+        return area;
+    }
+
+    private static boolean isSameClip(Shape clip1, Shape clip2) {
+        if (clip1 == null || clip2 == null) {
+            return clip1 == clip2;
+        }
+
+        if (clip1 instanceof Rectangle2D && clip2 instanceof Rectangle2D) {
+            Rectangle2D r1 = (Rectangle2D) clip1;
+            Rectangle2D r2 = (Rectangle2D) clip2;
+            double tolerance = 0.001;
+
+            return Math.abs(r1.getX() - r2.getX()) < tolerance &&
+                   Math.abs(r1.getY() - r2.getY()) < tolerance &&
+                   Math.abs(r1.getWidth() - r2.getWidth()) < tolerance &&
+                   Math.abs(r1.getHeight() - r2.getHeight()) < tolerance;
+        }
+
+        return false;
+    }
+
+    /**
+     * Outputs a clip that is already in PDF points, using a single re operator for rectangles.
+     */
+    private void writeClip(Shape s) {
+        if (s instanceof Rectangle2D) {
+            Rectangle2D rect = (Rectangle2D) s;
+            _cp.addRect((float) rect.getX(), normalizeY((float) rect.getMaxY()), (float) rect.getWidth(), (float) rect.getHeight());
+            _cp.clipNonZero();
+            _cp.newPath();
+        } else {
+            followPath(s, CLIP);
+        }
+    }
     
+    /**
+     * A clip pushed by the fast renderer. The clip is the clipped area afterwards, in PDF points,
+     * or null if it is not known because it was pushed in a transform layer.
+     */
+    private static class PushedClip {
+        private final Shape _clip;
+        private final boolean _saved;
+
+        private PushedClip(Shape clip, boolean saved) {
+            _clip = clip;
+            _saved = saved;
+        }
+    }
+
     @Override
     public void popClip() {
-        _cp.restoreGraphics();
-        clearPageState();
+        PushedClip pushed = _pushedClips.pollLast();
+        if (pushed == null || pushed._saved) {
+            _cp.restoreGraphics();
+            clearPageState();
+        }
     }
     
     @Override
     public void pushClip(Shape s) {
+        PushedClip outer = _pushedClips.peekLast();
+        Shape current = outer == null || _transformLayerDepth > 0 ? null : outer._clip;
+        Shape clip = s == null ? null : transformClip(s);
+
+        // Clipping to a rectangle that contains the current clip has no effect, so neither the
+        // clip nor the save and restore of the graphics state around it are output.
+        if (current != null && clip instanceof Rectangle2D && ((Rectangle2D) clip).contains(current.getBounds2D())) {
+            _pushedClips.addLast(new PushedClip(current, false));
+            return;
+        }
+
         _cp.saveGraphics();
-        if (s != null) {
-            Shape s1 = _transform.createTransformedShape(s);
-            followPath(s1, CLIP);
+        if (clip != null) {
+            writeClip(clip);
+        }
+
+        if (_transformLayerDepth > 0) {
+            _pushedClips.addLast(new PushedClip(null, true));
+        } else {
+            _pushedClips.addLast(new PushedClip(clip == null ? current : intersectClip(current, clip), true));
         }
     }
 
@@ -766,6 +921,14 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
             return;
         }
 
+        Shape clip = s == null ? null : transformClip(s);
+
+        // If the clip would be unchanged and no transforms have been applied since it was
+        // set, there is no need to restore and save graphics and clip again.
+        if (clipTransformIndex == transformStack.size() && isSameClip(clip, _clip)) {
+            return;
+        }
+
         // Restore graphics to get back to a no-clip situation.
         _cp.restoreGraphics();
 
@@ -779,13 +942,11 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         // when we next restore graphics.
         clipTransformIndex = transformStack.size();
         
-        if (s != null)
-            s = _transform.createTransformedShape(s);
-        if (s == null) {
+        if (clip == null) {
             _clip = null;
         } else {
-            _clip = new Area(s);
-            followPath(s, CLIP);
+            _clip = intersectClip(null, clip);
+            writeClip(clip);
         }
         
         clearPageState();
@@ -795,6 +956,38 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         return _originalStroke;
     }
     
+    /**
+     * Downsample images to at most <code>maxDpi</code> at the largest size they are drawn.
+     * @see PdfRendererBuilder#useImageDownsampling(float, DownscaleQuality, float)
+     */
+    void setImageDownsampling(float maxDpi, DownscaleQuality quality, float jpegQuality) {
+        _imageDownsampler = new PdfBoxImageDownsampler(maxDpi, quality, jpegQuality);
+    }
+
+    /**
+     * Realizes an image as it is loaded, unless images are downsampled, in which case the
+     * image is realized, at the largest size it is drawn, when the document is finished.
+     */
+    public void prepareImage(PdfBoxImage img) {
+        if (_imageDownsampler == null) {
+            realizeImage(img);
+        }
+    }
+
+    /**
+     * @return the number of images downsampled so far, zero if images are not downsampled.
+     */
+    public int getImagesDownsampled() {
+        return _imageDownsampler == null ? 0 : _imageDownsampler.getImagesDownsampled();
+    }
+
+    /**
+     * @return the bytes saved so far by downsampling images, compared to the size of the image files.
+     */
+    public long getImageBytesSaved() {
+        return _imageDownsampler == null ? 0 : _imageDownsampler.getBytesSaved();
+    }
+
     public void realizeImage(PdfBoxImage img) {
         PDImageXObject xobject;
         try {
@@ -817,7 +1010,29 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     public void drawImage(FSImage fsImage, int x, int y, boolean interpolate) {
         PdfBoxImage img = (PdfBoxImage) fsImage;
 
+        AffineTransform transformer = (AffineTransform) getTransform().clone();
+        transformer.translate(x, y);
+        transformer.translate(0, img.getHeight());
+        AffineTransform normalized = normalizeMatrix(transformer);
+        normalized.scale(img.getWidth(), -img.getHeight());
+
+        double[] mx = new double[6];
+        normalized.getMatrix(mx);
+
         PDImageXObject xobject = img.getXObject();
+        if (xobject == null && _imageDownsampler != null) {
+            // The size in PDF points of the unit square the image is drawn into.
+            xobject = _imageDownsampler.draw(_writer, img, interpolate,
+                    Math.hypot(mx[0], mx[1]), Math.hypot(mx[2], mx[3]));
+            _cp.drawImage(xobject, (float) mx[4], (float) mx[5], (float) mx[0],
+                    (float) mx[3]);
+            return;
+        } else if (xobject == null) {
+            // Loaded with downsampling by another renderer sharing the image cache.
+            realizeImage(img);
+            xobject = img.getXObject();
+        }
+
 		if (interpolate) {
 			xobject.setInterpolate(true);
 		} else {
@@ -839,16 +1054,7 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
 				throw new RuntimeException(e);
 			}
 		}
-        
-
-        AffineTransform transformer = (AffineTransform) getTransform().clone();
-        transformer.translate(x, y);
-        transformer.translate(0, img.getHeight());
-        AffineTransform normalized = normalizeMatrix(transformer);
-        normalized.scale(img.getWidth(), -img.getHeight());
 
-        double[] mx = new double[6];
-        normalized.getMatrix(mx);
 
         _cp.drawImage(xobject, (float) mx[4], (float) mx[5], (float) mx[0],
                 (float) mx[3]);
@@ -906,6 +1112,9 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     }
 
     public void finish(RenderingContext c, Box root) {
+        if (_imageDownsampler != null) {
+            _imageDownsampler.finish(_writer);
+        }
         processControls();
         _linkManager.processLinks();
         writeOutline(c, root);
@@ -950,9 +1159,17 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
                 int distanceFromTop = page.getMarginBorderPadding(c, CalculatedStyle.TOP);
                 distanceFromTop += box.getAbsY() - page.getTop();
 
+                PDPage targetPage = getWriterPage(page.getPageNo());
+                if (targetPage == null) {
+                    // The target is outside of the page range, so drop the bookmark but keep
+                    // those of its children which are in the range.
+                    writeBookmarks(c, root, parent, bookmark.getChildren());
+                    return;
+                }
+
                 target = new PDPageXYZDestination();
                 target.setTop((int) normalizeY(distanceFromTop / _dotsPerPoint));
-                target.setPage(_writer.getPage(_startPageNo + page.getPageNo()));
+                target.setPage(targetPage);
             }
         }
 
@@ -963,6 +1180,16 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         writeBookmarks(c, root, outline, bookmark.getChildren());
     }
 
+    /**
+     * @return whether the document head has bookmarks, as loaded by {@link #loadBookmarks(Document)}.
+     */
+    static boolean hasBookmarks(Document doc) {
+        Element head = DOMUtil.getChild(doc.getDocumentElement(), "head");
+        Element bookmarks = head == null ? null : DOMUtil.getChild(head, "bookmarks");
+        List<Element> l = bookmarks == null ? null : DOMUtil.getChildren(bookmarks, "bookmark");
+        return l != null && !l.isEmpty();
+    }
+
     private void loadBookmarks(Document doc) {
         Element head = DOMUtil.getChild(doc.getDocumentElement(), "head");
         if (head != null) {
@@ -1053,8 +1280,12 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
      *         null.
      */
     public String getMetadataByName(String name) {
+        return getMetadataByName(_metadata, name);
+    }
+
+    private static String getMetadataByName(List<Metadata> metadata, String name) {
         if (name != null) {
-            for (Metadata m : _metadata) {
+            for (Metadata m : metadata) {
                 if ((m != null) && m.getName().equalsIgnoreCase(name)) {
                     return m.getContent();
                 }
@@ -1094,6 +1325,13 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
      *            the Document level node of the parsed xhtml file.
      */
     private void loadMetadata(Document doc) {
+        loadMetadata(doc, _metadata);
+    }
+
+    /**
+     * Adds the metadata of the document head to a list, as for {@link #loadMetadata(Document)}.
+     */
+    static void loadMetadata(Document doc, List<Metadata> metadata) {
         Element head = DOMUtil.getChild(doc.getDocumentElement(), "head");
         if (head != null) {
             List<Element> l = DOMUtil.getChildren(head, "meta");
@@ -1103,18 +1341,18 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
                     if (name != null) { // ignore non-name metadata data
                         String content = e.getAttribute("content");
                         Metadata m = new Metadata(name, content);
-                        _metadata.add(m);
+                        metadata.add(m);
                     }
                 }
             }
             // If there is no title meta data attribute, use the document title.
-            String title = getMetadataByName("title");
+            String title = getMetadataByName(metadata, "title");
             if (title == null) {
                 Element t = DOMUtil.getChild(head, "title");
                 if (t != null) {
                     title = DOMUtil.getText(t).trim();
                     Metadata m = new Metadata("title", title);
-                    _metadata.add(m);
+                    metadata.add(m);
                 }
             }
         }
@@ -1217,6 +1455,25 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
     public void setStartPageNo(int startPageNo) {
         _startPageNo = startPageNo;
     }
+    
+    /**
+     * Sets the range of document pages (zero based, inclusive) that are output.
+     */
+    public void setPageRange(int firstPageNo, int lastPageNo) {
+        _firstPageNo = firstPageNo;
+        _lastPageNo = lastPageNo;
+    }
+    
+    /**
+     * @return the PDF page for a zero based document page number or null if that
+     * page is not output.
+     */
+    public PDPage getWriterPage(int pageNo) {
+        if (pageNo < _firstPageNo || pageNo > _lastPageNo) {
+            return null;
+        }
+        return _writer.getPage(_startPageNo + pageNo - _firstPageNo);
+    }
 
     public void drawSelection(RenderingContext c, InlineText inlineText) {
         throw new UnsupportedOperationException();
@@ -1232,6 +1489,15 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
 
     @Override
     public void drawWithGraphics(float x, float y, float width, float height, OutputDeviceGraphicsDrawer renderer) {
+        placeGraphicsForm(x, y, height, createGraphicsForm(width, height, renderer));
+    }
+
+    /**
+     * Renders the drawer to a form XObject of this document, which may be placed any number
+     * of times with {@link #placeGraphicsForm(float, float, float, PDFormXObject)}.
+     * Arguments are the same as for {@link #drawWithGraphics(float, float, float, float, OutputDeviceGraphicsDrawer)}.
+     */
+    public PDFormXObject createGraphicsForm(float width, float height, OutputDeviceGraphicsDrawer renderer) {
         try {
             PdfBoxGraphics2D pdfBoxGraphics2D = new PdfBoxGraphics2D(_writer, (int) width, (int) height);
 			/*
@@ -1291,33 +1557,40 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
              */
             PDFormXObject xFormObject = pdfBoxGraphics2D.getXFormObject();
             xFormObject.setMatrix(AffineTransform.getScaleInstance(72f / 96f, 72f / 96f));
-            
-            /*
-             * Adjust the y to take into account that the y passed to placeXForm below
-             * refers to the bottom left of the object while we were passed in y the 
-             * position of the top left corner.
-             * FIXME: Make DPI conversion configurable (as above).
-             */
-            y += (height) * _dotsPerPoint * (72f / 96f);
-
-            /*
-             * Use the page transform to convert from _dotsPerPoint units to 
-             * PDF units. Also takes care of page margins.
-             */
-            Point2D p = new Point2D.Float(x, y);
-            Point2D pResult = new Point2D.Float();
-            _transform.transform(p, pResult);
-
-            /*
-             * And then stamp it
-             */
-            _cp.placeXForm((float) pResult.getX(), _pageHeight - (float) pResult.getY(), xFormObject);
+            return xFormObject;
         }
         catch(IOException e){
             throw new RuntimeException("Error while drawing on Graphics2D", e);
         }
     }
 
+    /**
+     * Places a form created by {@link #createGraphicsForm(float, float, OutputDeviceGraphicsDrawer)}
+     * at the given position on the current page.
+     */
+    public void placeGraphicsForm(float x, float y, float height, PDFormXObject xFormObject) {
+        /*
+         * Adjust the y to take into account that the y passed to placeXForm below
+         * refers to the bottom left of the object while we were passed in y the 
+         * position of the top left corner.
+         * FIXME: Make DPI conversion configurable (as above).
+         */
+        y += (height) * _dotsPerPoint * (72f / 96f);
+
+        /*
+         * Use the page transform to convert from _dotsPerPoint units to 
+         * PDF units. Also takes care of page margins.
+         */
+        Point2D p = new Point2D.Float(x, y);
+        Point2D pResult = new Point2D.Float();
+        _transform.transform(p, pResult);
+
+        /*
+         * And then stamp it
+         */
+        _cp.placeXForm((float) pResult.getX(), _pageHeight - (float) pResult.getY(), xFormObject);
+    }
+
     public List<PagePosition> findPagePositionsByID(CssContext c, Pattern pattern) {
         Map<String, Box> idMap = _sharedContext.getIdMap();
         if (idMap == null) {
@@ -1471,12 +1744,14 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         _cp.saveGraphics();
         AffineTransform normalized = normalizeTransform(transform);
         _cp.applyPdfMatrix(normalized);
+        _transformLayerDepth++;
     }
 
     @Override
     public void popTransformLayer() {
         _cp.restoreGraphics();
         clearPageState();
+        _transformLayerDepth--;
     }
     
     @Override
@@ -1484,6 +1759,94 @@ public class PdfBoxOutputDevice extends AbstractOutputDevice implements OutputDe
         return _renderingContext.isFastRenderer();
     }
     
+    /**
+     * Draws reusable content, such as a static running header, as a form XObject that is
+     * only output once and referenced from every page it appears on. Links in the content are
+     * queued again for every page.
+     */
+    @Override
+    public void drawReusable(Object key, Runnable painter) {
+        if (_clip != null || !transformStack.isEmpty()) {
+            // The recorded content would not be correct in a clipped or transformed context.
+            painter.run();
+            return;
+        }
+        
+        List<Object> formKey = Arrays.asList(key, new AffineTransform(_transform), Float.valueOf(_pageHeight));
+        ReusableForm reusable = _reusableForms.get(formKey);
+        
+        if (reusable == null) {
+            int linkStart = _linkManager.getQueuedLinkCount();
+            PDFormXObject form = recordForm(painter);
+            reusable = new ReusableForm(form, linkStart, _linkManager.getQueuedLinkCount());
+            _reusableForms.put(formKey, reusable);
+        } else {
+            _linkManager.repeatLinksLater(reusable._linkStart, reusable._linkEnd, _page);
+        }
+        
+        _cp.drawForm(reusable._form);
+    }
+    
+    /**
+     * Runs the painter against the content stream of a new form XObject in page coordinates.
+     */
+    private PDFormXObject recordForm(Runnable painter) {
+        PDFormXObject form = new PDFormXObject(_writer);
+        form.setResources(new PDResources());
+        form.setBBox(new PDRectangle(_page.getMediaBox().getWidth(), _page.getMediaBox().getHeight()));
+        
+        PDPageContentStream formStream;
+        try {
+            formStream = new PDPageContentStream(_writer, form, form.getStream().createOutputStream(COSName.FLATE_DECODE));
+        } catch (IOException e) {
+            throw new PdfContentStreamAdapter.PdfException("recordForm", e);
+        }
+        
+        PdfContentStreamAdapter pageContent = _cp;
+        int pageClipTransformIndex = clipTransformIndex;
+        Shape pageClip = _clip;
+        Deque<PushedClip> pagePushedClips = _pushedClips;
+        int pageTransformLayerDepth = _transformLayerDepth;
+        
+        // The form starts from the graphics state of the page when it is drawn, so we can not rely
+        // on the current colors and stroke. We save graphics so setClip can get back to that state.
+        _cp = new PdfContentStreamAdapter(formStream);
+        clearPageState();
+        _cp.saveGraphics();
+        clipTransformIndex = transformStack.size();
+        _pushedClips = new ArrayDeque<PushedClip>();
+        _transformLayerDepth = 0;
+        
+        try {
+            painter.run();
+        } finally {
+            _cp.restoreGraphics();
+            _cp.closeContent();
+            
+            // Nothing set in the form leaks into the page content.
+            _cp = pageContent;
+            clipTransformIndex = pageClipTransformIndex;
+            _clip = pageClip;
+            _pushedClips = pagePushedClips;
+            _transformLayerDepth = pageTransformLayerDepth;
+            clearPageState();
+        }
+        
+        return form;
+    }
+    
+    private static class ReusableForm {
+        private final PDFormXObject _form;
+        private final int _linkStart;
+        private final int _linkEnd;
+        
+        private ReusableForm(PDFormXObject form, int linkStart, int linkEnd) {
+            _form = form;
+            _linkStart = linkStart;
+            _linkEnd = linkEnd;
+        }
+    }
+
     private void clearPageState() {
         _fillColor = null;
         _strokeColor = null;
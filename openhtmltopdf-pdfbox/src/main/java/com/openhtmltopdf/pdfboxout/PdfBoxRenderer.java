@@ -46,11 +46,16 @@ import com.openhtmltopdf.render.displaylist.DisplayListCollector;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer;
 import com.openhtmltopdf.render.displaylist.DisplayListPainter;
 import com.openhtmltopdf.render.displaylist.DisplayListContainer.DisplayListPageContainer;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshot;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshotPainter;
+import com.openhtmltopdf.render.snapshot.LayoutSnapshotRecorder;
 import com.openhtmltopdf.resource.XMLResource;
 import com.openhtmltopdf.simple.extend.XhtmlNamespaceHandler;
 import com.openhtmltopdf.util.Configuration;
+import com.openhtmltopdf.util.RenderBudget;
 import com.openhtmltopdf.util.ThreadCtx;
 import com.openhtmltopdf.util.XRLog;
+import com.openhtmltopdf.util.XRRuntimeException;
 import org.apache.pdfbox.pdmodel.*;
 import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
 import org.apache.pdfbox.pdmodel.common.PDMetadata;
@@ -59,6 +64,13 @@ import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkInfo
 import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
 import org.apache.pdfbox.pdmodel.encryption.PDEncryption;
 import org.apache.pdfbox.pdmodel.graphics.color.PDOutputIntent;
+import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionURI;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDBorderStyleDictionary;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageXYZDestination;
 import org.apache.xmpbox.XMPMetadata;
 import org.apache.xmpbox.schema.AdobePDFSchema;
 import org.apache.xmpbox.schema.PDFAIdentificationSchema;
@@ -77,8 +89,10 @@ import javax.xml.transform.stream.StreamResult;
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 
@@ -122,6 +136,11 @@ public class PdfBoxRenderer implements Closeable {
     private byte _defaultTextDirection = BidiSplitter.LTR;
     private BidiReorderer _reorderer;
     private final boolean _useFastMode;
+    
+    private final int _pageRangeStart;
+    private final int _pageRangeEnd;
+
+    private final LayoutSnapshot _layoutSnapshot;
 
     /**
      * This method is constantly changing as options are added to the builder.
@@ -144,9 +163,16 @@ public class PdfBoxRenderer implements Closeable {
         _dotsPerPoint = DEFAULT_DOTS_PER_POINT;
         _testMode = state._testMode;
         _useFastMode = state._useFastRenderer;
+        _pageRangeStart = state._pageRangeStart;
+        _pageRangeEnd = state._pageRangeEnd;
+        _layoutSnapshot = state._layoutSnapshot;
         _outputDevice = new PdfBoxOutputDevice(DEFAULT_DOTS_PER_POINT, _testMode);
         _outputDevice.setWriter(_pdfDoc);
         _outputDevice.setStartPageNo(_pdfDoc.getNumberOfPages());
+
+        if (state._maxImageDpi > 0) {
+            _outputDevice.setImageDownsampling(state._maxImageDpi, state._imageDownscaleQuality, state._imageJpegQuality);
+        }
         
         PdfBoxUserAgent userAgent = new PdfBoxUserAgent(_outputDevice);
 
@@ -167,15 +193,30 @@ public class PdfBoxRenderer implements Closeable {
         if (state._byteCache != null) {
             userAgent.setExternalByteCache(state._byteCache);
         }
+
+        if (state._streamInterceptor != null) {
+            userAgent.setStreamInterceptor(state._streamInterceptor);
+        }
         
         _sharedContext = new SharedContext();
         _sharedContext.registerWithThread();
         
         _sharedContext._preferredTransformerFactoryImplementationClass = state._preferredTransformerFactoryImplementationClass;
         _sharedContext._preferredDocumentBuilderFactoryImplementationClass = state._preferredDocumentBuilderFactoryImplementationClass;
+        _sharedContext.setRenderBudget(new RenderBudget(state._cancellationToken, state._renderTimeoutMillis,
+                state._maxPages, state._maxBoxes, state._maxImagePixels));
         
         _sharedContext.setUserAgentCallback(userAgent);
         _sharedContext.setCss(new StyleReference(userAgent));
+
+        if (state._stylesheetCache != null) {
+            _sharedContext.getCss().setSharedStylesheetCache(state._stylesheetCache);
+        }
+
+        if (state._declarationCache != null) {
+            _sharedContext.getCss().setSharedDeclarationCache(state._declarationCache);
+        }
+
         userAgent.setSharedContext(_sharedContext);
         _outputDevice.setSharedContext(_sharedContext);
 
@@ -327,7 +368,15 @@ public class PdfBoxRenderer implements Closeable {
         return _pdfVersion == 0f ? 1.7f : _pdfVersion;
     }
 
+    /**
+     * Lays out the document. Does nothing if a layout snapshot is being painted,
+     * see {@link PdfRendererBuilder#withLayoutSnapshot(LayoutSnapshot)}.
+     */
     public void layout() {
+        if (_layoutSnapshot != null) {
+            return;
+        }
+
         LayoutContext c = newLayoutContext();
         BlockBox root = BoxBuilder.createRootBox(c, _doc);
         root.setContainingBlock(new ViewportBox(getInitialExtents(c)));
@@ -424,12 +473,13 @@ public class PdfBoxRenderer implements Closeable {
         RenderingContext c = newRenderingContext();
         c.setInitialPageNo(initialPageNo);
 
-        PageBox firstPage = pages.get(0);
+        PageBox firstPage = pages.get(getFirstOutputPage(pages));
         Rectangle2D firstPageSize = new Rectangle2D.Float(0, 0,
                 firstPage.getWidth(c) / _dotsPerPoint,
                 firstPage.getHeight(c) / _dotsPerPoint);
 
         _outputDevice.setStartPageNo(_pdfDoc.getNumberOfPages());
+        _outputDevice.setPageRange(getFirstOutputPage(pages), getLastOutputPage(pages));
 
         writePDF(pages, c, firstPageSize, _pdfDoc);
     }
@@ -463,8 +513,13 @@ public class PdfBoxRenderer implements Closeable {
      */
     @Deprecated
     public void createPDF(OutputStream os, boolean finish, int initialPageNo) throws IOException {
+        if (_layoutSnapshot != null) {
+            createPdfFromSnapshot(os, finish);
+            return;
+        }
+
         if (_useFastMode) {
-            createPdfFast(finish);
+            createPdfFast(os, finish, initialPageNo);
             return;
         }
         
@@ -481,7 +536,7 @@ public class PdfBoxRenderer implements Closeable {
             RenderingContext c = newRenderingContext();
             c.setInitialPageNo(initialPageNo);
         
-            PageBox firstPage = pages.get(0);
+            PageBox firstPage = pages.get(getFirstOutputPage(pages));
             Rectangle2D firstPageSize = new Rectangle2D.Float(0, 0,
                     firstPage.getWidth(c) / _dotsPerPoint,
                     firstPage.getHeight(c) / _dotsPerPoint);
@@ -512,13 +567,10 @@ public class PdfBoxRenderer implements Closeable {
     }
     
     /**
-     * Completely experimental for now. Buggy as heck!
-     * TODO:
-     *   - inline-blocks
-     *   - auto margin centered absolutes
-     *   - debugging everything
+     * Creates the PDF using the display list (fast) renderer. Output should match
+     * the classic renderer, which is checked by the fast renderer conformance suite.
      */
-    private void createPdfFast(boolean finish) throws IOException {
+    private void createPdfFast(OutputStream os, boolean finish, int initialPageNo) throws IOException {
         boolean success = false;
         
         XRLog.general(Level.INFO, "Using fast-mode renderer. Prepare to fly.");
@@ -532,10 +584,10 @@ public class PdfBoxRenderer implements Closeable {
             List<PageBox> pages = _root.getLayer().getPages();
 
             RenderingContext c = newRenderingContext();
-            c.setInitialPageNo(0);
+            c.setInitialPageNo(initialPageNo);
             c.setFastRenderer(true);
         
-            PageBox firstPage = pages.get(0);
+            PageBox firstPage = pages.get(getFirstOutputPage(pages));
             Rectangle2D firstPageSize = new Rectangle2D.Float(0, 0,
                     firstPage.getWidth(c) / _dotsPerPoint,
                     firstPage.getHeight(c) / _dotsPerPoint);
@@ -557,7 +609,82 @@ public class PdfBoxRenderer implements Closeable {
             if (finish) {
                 fireOnClose();
                 if (success) {
-                    _pdfDoc.save(_os);
+                    _pdfDoc.save(os);
+                }
+                _pdfDoc.close();
+                _pdfDoc = null;
+            }
+        }
+    }
+
+    /**
+     * Creates the PDF by painting the pages of a layout snapshot, without a document or layout.
+     */
+    private void createPdfFromSnapshot(OutputStream os, boolean finish) throws IOException {
+        boolean success = false;
+
+        try {
+            if (_layoutSnapshot.getDotsPerPoint() != _dotsPerPoint) {
+                throw new IllegalStateException("Layout snapshot was recorded at " + _layoutSnapshot.getDotsPerPoint() +
+                        " dots per point, expected " + _dotsPerPoint);
+            }
+
+            if (_pdfVersion != 0f) {
+                _pdfDoc.setVersion(_pdfVersion);
+            }
+
+            if (_pdfEncryption != null) {
+                _pdfDoc.setEncryptionDictionary(_pdfEncryption);
+            }
+
+            firePreOpen();
+
+            RenderingContext c = _sharedContext.newRenderingContextInstance();
+            c.setFontContext(new PdfBoxFontContext());
+            c.setOutputDevice(_outputDevice);
+            c.setFastRenderer(true);
+            _outputDevice.setRenderingContext(c);
+            _sharedContext.getTextRenderer().setup(c.getFontContext());
+
+            for (Map.Entry<String, String> metadata : _layoutSnapshot.getMetadata()) {
+                _outputDevice.addMetadata(metadata.getKey(), metadata.getValue());
+            }
+
+            int pageCount = _layoutSnapshot.getPageCount();
+            firePreWrite(pageCount); // opportunity to adjust meta data
+            setDidValues(_pdfDoc); // set PDF header fields from meta data
+
+            if (_pdfAConformance != PdfAConformance.NONE) {
+                addPdfASchema(_pdfDoc, _pdfAConformance.getConformanceValue());
+            }
+
+            LayoutSnapshotPainter painter = new LayoutSnapshotPainter(new PdfBoxSnapshotImageCodec(_outputDevice));
+            List<PDPage> pdPages = new ArrayList<PDPage>(pageCount);
+
+            for (int i = 0; i < pageCount; i++) {
+                _sharedContext.getRenderBudget().check();
+
+                float height = _layoutSnapshot.getPageHeight(i) / _dotsPerPoint;
+                PDPage page = new PDPage(new PDRectangle(_layoutSnapshot.getPageWidth(i) / _dotsPerPoint, height));
+                PDPageContentStream cs = new PDPageContentStream(_pdfDoc, page, AppendMode.APPEND, !_testMode);
+                _pdfDoc.addPage(page);
+                pdPages.add(page);
+
+                _outputDevice.initializePage(cs, page, height);
+                painter.paintPage(c, _layoutSnapshot, i);
+                _outputDevice.finishPage();
+            }
+
+            for (int i = 0; i < pageCount; i++) {
+                addSnapshotLinks(pdPages, i);
+            }
+
+            success = true;
+        } finally {
+            if (finish) {
+                fireOnClose();
+                if (success) {
+                    _pdfDoc.save(os);
                 }
                 _pdfDoc.close();
                 _pdfDoc = null;
@@ -565,6 +692,122 @@ public class PdfBoxRenderer implements Closeable {
         }
     }
 
+    private void addSnapshotLinks(List<PDPage> pdPages, int page) {
+        float pageHeight = _layoutSnapshot.getPageHeight(page);
+        List<PDAnnotation> annots = new ArrayList<PDAnnotation>();
+
+        for (LayoutSnapshot.Link link : _layoutSnapshot.getLinks(page)) {
+            PDAction action;
+
+            if (link.getUri() != null) {
+                PDActionURI uri = new PDActionURI();
+                uri.setURI(link.getUri());
+                action = uri;
+            } else {
+                PDPageXYZDestination dest = new PDPageXYZDestination();
+                dest.setPage(pdPages.get(link.getTargetPage()));
+                dest.setTop((int) ((_layoutSnapshot.getPageHeight(link.getTargetPage()) - link.getTargetTop()) / _dotsPerPoint));
+
+                PDActionGoTo go = new PDActionGoTo();
+                go.setDestination(dest);
+                action = go;
+            }
+
+            Rectangle2D bounds = link.getBounds();
+            PDAnnotationLink annot = new PDAnnotationLink();
+            annot.setAction(action);
+            annot.setRectangle(new PDRectangle(
+                    (float) bounds.getMinX() / _dotsPerPoint,
+                    (float) (pageHeight - bounds.getMaxY()) / _dotsPerPoint,
+                    (float) bounds.getWidth() / _dotsPerPoint,
+                    (float) bounds.getHeight() / _dotsPerPoint));
+
+            PDBorderStyleDictionary styleDict = new PDBorderStyleDictionary();
+            styleDict.setWidth(0);
+            styleDict.setStyle(PDBorderStyleDictionary.STYLE_SOLID);
+            annot.setBorderStyle(styleDict);
+
+            annots.add(annot);
+        }
+
+        if (!annots.isEmpty()) {
+            pdPages.get(page).setAnnotations(annots);
+        }
+    }
+
+    /**
+     * Records the laid out pages as a {@link LayoutSnapshot}, which can be saved and painted
+     * later with {@link PdfRendererBuilder#withLayoutSnapshot(LayoutSnapshot)} without loading
+     * the document or doing layout again. The document is laid out first if needed.
+     * <br><br>
+     * Only content painted by the output device can be recorded, so documents with SVG,
+     * MathML, form controls, object drawers or bookmarks can not be recorded.
+     *
+     * @throws XRRuntimeException if the document has content that can not be recorded.
+     */
+    public LayoutSnapshot createLayoutSnapshot() {
+        if (_layoutSnapshot != null) {
+            return _layoutSnapshot;
+        }
+
+        if (_root == null) {
+            this.layout();
+        }
+
+        if (PdfBoxOutputDevice.hasBookmarks(_doc)) {
+            throw new XRRuntimeException("Bookmarks can not be recorded in a layout snapshot");
+        }
+
+        LayoutSnapshotRecorder recorder = new LayoutSnapshotRecorder(_sharedContext, _dotsPerPoint,
+                new PdfBoxSnapshotImageCodec(_outputDevice));
+
+        RenderingContext c = _sharedContext.newRenderingContextInstance();
+        c.setFontContext(new PdfBoxFontContext());
+        c.setOutputDevice(recorder);
+        c.setFastRenderer(true);
+        if (_reorderer != null) {
+            c.setBidiReorderer(_reorderer);
+        }
+        c.setRootLayer(_root.getLayer());
+
+        List<PageBox> pages = _root.getLayer().getPages();
+        _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
+        c.setPageCount(pages.size());
+
+        DisplayListCollector dlCollector = new DisplayListCollector(pages);
+        DisplayListContainer dlPages = dlCollector.collectRoot(c, _root.getLayer(), 0, pages.size() - 1);
+
+        for (int i = 0; i < pages.size(); i++) {
+            PageBox currentPage = pages.get(i);
+            DisplayListPageContainer pageOperations = dlPages.getPageInstructions(i);
+            c.setPage(i, currentPage);
+
+            recorder.startPage(i, currentPage.getWidth(c), currentPage.getHeight(c));
+            paintPageFast(c, currentPage, pageOperations, 0);
+            recorder.finishPage();
+
+            if (!pageOperations.shadowPages().isEmpty()) {
+                int pageContentWidth = currentPage.getContentWidth(c);
+                int translateX = pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1);
+
+                for (DisplayListPageContainer shadowPage : pageOperations.shadowPages()) {
+                    recorder.startPage(i, currentPage.getWidth(c), currentPage.getHeight(c));
+                    paintPageFast(c, currentPage, shadowPage, -translateX);
+                    recorder.finishPage();
+                    translateX += (pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1));
+                }
+            }
+        }
+
+        List<Metadata> metadata = new ArrayList<Metadata>();
+        PdfBoxOutputDevice.loadMetadata(_doc, metadata);
+        for (Metadata m : metadata) {
+            recorder.addMetadata(m.getName(), m.getContent());
+        }
+
+        return recorder.getSnapshot();
+    }
+
     private void firePreOpen() {
         if (_listener != null) {
             _listener.preOpen(this);
@@ -595,18 +838,25 @@ public class PdfBoxRenderer implements Closeable {
         _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
         
         int pageCount = _root.getLayer().getPages().size();
+        int firstOutputPage = getFirstOutputPage(pages);
+        int lastOutputPage = getLastOutputPage(pages);
+        _outputDevice.setPageRange(firstOutputPage, lastOutputPage);
         c.setPageCount(pageCount);
         firePreWrite(pageCount); // opportunity to adjust meta data
         setDidValues(doc); // set PDF header fields from meta data
+
+        if (_pdfAConformance != PdfAConformance.NONE) {
+            addPdfASchema(doc, _pdfAConformance.getConformanceValue());
+        }
         
+        // Only collects boxes which sit on the pages we are outputting.
         DisplayListCollector dlCollector = new DisplayListCollector(_root.getLayer().getPages());
-        DisplayListContainer dlPages = dlCollector.collectRoot(c, _root.getLayer()); 
+        DisplayListContainer dlPages = dlCollector.collectRoot(c, _root.getLayer(), firstOutputPage, lastOutputPage); 
         
-        for (int i = 0; i < pageCount; i++) {
+        for (int i = firstOutputPage; i <= lastOutputPage; i++) {
             PageBox currentPage = pages.get(i);
             DisplayListPageContainer pageOperations = dlPages.getPageInstructions(i);
             c.setPage(i, currentPage);
-            System.out.println("NEW PAGE");
             paintPageFast(c, currentPage, pageOperations, 0);
             _outputDevice.finishPage();
             
@@ -620,8 +870,6 @@ public class PdfBoxRenderer implements Closeable {
                     doc.addPage(shadowPdPage);
 
                     _outputDevice.initializePage(shadowCs, shadowPdPage, (float) firstPageSize.getHeight());
-                    System.out.println("shadow now!!!");
-                    System.out.println("!!!!!!!!" + translateX + "#" + firstPageSize.getWidth());
                     paintPageFast(c, currentPage, shadowPage, -translateX);
                     _outputDevice.finishPage();
                     translateX += (pageContentWidth * (currentPage.getCutOffPageDirection() == IdentValue.LTR ? 1 : -1));
@@ -629,7 +877,7 @@ public class PdfBoxRenderer implements Closeable {
             }
             
             
-            if (i != pageCount - 1) {
+            if (i != lastOutputPage) {
                 PageBox nextPage = pages.get(i + 1);
                 Rectangle2D nextPageSize = new Rectangle2D.Float(0, 0, nextPage.getWidth(c) / _dotsPerPoint,
                         nextPage.getHeight(c) / _dotsPerPoint);
@@ -655,6 +903,9 @@ public class PdfBoxRenderer implements Closeable {
         _root.getLayer().assignPagePaintingPositions(c, Layer.PAGED_MODE_PRINT);
 
         int pageCount = _root.getLayer().getPages().size();
+        int firstOutputPage = getFirstOutputPage(pages);
+        int lastOutputPage = getLastOutputPage(pages);
+        _outputDevice.setPageRange(firstOutputPage, lastOutputPage);
         c.setPageCount(pageCount);
         firePreWrite(pageCount); // opportunity to adjust meta data
         setDidValues(doc); // set PDF header fields from meta data
@@ -663,14 +914,14 @@ public class PdfBoxRenderer implements Closeable {
             addPdfASchema(doc, _pdfAConformance.getConformanceValue());
         }
 
-        for (int i = 0; i < pageCount; i++) {
+        for (int i = firstOutputPage; i <= lastOutputPage; i++) {
             PageBox currentPage = pages.get(i);
             
             c.setPage(i, currentPage);
             paintPage(c, currentPage);
             _outputDevice.finishPage();
             
-            if (i != pageCount - 1) {
+            if (i != lastOutputPage) {
                 PageBox nextPage = pages.get(i + 1);
                 Rectangle2D nextPageSize = new Rectangle2D.Float(0, 0, nextPage.getWidth(c) / _dotsPerPoint,
                         nextPage.getHeight(c) / _dotsPerPoint);
@@ -684,6 +935,43 @@ public class PdfBoxRenderer implements Closeable {
         _outputDevice.finish(c, _root);
     }
 
+    /**
+     * @return the zero based index of the first page to output, see {@link PdfRendererBuilder#usePageRange(int, int)}.
+     */
+    private int getFirstOutputPage(List<PageBox> pages) {
+        if (_pageRangeStart < 0 || _pageRangeStart >= pages.size()) {
+            throw new IllegalArgumentException("Page range start " + _pageRangeStart + " is outside document of " + pages.size() + " pages");
+        }
+        return _pageRangeStart;
+    }
+
+    /**
+     * @return the zero based index of the last page to output, see {@link PdfRendererBuilder#usePageRange(int, int)}.
+     * An end of -1 or past the last page of the document is clamped to the last page.
+     */
+    private int getLastOutputPage(List<PageBox> pages) {
+        if (_pageRangeEnd < -1) {
+            throw new IllegalArgumentException("Page range end " + _pageRangeEnd + " must be -1 or a page index");
+        }
+        if (_pageRangeEnd == -1 || _pageRangeEnd >= pages.size()) {
+            return pages.size() - 1;
+        }
+        if (_pageRangeEnd < getFirstOutputPage(pages)) {
+            throw new IllegalArgumentException("Page range end " + _pageRangeEnd + " is before page range start " + _pageRangeStart);
+        }
+        return _pageRangeEnd;
+    }
+
+    /**
+     * @return the number of pages in the laid out document. Only valid after {@link #layout()}.
+     */
+    public int getPageCount() {
+        if (_layoutSnapshot != null) {
+            return _layoutSnapshot.getPageCount();
+        }
+        return _root.getLayer().getPages().size();
+    }
+
     private void addPdfASchema(PDDocument document, String conformance) {
         PDDocumentInformation information = document.getDocumentInformation();
         XMPMetadata metadata = XMPMetadata.createXMPMetadata();
@@ -772,12 +1060,14 @@ public class PdfBoxRenderer implements Closeable {
     }
     
     private void paintPageFast(RenderingContext c, PageBox page, DisplayListPageContainer pageOperations, int additionalTranslateX) {
+        _sharedContext.getRenderBudget().check();
+
         page.paintBackground(c, 0, Layer.PAGED_MODE_PRINT);
         page.paintMarginAreas(c, 0, Layer.PAGED_MODE_PRINT);
         page.paintBorder(c, 0, Layer.PAGED_MODE_PRINT);
 
         Rectangle content = page.getPrintClippingBounds(c);
-        _outputDevice.pushClip(content);
+        c.getOutputDevice().pushClip(content);
 
         int top = -page.getPaintingTop() + page.getMarginBorderPadding(c, CalculatedStyle.TOP);
 
@@ -785,16 +1075,17 @@ public class PdfBoxRenderer implements Closeable {
 
         int translateX = left + additionalTranslateX;
         
-        _outputDevice.translate(translateX, top);
+        c.getOutputDevice().translate(translateX, top);
         DisplayListPainter painter = new DisplayListPainter();
         painter.paint(c, pageOperations);
-        _outputDevice.translate(-translateX, -top);
+        c.getOutputDevice().translate(-translateX, -top);
 
-        _outputDevice.popClip();
+        c.getOutputDevice().popClip();
     }
 
     private void paintPage(RenderingContext c, PageBox page) {
         // TODO: provideMetadataToPage(_pdfDoc, page);
+        _sharedContext.getRenderBudget().check();
 
         page.paintBackground(c, 0, Layer.PAGED_MODE_PRINT);
         page.paintMarginAreas(c, 0, Layer.PAGED_MODE_PRINT);
@@ -0,0 +1,112 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import javax.imageio.ImageIO;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import com.openhtmltopdf.extend.FSImage;
+import com.openhtmltopdf.extend.ReplacedElement;
+import com.openhtmltopdf.render.snapshot.SnapshotImageCodec;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Converts PDF images for layout snapshots. Images are loaded into an XObject as soon
+ * as they are loaded, so they are encoded from the XObject, keeping JPEGs as they are.
+ */
+class PdfBoxSnapshotImageCodec implements SnapshotImageCodec {
+    private static final String SNAPSHOT_URI = "snapshot:image";
+
+    private final PdfBoxOutputDevice _outputDevice;
+    private final Map<Object, byte[]> _encoded = new IdentityHashMap<Object, byte[]>();
+    private final Map<byte[], PdfBoxImage> _decoded = new IdentityHashMap<byte[], PdfBoxImage>();
+
+    PdfBoxSnapshotImageCodec(PdfBoxOutputDevice outputDevice) {
+        _outputDevice = outputDevice;
+    }
+
+    @Override
+    public FSImage getImage(ReplacedElement element) {
+        if (element instanceof PdfBoxImageElement) {
+            return ((PdfBoxImageElement) element).getImage();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean isEmpty(ReplacedElement element) {
+        return element instanceof BookmarkElement;
+    }
+
+    @Override
+    public byte[] encode(FSImage image) {
+        if (!(image instanceof PdfBoxImage)) {
+            return null;
+        }
+
+        PdfBoxImage img = (PdfBoxImage) image;
+        Object key = img.getXObject() != null ? img.getXObject() : img.getBytes();
+        if (key == null) {
+            return null;
+        }
+
+        byte[] encoded = _encoded.get(key);
+        if (encoded == null) {
+            try {
+                encoded = img.getXObject() != null ? encode(img.getXObject()) : img.getBytes();
+            } catch (IOException e) {
+                XRLog.render(Level.WARNING, "Could not encode image " + img.getUri() + " for layout snapshot", e);
+                return null;
+            }
+            _encoded.put(key, encoded);
+        }
+
+        return encoded;
+    }
+
+    private byte[] encode(PDImageXObject xobject) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        if (COSName.DCT_DECODE.equals(xobject.getCOSObject().getDictionaryObject(COSName.FILTER))) {
+            InputStream is = xobject.getCOSObject().createRawInputStream();
+            try {
+                byte[] buf = new byte[8192];
+                int i;
+                while ((i = is.read(buf)) != -1) {
+                    os.write(buf, 0, i);
+                }
+            } finally {
+                is.close();
+            }
+        } else {
+            ImageIO.write(xobject.getImage(), "png", os);
+        }
+
+        return os.toByteArray();
+    }
+
+    @Override
+    public FSImage decode(byte[] image, int width, int height) {
+        PdfBoxImage realized = _decoded.get(image);
+
+        if (realized == null) {
+            try {
+                realized = new PdfBoxImage(image, SNAPSHOT_URI);
+            } catch (IOException e) {
+                XRLog.render(Level.WARNING, "Could not decode layout snapshot image", e);
+                return null;
+            }
+            _outputDevice.realizeImage(realized);
+            _decoded.put(image, realized);
+        }
+
+        return new PdfBoxImage(null, SNAPSHOT_URI, width, height, realized.isJpeg(), realized.getXObject());
+    }
+}
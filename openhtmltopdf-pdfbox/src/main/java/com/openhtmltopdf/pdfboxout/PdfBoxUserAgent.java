@@ -32,6 +32,7 @@ import com.openhtmltopdf.resource.ImageResource;
 import com.openhtmltopdf.swing.FSCacheKey;
 import com.openhtmltopdf.swing.NaiveUserAgent;
 import com.openhtmltopdf.util.ImageUtil;
+import com.openhtmltopdf.util.RenderAbortedException;
 import com.openhtmltopdf.util.XRLog;
 
 public class PdfBoxUserAgent extends NaiveUserAgent {
@@ -78,7 +79,7 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
         
         if (ImageUtil.isEmbeddedBase64Image(uriResolved)) {
             resource = loadEmbeddedBase64ImageResource(uriResolved);
-            _outputDevice.realizeImage((PdfBoxImage) resource.getImage());
+            _outputDevice.prepareImage((PdfBoxImage) resource.getImage());
             _imageCache.put(uriResolved, resource);
         } else {
             InputStream is = openStream(uriResolved);
@@ -101,12 +102,15 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
                     } else {
                         byte[] imgBytes = readStream(is);
                         PdfBoxImage fsImage = new PdfBoxImage(imgBytes, uriStr);
+                        _sharedContext.getRenderBudget().checkImage(fsImage.getWidth(), fsImage.getHeight());
                         scaleToOutputResolution(fsImage);
-                        _outputDevice.realizeImage(fsImage);
+                        _outputDevice.prepareImage(fsImage);
                         resource = new ImageResource(uriResolved, fsImage);
                     }
                     _imageCache.put(uriResolved, resource);
                     _externalCache.put(new FSCacheKey(uriResolved, PdfBoxImage.class), resource);
+                } catch (RenderAbortedException e) {
+                    throw e;
                 } catch (Exception e) {
                     XRLog.exception(
                             "Can't read image file; unexpected problem for URI '"
@@ -133,8 +137,11 @@ public class PdfBoxUserAgent extends NaiveUserAgent {
         try {
             byte[] buffer = ImageUtil.getEmbeddedBase64Image(uri);
             PdfBoxImage fsImage = new PdfBoxImage(buffer, uri);
+            _sharedContext.getRenderBudget().checkImage(fsImage.getWidth(), fsImage.getHeight());
             scaleToOutputResolution(fsImage);
             return new ImageResource(null, fsImage);
+        } catch (RenderAbortedException e) {
+            throw e;
         } catch (Exception e) {
             XRLog.exception("Can't read XHTML embedded image.", e);
         }
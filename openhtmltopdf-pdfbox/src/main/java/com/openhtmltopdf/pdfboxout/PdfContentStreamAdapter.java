@@ -15,6 +15,18 @@ import java.io.IOException;
 public class PdfContentStreamAdapter {
     private final PDPageContentStream cs;
 
+    // Text runs are batched into one text object (BT...ET) until an operation that is
+    // not allowed in a text object, such as a path or image, is output.
+    private boolean inText;
+
+    // The font and size set in the open text object.
+    private PDFont textFont;
+    private float textFontSize;
+
+    // The line matrix (as set by Tm or Td) of the open text object.
+    private final float[] lineMatrix = new float[6];
+    private boolean hasLineMatrix;
+
 
     public static class PdfException extends RuntimeException {
         private static final long serialVersionUID = 1L;
@@ -35,6 +47,7 @@ public class PdfContentStreamAdapter {
 
     public void fillRect(float x, float y, float w, float h) {
         try {
+            endTextIfOpen();
             cs.addRect(x, y, w, h);
             cs.fill();
         } catch (IOException e) {
@@ -44,6 +57,7 @@ public class PdfContentStreamAdapter {
 
     public void addRect(float x, float y, float w, float h) {
         try {
+            endTextIfOpen();
             cs.addRect(x, y, w, h);
         } catch (IOException e) {
             logAndThrow("addRect", e);
@@ -64,6 +78,7 @@ public class PdfContentStreamAdapter {
 
     public void closeSubpath() {
         try {
+            endTextIfOpen();
             cs.closePath();
         } catch (IOException e) {
             logAndThrow("closeSubpath", e);
@@ -73,6 +88,7 @@ public class PdfContentStreamAdapter {
     public void curveTo(float x1, float y1, float x2, float y2, float x3,
             float y3) {
         try {
+            endTextIfOpen();
             cs.curveTo(x1, y1, x2, y2, x3, y3);
         } catch (IOException e) {
             logAndThrow("curveTo(6)", e);
@@ -81,6 +97,7 @@ public class PdfContentStreamAdapter {
 
     public void curveTo(float x1, float y1, float x3, float y3) {
         try {
+            endTextIfOpen();
             cs.curveTo1(x1, y1, x3, y3);
         } catch (IOException e) {
             logAndThrow("curveTo(4)", e);
@@ -89,6 +106,7 @@ public class PdfContentStreamAdapter {
 
     public void closeContent() {
         try {
+            endTextIfOpen();
             cs.close();
         } catch (IOException e) {
             logAndThrow("closeContent", e);
@@ -97,6 +115,7 @@ public class PdfContentStreamAdapter {
 
     public void lineTo(float x1, float y1) {
         try {
+            endTextIfOpen();
             cs.lineTo(x1, y1);
         } catch (IOException e) {
             logAndThrow("lineTo", e);
@@ -105,6 +124,7 @@ public class PdfContentStreamAdapter {
 
     public void moveTo(float x1, float y1) {
         try {
+            endTextIfOpen();
             cs.moveTo(x1, y1);
         } catch (IOException e) {
             logAndThrow("moveTo", e);
@@ -113,6 +133,7 @@ public class PdfContentStreamAdapter {
 
     public void fillEvenOdd() {
         try {
+            endTextIfOpen();
             cs.fillEvenOdd();
         } catch (IOException e) {
             logAndThrow("fillEvenOdd", e);
@@ -121,6 +142,7 @@ public class PdfContentStreamAdapter {
 
     public void fillNonZero() {
         try {
+            endTextIfOpen();
             cs.fill();
         } catch (IOException e) {
             logAndThrow("fillNonZero", e);
@@ -129,6 +151,7 @@ public class PdfContentStreamAdapter {
 
     public void stroke() {
         try {
+            endTextIfOpen();
             cs.stroke();
         } catch (IOException e) {
             logAndThrow("stroke", e);
@@ -137,6 +160,7 @@ public class PdfContentStreamAdapter {
 
     public void clipNonZero() {
         try {
+            endTextIfOpen();
             cs.clip();
         } catch (IOException e) {
             logAndThrow("clipNonZero", e);
@@ -145,6 +169,7 @@ public class PdfContentStreamAdapter {
 
     public void clipEvenOdd() {
         try {
+            endTextIfOpen();
             cs.clipEvenOdd();
         } catch (IOException e) {
             logAndThrow("clipEvenOdd", e);
@@ -185,6 +210,7 @@ public class PdfContentStreamAdapter {
 
     public void setLineWidth(float width) {
         try {
+            endTextIfOpen();
             cs.setLineWidth(width);
         } catch (IOException e) {
             logAndThrow("setLineWidth", e);
@@ -193,6 +219,7 @@ public class PdfContentStreamAdapter {
 
     public void setLineCap(int capStyle) {
         try {
+            endTextIfOpen();
             cs.setLineCapStyle(capStyle);
         } catch (IOException e) {
             logAndThrow("setLineCap", e);
@@ -201,6 +228,7 @@ public class PdfContentStreamAdapter {
 
     public void setLineJoin(int joinStyle) {
         try {
+            endTextIfOpen();
             cs.setLineJoinStyle(joinStyle);
         } catch (IOException e) {
             logAndThrow("setLineJoin", e);
@@ -209,6 +237,7 @@ public class PdfContentStreamAdapter {
 
     public void setLineDash(float[] dash, float phase) {
         try {
+            endTextIfOpen();
             cs.setLineDashPattern(dash, phase);
         } catch (IOException e) {
             logAndThrow("setLineDash", e);
@@ -217,6 +246,7 @@ public class PdfContentStreamAdapter {
 
     public void restoreGraphics() {
         try {
+            endTextIfOpen();
             saveGraphicsCounter--;
             cs.restoreGraphicsState();
 			if (saveGraphicsCounter < 0)
@@ -229,6 +259,7 @@ public class PdfContentStreamAdapter {
     private int saveGraphicsCounter = 0;
     public void saveGraphics() {
         try {
+            endTextIfOpen();
             saveGraphicsCounter++;
             cs.saveGraphicsState();
         } catch (IOException e) {
@@ -236,9 +267,17 @@ public class PdfContentStreamAdapter {
         }
     }
 
+    /**
+     * Starts a text object, unless one is already open. The text object is left open
+     * so that following text runs can share it. It is ended by {@link #endText()} or
+     * by the first operation that is not allowed inside a text object.
+     */
     public void beginText() {
         try {
-            cs.beginText();
+            if (!inText) {
+                cs.beginText();
+                inText = true;
+            }
         } catch (IOException e) {
             logAndThrow("beginText", e);
         }
@@ -246,25 +285,59 @@ public class PdfContentStreamAdapter {
 
     public void endText() {
         try {
-            cs.endText();
+            endTextIfOpen();
         } catch (IOException e) {
             logAndThrow("endText", e);
         }
     }
 
+    private void endTextIfOpen() throws IOException {
+        if (inText) {
+            cs.endText();
+            inText = false;
+            textFont = null;
+            hasLineMatrix = false;
+        }
+    }
+
     public void setFont(PDFont font, float size) {
         try {
+            if (inText && font == textFont && size == textFontSize) {
+                return;
+            }
             cs.setFont(font, size);
+            if (inText) {
+                textFont = font;
+                textFontSize = size;
+            }
         } catch (IOException e) {
             logAndThrow("setFont", e);
         }
     }
 
+    /**
+     * Sets the text matrix. If the text object already has a text matrix with the same
+     * scale and no rotation or skew we only move the line start with <code>Td</code>.
+     */
     public void setTextMatrix(float a, float b, float c, float d, float e,
             float f) {
         try {
-            Matrix mtrx = new Matrix(a, b, c, d, e, f);
-            cs.setTextMatrix(mtrx);
+            if (inText && hasLineMatrix &&
+                a == lineMatrix[0] && b == 0 && c == 0 && d == lineMatrix[3] &&
+                lineMatrix[1] == 0 && lineMatrix[2] == 0) {
+                cs.newLineAtOffset((e - lineMatrix[4]) / a, (f - lineMatrix[5]) / d);
+            } else {
+                Matrix mtrx = new Matrix(a, b, c, d, e, f);
+                cs.setTextMatrix(mtrx);
+            }
+            
+            lineMatrix[0] = a;
+            lineMatrix[1] = b;
+            lineMatrix[2] = c;
+            lineMatrix[3] = d;
+            lineMatrix[4] = e;
+            lineMatrix[5] = f;
+            hasLineMatrix = inText;
         } catch (IOException e1) {
             logAndThrow("setTextMatrix", e1);
         }
@@ -289,6 +362,7 @@ public class PdfContentStreamAdapter {
     public void drawImage(PDImageXObject xobject, float x, float y, float w,
             float h) {
         try {
+            endTextIfOpen();
             cs.drawImage(xobject, x, y, w, h);
         } catch (IOException e) {
             logAndThrow("drawImage", e);
@@ -297,6 +371,7 @@ public class PdfContentStreamAdapter {
 
     public void setMiterLimit(float miterLimit) {
         try {
+            endTextIfOpen();
             /*
              * Only set the miter limit if it is > 0, as 0 is a invalid
              * value which causes Acrobat Reader to stop drawing anything.
@@ -323,14 +398,25 @@ public class PdfContentStreamAdapter {
 
     public void applyPdfMatrix(AffineTransform transform) {
         try {
+           endTextIfOpen();
            cs.transform(new Matrix(transform));
         } catch (IOException e) {
             logAndThrow("applyPdfMatrix", e);
         }
     }
 
+    public void drawForm(PDFormXObject xFormObject) {
+        try {
+            endTextIfOpen();
+            cs.drawForm(xFormObject);
+        } catch (IOException e) {
+            logAndThrow("drawForm", e);
+        }
+    }
+
     public void placeXForm(float x, float y, PDFormXObject xFormObject) {
         try {
+			endTextIfOpen();
 			cs.saveGraphicsState();
 			cs.transform(new Matrix(AffineTransform.getTranslateInstance(x, y)));
 			cs.drawForm(xFormObject);
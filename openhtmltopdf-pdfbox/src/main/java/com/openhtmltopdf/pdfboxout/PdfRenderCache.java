@@ -0,0 +1,661 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.extend.FSStreamInterceptor;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+import com.openhtmltopdf.util.DownscaleQuality;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * Implements the render cache, see {@link PdfRendererBuilder#useRenderCache(PdfRenderCacheStore)}.
+ *
+ * Entries are keyed by a digest of the document and the builder settings. As the resources
+ * a document needs are only known after it has been rendered, each entry also records the
+ * digest of every resource loaded by the user agent. An entry is only used if all of its
+ * resources still have the same content.
+ */
+final class PdfRenderCache {
+    private static final String VERSION = "openhtmltopdf-render-cache-1";
+
+    private static final byte KIND_STREAM = 'S';
+    private static final byte KIND_READER = 'R';
+
+    /**
+     * Settings which are not inputs of the output PDF, or are digested separately.
+     */
+    private static final Set<String> IGNORED_SETTINGS = new HashSet<String>(Arrays.asList(
+            "_html", "_baseUri", "_document", "_uri", "_file", "_os", "pddocument",
+            "_renderCacheStore", "_streamInterceptor", "_cancellationToken", "_renderTimeoutMillis",
+            "_maxPages", "_maxBoxes", "_maxImagePixels",
+            "_cache", "_textCache", "_byteCache", "_caches", "_stylesheetCache", "_declarationCache"));
+
+    private PdfRenderCache() {
+    }
+
+    static void run(PdfRendererBuilder builder, PdfRendererBuilderState state) throws Exception {
+        if (state._os == null || state.pddocument != null || state._layoutSnapshot != null) {
+            // Nothing to cache, we don't know what is already in the document or there is no layout to skip.
+            builder.render();
+            return;
+        }
+
+        List<String> opaqueSettings = new ArrayList<String>();
+        byte[] key = key(state, opaqueSettings);
+
+        if (!opaqueSettings.isEmpty() && state._renderCacheKey == null) {
+            // Two objects of the same class may give different output, so we can't tell
+            // whether a cached PDF was rendered with the same settings.
+            XRLog.general(Level.INFO, "Not using render cache as these settings can only be identified by their class: " +
+                    opaqueSettings + ". Use PdfRendererBuilder.useRenderCacheKey to identify them.");
+            builder.render();
+            return;
+        }
+
+        PdfRenderCacheStore store = state._renderCacheStore;
+        String hexKey = hex(key);
+
+        byte[] stored = store.get(hexKey);
+        if (stored != null) {
+            Entry entry = Entry.read(stored);
+
+            if (entry != null && entry.isCurrent(state._streamFactoryMap)) {
+                XRLog.general(Level.INFO, "Using render cache entry " + hexKey);
+                state._os.write(entry.pdf);
+                return;
+            }
+        }
+
+        Recorder recorder = new Recorder();
+        ByteArrayOutputStream pdf = new ByteArrayOutputStream();
+        PdfBoxRenderer renderer = null;
+
+        state._streamInterceptor = recorder;
+        try {
+            renderer = builder.buildPdfRenderer();
+            renderer.layout();
+            renderer.createPDFWithoutClosing();
+
+            PDDocument doc = renderer.getPdfDocument();
+            try {
+                // The document ID is otherwise generated from the current time, so
+                // derive it from the inputs to get the same output for the same inputs.
+                byte[] id = Arrays.copyOf(key, 16);
+                COSArray ids = new COSArray();
+                ids.add(new COSString(id));
+                ids.add(new COSString(id));
+                doc.getDocument().setDocumentID(ids);
+
+                doc.save(pdf);
+            } finally {
+                doc.close();
+            }
+        } finally {
+            state._streamInterceptor = null;
+            if (renderer != null) {
+                renderer.close();
+            }
+        }
+
+        byte[] bytes = pdf.toByteArray();
+        state._os.write(bytes);
+
+        if (recorder.isComplete()) {
+            store.put(hexKey, new Entry(recorder.getResources(), bytes).write());
+        } else {
+            XRLog.general(Level.INFO, "Not caching render as not all resources were read");
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest md, String value) {
+        if (value == null) {
+            md.update((byte) 0);
+        } else {
+            md.update((byte) 1);
+            try {
+                byte[] bytes = value.getBytes("UTF-8");
+                updateLength(md, bytes.length);
+                md.update(bytes);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static void updateLength(MessageDigest md, long length) {
+        for (int i = 56; i >= 0; i -= 8) {
+            md.update((byte) (length >>> i));
+        }
+    }
+
+    /**
+     * @param opaqueSettings receives the name of each setting that could only be digested by its class.
+     */
+    private static byte[] key(PdfRendererBuilderState state, List<String> opaqueSettings) throws Exception {
+        MessageDigest md = newDigest();
+
+        update(md, VERSION);
+        update(md, state._html);
+        update(md, state._baseUri);
+        update(md, state._uri);
+        // The content of a file or uri document is recorded as a resource.
+        update(md, state._file == null ? null : state._file.getAbsolutePath());
+
+        if (state._document != null) {
+            OutputStream os = new DigestOutputStream(new ByteArrayOutputStream(0) {
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+
+                @Override
+                public void write(int b) {
+                }
+            }, md);
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(state._document), new StreamResult(os));
+            os.close();
+        }
+
+        Field[] fields = state.getClass().getFields();
+        Arrays.sort(fields, FIELD_ORDER);
+
+        for (Field field : fields) {
+            if (Modifier.isStatic(field.getModifiers()) || IGNORED_SETTINGS.contains(field.getName())) {
+                continue;
+            }
+
+            update(md, field.getName());
+            updateValue(md, field.getName(), field.get(state), opaqueSettings);
+        }
+
+        return md.digest();
+    }
+
+    private static final Comparator<Field> FIELD_ORDER = new Comparator<Field>() {
+        @Override
+        public int compare(Field f1, Field f2) {
+            return f1.getName().compareTo(f2.getName());
+        }
+    };
+
+    /**
+     * Digests a setting. Objects such as resolvers, drawers and font suppliers can only be
+     * identified by their class, so their names are added to <code>opaqueSettings</code>.
+     * Stream factories are also identified by class, but everything they load is recorded
+     * as a resource of the entry.
+     */
+    private static void updateValue(MessageDigest md, String name, Object value, List<String> opaqueSettings) throws IllegalAccessException {
+        if (value == null) {
+            update(md, null);
+        } else if (value instanceof String ||
+                   value instanceof Number ||
+                   value instanceof Boolean ||
+                   value instanceof Character ||
+                   value instanceof Enum) {
+            update(md, value.getClass().getName() + ':' + value);
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            updateLength(md, bytes.length);
+            md.update(bytes);
+        } else if (value instanceof File) {
+            File file = (File) value;
+            update(md, file.getAbsolutePath() + ':' + file.length() + ':' + file.lastModified());
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            updateLength(md, collection.size());
+            for (Object item : collection) {
+                updateValue(md, name, item, opaqueSettings);
+            }
+        } else if (value instanceof Map) {
+            Map<String, Object> sorted = new TreeMap<String, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            updateLength(md, sorted.size());
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                update(md, entry.getKey());
+                updateValue(md, name, entry.getValue(), opaqueSettings);
+            }
+        } else if (value instanceof DownscaleQuality) {
+            update(md, ((DownscaleQuality) value).asString());
+        } else if (value instanceof PdfRendererBuilder.AddedFont) {
+            Field[] fields = value.getClass().getDeclaredFields();
+            Arrays.sort(fields, FIELD_ORDER);
+            for (Field field : fields) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    field.setAccessible(true);
+                    update(md, field.getName());
+                    updateValue(md, name + '.' + field.getName(), field.get(value), opaqueSettings);
+                }
+            }
+        } else if (value instanceof FSStreamFactory) {
+            update(md, value.getClass().getName());
+        } else {
+            update(md, value.getClass().getName());
+            if (!opaqueSettings.contains(name)) {
+                opaqueSettings.add(name);
+            }
+        }
+    }
+
+    private static byte[] digest(InputStream is) throws IOException {
+        if (is == null) {
+            return null;
+        }
+
+        MessageDigest md = newDigest();
+        try {
+            byte[] buf = new byte[10240];
+            int i;
+            while ((i = is.read(buf)) != -1) {
+                md.update(buf, 0, i);
+            }
+        } finally {
+            is.close();
+        }
+        return md.digest();
+    }
+
+    private static void updateChars(MessageDigest md, char[] cbuf, int off, int len) {
+        for (int i = off; i < off + len; i++) {
+            md.update((byte) (cbuf[i] >> 8));
+            md.update((byte) cbuf[i]);
+        }
+    }
+
+    private static byte[] digest(Reader reader) throws IOException {
+        if (reader == null) {
+            return null;
+        }
+
+        MessageDigest md = newDigest();
+        try {
+            char[] buf = new char[8192];
+            int i;
+            while ((i = reader.read(buf)) != -1) {
+                updateChars(md, buf, 0, i);
+            }
+        } finally {
+            reader.close();
+        }
+        return md.digest();
+    }
+
+    private static class Resource {
+        private final String uri;
+        private final byte kind;
+        private final byte[] digest;
+
+        private Resource(String uri, byte kind, byte[] digest) {
+            this.uri = uri;
+            this.kind = kind;
+            this.digest = digest;
+        }
+    }
+
+    private static class Entry {
+        private final List<Resource> resources;
+        private final byte[] pdf;
+
+        private Entry(List<Resource> resources, byte[] pdf) {
+            this.resources = resources;
+            this.pdf = pdf;
+        }
+
+        private static void writeBytes(DataOutputStream dos, byte[] bytes) throws IOException {
+            if (bytes == null) {
+                dos.writeInt(-1);
+            } else {
+                dos.writeInt(bytes.length);
+                dos.write(bytes);
+            }
+        }
+
+        private static byte[] readBytes(DataInputStream dis) throws IOException {
+            int length = dis.readInt();
+            if (length == -1) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            dis.readFully(bytes);
+            return bytes;
+        }
+
+        private byte[] write() throws IOException {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(pdf.length + 1024);
+            DataOutputStream dos = new DataOutputStream(bos);
+
+            dos.writeUTF(VERSION);
+            dos.writeInt(resources.size());
+            for (Resource resource : resources) {
+                writeBytes(dos, resource.uri.getBytes("UTF-8"));
+                dos.writeByte(resource.kind);
+                writeBytes(dos, resource.digest);
+            }
+            writeBytes(dos, pdf);
+            dos.close();
+
+            return bos.toByteArray();
+        }
+
+        /**
+         * @return the entry or null if it is from another version or can not be read.
+         */
+        private static Entry read(byte[] stored) {
+            try {
+                DataInputStream dis = new DataInputStream(new ByteArrayInputStream(stored));
+
+                if (!VERSION.equals(dis.readUTF())) {
+                    return null;
+                }
+
+                int count = dis.readInt();
+                List<Resource> resources = new ArrayList<Resource>(count);
+                for (int i = 0; i < count; i++) {
+                    String uri = new String(readBytes(dis), "UTF-8");
+                    byte kind = dis.readByte();
+                    resources.add(new Resource(uri, kind, readBytes(dis)));
+                }
+
+                return new Entry(resources, readBytes(dis));
+            } catch (IOException e) {
+                XRLog.general(Level.WARNING, "Could not read render cache entry");
+                return null;
+            } catch (RuntimeException e) {
+                XRLog.general(Level.WARNING, "Could not read render cache entry");
+                return null;
+            }
+        }
+
+        /**
+         * @return whether all resources still have the content they had when the entry was stored.
+         */
+        private boolean isCurrent(Map<String, FSStreamFactory> streamFactories) {
+            ResourceLoader loader = new ResourceLoader(streamFactories);
+
+            for (Resource resource : resources) {
+                byte[] current;
+                try {
+                    current = resource.kind == KIND_STREAM ?
+                            digest(loader.stream(resource.uri)) :
+                            digest(loader.reader(resource.uri));
+                } catch (IOException e) {
+                    return false;
+                }
+
+                if (!Arrays.equals(current, resource.digest)) {
+                    XRLog.general(Level.INFO, "Render cache entry is stale as " + resource.uri + " has changed");
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Loads resources the same way as the renderer's user agent.
+     */
+    private static class ResourceLoader extends NaiveUserAgent {
+        private ResourceLoader(Map<String, FSStreamFactory> streamFactories) {
+            setProtocolsStreamFactory(streamFactories);
+        }
+
+        private InputStream stream(String uri) {
+            return openStream(uri);
+        }
+
+        private Reader reader(String uri) {
+            return openReader(uri);
+        }
+    }
+
+    /**
+     * Records the digest of every resource the renderer loads. Streams are read to the end
+     * when closed so the digest is of the whole resource.
+     */
+    private static class Recorder implements FSStreamInterceptor {
+        private final Map<String, Resource> resources = new HashMap<String, Resource>();
+        private int opened;
+        private int recorded;
+        private boolean failed;
+
+        @Override
+        public synchronized InputStream interceptStream(String uri, InputStream stream) {
+            opened++;
+
+            if (stream == null) {
+                record(new Resource(uri, KIND_STREAM, null));
+                return null;
+            }
+
+            return new RecordingInputStream(this, uri, stream);
+        }
+
+        @Override
+        public synchronized Reader interceptReader(String uri, Reader reader) {
+            opened++;
+
+            if (reader == null) {
+                record(new Resource(uri, KIND_READER, null));
+                return null;
+            }
+
+            return new RecordingReader(this, uri, reader);
+        }
+
+        private synchronized void record(Resource resource) {
+            recorded++;
+
+            String key = (char) resource.kind + resource.uri;
+            Resource previous = resources.get(key);
+
+            if (previous != null && !Arrays.equals(previous.digest, resource.digest)) {
+                // Changed while rendering.
+                failed = true;
+            }
+
+            resources.put(key, resource);
+        }
+
+        private synchronized void fail() {
+            failed = true;
+        }
+
+        private synchronized boolean isComplete() {
+            return !failed && opened == recorded;
+        }
+
+        private synchronized List<Resource> getResources() {
+            return new ArrayList<Resource>(resources.values());
+        }
+    }
+
+    private static class RecordingInputStream extends FilterInputStream {
+        private final Recorder recorder;
+        private final String uri;
+        private final MessageDigest md = newDigest();
+        private boolean closed;
+
+        private RecordingInputStream(Recorder recorder, String uri, InputStream in) {
+            super(in);
+            this.recorder = recorder;
+            this.uri = uri;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                md.update((byte) b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                md.update(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buf = new byte[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                byte[] buf = new byte[8192];
+                while (read(buf, 0, buf.length) != -1) {
+                    // Read to the end.
+                }
+                recorder.record(new Resource(uri, KIND_STREAM, md.digest()));
+            } catch (IOException e) {
+                recorder.fail();
+            } finally {
+                super.close();
+            }
+        }
+    }
+
+    private static class RecordingReader extends FilterReader {
+        private final Recorder recorder;
+        private final String uri;
+        private final MessageDigest md = newDigest();
+        private boolean closed;
+
+        private RecordingReader(Recorder recorder, String uri, Reader in) {
+            super(in);
+            this.recorder = recorder;
+            this.uri = uri;
+        }
+
+        @Override
+        public int read() throws IOException {
+            char[] c = new char[1];
+            return read(c, 0, 1) == -1 ? -1 : c[0];
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int read = super.read(cbuf, off, len);
+            if (read > 0) {
+                updateChars(md, cbuf, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            char[] buf = new char[(int) Math.min(n, 8192)];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+                if (read == -1) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+
+            try {
+                char[] buf = new char[8192];
+                while (read(buf, 0, buf.length) != -1) {
+                    // Read to the end.
+                }
+                recorder.record(new Resource(uri, KIND_READER, md.digest()));
+            } catch (IOException e) {
+                recorder.fail();
+            } finally {
+                super.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.openhtmltopdf.pdfboxout;
+
+/**
+ * Storage for the render cache, see {@link PdfRendererBuilder#useRenderCache(PdfRenderCacheStore)}.
+ * Keys are hex digests of the render inputs and values are opaque cache entries
+ * which include the output PDF. Implementations must be thread safe if the store is
+ * shared between threads.
+ *
+ * @see InMemoryPdfRenderCacheStore
+ * @see DiskPdfRenderCacheStore
+ */
+public interface PdfRenderCacheStore {
+    /**
+     * @return the stored entry or null if there is none.
+     */
+    public byte[] get(String key);
+
+    public void put(String key, byte[] entry);
+}
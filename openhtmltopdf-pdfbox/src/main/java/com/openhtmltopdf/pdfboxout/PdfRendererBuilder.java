@@ -7,6 +7,7 @@ import com.openhtmltopdf.outputdevice.helper.BaseDocument;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
 import com.openhtmltopdf.outputdevice.helper.PageDimensions;
 import com.openhtmltopdf.outputdevice.helper.UnicodeImplementation;
+import com.openhtmltopdf.util.DownscaleQuality;
 import com.openhtmltopdf.util.XRLog;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -27,6 +28,13 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 		}
 	}
 
+	/**
+	 * Used by {@link PdfRendererFactory} to create a builder from a copy of its settings.
+	 */
+	PdfRendererBuilder(PdfRendererBuilderState state) {
+		super(state);
+	}
+
 	/**
 	 * Run the XHTML/XML to PDF conversion and output to an output stream set by
 	 * toStream.
@@ -34,6 +42,15 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	 * @throws Exception
 	 */
 	public void run() throws Exception {
+		if (state._renderCacheStore != null) {
+			PdfRenderCache.run(this, state);
+			return;
+		}
+
+		render();
+	}
+
+	void render() throws Exception {
 		PdfBoxRenderer renderer = null;
 		try {
 			renderer = this.buildPdfRenderer();
@@ -91,6 +108,22 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 		return renderer;
 	}
 
+	/**
+	 * Build a thread safe factory that hands out builders with a copy of the settings,
+	 * fonts and caches of this builder. Settings for a particular document, such as the
+	 * document itself and the output stream, are not copied.
+	 * Changes to this builder after calling this method do not affect the factory.
+	 * SVG and MathML drawers and object drawer factories must be set on each builder
+	 * from the factory instead of on this builder.
+	 *
+	 * @see PdfRendererFactory
+	 * @return a new factory
+	 * @throws IllegalStateException if an SVG or MathML drawer or an object drawer factory is set
+	 */
+	public PdfRendererFactory buildRendererFactory() {
+		return new PdfRendererFactory(state);
+	}
+
 	/**
 	 * An output stream to output the resulting PDF. The caller is required to close
 	 * the output stream after calling run.
@@ -156,6 +189,66 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	    return this;
 	}
 
+	/**
+	 * Only output pages <code>firstPage</code> to <code>lastPage</code> (zero based, inclusive)
+	 * of the laid out document. The whole document is still laid out so page numbers and
+	 * page counters are those of the full document, but only boxes on the requested pages
+	 * are painted. Internal links and bookmarks to pages outside the range are not output.
+	 * Use a <code>lastPage</code> of -1 to output until the last page. A <code>lastPage</code>
+	 * past the end of the document is also treated as the last page, while a <code>firstPage</code>
+	 * past the end of the document fails the render with an {@link IllegalArgumentException}.
+	 * @param firstPage zero based index of the first page to output
+	 * @param lastPage zero based index of the last page to output or -1
+	 * @return this for method chaining
+	 * @throws IllegalArgumentException if <code>firstPage</code> is negative, <code>lastPage</code> is
+	 *         less than -1 or <code>lastPage</code> is before <code>firstPage</code>
+	 */
+	public PdfRendererBuilder usePageRange(int firstPage, int lastPage) {
+	    if (firstPage < 0) {
+	        throw new IllegalArgumentException("Page range start " + firstPage + " is negative");
+	    }
+	    if (lastPage < -1) {
+	        throw new IllegalArgumentException("Page range end " + lastPage + " must be -1 or a page index");
+	    }
+	    if (lastPage != -1 && lastPage < firstPage) {
+	        throw new IllegalArgumentException("Page range end " + lastPage + " is before page range start " + firstPage);
+	    }
+	    state._pageRangeStart = firstPage;
+	    state._pageRangeEnd = lastPage;
+	    return this;
+	}
+
+	/**
+	 * Embed images at no more than <code>maxDpi</code> for the largest size each image is drawn
+	 * at in the document. Images with more pixels are downsampled when the document is finished,
+	 * JPEG images are re-encoded as JPEG with <code>jpegQuality</code> and other images are
+	 * embedded lossless. Images which already fit, or which can not be decoded, are embedded as is.
+	 * 
+	 * The number of downsampled images and the bytes saved, compared to the size of the image
+	 * files, are logged and available from {@link PdfBoxOutputDevice#getImageBytesSaved()}.
+	 * 
+	 * @param maxDpi the maximum resolution, such as 150 or 300, or zero to embed images as they are.
+	 * @param quality the quality of downscaling, such as {@link DownscaleQuality#HIGH_QUALITY}.
+	 * @param jpegQuality the quality, from 0 to 1, JPEG images are re-encoded with.
+	 * @return this for method chaining
+	 */
+	public PdfRendererBuilder useImageDownsampling(float maxDpi, DownscaleQuality quality, float jpegQuality) {
+		state._maxImageDpi = maxDpi;
+		state._imageDownscaleQuality = quality;
+		state._imageJpegQuality = jpegQuality;
+		return this;
+	}
+
+	/**
+	 * Like {@link #useImageDownsampling(float, DownscaleQuality, float)} with high quality
+	 * downscaling and a JPEG quality of 0.85.
+	 * @param maxDpi the maximum resolution, such as 150 or 300.
+	 * @return this for method chaining
+	 */
+	public PdfRendererBuilder useImageDownsampling(float maxDpi) {
+		return useImageDownsampling(maxDpi, DownscaleQuality.HIGH_QUALITY, 0.85f);
+	}
+
 	/**
 	 * Add a font programmatically. If the font is NOT subset, it will be downloaded
 	 * when the renderer is run, otherwise the font will only be downloaded if
@@ -255,6 +348,47 @@ public class PdfRendererBuilder extends BaseRendererBuilder<PdfRendererBuilder,
 	}
 
 
+	/**
+	 * Use a cache of rendered documents. When a document is rendered with the same content,
+	 * settings and resources as a cached document, the cached PDF is written to the output
+	 * stream without laying out or painting the document.
+	 * 
+	 * The key of an entry is a digest of the document (html, DOM, file path or uri) and
+	 * of the builder settings. Each entry also records a digest of every resource loaded while
+	 * rendering, such as stylesheets, images and fonts loaded by uri, and is only used if all
+	 * of the resources still have the same content. Resources served from caches set with
+	 * {@link #useCache(FSCache)} and fonts given as a {@link FSSupplier} are not checked.
+	 * 
+	 * A cached PDF is the document as first rendered, including its creation date. The
+	 * document ID is derived from the key so the same input always gives the same output.
+	 * The cache is not used with {@link #usePDDocument(PDDocument)}.
+	 * 
+	 * Settings such as uri resolvers, DOM mutators, drawers, text breakers and fonts given as a
+	 * {@link FSSupplier} can only be identified by their class. When any of them is set the
+	 * cache is not used, unless a key for them is given with {@link #useRenderCacheKey(String)}.
+	 * 
+	 * @param store a store such as {@link InMemoryPdfRenderCacheStore} or {@link DiskPdfRenderCacheStore}.
+	 * @return this for method chaining.
+	 */
+	public PdfRendererBuilder useRenderCache(PdfRenderCacheStore store) {
+		state._renderCacheStore = store;
+		return this;
+	}
+
+	/**
+	 * Identifies the settings of this builder that the render cache can only identify by
+	 * their class, such as uri resolvers, drawers and font suppliers. Builders with different
+	 * settings of this kind must use different keys, for example a version of the font set.
+	 * Without a key the render cache is not used when any of these settings is present.
+	 * 
+	 * @param key a key that changes whenever the output of those settings may change.
+	 * @return this for method chaining.
+	 */
+	public PdfRendererBuilder useRenderCacheKey(String key) {
+		state._renderCacheKey = key;
+		return this;
+	}
+
 	static class AddedFont {
 		private final FSSupplier<InputStream> supplier;
 		private final File fontFile;
@@ -5,6 +5,7 @@ import com.openhtmltopdf.extend.FSCacheValue;
 import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.CacheStore;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder.PdfAConformance;
+import com.openhtmltopdf.util.DownscaleQuality;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 
@@ -24,12 +25,27 @@ public class PdfRendererBuilderState extends BaseRendererBuilder.BaseRendererBui
 	PdfRendererBuilderState() {
 	}
 
-	public final List<PdfRendererBuilder.AddedFont> _fonts = new ArrayList<PdfRendererBuilder.AddedFont>();
+	public List<PdfRendererBuilder.AddedFont> _fonts = new ArrayList<PdfRendererBuilder.AddedFont>();
 	public OutputStream _os;
 	public float _pdfVersion = 1.7f;
 	public String _producer;
 	public PDDocument pddocument;
-        public final Map<CacheStore, FSCacheEx<String, FSCacheValue>> _caches = new EnumMap<CacheStore, FSCacheEx<String, FSCacheValue>>(CacheStore.class);
+        public Map<CacheStore, FSCacheEx<String, FSCacheValue>> _caches = new EnumMap<CacheStore, FSCacheEx<String, FSCacheValue>>(CacheStore.class);
 	public PdfAConformance _pdfAConformance = PdfAConformance.NONE;
 	public byte[] _colorProfile;
+	public int _pageRangeStart = 0;
+	public int _pageRangeEnd = -1;
+	public PdfRenderCacheStore _renderCacheStore;
+	public String _renderCacheKey;
+	public float _maxImageDpi = 0;
+	public DownscaleQuality _imageDownscaleQuality = DownscaleQuality.HIGH_QUALITY;
+	public float _imageJpegQuality = 0.85f;
+
+	@Override
+	public PdfRendererBuilderState clone() {
+		PdfRendererBuilderState copy = (PdfRendererBuilderState) super.clone();
+		copy._fonts = new ArrayList<PdfRendererBuilder.AddedFont>(_fonts);
+		copy._caches = new EnumMap<CacheStore, FSCacheEx<String, FSCacheValue>>(_caches);
+		return copy;
+	}
 }
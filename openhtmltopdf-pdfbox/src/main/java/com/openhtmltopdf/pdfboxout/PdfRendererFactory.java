@@ -0,0 +1,140 @@
+package com.openhtmltopdf.pdfboxout;
+
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+import com.openhtmltopdf.css.sheet.Ruleset;
+import com.openhtmltopdf.css.sheet.Stylesheet;
+import com.openhtmltopdf.extend.FSMultiThreadCache;
+import com.openhtmltopdf.util.XRLog;
+
+/**
+ * An immutable, thread safe factory for PDF renderers. The factory holds a copy of the
+ * settings, font registrations and caches of the builder it was created from and a cache
+ * of parsed stylesheets and style declarations shared by all documents it creates. Create the factory once and
+ * then use it for each document:
+ * <pre>
+ * PdfRendererFactory factory = new PdfRendererBuilder()
+ *     .useFont(fontFile, "my-font")
+ *     .buildRendererFactory();
+ *
+ * // For each document, possibly from several threads at once:
+ * PdfRendererBuilder builder = factory.newBuilder();
+ * builder.withHtmlContent(html, baseUri);
+ * builder.toStream(os);
+ * builder.run();
+ * </pre>
+ *
+ * Linked stylesheets are cached by uri for the lifetime of the factory and are not
+ * fetched again, so a stylesheet that changes is not seen until it drops out of the
+ * cache of the most recent 64 stylesheets. Give a changed stylesheet a new uri,
+ * for example with a version parameter, or build a new factory.
+ *
+ * Objects given to the original builder, such as stream factories, uri resolvers and caches,
+ * are shared by all documents so must be thread safe. The SVG and MathML drawers and the
+ * object drawer factory keep state for the document being rendered, so the factory refuses
+ * them. Set them on each document's builder instead.
+ */
+public class PdfRendererFactory {
+    private static final int STYLESHEET_CACHE_CAPACITY = 64;
+    private static final int DECLARATION_CACHE_CAPACITY = 4096;
+
+    private final PdfRendererBuilderState _template;
+
+    /**
+     * @throws IllegalStateException if the builder has an SVG or MathML drawer or an
+     * object drawer factory, which can not be shared between documents.
+     */
+    PdfRendererFactory(PdfRendererBuilderState state) {
+        if (state._svgImpl != null || state._mathmlImpl != null || state._objectDrawerFactory != null) {
+            throw new IllegalStateException(
+                "SVG and MathML drawers and object drawer factories keep state for one document " +
+                "so can not be shared by a renderer factory. Set them on each builder from newBuilder() instead.");
+        }
+
+        _template = state.clone();
+
+        // Settings for a particular document are not shared.
+        _template._html = null;
+        _template._baseUri = null;
+        _template._document = null;
+        _template._uri = null;
+        _template._file = null;
+        _template._os = null;
+        _template.pddocument = null;
+
+        if (_template._stylesheetCache == null) {
+            _template._stylesheetCache = new LruCache<Stylesheet>(STYLESHEET_CACHE_CAPACITY);
+        }
+
+        if (_template._declarationCache == null) {
+            _template._declarationCache = new LruCache<Ruleset>(DECLARATION_CACHE_CAPACITY);
+        }
+
+        warmUp();
+    }
+
+    /**
+     * Creates a builder with a copy of the settings of this factory. The builder should be
+     * given the document and output stream and then used for one document only.
+     * The builder itself is not thread safe.
+     */
+    public PdfRendererBuilder newBuilder() {
+        return new PdfRendererBuilder(_template.clone());
+    }
+
+    /**
+     * Renders an empty document so that the static resources, such as the default stylesheet,
+     * built-in font metrics and XML parsers are loaded before the first real document.
+     */
+    private void warmUp() {
+        PdfRendererBuilder builder = newBuilder();
+        builder.withHtmlContent("<html></html>", null);
+        builder.toStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+
+        try {
+            builder.run();
+        } catch (Exception e) {
+            XRLog.init(Level.WARNING, "Could not warm up renderer factory", e);
+        }
+    }
+
+    /**
+     * A small LRU cache, of parsed stylesheets by uri or of parsed style declarations
+     * by origin and text.
+     */
+    private static class LruCache<V> implements FSMultiThreadCache<V> {
+        private final Map<String, V> _cache;
+
+        private LruCache(final int capacity) {
+            _cache = new LinkedHashMap<String, V>(capacity, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        @Override
+        public synchronized V get(String key) {
+            return _cache.get(key);
+        }
+
+        @Override
+        public synchronized void put(String key, V value) {
+            _cache.put(key, value);
+        }
+    }
+}
@@ -9,8 +9,15 @@ public class ICUBreakers {
 	
 	private ICUBreakers() { }
 	
+	/**
+	 * Breaks lines with the ICU line break iterator. Latin-1 text with only common
+	 * punctuation, which is most text, is scanned by {@link SimpleLineBreaker} instead,
+	 * giving the same break opportunities.
+	 */
 	public static class ICULineBreaker implements FSTextBreaker {
 		private final BreakIterator breaker;
+		private final SimpleLineBreaker simple = new SimpleLineBreaker();
+		private boolean useSimple;
 		
 		public ICULineBreaker(Locale locale) {
 			this.breaker = BreakIterator.getLineInstance(locale);
@@ -18,12 +25,18 @@ public class ICUBreakers {
 		
 		@Override
 		public int next() {
-			return this.breaker.next();
+			return this.useSimple ? this.simple.next() : this.breaker.next();
 		}
 
 		@Override
 		public void setText(String newText) {
-			this.breaker.setText(newText);
+			this.useSimple = SimpleLineBreaker.isSimpleText(newText);
+
+			if (this.useSimple) {
+				this.simple.setText(newText);
+			} else {
+				this.breaker.setText(newText);
+			}
 		}
 	}
 
@@ -0,0 +1,175 @@
+package com.openhtmltopdf.bidi.support;
+
+/**
+ * A line break scanner for Latin-1 text made of letters, digits, spaces and
+ * common punctuation. It applies the subset of the Unicode line breaking rules (UAX #14)
+ * that can affect these characters, giving the same break opportunities as the ICU
+ * line break iterator without its setup cost. Other text must use the ICU iterator.
+ */
+final class SimpleLineBreaker {
+	// Line break classes of the supported characters.
+	private static final byte XX = 0; // Unsupported.
+	private static final byte AL = 1; // Alphabetic.
+	private static final byte NU = 2; // Numeric.
+	private static final byte SP = 3; // Space.
+	private static final byte IS = 4; // Infix numeric separator.
+	private static final byte QU = 5; // Quotation.
+	private static final byte EX = 6; // Exclamation/interrogation.
+	private static final byte OP = 7; // Open punctuation.
+	private static final byte CP = 8; // Close parenthesis.
+	private static final byte HY = 9; // Hyphen.
+
+	private static final byte[] CLASSES = new byte[256];
+
+	static {
+		for (char ch = 'a'; ch <= 'z'; ch++) {
+			CLASSES[ch] = AL;
+			CLASSES[Character.toUpperCase(ch)] = AL;
+		}
+		for (char ch = '0'; ch <= '9'; ch++) {
+			CLASSES[ch] = NU;
+		}
+		for (char ch = 0xC0; ch <= 0xFF; ch++) {
+			CLASSES[ch] = AL;
+		}
+		CLASSES[0xD7] = XX; // Multiplication sign.
+		CLASSES[0xF7] = XX; // Division sign.
+
+		for (char ch : "#&*<=>@^_`~".toCharArray()) {
+			CLASSES[ch] = AL;
+		}
+
+		CLASSES[' '] = SP;
+		CLASSES['.'] = IS;
+		CLASSES[','] = IS;
+		CLASSES[':'] = IS;
+		CLASSES[';'] = IS;
+		CLASSES['\''] = QU;
+		CLASSES['"'] = QU;
+		CLASSES['!'] = EX;
+		CLASSES['?'] = EX;
+		CLASSES['('] = OP;
+		CLASSES['['] = OP;
+		CLASSES[')'] = CP;
+		CLASSES[']'] = CP;
+		CLASSES['-'] = HY;
+	}
+
+	private String text;
+	private int position;
+
+	/**
+	 * @return whether every character of text is supported by this scanner.
+	 */
+	static boolean isSimpleText(String text) {
+		int length = text.length();
+
+		for (int i = 0; i < length; i++) {
+			char ch = text.charAt(i);
+
+			if (ch > 0xFF || CLASSES[ch] == XX) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	void setText(String text) {
+		this.text = text;
+		this.position = 0;
+	}
+
+	/**
+	 * @return the next break opportunity, the end of the text or -1 if done, as for a BreakIterator.
+	 */
+	int next() {
+		int length = text.length();
+
+		if (position >= length) {
+			return -1;
+		}
+
+		for (int i = position + 1; i < length; i++) {
+			if (isBreak(i)) {
+				position = i;
+				return i;
+			}
+		}
+
+		position = length;
+		return length;
+	}
+
+	private byte classAt(int index) {
+		return CLASSES[text.charAt(index)];
+	}
+
+	/**
+	 * @return whether the rules allow a break before the character at index.
+	 */
+	private boolean isBreak(int index) {
+		byte before = classAt(index - 1);
+		byte after = classAt(index);
+
+		// LB7 and LB13: No break before spaces or closing punctuation.
+		if (after == SP || after == CP || after == EX || after == IS) {
+			return false;
+		}
+
+		if (before == SP) {
+			int last = index - 2;
+			while (last >= 0 && classAt(last) == SP) {
+				last--;
+			}
+			byte lastNonSpace = last >= 0 ? classAt(last) : XX;
+
+			// LB14: No break after opening punctuation, even after spaces.
+			// LB15: No break between a quote and opening punctuation.
+			// LB18: Otherwise break after spaces.
+			return lastNonSpace != OP &&
+				   !(lastNonSpace == QU && after == OP);
+		}
+
+		// LB14 and LB19: No break after opening punctuation or around quotes.
+		if (before == OP || before == QU || after == QU) {
+			return false;
+		}
+
+		switch (after) {
+		case HY:
+			// LB21: No break before hyphens.
+			return false;
+		case AL:
+			// LB23, LB28, LB29 and LB30.
+			return !(before == AL || before == NU || before == IS || before == CP);
+		case NU:
+			// LB23, LB25 and LB30.
+			return !(before == AL || before == NU || before == HY || before == CP ||
+					 (before == IS && isInNumber(index - 1)));
+		case OP:
+			// LB30: No break between letters or digits and opening punctuation.
+			return !(before == AL || before == NU);
+		default:
+			// LB31: Break everywhere else.
+			return true;
+		}
+	}
+
+	/**
+	 * @return whether the separator at index continues a number (LB25).
+	 */
+	private boolean isInNumber(int index) {
+		for (int i = index; i >= 0; i--) {
+			byte cls = classAt(i);
+
+			if (cls == NU) {
+				return true;
+			} else if (cls != IS) {
+				return false;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,73 @@
+package com.openhtmltopdf.svgsupport;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A small LRU cache of AWT fonts shared by all documents, keyed by a digest of the font file.
+ * Creating a font from bytes parses the font and copies it to a temporary file, so each
+ * font file is only created once. Sizes and styles are derived from the cached font.
+ */
+final class AwtFontCache {
+	private static final int CAPACITY = 32;
+
+	private static final Map<String, Font> FONTS = new LinkedHashMap<String, Font>(CAPACITY, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Font> eldest) {
+			return size() > CAPACITY;
+		}
+	};
+
+	private AwtFontCache() { }
+
+	/**
+	 * @return the shared base font for a TrueType font file.
+	 */
+	static Font getFont(byte[] fontBytes) throws FontFormatException, IOException {
+		String key = digest(fontBytes);
+
+		synchronized (FONTS) {
+			Font font = FONTS.get(key);
+			if (font != null) {
+				return font;
+			}
+		}
+
+		// Created outside the lock, so other fonts are not held up by a large font.
+		Font font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(fontBytes));
+
+		synchronized (FONTS) {
+			Font existing = FONTS.get(key);
+			if (existing != null) {
+				return existing;
+			}
+			FONTS.put(key, font);
+			return font;
+		}
+	}
+
+	private static String digest(byte[] bytes) {
+		MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+
+		byte[] digest = md.digest(bytes);
+		StringBuilder sb = new StringBuilder(digest.length * 2);
+		for (byte b : digest) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
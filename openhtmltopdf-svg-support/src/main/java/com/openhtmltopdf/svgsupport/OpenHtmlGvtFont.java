@@ -4,7 +4,6 @@ import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.font.FontRenderContext;
 import java.awt.font.TextAttribute;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.text.CharacterIterator;
 
@@ -44,19 +43,24 @@ public class OpenHtmlGvtFont implements GVTFont {
 	
 	
 	public OpenHtmlGvtFont(byte[] fontBytes, GVTFontFamily family, float size, Float fontWeight, Float fontStyle) throws FontFormatException {
-		Font font;
-		
+		this(createBaseFont(fontBytes), family, size, fontWeight, fontStyle);
+	}
+	
+	/**
+	 * Creates a font from a base font, which may be shared.
+	 */
+	public OpenHtmlGvtFont(Font baseFont, GVTFontFamily family, float size, Float fontWeight, Float fontStyle) {
+		this(baseFont == null ? null : baseFont.deriveFont(toFontWeight(fontWeight) | toStyle(fontStyle), size), family, size);
+	}
+	
+	private static Font createBaseFont(byte[] fontBytes) throws FontFormatException {
 		try {
-			font = Font.createFont(Font.TRUETYPE_FONT, new ByteArrayInputStream(fontBytes)).deriveFont(toFontWeight(fontWeight) | toStyle(fontStyle) , size);
+			return AwtFontCache.getFont(fontBytes);
 		} catch (IOException e) {
 			// Shouldn't happen
 			e.printStackTrace();
-			font = null;
+			return null;
 		}
-
-		this.baseFont = font;
-		this.fontFamily = family;
-		this.size = size;
 	}
 	
 	private OpenHtmlGvtFont(Font font, GVTFontFamily family, float size) {
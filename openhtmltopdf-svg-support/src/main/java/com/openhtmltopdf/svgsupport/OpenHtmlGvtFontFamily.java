@@ -1,5 +1,6 @@
 package com.openhtmltopdf.svgsupport;
 
+import java.awt.Font;
 import java.awt.FontFormatException;
 import java.awt.font.TextAttribute;
 import java.io.ByteArrayOutputStream;
@@ -14,6 +15,7 @@ import org.apache.batik.gvt.font.GVTFont;
 import org.apache.batik.gvt.font.GVTFontFace;
 import org.apache.batik.gvt.font.GVTFontFamily;
 
+import com.openhtmltopdf.extend.FSSupplier;
 import com.openhtmltopdf.util.XRLog;
 
 public class OpenHtmlGvtFontFamily implements GVTFontFamily {
@@ -50,6 +52,7 @@ public class OpenHtmlGvtFontFamily implements GVTFontFamily {
 	}
 	
 	private final Map<FontDescriptor, OpenHtmlGvtFont> fonts = new HashMap<FontDescriptor, OpenHtmlGvtFont>(1);
+	private final Map<FontDescriptor, FSSupplier<Font>> lazyFonts = new HashMap<FontDescriptor, FSSupplier<Font>>(1);
 	private final String fontFamily;
 	
 	public OpenHtmlGvtFontFamily(String family) {
@@ -65,6 +68,37 @@ public class OpenHtmlGvtFontFamily implements GVTFontFamily {
 		fonts.put(des, new OpenHtmlGvtFont(bytes, this, size, fontWeight, fontStyle));
 	}
 	
+	/**
+	 * Adds a font that is not loaded until {@link #loadFonts()} is called.
+	 * The supplier returns a base font, which may be shared, or null if the font could not be loaded.
+	 */
+	public void addFontLazy(FSSupplier<Font> font, float size, Float fontWeight, Float fontStyle) {
+		FontDescriptor des = new FontDescriptor();
+		des.size = size;
+		des.style = fontStyle;
+		des.weight = fontWeight;
+		
+		lazyFonts.put(des, font);
+	}
+	
+	/**
+	 * Loads the fonts added with {@link #addFontLazy(FSSupplier, float, Float, Float)}.
+	 * @return whether the family has any usable font.
+	 */
+	public boolean loadFonts() {
+		for (Map.Entry<FontDescriptor, FSSupplier<Font>> entry : lazyFonts.entrySet()) {
+			Font base = entry.getValue().supply();
+			
+			if (base != null) {
+				FontDescriptor des = entry.getKey();
+				fonts.put(des, new OpenHtmlGvtFont(base, this, des.size, des.weight, des.style));
+			}
+		}
+		
+		lazyFonts.clear();
+		return !fonts.isEmpty();
+	}
+	
 	@Override
 	public GVTFont deriveFont(float sz, AttributedCharacterIterator arg1) {
 		return deriveFont(sz, arg1.getAttributes());
@@ -5,6 +5,7 @@ import com.openhtmltopdf.css.constants.IdentValue;
 import com.openhtmltopdf.css.sheet.FontFaceRule;
 import com.openhtmltopdf.css.style.CalculatedStyle;
 import com.openhtmltopdf.css.style.FSDerivedValue;
+import com.openhtmltopdf.extend.FSSupplier;
 import com.openhtmltopdf.extend.OutputDevice;
 import com.openhtmltopdf.extend.OutputDeviceGraphicsDrawer;
 import com.openhtmltopdf.layout.SharedContext;
@@ -21,6 +22,7 @@ import org.w3c.dom.Document;
 
 import java.awt.*;
 import java.awt.font.TextAttribute;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
@@ -68,8 +70,11 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		
 		@Override
 		public GVTFontFamily resolve(String family) {
-			if (families.containsKey(family))
-				return families.get(family);
+			OpenHtmlGvtFontFamily fontFamily = families.get(family);
+			
+			// Font files are only loaded once a family is used by an SVG.
+			if (fontFamily != null && fontFamily.loadFonts())
+				return fontFamily;
 			
 			return null;
 		}
@@ -135,8 +140,7 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		}
 		
 		private void addFontFaceFont(
-	            String fontFamilyNameOverride, IdentValue fontWeightOverride, IdentValue fontStyleOverride, String uri, byte[] font1)
-	            throws FontFormatException {
+	            String fontFamilyNameOverride, IdentValue fontWeightOverride, IdentValue fontStyleOverride, String uri, SharedContext ctx) {
 			
 			OpenHtmlGvtFontFamily family;
 			
@@ -147,10 +151,44 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 				families.put(fontFamilyNameOverride, family);
 			}
 			
-			family.addFont(font1, 1, getWeight(fontWeightOverride), getStyle(fontStyleOverride));
+			family.addFontLazy(new FontFaceSupplier(uri, ctx), 1, getWeight(fontWeightOverride), getStyle(fontStyleOverride));
 	    }
 		
+		/**
+		 * Loads a font-face font through the user agent, sharing the AWT font with other documents.
+		 */
+		private static class FontFaceSupplier implements FSSupplier<Font> {
+			private final String uri;
+			private final SharedContext ctx;
+			
+			private FontFaceSupplier(String uri, SharedContext ctx) {
+				this.uri = uri;
+				this.ctx = ctx;
+			}
+			
+			@Override
+			public Font supply() {
+				byte[] font1 = ctx.getUac().getBinaryResource(uri);
+				if (font1 == null) {
+					XRLog.exception("Could not load font " + uri);
+					return null;
+				}
+				
+				try {
+					return AwtFontCache.getFont(font1);
+				} catch (FontFormatException e) {
+					XRLog.exception("Couldn't read font", e);
+					return null;
+				} catch (IOException e) {
+					XRLog.exception("Couldn't read font", e);
+					return null;
+				}
+			}
+		}
 		
+		/**
+		 * Registers the font-face rules. The fonts are loaded when an SVG uses their family.
+		 */
 		public void importFontFaces(List<FontFaceRule> fontFaces, SharedContext ctx) {
 			 for (FontFaceRule rule : fontFaces) {
 	            CalculatedStyle style = rule.getCalculatedStyle();
@@ -160,12 +198,6 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		            continue;
 		         }
 
-		         byte[] font1 = ctx.getUac().getBinaryResource(src.asString());
-		         if (font1 == null) {
-		             XRLog.exception("Could not load font " + src.asString());
-		             continue;
-		         }
-		         
 		         String fontFamily = null;
 		         IdentValue fontWeight = null;
 		         IdentValue fontStyle = null;
@@ -182,12 +214,7 @@ public class PDFTranscoder extends SVGAbstractTranscoder {
 		            fontStyle = style.getIdent(CSSName.FONT_STYLE);
 		         }
 
-		         try {
-					addFontFaceFont(fontFamily, fontWeight, fontStyle, src.asString(), font1);
-				} catch (FontFormatException e) {
-					XRLog.exception("Couldn't read font", e);
-					continue;
-				}
+		         addFontFaceFont(fontFamily, fontWeight, fontStyle, src.asString(), ctx);
 		    }
 		 }
 	}